@@ -0,0 +1,111 @@
+package org.jdurani.rollingfile.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.jdurani.rollingfile.RollingFileConfig;
+import org.jdurani.rollingfile.sink.RollingFileSinkConnector;
+
+/**
+ * Data shared by benchmarks.
+ */
+final class BenchmarkData {
+
+    static final String TOPIC = "benchmark";
+    /**
+     * Number of distinct keys, so that keys repeat like keys of compacted topics.
+     */
+    private static final int DISTINCT_KEYS = 1024;
+    private static final long START_TIMESTAMP = 1_600_000_000_000L;
+
+    private final byte[][] keys;
+    private final byte[] value;
+
+    /**
+     * @param keySize size of keys in bytes
+     * @param valueSize size of values in bytes
+     */
+    BenchmarkData(int keySize, int valueSize) {
+        Random random = new Random(42L);
+        keys = new byte[DISTINCT_KEYS][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new byte[keySize];
+            random.nextBytes(keys[i]);
+        }
+        value = new byte[valueSize];
+        random.nextBytes(value);
+    }
+
+    /**
+     * @param partition partition
+     * @param offset offset, it determines key and timestamp of the record
+     *
+     * @return record with binary key and value
+     */
+    SinkRecord record(int partition, long offset) {
+        return new SinkRecord(TOPIC, partition, null, keys[(int) (offset % DISTINCT_KEYS)], null, value, offset,
+                START_TIMESTAMP + offset, TimestampType.CREATE_TIME);
+    }
+
+    /**
+     * @param dir directory to write files to
+     * @param format record format
+     * @param overrides other options of the sink
+     *
+     * @return task configuration with defaults of the connector
+     */
+    static Map<String, String> sinkTaskConfig(File dir, String format, Map<String, String> overrides) {
+        Map<String, String> props = new HashMap<>(overrides);
+        props.put(RollingFileConfig.ROLLING_FILE_DIRECTORY_CONFIG, dir.getAbsolutePath());
+        props.put(RollingFileConfig.ROLLING_FILE_FORMAT_CONFIG, format);
+        RollingFileSinkConnector connector = new RollingFileSinkConnector();
+        connector.start(props);
+        return connector.taskConfigs(1).get(0);
+    }
+
+    /**
+     * @param dir directory to delete with its content
+     *
+     * @throws IOException in case of error
+     */
+    static void delete(File dir) throws IOException {
+        if (!dir.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    /**
+     * Output stream which only counts written bytes, so that writes cannot be eliminated as dead code.
+     */
+    static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
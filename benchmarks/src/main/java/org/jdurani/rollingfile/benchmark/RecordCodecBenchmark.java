@@ -0,0 +1,115 @@
+package org.jdurani.rollingfile.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.jdurani.rollingfile.format.RecordDecoder;
+import org.jdurani.rollingfile.format.RecordEncoder;
+import org.jdurani.rollingfile.format.RecordFormat;
+import org.jdurani.rollingfile.format.RecordInput;
+import org.jdurani.rollingfile.format.StoredRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of encoding records by {@link RecordEncoder} and decoding them by {@link RecordDecoder} of each
+ * {@link RecordFormat}, without I/O.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordCodecBenchmark {
+
+    /**
+     * Number of records of decoded file.
+     */
+    private static final int RECORDS = 10_000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Param({"text", "binary", "columnar"})
+    private String format;
+    @Param({"16", "128"})
+    private int keySize;
+    @Param({"100", "1000", "10000"})
+    private int valueSize;
+
+    private RecordFormat recordFormat;
+    private RecordEncoder encoder;
+    private BenchmarkData.CountingOutputStream out;
+    private SinkRecord[] records;
+    private byte[] file;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        recordFormat = RecordFormat.forName(format);
+        BenchmarkData data = new BenchmarkData(keySize, valueSize);
+        records = new SinkRecord[RECORDS];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = data.record(0, i);
+        }
+        encoder = recordFormat.newEncoder();
+        out = new BenchmarkData.CountingOutputStream();
+        encoder.writeHeader(out, 0L);
+
+        RecordEncoder fileEncoder = recordFormat.newEncoder();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        fileEncoder.writeHeader(bos, 0L);
+        for (SinkRecord r : records) {
+            fileEncoder.encode(r);
+            fileEncoder.writeTo(bos);
+        }
+        fileEncoder.finish(bos);
+        file = bos.toByteArray();
+    }
+
+    /**
+     * Encode one record and write it (or segment completed by it) out.
+     *
+     * @return number of bytes written so far
+     *
+     * @throws IOException never
+     */
+    @Benchmark
+    public long encode() throws IOException {
+        encoder.encode(records[next]);
+        encoder.writeTo(out);
+        next = next + 1 == records.length ? 0 : next + 1;
+        return out.getCount();
+    }
+
+    /**
+     * Detect format of in-memory file and decode all its records.
+     *
+     * @param bh black hole consuming decoded records
+     *
+     * @throws IOException never
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void decode(Blackhole bh) throws IOException {
+        RecordInput in = new RecordInput(new ByteArrayInputStream(file), BUFFER_SIZE);
+        RecordDecoder decoder = RecordFormat.detect(in).newDecoder(in, "benchmark");
+        StoredRecord r;
+        while ((r = decoder.next()) != null) {
+            bh.consume(r);
+        }
+    }
+}
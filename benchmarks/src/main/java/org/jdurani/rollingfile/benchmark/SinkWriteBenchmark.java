@@ -0,0 +1,95 @@
+package org.jdurani.rollingfile.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.jdurani.rollingfile.RollingFileConfig;
+import org.jdurani.rollingfile.sink.RollingFileSinkTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link RollingFileSinkTask} writing records of many partitions to files, including rolls of files.
+ * Each batch spreads records round robin over all partitions like batches consumed from a wide topic. Writing with
+ * checksum blocks ({@code checksumBlockBytes > 0}) shows their cost compared to writing without them.
+ * With 5000 partitions the process needs limit of open files above 5000.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SinkWriteBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"1", "100", "5000"})
+    private int partitions;
+    @Param({"text", "binary", "columnar"})
+    private String format;
+    @Param({"1000"})
+    private int valueSize;
+    @Param({"0", "65536"})
+    private int checksumBlockBytes;
+
+    private BenchmarkData data;
+    private File dir;
+    private RollingFileSinkTask task;
+    private long offset;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        data = new BenchmarkData(16, valueSize);
+        dir = Files.createTempDirectory("rolling-file-sink").toFile();
+        task = new RollingFileSinkTask();
+        Map<String, String> overrides = new HashMap<>();
+        overrides.put(RollingFileConfig.ROLLING_FILE_CHECKSUM_BLOCK_BYTES_CONFIG, Integer.toString(checksumBlockBytes));
+        task.start(BenchmarkData.sinkTaskConfig(dir, format, overrides));
+        offset = 0L;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        try {
+            task.close(null);
+            task.stop();
+        } finally {
+            BenchmarkData.delete(dir);
+        }
+    }
+
+    /**
+     * Put one batch of records. Records are created like by the framework for each batch, offsets of partitions
+     * only grow.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void put() {
+        List<SinkRecord> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            long o = offset++;
+            batch.add(data.record((int) (o % partitions), o));
+        }
+        task.put(batch);
+    }
+}
@@ -0,0 +1,183 @@
+package org.jdurani.rollingfile.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.apache.kafka.connect.storage.OffsetStorageReader;
+import org.jdurani.rollingfile.RollingFileConfig;
+import org.jdurani.rollingfile.format.CorruptionPolicy;
+import org.jdurani.rollingfile.format.FileFooter;
+import org.jdurani.rollingfile.format.PageCache;
+import org.jdurani.rollingfile.sink.RollingFileSinkTask;
+import org.jdurani.rollingfile.source.RollingFileReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of {@link RollingFileReader} restoring records of one file written by the sink, either from the
+ * beginning or resumed from stored source offset in the middle of the file (like after restart of the source task).
+ * Files with checksum blocks ({@code checksumBlockBytes > 0}) show cost of verifying checksums.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SourceRestoreBenchmark {
+
+    private static final int RECORDS = 100_000;
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"text", "binary", "columnar"})
+    private String format;
+    @Param({"none", "lz4"})
+    private String compression;
+    @Param({"1000"})
+    private int valueSize;
+    @Param({"0", "65536"})
+    private int checksumBlockBytes;
+
+    private File dir;
+    private File file;
+    private FileFooter footer;
+    private OffsetStorageReader noOffsets;
+    private OffsetStorageReader halfReadOffsets;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("rolling-file-source").toFile();
+        Map<String, String> overrides = new HashMap<>();
+        overrides.put(RollingFileConfig.ROLLING_FILE_COMPRESSION_CONFIG, compression);
+        overrides.put(RollingFileConfig.ROLLING_FILE_CHECKSUM_BLOCK_BYTES_CONFIG, Integer.toString(checksumBlockBytes));
+        overrides.put(RollingFileConfig.ROLLING_FILE_FLUSH_COUNT_CONFIG, Integer.toString(RECORDS));
+        overrides.put(RollingFileConfig.ROLLING_FILE_FLUSH_MS_CONFIG, Long.toString(Long.MAX_VALUE));
+        RollingFileSinkTask task = new RollingFileSinkTask();
+        task.start(BenchmarkData.sinkTaskConfig(dir, format, overrides));
+        try {
+            BenchmarkData data = new BenchmarkData(16, valueSize);
+            for (int o = 0; o < RECORDS; o += BATCH_SIZE) {
+                List<SinkRecord> batch = new ArrayList<>(BATCH_SIZE);
+                for (int i = o; i < o + BATCH_SIZE; i++) {
+                    batch.add(data.record(0, i));
+                }
+                task.put(batch);
+            }
+        } finally {
+            task.close(null);
+            task.stop();
+        }
+        File[] files = new File(dir, BenchmarkData.TOPIC).listFiles(f -> f.isFile() && !f.getName().startsWith("."));
+        if (files == null || files.length != 1) {
+            throw new IllegalStateException("Expected one rolled file in " + dir);
+        }
+        file = files[0];
+        footer = FileFooter.read(file);
+        noOffsets = new FixedOffsetStorageReader(null);
+
+        // offset stored after half of the records
+        RollingFileReader reader = newReader(noOffsets);
+        SourceRecord r = null;
+        try {
+            for (int i = 0; i < RECORDS / 2; i++) {
+                r = reader.nextRecord(false);
+            }
+        } finally {
+            reader.close();
+        }
+        halfReadOffsets = new FixedOffsetStorageReader(new HashMap<>(r.sourceOffset()));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    /**
+     * Read all records of the file.
+     *
+     * @param bh black hole consuming records
+     *
+     * @throws IOException in case of error
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void restore(Blackhole bh) throws IOException {
+        read(noOffsets, bh);
+    }
+
+    /**
+     * Seek to stored offset and read remaining half of records of the file.
+     *
+     * @param bh black hole consuming records
+     *
+     * @throws IOException in case of error
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS / 2)
+    public void resume(Blackhole bh) throws IOException {
+        read(halfReadOffsets, bh);
+    }
+
+    private void read(OffsetStorageReader osr, Blackhole bh) throws IOException {
+        RollingFileReader reader = newReader(osr);
+        try {
+            SourceRecord r;
+            while ((r = reader.nextRecord(false)) != null) {
+                bh.consume(r);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private RollingFileReader newReader(OffsetStorageReader osr) throws IOException {
+        return new RollingFileReader(file, footer, BenchmarkData.TOPIC, 0, osr, -1L, CorruptionPolicy.FAIL,
+                PageCache.NONE);
+    }
+
+    /**
+     * Offset storage reader returning the same offset for any source partition.
+     */
+    private static final class FixedOffsetStorageReader implements OffsetStorageReader {
+
+        private final Map<String, Object> offset;
+
+        private FixedOffsetStorageReader(Map<String, Object> offset) {
+            this.offset = offset;
+        }
+
+        @Override
+        public <T> Map<String, Object> offset(Map<String, T> partition) {
+            return offset;
+        }
+
+        @Override
+        public <T> Map<Map<String, T>, Map<String, Object>> offsets(Collection<Map<String, T>> partitions) {
+            Map<Map<String, T>, Map<String, Object>> offsets = new HashMap<>();
+            partitions.forEach(p -> offsets.put(p, offset));
+            return offsets;
+        }
+    }
+}
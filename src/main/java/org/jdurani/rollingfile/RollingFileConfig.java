@@ -1,16 +1,31 @@
 package org.jdurani.rollingfile;
 
 import org.apache.kafka.common.config.ConfigDef;
+import org.jdurani.rollingfile.format.CompressionCodec;
+import org.jdurani.rollingfile.format.CorruptionPolicy;
+import org.jdurani.rollingfile.format.FileLayout;
+import org.jdurani.rollingfile.format.RecordFormat;
 
 /**
  * Connector configs.
  */
 public class RollingFileConfig {
 
+    /**
+     * Name of the connector set by the framework. Sink connector passes it to tasks to tag their metrics.
+     */
+    public static final String CONNECTOR_NAME_CONFIG = "name";
+
     public static final String ROLLING_FILE_DIRECTORY_CONFIG = "rolling.file.directory";
     private static final String ROLLING_FILE_DIRECTORY_IN_DOC = "Input directory to load files from.";
     private static final String ROLLING_FILE_DIRECTORY_OUT_DOC = "Output directory to store files to.";
 
+    public static final String ROLLING_FILE_LAYOUT_CONFIG = "rolling.file.layout";
+    private static final String ROLLING_FILE_LAYOUT_DOC = "Layout of directories with files of each topic. 'flat' puts"
+            + " all files of the topic to its directory, 'partition' to directory of each partition, 'daily' and"
+            + " 'hourly' further to 'yyyy/MM/dd' and 'yyyy/MM/dd/HH' buckets by UTC time of opening the file. Source"
+            + " and sink must use the same layout.";
+
     public static final String ROLLING_FILE_FLUSH_COUNT_CONFIG = "rolling.file.flush.count";
     private static final String ROLLING_FILE_FLUSH_COUNT_DOC = "Number of written records before rolling to next file.";
 
@@ -19,6 +34,150 @@ public class RollingFileConfig {
             + " rate at which to roll file than time between two consequent rolls. I.e. roll of a file may happen before"
             + " flush time elapses since last roll which was triggered by '" + ROLLING_FILE_FLUSH_COUNT_CONFIG + "'";
 
+    public static final String ROLLING_FILE_FLUSH_BYTES_CONFIG = "rolling.file.flush.bytes";
+    private static final String ROLLING_FILE_FLUSH_BYTES_DOC = "Number of encoded (uncompressed) bytes of records written"
+            + " before rolling to next file. File is rolled on whichever of '" + ROLLING_FILE_FLUSH_COUNT_CONFIG + "', '"
+            + ROLLING_FILE_FLUSH_BYTES_CONFIG + "' and '" + ROLLING_FILE_FLUSH_MS_CONFIG + "' is hit first. 0 disables"
+            + " size based rolling.";
+
+    public static final String ROLLING_FILE_FLUSH_JITTER_MS_CONFIG = "rolling.file.flush.jitter.ms";
+    private static final String ROLLING_FILE_FLUSH_JITTER_MS_DOC = "Maximum random delay in milliseconds added to the first"
+            + " time based roll of each file, so that files of all partitions do not roll at the same moment. It is"
+            + " never larger than '" + ROLLING_FILE_FLUSH_MS_CONFIG + "'.";
+
+    public static final String ROLLING_FILE_BUFFER_MEMORY_CONFIG = "rolling.file.buffer.memory";
+    private static final String ROLLING_FILE_BUFFER_MEMORY_DOC = "Total memory in bytes of direct buffers shared by all files"
+            + " written by one task. When exhausted, files holding the most buffered data are written out first.";
+
+    public static final String ROLLING_FILE_BUFFER_SIZE_CONFIG = "rolling.file.buffer.size";
+    private static final String ROLLING_FILE_BUFFER_SIZE_DOC = "Size in bytes of one write buffer drawn from '"
+            + ROLLING_FILE_BUFFER_MEMORY_CONFIG + "'.";
+
+    public static final String ROLLING_FILE_COMPRESSION_CONFIG = "rolling.file.compression";
+    private static final String ROLLING_FILE_COMPRESSION_DOC = "Compression codec of written files. Compressed files get"
+            + " codec suffix in their name. Source detects codec of each file automatically.";
+
+    public static final String ROLLING_FILE_FORMAT_CONFIG = "rolling.file.format";
+    private static final String ROLLING_FILE_FORMAT_DOC = "Format of written records. 'text' writes Base64 encoded key and"
+            + " value per line, 'binary' writes length-prefixed raw bytes including headers, 'columnar' writes segments"
+            + " of records as separate key, value, timestamp and header columns. Source detects format of each file"
+            + " automatically.";
+
+    public static final String ROLLING_FILE_IO_THREADS_CONFIG = "rolling.file.io.threads";
+    private static final String ROLLING_FILE_IO_THREADS_DOC = "Number of I/O threads of one task. Each thread writes files"
+            + " of its own subset of partitions, so slow write of one partition does not stall the others. 0 writes"
+            + " records synchronously on the task thread.";
+
+    public static final String ROLLING_FILE_IO_QUEUE_SIZE_CONFIG = "rolling.file.io.queue.size";
+    private static final String ROLLING_FILE_IO_QUEUE_SIZE_DOC = "Maximum number of records waiting for one I/O thread."
+            + " When the queue is full, task waits. Batch of one partition larger than the queue waits until the queue"
+            + " is empty. Used only if '" + ROLLING_FILE_IO_THREADS_CONFIG + "' is positive.";
+
+    public static final String ROLLING_FILE_FSYNC_CONFIG = "rolling.file.fsync";
+    public static final String ROLLING_FILE_FSYNC_WINDOW_MS_CONFIG = "rolling.file.fsync.window.ms";
+    private static final String ROLLING_FILE_FSYNC_DOC = "Force rolled files and their directories to disk before"
+            + " offsets are committed. Files rolled within '" + ROLLING_FILE_FSYNC_WINDOW_MS_CONFIG + "' are forced in one"
+            + " group commit.";
+    private static final String ROLLING_FILE_FSYNC_WINDOW_MS_DOC = "How long to collect rolled files before forcing"
+            + " them to disk together. Used only if '" + ROLLING_FILE_FSYNC_CONFIG + "' is enabled.";
+
+    public static final String ROLLING_FILE_PREALLOCATE_BYTES_CONFIG = "rolling.file.preallocate.bytes";
+    private static final String ROLLING_FILE_PREALLOCATE_BYTES_DOC = "Size in bytes to preallocate for each new file, so"
+            + " that file system can allocate it in few extents. Blocks are allocated by fallocate on Linux with JNA on"
+            + " class path of the plugin, otherwise files are not preallocated. File is truncated to its real"
+            + " length when rolled. 0"
+            + " disables preallocation, -1 estimates size as '" + ROLLING_FILE_FLUSH_COUNT_CONFIG + "' times average"
+            + " size of record in previous files of the partition.";
+
+    public static final String ROLLING_FILE_INDEX_INTERVAL_CONFIG = "rolling.file.index.interval";
+    private static final String ROLLING_FILE_INDEX_INTERVAL_DOC = "Number of records between two entries of sparse index"
+            + " written next to each file. Index maps offsets and timestamps to positions in the file, so that source can"
+            + " skip to them without decoding preceding records. 0 disables index.";
+
+    public static final String ROLLING_FILE_FOOTER_CONFIG = "rolling.file.footer";
+    private static final String ROLLING_FILE_FOOTER_DOC = "Append footer with number of records, offset range,"
+            + " timestamp range, length and checksum to each file. Source uses footers to skip files without reading"
+            + " them. Files with footer cannot be read by tools unaware of it, e.g. text files by line readers.";
+
+    public static final String ROLLING_FILE_CHECKSUM_BLOCK_BYTES_CONFIG = "rolling.file.checksum.block.bytes";
+    private static final String ROLLING_FILE_CHECKSUM_BLOCK_BYTES_DOC = "Size in bytes of blocks of (uncompressed) file"
+            + " content protected by CRC32C checksum. Blocks end at record boundaries, so corrupted block can be skipped"
+            + " without losing other records. Blocks of 64 KiB cost about 10% of write and read throughput of"
+            + " uncompressed binary records of 1 KB. 0 disables checksums.";
+
+    public static final String ROLLING_FILE_MMAP_REGION_BYTES_CONFIG = "rolling.file.mmap.region.bytes";
+    private static final String ROLLING_FILE_MMAP_REGION_BYTES_DOC = "Size in bytes of memory mapped regions of written"
+            + " files. Encoded records are copied directly to the mapped region instead of write buffers; each file maps"
+            + " one region at a time. 0 disables memory mapping.";
+
+    public static final String ROLLING_FILE_MAX_OPEN_FILES_CONFIG = "rolling.file.max.open.files";
+    private static final String ROLLING_FILE_MAX_OPEN_FILES_DOC = "Maximum number of files open at the same time by one"
+            + " task. When a partition needs to open a new file and the limit is reached, files of least recently"
+            + " written partitions are rolled early. With I/O threads the limit is approximate. 0 means no limit.";
+
+    public static final String ROLLING_FILE_WRITER_IDLE_MS_CONFIG = "rolling.file.writer.idle.ms";
+    private static final String ROLLING_FILE_WRITER_IDLE_MS_DOC = "Time in milliseconds after which writer of a partition"
+            + " without new records is closed and released, it is created again by the next record. 0 keeps writers"
+            + " of all assigned partitions.";
+
+    public static final String ROLLING_FILE_COMPACTION_INTERVAL_MS_CONFIG = "rolling.file.compaction.interval.ms";
+    private static final String ROLLING_FILE_COMPACTION_INTERVAL_MS_DOC = "Interval in milliseconds of background"
+            + " compaction of committed files of each partition to the latest value of each key. Files of a partition"
+            + " except the newest one are compacted when there are at least two of them and some were not compacted"
+            + " yet. 0 disables compaction.";
+
+    public static final String ROLLING_FILE_COMPACTION_TOMBSTONE_RETENTION_MS_CONFIG
+            = "rolling.file.compaction.tombstone.retention.ms";
+    private static final String ROLLING_FILE_COMPACTION_TOMBSTONE_RETENTION_MS_DOC = "How long in milliseconds to"
+            + " keep records with null value (tombstones) by compaction. Age of tombstone is given by its timestamp"
+            + " or by modification time of its file.";
+
+    public static final String ROLLING_FILE_MERGE_TARGET_BYTES_CONFIG = "rolling.file.merge.target.bytes";
+    private static final String ROLLING_FILE_MERGE_TARGET_BYTES_DOC = "Target size in bytes of files merged from"
+            + " adjacent small committed files of a partition in background. Merged file atomically replaces the first"
+            + " merged file, the other merged files are deleted afterwards. 0 disables merging.";
+
+    public static final String ROLLING_FILE_MERGE_INTERVAL_MS_CONFIG = "rolling.file.merge.interval.ms";
+    private static final String ROLLING_FILE_MERGE_INTERVAL_MS_DOC = "Interval in milliseconds of background merging"
+            + " of small files of each partition. Used only if merge target size is positive.";
+
+    public static final String ROLLING_FILE_RETENTION_MS_CONFIG = "rolling.file.retention.ms";
+    private static final String ROLLING_FILE_RETENTION_MS_DOC = "Maximum age in milliseconds of committed files of"
+            + " a partition, given by the newest timestamp of their records (or by their modification time). Older"
+            + " files are deleted, except the newest file of each partition. -1 means no limit.";
+
+    public static final String ROLLING_FILE_RETENTION_BYTES_CONFIG = "rolling.file.retention.bytes";
+    private static final String ROLLING_FILE_RETENTION_BYTES_DOC = "Maximum total size in bytes of committed files of"
+            + " a partition. The oldest files are deleted when it is exceeded, except the newest file of each"
+            + " partition. -1 means no limit.";
+
+    public static final String ROLLING_FILE_MANIFEST_CONFIG = "rolling.file.manifest";
+    private static final String ROLLING_FILE_MANIFEST_OUT_DOC = "Append entry of each committed file (partition,"
+            + " offsets, timestamps, size and checksum) to append-only manifest of its topic, so that source finds"
+            + " new files without listing directories. Files replaced by compaction or merge and files deleted by"
+            + " retention get entries marking them deleted.";
+    private static final String ROLLING_FILE_MANIFEST_IN_DOC = "Find new files by reading manifests of topics"
+            + " written by sink instead of listing directories. Topics without manifest are listed.";
+
+    public static final String ROLLING_FILE_DROP_CACHE_CONFIG = "rolling.file.drop.cache";
+    private static final String ROLLING_FILE_DROP_CACHE_OUT_DOC = "Start write back of each committed file and drop"
+            + " its pages from page cache when the next file of its partition is committed, so that written files do"
+            + " not evict pages of other processes. Requires Linux and JNA on class path of the plugin, otherwise"
+            + " pages are kept.";
+    private static final String ROLLING_FILE_DROP_CACHE_IN_DOC = "Drop pages of read ranges of files from page"
+            + " cache, so that read files do not evict pages of other processes. Requires Linux and JNA on class path"
+            + " of the plugin, otherwise pages are kept.";
+
+    public static final String ROLLING_FILE_CORRUPTION_POLICY_CONFIG = "rolling.file.corruption.policy";
+    private static final String ROLLING_FILE_CORRUPTION_POLICY_DOC = "What to do when checksum of a block does not"
+            + " match its data or the file is truncated. 'fail' stops the task, 'skip' skips records of the block and"
+            + " 'log' logs error and loads records of the block anyway.";
+
+    public static final String ROLLING_FILE_START_TIMESTAMP_CONFIG = "rolling.file.start.timestamp";
+    private static final String ROLLING_FILE_START_TIMESTAMP_DOC = "Load only records with timestamp not lower than this"
+            + " one (in milliseconds since epoch). Records without timestamp are skipped too. Files with index are read"
+            + " from the last indexed position before the timestamp. -1 loads all records.";
+
     public static final String ROLLING_FILE_BATCH_SIZE_CONFIG = "rolling.file.batch.size";
     private static final String ROLLING_FILE_BATCH_SIZE_DOC = "Maximum number of records to load from files in one batch.";
 
@@ -35,6 +194,12 @@ public class RollingFileConfig {
                     ConfigDef.Type.STRING,
                     ConfigDef.Importance.HIGH,
                     ROLLING_FILE_DIRECTORY_OUT_DOC)
+            .define(ROLLING_FILE_LAYOUT_CONFIG,
+                    ConfigDef.Type.STRING,
+                    FileLayout.FLAT.getConfigName(),
+                    ConfigDef.ValidString.in(FileLayout.configNames()),
+                    ConfigDef.Importance.MEDIUM,
+                    ROLLING_FILE_LAYOUT_DOC)
             .define(ROLLING_FILE_FLUSH_COUNT_CONFIG,
                     ConfigDef.Type.LONG,
                     100_000L,
@@ -46,12 +211,164 @@ public class RollingFileConfig {
                     10_000L,
                     ConfigDef.Range.atLeast(1L),
                     ConfigDef.Importance.MEDIUM,
-                    ROLLING_FILE_FLUSH_MS_DOC);
+                    ROLLING_FILE_FLUSH_MS_DOC)
+            .define(ROLLING_FILE_FLUSH_BYTES_CONFIG,
+                    ConfigDef.Type.LONG,
+                    0L,
+                    ConfigDef.Range.atLeast(0L),
+                    ConfigDef.Importance.MEDIUM,
+                    ROLLING_FILE_FLUSH_BYTES_DOC)
+            .define(ROLLING_FILE_FLUSH_JITTER_MS_CONFIG,
+                    ConfigDef.Type.LONG,
+                    1_000L,
+                    ConfigDef.Range.atLeast(0L),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_FLUSH_JITTER_MS_DOC)
+            .define(ROLLING_FILE_BUFFER_MEMORY_CONFIG,
+                    ConfigDef.Type.LONG,
+                    32L * 1024L * 1024L,
+                    ConfigDef.Range.atLeast(0L),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_BUFFER_MEMORY_DOC)
+            .define(ROLLING_FILE_BUFFER_SIZE_CONFIG,
+                    ConfigDef.Type.INT,
+                    64 * 1024,
+                    ConfigDef.Range.atLeast(1),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_BUFFER_SIZE_DOC)
+            .define(ROLLING_FILE_COMPRESSION_CONFIG,
+                    ConfigDef.Type.STRING,
+                    CompressionCodec.NONE.getConfigName(),
+                    ConfigDef.ValidString.in(CompressionCodec.configNames()),
+                    ConfigDef.Importance.MEDIUM,
+                    ROLLING_FILE_COMPRESSION_DOC)
+            .define(ROLLING_FILE_FORMAT_CONFIG,
+                    ConfigDef.Type.STRING,
+                    RecordFormat.TEXT.getConfigName(),
+                    ConfigDef.ValidString.in(RecordFormat.configNames()),
+                    ConfigDef.Importance.MEDIUM,
+                    ROLLING_FILE_FORMAT_DOC)
+            .define(ROLLING_FILE_IO_THREADS_CONFIG,
+                    ConfigDef.Type.INT,
+                    0,
+                    ConfigDef.Range.atLeast(0),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_IO_THREADS_DOC)
+            .define(ROLLING_FILE_IO_QUEUE_SIZE_CONFIG,
+                    ConfigDef.Type.INT,
+                    10_000,
+                    ConfigDef.Range.atLeast(1),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_IO_QUEUE_SIZE_DOC)
+            .define(ROLLING_FILE_FSYNC_CONFIG,
+                    ConfigDef.Type.BOOLEAN,
+                    false,
+                    ConfigDef.Importance.MEDIUM,
+                    ROLLING_FILE_FSYNC_DOC)
+            .define(ROLLING_FILE_FSYNC_WINDOW_MS_CONFIG,
+                    ConfigDef.Type.LONG,
+                    10L,
+                    ConfigDef.Range.atLeast(0L),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_FSYNC_WINDOW_MS_DOC)
+            .define(ROLLING_FILE_PREALLOCATE_BYTES_CONFIG,
+                    ConfigDef.Type.LONG,
+                    0L,
+                    ConfigDef.Range.atLeast(-1L),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_PREALLOCATE_BYTES_DOC)
+            .define(ROLLING_FILE_INDEX_INTERVAL_CONFIG,
+                    ConfigDef.Type.LONG,
+                    0L,
+                    ConfigDef.Range.atLeast(0L),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_INDEX_INTERVAL_DOC)
+            .define(ROLLING_FILE_FOOTER_CONFIG,
+                    ConfigDef.Type.BOOLEAN,
+                    false,
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_FOOTER_DOC)
+            .define(ROLLING_FILE_CHECKSUM_BLOCK_BYTES_CONFIG,
+                    ConfigDef.Type.INT,
+                    0,
+                    ConfigDef.Range.atLeast(0),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_CHECKSUM_BLOCK_BYTES_DOC)
+            .define(ROLLING_FILE_MMAP_REGION_BYTES_CONFIG,
+                    ConfigDef.Type.INT,
+                    0,
+                    ConfigDef.Range.atLeast(0),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_MMAP_REGION_BYTES_DOC)
+            .define(ROLLING_FILE_MAX_OPEN_FILES_CONFIG,
+                    ConfigDef.Type.INT,
+                    0,
+                    ConfigDef.Range.atLeast(0),
+                    ConfigDef.Importance.MEDIUM,
+                    ROLLING_FILE_MAX_OPEN_FILES_DOC)
+            .define(ROLLING_FILE_WRITER_IDLE_MS_CONFIG,
+                    ConfigDef.Type.LONG,
+                    0L,
+                    ConfigDef.Range.atLeast(0L),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_WRITER_IDLE_MS_DOC)
+            .define(ROLLING_FILE_COMPACTION_INTERVAL_MS_CONFIG,
+                    ConfigDef.Type.LONG,
+                    0L,
+                    ConfigDef.Range.atLeast(0L),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_COMPACTION_INTERVAL_MS_DOC)
+            .define(ROLLING_FILE_COMPACTION_TOMBSTONE_RETENTION_MS_CONFIG,
+                    ConfigDef.Type.LONG,
+                    86_400_000L,
+                    ConfigDef.Range.atLeast(0L),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_COMPACTION_TOMBSTONE_RETENTION_MS_DOC)
+            .define(ROLLING_FILE_MERGE_TARGET_BYTES_CONFIG,
+                    ConfigDef.Type.LONG,
+                    0L,
+                    ConfigDef.Range.atLeast(0L),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_MERGE_TARGET_BYTES_DOC)
+            .define(ROLLING_FILE_MERGE_INTERVAL_MS_CONFIG,
+                    ConfigDef.Type.LONG,
+                    600_000L,
+                    ConfigDef.Range.atLeast(1L),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_MERGE_INTERVAL_MS_DOC)
+            .define(ROLLING_FILE_RETENTION_MS_CONFIG,
+                    ConfigDef.Type.LONG,
+                    -1L,
+                    ConfigDef.Range.atLeast(-1L),
+                    ConfigDef.Importance.MEDIUM,
+                    ROLLING_FILE_RETENTION_MS_DOC)
+            .define(ROLLING_FILE_RETENTION_BYTES_CONFIG,
+                    ConfigDef.Type.LONG,
+                    -1L,
+                    ConfigDef.Range.atLeast(-1L),
+                    ConfigDef.Importance.MEDIUM,
+                    ROLLING_FILE_RETENTION_BYTES_DOC)
+            .define(ROLLING_FILE_MANIFEST_CONFIG,
+                    ConfigDef.Type.BOOLEAN,
+                    Boolean.FALSE,
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_MANIFEST_OUT_DOC)
+            .define(ROLLING_FILE_DROP_CACHE_CONFIG,
+                    ConfigDef.Type.BOOLEAN,
+                    Boolean.FALSE,
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_DROP_CACHE_OUT_DOC);
     private static final ConfigDef SOURCE = new ConfigDef()
             .define(ROLLING_FILE_DIRECTORY_CONFIG,
                     ConfigDef.Type.STRING,
                     ConfigDef.Importance.HIGH,
                     ROLLING_FILE_DIRECTORY_IN_DOC)
+            .define(ROLLING_FILE_LAYOUT_CONFIG,
+                    ConfigDef.Type.STRING,
+                    FileLayout.FLAT.getConfigName(),
+                    ConfigDef.ValidString.in(FileLayout.configNames()),
+                    ConfigDef.Importance.MEDIUM,
+                    ROLLING_FILE_LAYOUT_DOC)
             .define(ROLLING_FILE_BATCH_SIZE_CONFIG,
                     ConfigDef.Type.INT,
                     10_000,
@@ -67,7 +384,29 @@ public class RollingFileConfig {
                     ConfigDef.Type.BOOLEAN,
                     Boolean.FALSE,
                     ConfigDef.Importance.MEDIUM,
-                    ROLLING_FILE_IGNORE_TIMESTAMP_DOC);
+                    ROLLING_FILE_IGNORE_TIMESTAMP_DOC)
+            .define(ROLLING_FILE_START_TIMESTAMP_CONFIG,
+                    ConfigDef.Type.LONG,
+                    -1L,
+                    ConfigDef.Range.atLeast(-1L),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_START_TIMESTAMP_DOC)
+            .define(ROLLING_FILE_CORRUPTION_POLICY_CONFIG,
+                    ConfigDef.Type.STRING,
+                    CorruptionPolicy.FAIL.getConfigName(),
+                    ConfigDef.ValidString.in(CorruptionPolicy.configNames()),
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_CORRUPTION_POLICY_DOC)
+            .define(ROLLING_FILE_MANIFEST_CONFIG,
+                    ConfigDef.Type.BOOLEAN,
+                    Boolean.FALSE,
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_MANIFEST_IN_DOC)
+            .define(ROLLING_FILE_DROP_CACHE_CONFIG,
+                    ConfigDef.Type.BOOLEAN,
+                    Boolean.FALSE,
+                    ConfigDef.Importance.LOW,
+                    ROLLING_FILE_DROP_CACHE_IN_DOC);
 
     /**
      * @return sink config
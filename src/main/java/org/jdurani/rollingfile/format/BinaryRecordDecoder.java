@@ -0,0 +1,109 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.header.ConnectHeaders;
+import org.jdurani.rollingfile.exception.ReadException;
+
+/**
+ * Decoder of binary format written by {@link BinaryRecordEncoder}. File header is read when the decoder is created.
+ */
+public class BinaryRecordDecoder implements RecordDecoder {
+
+    private final RecordInput in;
+    private final String file;
+    private final long baseOffset;
+
+    /**
+     * New instance. Reads file header.
+     *
+     * @param in input positioned at the beginning of the file
+     * @param file file name used in error messages
+     *
+     * @throws IOException in case of error
+     * @throws ReadException if file header is not valid
+     */
+    public BinaryRecordDecoder(RecordInput in, String file) throws IOException, ReadException {
+        this.in = in;
+        this.file = file;
+        if (!in.ensure(BinaryRecordEncoder.HEADER_LENGTH)) {
+            throw new ReadException("Incomplete file header - [file=" + file + "]");
+        }
+        byte[] b = in.buffer();
+        int p = in.bufferPosition();
+        for (int i = 0; i < BinaryRecordEncoder.MAGIC.length; i++) {
+            if (b[p + i] != BinaryRecordEncoder.MAGIC[i]) {
+                throw new ReadException("Not a binary rolling file - [file=" + file + "]");
+            }
+        }
+        byte version = b[p + BinaryRecordEncoder.MAGIC.length];
+        if (version != BinaryRecordEncoder.VERSION) {
+            throw new ReadException("Unsupported binary format version " + version + " - [file=" + file + "]");
+        }
+        long base = 0;
+        for (int i = BinaryRecordEncoder.MAGIC.length + 1; i < BinaryRecordEncoder.HEADER_LENGTH; i++) {
+            base = base << 8 | (b[p + i] & 0xff);
+        }
+        baseOffset = base;
+        in.consume(BinaryRecordEncoder.HEADER_LENGTH);
+    }
+
+    /**
+     * @return offset of the first record of the file
+     */
+    public long getBaseOffset() {
+        return baseOffset;
+    }
+
+    @Override
+    public StoredRecord next() throws IOException, ReadException {
+        if (!in.ensure(1)) {
+            return null;
+        }
+        long start = in.position();
+        int bodyLength = in.readVarint();
+        if (bodyLength < 1 || !in.ensure(bodyLength)) {
+            throw new ReadException("Truncated record - [file=" + file + ", position=" + start + "]");
+        }
+        long bodyStart = in.position();
+        int attributes = in.read();
+        long offset = baseOffset + in.readVarlong();
+        Long timestamp = (attributes & BinaryRecordEncoder.ATTRIBUTE_TIMESTAMP) != 0 ? in.readVarlong() : null;
+        byte[] key = readData();
+        byte[] value = readData();
+        int headerCount = in.readVarint();
+        ConnectHeaders headers = new ConnectHeaders();
+        for (int i = 0; i < headerCount; i++) {
+            String headerKey = new String(in.readBytes(in.readVarint()), StandardCharsets.UTF_8);
+            byte[] headerValue = readData();
+            headers.add(headerKey, headerValue, Schema.OPTIONAL_BYTES_SCHEMA);
+        }
+        if (in.position() - bodyStart != bodyLength) {
+            throw new ReadException("Wrong record length - [file=" + file + ", position=" + start + "] expected "
+                    + bodyLength + ", read " + (in.position() - bodyStart));
+        }
+        return new StoredRecord(key, value, timestamp, offset, headers);
+    }
+
+    /**
+     * @return length prefixed data, {@code null} if data are null
+     *
+     * @throws IOException in case of error
+     */
+    private byte[] readData() throws IOException {
+        int len = in.readVarint();
+        if (len == 0) {
+            return null;
+        } else if (len < 0) {
+            throw new ReadException("Wrong data length " + len + " - [file=" + file + ", position=" + in.position() + "]");
+        }
+        return in.readBytes(len - 1);
+    }
+
+    @Override
+    public long resumePosition() {
+        return in.position();
+    }
+}
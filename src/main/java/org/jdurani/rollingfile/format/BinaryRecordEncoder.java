@@ -0,0 +1,230 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.kafka.connect.data.Values;
+import org.apache.kafka.connect.header.Header;
+import org.apache.kafka.connect.header.Headers;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+/**
+ * Encoder of records to binary length-prefixed format (version 2).
+ * <p>
+ * File starts with header {@code MAGIC(4) VERSION(1) BASE_OFFSET(8)}. Each record follows as:
+ * <pre>
+ * varint  body length
+ * byte    attributes (bit 0 - timestamp present)
+ * varlong offset delta from base offset
+ * varlong timestamp (only if present)
+ * varint  key length + 1 (0 for null key), key bytes
+ * varint  value length + 1 (0 for null value), value bytes
+ * varint  header count
+ *   varint key length, UTF-8 key bytes
+ *   varint value length + 1 (0 for null value), value bytes
+ * </pre>
+ * Signed varlongs are zig-zag encoded. Same as {@link TextRecordEncoder}, records are encoded to reusable buffer.
+ */
+public class BinaryRecordEncoder implements RecordEncoder {
+
+    public static final byte[] MAGIC = {(byte) 0x89, 'R', 'F', 'B'};
+    public static final byte VERSION = 2;
+    public static final int HEADER_LENGTH = MAGIC.length + 1 + Long.BYTES;
+    static final int ATTRIBUTE_TIMESTAMP = 1;
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final int MAX_VARINT_LENGTH = 5;
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private byte[] scratch = new byte[INITIAL_BUFFER_SIZE];
+    private long baseOffset;
+    private int start;
+    private int end;
+
+    @Override
+    public int writeHeader(OutputStream os, long baseOffset) throws IOException {
+        this.baseOffset = baseOffset;
+        byte[] h = new byte[HEADER_LENGTH];
+        System.arraycopy(MAGIC, 0, h, 0, MAGIC.length);
+        h[MAGIC.length] = VERSION;
+        for (int i = 0; i < Long.BYTES; i++) {
+            h[HEADER_LENGTH - 1 - i] = (byte) (baseOffset >>> (8 * i));
+        }
+        os.write(h);
+        return HEADER_LENGTH;
+    }
+
+    @Override
+    public void encode(SinkRecord r) throws IllegalArgumentException {
+        end = MAX_VARINT_LENGTH; // space for body length
+        Long ts = r.timestamp();
+        ensureCapacity(1 + 10 + 10);
+        buffer[end++] = (byte) (ts == null ? 0 : ATTRIBUTE_TIMESTAMP);
+        writeVarlong(r.kafkaOffset() - baseOffset);
+        if (ts != null) {
+            writeVarlong(ts);
+        }
+        writeData(r.key());
+        writeData(r.value());
+        writeHeaders(r.headers());
+        int bodyLength = end - MAX_VARINT_LENGTH;
+        start = MAX_VARINT_LENGTH - varintSize(bodyLength);
+        int p = start;
+        int v = bodyLength;
+        while ((v & ~0x7f) != 0) {
+            buffer[p++] = (byte) (v & 0x7f | 0x80);
+            v >>>= 7;
+        }
+        buffer[p] = (byte) v;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public void writeTo(OutputStream os) throws IOException {
+        os.write(buffer, start, end - start);
+    }
+
+    /**
+     * @param headers headers to write
+     */
+    private void writeHeaders(Headers headers) {
+        if (headers == null || headers.isEmpty()) {
+            ensureCapacity(1);
+            writeVarint(0);
+            return;
+        }
+        ensureCapacity(MAX_VARINT_LENGTH);
+        writeVarint(headers.size());
+        for (Header h : headers) {
+            String key = h.key();
+            ensureCapacity(MAX_VARINT_LENGTH + Utf8.maxLength(key));
+            int len = Utf8.encode(key, scratch(key), 0);
+            writeVarint(len);
+            System.arraycopy(scratch, 0, buffer, end, len);
+            end += len;
+            Object value = h.value();
+            if (value == null || value instanceof byte[] || value instanceof ByteBuffer || value instanceof String) {
+                writeData(value);
+            } else {
+                writeData(Values.convertToString(h.schema(), value));
+            }
+        }
+    }
+
+    /**
+     * Write length prefixed data. Supported are {@code byte[]}, {@link ByteBuffer} and {@link String}.
+     * Position of {@link ByteBuffer} is not changed.
+     *
+     * @param value value to write
+     *
+     * @throws IllegalArgumentException if value is of unsupported type
+     */
+    private void writeData(Object value) throws IllegalArgumentException {
+        if (value == null) {
+            ensureCapacity(1);
+            writeVarint(0);
+        } else if (value instanceof byte[]) {
+            byte[] b = (byte[]) value;
+            writeBytes(b, 0, b.length);
+        } else if (value instanceof ByteBuffer) {
+            ByteBuffer b = (ByteBuffer) value;
+            int len = b.remaining();
+            ensureCapacity(MAX_VARINT_LENGTH + len);
+            writeVarint(len + 1);
+            if (b.hasArray()) {
+                System.arraycopy(b.array(), b.arrayOffset() + b.position(), buffer, end, len);
+            } else {
+                int pos = b.position();
+                for (int i = 0; i < len; i++) {
+                    buffer[end + i] = b.get(pos + i);
+                }
+            }
+            end += len;
+        } else if (value instanceof String) {
+            String s = (String) value;
+            int len = Utf8.encode(s, scratch(s), 0);
+            writeBytes(scratch, 0, len);
+        } else {
+            throw new IllegalArgumentException("Unsupported object to write - [class] " + value.getClass());
+        }
+    }
+
+    /**
+     * @param s string to be encoded
+     *
+     * @return scratch buffer large enough for encoded string
+     */
+    private byte[] scratch(String s) {
+        int max = Utf8.maxLength(s);
+        if (scratch.length < max) {
+            scratch = new byte[Math.max(max, scratch.length * 2)];
+        }
+        return scratch;
+    }
+
+    /**
+     * @param b bytes
+     * @param off offset
+     * @param len length
+     */
+    private void writeBytes(byte[] b, int off, int len) {
+        ensureCapacity(MAX_VARINT_LENGTH + len);
+        writeVarint(len + 1);
+        System.arraycopy(b, off, buffer, end, len);
+        end += len;
+    }
+
+    /**
+     * @param v unsigned int to write; capacity must be ensured
+     */
+    private void writeVarint(int v) {
+        while ((v & ~0x7f) != 0) {
+            buffer[end++] = (byte) (v & 0x7f | 0x80);
+            v >>>= 7;
+        }
+        buffer[end++] = (byte) v;
+    }
+
+    /**
+     * @param v signed long to write zig-zag encoded; capacity must be ensured
+     */
+    private void writeVarlong(long v) {
+        long z = (v << 1) ^ (v >> 63);
+        while ((z & ~0x7fL) != 0) {
+            buffer[end++] = (byte) (z & 0x7f | 0x80);
+            z >>>= 7;
+        }
+        buffer[end++] = (byte) z;
+    }
+
+    /**
+     * @param v unsigned int
+     *
+     * @return number of bytes of varint
+     */
+    private static int varintSize(int v) {
+        int size = 1;
+        while ((v & ~0x7f) != 0) {
+            size++;
+            v >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * @param needed number of bytes which will be appended to buffer
+     */
+    private void ensureCapacity(int needed) {
+        int required = end + needed;
+        if (required > buffer.length) {
+            byte[] n = new byte[Math.max(required, buffer.length * 2)];
+            System.arraycopy(buffer, 0, n, 0, end);
+            buffer = n;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.Checksum;
+
+import org.apache.kafka.common.utils.Crc32C;
+import org.jdurani.rollingfile.exception.ReadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Input stream of content written by {@link BlockOutputStream}. Checksum of each block is verified before its data
+ * are returned; corrupted or truncated blocks are handled according to {@link CorruptionPolicy}.
+ * <p>
+ * Positions of the stream are positions of data as written (i.e. without block headers) less data of skipped
+ * corrupted blocks - see {@link #skippedBefore(long)}. Blocks skipped by {@link #skip(long)} (including the block
+ * where skipping ends) are not verified, whole skipped blocks are not read at all.
+ * <p>
+ * Block data are read directly to the array of the block, so the underlying stream should not buffer more than it
+ * has to. {@link RecordInput} takes verified blocks by {@link #takeBlock(byte[])} instead of copying them.
+ */
+public class BlockInputStream extends InputStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BlockInputStream.class);
+    private static final int MAX_BLOCK_LENGTH = 256 * 1024 * 1024;
+
+    private final InputStream in;
+    private final String file;
+    private final CorruptionPolicy policy;
+    private final Checksum checksum = Crc32C.create();
+    private final byte[] header = new byte[BlockOutputStream.BLOCK_HEADER_LENGTH];
+    private final byte[] single = new byte[1];
+    private byte[] block = new byte[0];
+    private int pos;
+    private int limit;
+    private long delivered;
+    private long[] skippedAt = new long[0];
+    private long[] skippedLength = new long[0];
+    private int skippedBlocks;
+    private boolean eof;
+
+    /**
+     * New instance. Stream header must have been read already - see {@link #wrapIfBlocked(InputStream, String,
+     * CorruptionPolicy)}.
+     *
+     * @param in stream of blocks
+     * @param file file name used in messages
+     * @param policy what to do with corrupted blocks
+     */
+    public BlockInputStream(InputStream in, String file, CorruptionPolicy policy) {
+        this.in = in;
+        this.file = file;
+        this.policy = policy;
+    }
+
+    /**
+     * Detect blocks from the first bytes of the stream.
+     *
+     * @param in decompressed content of a file
+     * @param file file name used in messages
+     * @param policy what to do with corrupted blocks
+     *
+     * @return {@link BlockInputStream} if content is split into blocks, stream of the original content otherwise
+     *
+     * @throws IOException in case of error
+     */
+    public static InputStream wrapIfBlocked(InputStream in, String file, CorruptionPolicy policy) throws IOException {
+        int headerLength = BlockOutputStream.MAGIC.length + 1;
+        PushbackInputStream pin = new PushbackInputStream(in, headerLength);
+        byte[] head = new byte[headerLength];
+        int read = 0;
+        int n;
+        while (read < headerLength && (n = pin.read(head, read, headerLength - read)) >= 0) {
+            read += n;
+        }
+        if (read == headerLength
+                && Arrays.equals(Arrays.copyOf(head, BlockOutputStream.MAGIC.length), BlockOutputStream.MAGIC)) {
+            if (head[BlockOutputStream.MAGIC.length] != BlockOutputStream.VERSION) {
+                throw new ReadException("Unsupported block version " + head[BlockOutputStream.MAGIC.length]
+                        + " - [file=" + file + "]");
+            }
+            return new BlockInputStream(pin, file, policy);
+        }
+        if (read > 0) {
+            pin.unread(head, 0, read);
+        }
+        return pin;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (pos == limit) {
+            if (!nextBlock()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(block, pos, b, off, n);
+        pos += n;
+        delivered += n;
+        return n;
+    }
+
+    /**
+     * Hand over unread data of current or next valid block instead of copying them by
+     * {@link #read(byte[], int, int)}.
+     *
+     * @param spare array to load following blocks to; caller must not use it anymore
+     *
+     * @return array of the block with unread data between position and limit of the returned buffer, {@code null}
+     *         at the end of stream
+     *
+     * @throws IOException in case of error
+     */
+    public ByteBuffer takeBlock(byte[] spare) throws IOException {
+        while (pos == limit) {
+            if (!nextBlock()) {
+                return null;
+            }
+        }
+        ByteBuffer data = ByteBuffer.wrap(block, pos, limit - pos);
+        delivered += limit - pos;
+        block = spare;
+        pos = 0;
+        limit = 0;
+        return data;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = Math.min(n, limit - pos);
+        pos += (int) skipped;
+        delivered += skipped;
+        while (skipped < n && !eof) {
+            if (!readHeader()) {
+                break;
+            }
+            int length = getInt(0);
+            int k;
+            if (n - skipped >= length) {
+                skipFully(length);
+                k = length;
+            } else if (loadBlock(length, false)) {
+                k = (int) Math.min(n - skipped, limit - pos);
+                pos += k;
+            } else {
+                break;
+            }
+            skipped += k;
+            delivered += k;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return limit - pos;
+    }
+
+    /**
+     * Load next valid block.
+     *
+     * @return {@code true} if block was loaded (it may be empty), {@code false} at the end of stream
+     *
+     * @throws IOException in case of error
+     */
+    private boolean nextBlock() throws IOException {
+        if (eof || !readHeader()) {
+            return false;
+        }
+        return loadBlock(getInt(0), true);
+    }
+
+    /**
+     * Read header of next block.
+     *
+     * @return {@code false} at the end of stream or if the rest of the stream is truncated
+     *
+     * @throws IOException in case of error
+     */
+    private boolean readHeader() throws IOException {
+        int read = readFully(header, header.length);
+        if (read == 0) {
+            eof = true;
+            return false;
+        }
+        int length = getInt(0);
+        if (read < header.length || length < 0 || length > MAX_BLOCK_LENGTH) {
+            truncated("block header at position " + delivered);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Load data of block whose header was read.
+     *
+     * @param length length of block data
+     * @param verify verify checksum of the data?
+     *
+     * @return {@code false} if the rest of the stream is truncated
+     *
+     * @throws IOException in case of error
+     */
+    private boolean loadBlock(int length, boolean verify) throws IOException {
+        if (block.length < length) {
+            block = new byte[length];
+        }
+        pos = 0;
+        limit = 0;
+        if (readFully(block, length) < length) {
+            truncated("block at position " + delivered);
+            return false;
+        }
+        if (verify && !verify(length)) {
+            String message = "Corrupted block of " + length + " bytes at position " + delivered + " - [file=" + file + "]";
+            switch (policy) {
+                case FAIL:
+                    throw new ReadException(message);
+                case SKIP:
+                    LOG.warn("{} - skipping its records", message);
+                    skipped(length);
+                    return true;
+                default:
+                    LOG.error("{} - reading its records anyway", message);
+            }
+        }
+        limit = length;
+        return true;
+    }
+
+    /**
+     * @param length length of loaded block data
+     *
+     * @return {@code true} if checksum of the data matches checksum in block header
+     */
+    private boolean verify(int length) {
+        checksum.reset();
+        checksum.update(block, 0, length);
+        return (int) checksum.getValue() == getInt(Integer.BYTES);
+    }
+
+    /**
+     * Handle truncated stream.
+     *
+     * @param what description of truncated data
+     */
+    private void truncated(String what) {
+        eof = true;
+        String message = "Truncated " + what + " - [file=" + file + "]";
+        if (policy == CorruptionPolicy.FAIL) {
+            throw new ReadException(message);
+        }
+        LOG.error("{} - ignoring rest of the file", message);
+    }
+
+    /**
+     * Remember skipped block.
+     *
+     * @param length length of block data
+     */
+    private void skipped(int length) {
+        if (skippedBlocks == skippedAt.length) {
+            skippedAt = Arrays.copyOf(skippedAt, skippedBlocks * 2 + 1);
+            skippedLength = Arrays.copyOf(skippedLength, skippedBlocks * 2 + 1);
+        }
+        skippedAt[skippedBlocks] = delivered;
+        skippedLength[skippedBlocks] = length;
+        skippedBlocks++;
+    }
+
+    /**
+     * Number of bytes to add to position in this stream to get position of data as written.
+     *
+     * @param position number of bytes read (or skipped) from this stream
+     *
+     * @return number of bytes of skipped corrupted blocks preceding the position
+     */
+    public long skippedBefore(long position) {
+        long sum = 0;
+        for (int i = 0; i < skippedBlocks && skippedAt[i] <= position; i++) {
+            sum += skippedLength[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return number of skipped corrupted blocks
+     */
+    public int getSkippedBlocks() {
+        return skippedBlocks;
+    }
+
+    /**
+     * @param b buffer
+     * @param len number of bytes to read
+     *
+     * @return number of read bytes; less than {@code len} only at the end of stream
+     *
+     * @throws IOException in case of error
+     */
+    private int readFully(byte[] b, int len) throws IOException {
+        int read = 0;
+        int n;
+        while (read < len && (n = in.read(b, read, len - read)) >= 0) {
+            read += n;
+        }
+        return read;
+    }
+
+    /**
+     * @param len number of bytes to skip in underlying stream
+     *
+     * @throws IOException in case of error or if stream ends prematurely
+     */
+    private void skipFully(int len) throws IOException {
+        int remaining = len;
+        while (remaining > 0) {
+            long k = in.skip(remaining);
+            if (k <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Truncated block - [file=" + file + "]");
+                }
+                k = 1;
+            }
+            remaining -= (int) k;
+        }
+    }
+
+    /**
+     * @param at position in header
+     *
+     * @return big-endian int
+     */
+    private int getInt(int at) {
+        return (header[at] & 0xff) << 24 | (header[at + 1] & 0xff) << 16 | (header[at + 2] & 0xff) << 8
+                | (header[at + 3] & 0xff);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,132 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Checksum;
+
+import org.apache.kafka.common.utils.Crc32C;
+
+/**
+ * Output stream splitting (decompressed) file content into blocks protected by CRC32C:
+ * <pre>
+ * MAGIC(4) VERSION(1)
+ * block: LENGTH(4) CRC32C(4) DATA(LENGTH)
+ * </pre>
+ * Numbers are big-endian. Blocks end only at record boundaries (see {@link #endRecord()}), so that corrupted block can
+ * be skipped without breaking following records. Checksum is computed by {@link Crc32C}, which uses intrinsified
+ * {@code java.util.zip.CRC32C} on Java 9 and newer.
+ */
+public class BlockOutputStream extends OutputStream {
+
+    static final byte[] MAGIC = {(byte) 0x89, 'R', 'F', 'K'};
+    static final byte VERSION = 1;
+    static final int BLOCK_HEADER_LENGTH = 2 * Integer.BYTES;
+
+    private final OutputStream out;
+    private final int blockSize;
+    private final Checksum checksum = Crc32C.create();
+    private final byte[] single = new byte[1];
+    private byte[] buffer;
+    private int count;
+
+    /**
+     * New instance. Stream header is written immediately.
+     *
+     * @param out stream to write blocks to
+     * @param blockSize minimum number of bytes of one block; block may be larger if record does not fit into it
+     *
+     * @throws IOException in case of error
+     */
+    public BlockOutputStream(OutputStream out, int blockSize) throws IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.out = out;
+        this.blockSize = blockSize;
+        this.buffer = new byte[BLOCK_HEADER_LENGTH + blockSize];
+        this.count = BLOCK_HEADER_LENGTH;
+        out.write(MAGIC);
+        out.write(VERSION);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (count + len > buffer.length) {
+            // the last record of a block usually crosses block size by less than its size, small growth is kept
+            buffer = Arrays.copyOf(buffer, Math.max(count + len, buffer.length + blockSize / 4));
+        }
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    /**
+     * Mark record boundary. Block is written if it is full.
+     *
+     * @throws IOException in case of error
+     */
+    public void endRecord() throws IOException {
+        if (count - BLOCK_HEADER_LENGTH >= blockSize) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Write current block and its header.
+     *
+     * @throws IOException in case of error
+     */
+    private void writeBlock() throws IOException {
+        int length = count - BLOCK_HEADER_LENGTH;
+        if (length == 0) {
+            return;
+        }
+        checksum.reset();
+        checksum.update(buffer, BLOCK_HEADER_LENGTH, length);
+        putInt(0, length);
+        putInt(Integer.BYTES, (int) checksum.getValue());
+        out.write(buffer, 0, count);
+        count = BLOCK_HEADER_LENGTH;
+        if (buffer.length > BLOCK_HEADER_LENGTH + blockSize + blockSize / 4) {
+            // do not keep buffer grown by single large record
+            buffer = new byte[BLOCK_HEADER_LENGTH + blockSize];
+        }
+    }
+
+    /**
+     * @param at position in buffer
+     * @param v value to write
+     */
+    private void putInt(int at, int v) {
+        buffer[at] = (byte) (v >>> 24);
+        buffer[at + 1] = (byte) (v >>> 16);
+        buffer[at + 2] = (byte) (v >>> 8);
+        buffer[at + 3] = (byte) v;
+    }
+
+    /**
+     * Write current block (even if it is not full) and flush underlying stream. Must be called at record boundary.
+     *
+     * @throws IOException in case of error
+     */
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBlock();
+        } finally {
+            out.close();
+        }
+    }
+}
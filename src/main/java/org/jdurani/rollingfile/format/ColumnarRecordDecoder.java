@@ -0,0 +1,333 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.header.ConnectHeaders;
+import org.jdurani.rollingfile.exception.ReadException;
+
+/**
+ * Decoder of columnar format written by {@link ColumnarRecordEncoder}. File header is read when the decoder is
+ * created, records are reassembled from columns of one segment at a time.
+ * <p>
+ * Decoder created for keys only skips value and header columns without parsing them (only offset, timestamp and key
+ * of records are returned), so scanning keys of a file reads a fraction of its content.
+ */
+public class ColumnarRecordDecoder implements RecordDecoder {
+
+    private static final byte[][] NO_DATA = new byte[0][];
+
+    private final RecordInput in;
+    private final String file;
+    private final boolean keysOnly;
+    private final long baseOffset;
+
+    private long segmentStart;
+    private int count;
+    private int next;
+    private long resumeFrom;
+    private long[] offsets = new long[0];
+    private Long[] timestamps = new Long[0];
+    private byte[][] keys = NO_DATA;
+    private byte[][] values = NO_DATA;
+    private ConnectHeaders[] headers = new ConnectHeaders[0];
+
+    /**
+     * New instance. Reads file header.
+     *
+     * @param in input positioned at the beginning of the file
+     * @param file file name used in error messages
+     * @param keysOnly {@code true} to skip values and headers of records
+     *
+     * @throws IOException in case of error
+     * @throws ReadException if file header is not valid
+     */
+    public ColumnarRecordDecoder(RecordInput in, String file, boolean keysOnly) throws IOException, ReadException {
+        this.in = in;
+        this.file = file;
+        this.keysOnly = keysOnly;
+        if (!in.ensure(ColumnarRecordEncoder.HEADER_LENGTH)) {
+            throw new ReadException("Incomplete file header - [file=" + file + "]");
+        }
+        byte[] b = in.buffer();
+        int p = in.bufferPosition();
+        for (int i = 0; i < ColumnarRecordEncoder.MAGIC.length; i++) {
+            if (b[p + i] != ColumnarRecordEncoder.MAGIC[i]) {
+                throw new ReadException("Not a columnar rolling file - [file=" + file + "]");
+            }
+        }
+        byte version = b[p + ColumnarRecordEncoder.MAGIC.length];
+        if (version != ColumnarRecordEncoder.VERSION) {
+            throw new ReadException("Unsupported columnar format version " + version + " - [file=" + file + "]");
+        }
+        long base = 0;
+        for (int i = ColumnarRecordEncoder.MAGIC.length + 1; i < ColumnarRecordEncoder.HEADER_LENGTH; i++) {
+            base = base << 8 | (b[p + i] & 0xff);
+        }
+        baseOffset = base;
+        in.consume(ColumnarRecordEncoder.HEADER_LENGTH);
+    }
+
+    /**
+     * @return offset of the first record of the file
+     */
+    public long getBaseOffset() {
+        return baseOffset;
+    }
+
+    @Override
+    public StoredRecord next() throws IOException, ReadException {
+        while (next >= count) {
+            if (!in.ensure(1)) {
+                return null;
+            }
+            try {
+                readSegment();
+            } catch (EOFException e) {
+                throw new ReadException("Truncated segment - [file=" + file + ", position=" + segmentStart + "]", e);
+            }
+        }
+        int i = next++;
+        return new StoredRecord(keys[i], keysOnly ? null : values[i], timestamps[i], offsets[i],
+                keysOnly ? new ConnectHeaders() : headers[i]);
+    }
+
+    /**
+     * @return start of current segment if it has unread records, position after it otherwise
+     */
+    @Override
+    public long resumePosition() {
+        return next < count ? segmentStart : in.position();
+    }
+
+    @Override
+    public void resume(long recordNumber) {
+        resumeFrom = recordNumber;
+    }
+
+    /**
+     * Read next segment and decode its columns.
+     *
+     * @throws IOException in case of error
+     */
+    private void readSegment() throws IOException {
+        segmentStart = in.position();
+        int n = in.readVarint();
+        long first = in.readVarlong();
+        if (n < 1 || n > ColumnarRecordEncoder.SEGMENT_RECORDS) {
+            throw malformed("record count " + n);
+        }
+        ensureCapacity(n);
+        readOffsets(new Column(readColumn()), n);
+        readTimestamps(new Column(readColumn()), n);
+        readKeys(new Column(readColumn()), n);
+        if (keysOnly) {
+            skipColumn();
+            skipColumn();
+        } else {
+            readValues(new Column(readColumn()), n);
+            readHeaders(new Column(readColumn()), n);
+        }
+        count = n;
+        next = 0;
+        if (resumeFrom > first) {
+            next = (int) Math.min(n, resumeFrom - first);
+        }
+        resumeFrom = 0L;
+    }
+
+    /**
+     * @param n number of records of segment
+     */
+    private void ensureCapacity(int n) {
+        if (offsets.length < n) {
+            offsets = new long[n];
+            timestamps = new Long[n];
+            keys = new byte[n][];
+            values = new byte[n][];
+            headers = new ConnectHeaders[n];
+        }
+    }
+
+    /**
+     * @return bytes of next column
+     *
+     * @throws IOException in case of error
+     */
+    private byte[] readColumn() throws IOException {
+        int len = in.readVarint();
+        if (len < 0) {
+            throw malformed("column length " + len);
+        }
+        return in.readBytes(len);
+    }
+
+    /**
+     * Skip next column.
+     *
+     * @throws IOException in case of error
+     */
+    private void skipColumn() throws IOException {
+        int len = in.readVarint();
+        if (len < 0) {
+            throw malformed("column length " + len);
+        }
+        if (in.skip(len) != len) {
+            throw new EOFException("Expected " + len + " bytes of column");
+        }
+    }
+
+    private void readOffsets(Column c, int n) {
+        long offset = baseOffset;
+        for (int i = 0; i < n; i++) {
+            offset += c.readVarlong();
+            offsets[i] = offset;
+        }
+        c.end("offsets");
+    }
+
+    private void readTimestamps(Column c, int n) {
+        int bitmap = c.pos;
+        c.pos += (n + 7) / 8;
+        long ts = 0L;
+        for (int i = 0; i < n; i++) {
+            if ((c.get(bitmap + i / 8) & (1 << (i % 8))) != 0) {
+                ts += c.readVarlong();
+                timestamps[i] = ts;
+            } else {
+                timestamps[i] = null;
+            }
+        }
+        c.end("timestamps");
+    }
+
+    private void readKeys(Column c, int n) {
+        byte encoding = c.get(c.pos++);
+        if (encoding == ColumnarRecordEncoder.KEYS_PLAIN) {
+            for (int i = 0; i < n; i++) {
+                keys[i] = c.readData();
+            }
+        } else if (encoding == ColumnarRecordEncoder.KEYS_DICTIONARY) {
+            int entries = c.readVarint();
+            if (entries < 0 || entries > n) {
+                throw malformed("dictionary size " + entries);
+            }
+            byte[][] dictionary = new byte[entries][];
+            for (int i = 0; i < entries; i++) {
+                dictionary[i] = c.readBytes(c.readVarint());
+            }
+            for (int i = 0; i < n; i++) {
+                int index = c.readVarint();
+                if (index < 0 || index > entries) {
+                    throw malformed("dictionary index " + index);
+                }
+                keys[i] = index == 0 ? null : dictionary[index - 1];
+            }
+        } else {
+            throw malformed("key encoding " + encoding);
+        }
+        c.end("keys");
+    }
+
+    private void readValues(Column c, int n) {
+        for (int i = 0; i < n; i++) {
+            values[i] = c.readData();
+        }
+        c.end("values");
+    }
+
+    private void readHeaders(Column c, int n) {
+        for (int i = 0; i < n; i++) {
+            int headerCount = c.readVarint();
+            ConnectHeaders h = new ConnectHeaders();
+            for (int j = 0; j < headerCount; j++) {
+                String key = new String(c.readBytes(c.readVarint()), StandardCharsets.UTF_8);
+                h.add(key, c.readData(), Schema.OPTIONAL_BYTES_SCHEMA);
+            }
+            headers[i] = h;
+        }
+        c.end("headers");
+    }
+
+    /**
+     * @param what description of malformed data
+     *
+     * @return exception for malformed segment
+     */
+    private ReadException malformed(String what) {
+        return new ReadException("Malformed segment - [file=" + file + ", position=" + segmentStart + "] " + what);
+    }
+
+    /**
+     * Cursor over bytes of one column. Reading beyond the column fails with {@link ReadException}.
+     */
+    private final class Column {
+
+        private final byte[] data;
+        private int pos;
+
+        private Column(byte[] data) {
+            this.data = data;
+        }
+
+        private byte get(int i) {
+            if (i >= data.length) {
+                throw malformed("column of " + data.length + " bytes is too short");
+            }
+            return data[i];
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = get(pos++);
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw malformed("varint");
+        }
+
+        private long readVarlong() {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                int b = get(pos++);
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return (value >>> 1) ^ -(value & 1);
+                }
+            }
+            throw malformed("varlong");
+        }
+
+        private byte[] readBytes(int len) {
+            if (len < 0 || len > data.length - pos) {
+                throw malformed("data length " + len);
+            }
+            byte[] b = new byte[len];
+            System.arraycopy(data, pos, b, 0, len);
+            pos += len;
+            return b;
+        }
+
+        /**
+         * @return length prefixed data, {@code null} if data are null
+         */
+        private byte[] readData() {
+            int len = readVarint();
+            return len == 0 ? null : readBytes(len - 1);
+        }
+
+        /**
+         * @param name name of column used in error message
+         */
+        private void end(String name) {
+            if (pos != data.length) {
+                throw malformed("wrong length of " + name + " column, expected " + data.length + ", read " + pos);
+            }
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.connect.data.Values;
+import org.apache.kafka.connect.header.Header;
+import org.apache.kafka.connect.header.Headers;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+/**
+ * Encoder of records to columnar segments (version 1).
+ * <p>
+ * File starts with header {@code MAGIC(4) VERSION(1) BASE_OFFSET(8)}. Records are buffered and written in segments
+ * of at most {@link #SEGMENT_RECORDS} records (or less if their data exceed {@link #SEGMENT_BYTES}):
+ * <pre>
+ * varint  record count
+ * varlong number of records preceding the segment in the file
+ * columns, each as varint column length and column bytes:
+ *   offsets    - varlong delta from offset of previous record (from base offset for the first record of segment)
+ *   timestamps - bitmap of records with timestamp (bit i % 8 of byte i / 8), then varlong delta of each present
+ *                timestamp from the previous present one (from 0 for the first one)
+ *   keys       - byte encoding, then
+ *                plain (0): varint key length + 1 (0 for null key), key bytes of each record
+ *                dictionary (1): varint entry count, varint length and bytes of each entry, then
+ *                varint entry index + 1 (0 for null key) of each record
+ *   values     - varint value length + 1 (0 for null value), value bytes of each record
+ *   headers    - varint header count of each record, each header as
+ *                varint key length, UTF-8 key bytes, varint value length + 1 (0 for null value), value bytes
+ * </pre>
+ * Signed varlongs are zig-zag encoded. Keys are dictionary encoded if it makes the column smaller, so topics keyed
+ * by few distinct keys store each key once per segment. Columns are length prefixed, so that readers of keys can skip
+ * values and headers - see {@link ColumnarRecordDecoder}.
+ * <p>
+ * Encoded record is usually not written immediately - {@link #length()} is length of the segment completed by the
+ * record or {@code 0}. Pending records are written by {@link #finish(OutputStream)}.
+ */
+public class ColumnarRecordEncoder implements RecordEncoder {
+
+    public static final byte[] MAGIC = {(byte) 0x89, 'R', 'F', 'C'};
+    public static final byte VERSION = 1;
+    public static final int HEADER_LENGTH = MAGIC.length + 1 + Long.BYTES;
+    public static final int SEGMENT_RECORDS = 4096;
+    public static final int SEGMENT_BYTES = 1024 * 1024;
+    static final byte KEYS_PLAIN = 0;
+    static final byte KEYS_DICTIONARY = 1;
+
+    private static final int MAX_VARINT_LENGTH = 5;
+    private static final int MAX_VARLONG_LENGTH = 10;
+
+    private final Column offsets = new Column();
+    private final Column timestamps = new Column();
+    private final Column plainKeys = new Column();
+    private final Column dictionary = new Column();
+    private final Column keyIndexes = new Column();
+    private final Column values = new Column();
+    private final Column headers = new Column();
+    private final Column segment = new Column();
+    private final Map<ByteBuffer, Integer> dictionaryIndexes = new HashMap<>();
+    private final byte[] timestampBitmap = new byte[SEGMENT_RECORDS / 8];
+    private byte[] scratch = new byte[1024];
+    private byte[] keyScratch = new byte[1024];
+    private long baseOffset;
+    private long previousOffset;
+    private long previousTimestamp;
+    private long recordsBefore;
+    private int count;
+    private int length;
+
+    @Override
+    public int writeHeader(OutputStream os, long baseOffset) throws IOException {
+        this.baseOffset = baseOffset;
+        recordsBefore = 0L;
+        resetSegment();
+        length = 0;
+        byte[] h = new byte[HEADER_LENGTH];
+        System.arraycopy(MAGIC, 0, h, 0, MAGIC.length);
+        h[MAGIC.length] = VERSION;
+        for (int i = 0; i < Long.BYTES; i++) {
+            h[HEADER_LENGTH - 1 - i] = (byte) (baseOffset >>> (8 * i));
+        }
+        os.write(h);
+        return HEADER_LENGTH;
+    }
+
+    @Override
+    public void encode(SinkRecord r) throws IllegalArgumentException {
+        length = 0;
+        ByteBuffer key = keyBytes(r.key());
+        int valuesEnd = values.end;
+        int headersEnd = headers.end;
+        try {
+            values.writeData(r.value(), this);
+            writeHeaders(r.headers());
+        } catch (RuntimeException e) {
+            values.end = valuesEnd;
+            headers.end = headersEnd;
+            throw e;
+        }
+        offsets.ensureCapacity(MAX_VARLONG_LENGTH);
+        offsets.writeVarlong(r.kafkaOffset() - previousOffset);
+        previousOffset = r.kafkaOffset();
+        Long ts = r.timestamp();
+        if (ts != null) {
+            timestampBitmap[count / 8] |= (byte) (1 << (count % 8));
+            timestamps.ensureCapacity(MAX_VARLONG_LENGTH);
+            timestamps.writeVarlong(ts - previousTimestamp);
+            previousTimestamp = ts;
+        }
+        writeKey(key);
+        count++;
+        if (count >= SEGMENT_RECORDS || values.end + headers.end + plainKeys.end >= SEGMENT_BYTES) {
+            length = writeSegment();
+        }
+    }
+
+    /**
+     * @param key key of record
+     *
+     * @return key bytes, {@code null} for null key; string keys are encoded to buffer reused by next record
+     *
+     * @throws IllegalArgumentException if key is of unsupported type
+     */
+    private ByteBuffer keyBytes(Object key) throws IllegalArgumentException {
+        if (key == null) {
+            return null;
+        } else if (key instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) key);
+        } else if (key instanceof ByteBuffer) {
+            return ((ByteBuffer) key).slice();
+        } else if (key instanceof String) {
+            String s = (String) key;
+            int max = Utf8.maxLength(s);
+            if (keyScratch.length < max) {
+                keyScratch = new byte[Math.max(max, keyScratch.length * 2)];
+            }
+            return ByteBuffer.wrap(keyScratch, 0, Utf8.encode(s, keyScratch, 0));
+        }
+        throw new IllegalArgumentException("Unsupported object to write - [class] " + key.getClass());
+    }
+
+    /**
+     * Append key to plain and dictionary encoded key columns.
+     *
+     * @param key key bytes, {@code null} for null key
+     */
+    private void writeKey(ByteBuffer key) {
+        keyIndexes.ensureCapacity(MAX_VARINT_LENGTH);
+        if (key == null) {
+            plainKeys.ensureCapacity(1);
+            plainKeys.writeVarint(0);
+            keyIndexes.writeVarint(0);
+            return;
+        }
+        plainKeys.writeBuffer(key);
+        Integer index = dictionaryIndexes.get(key);
+        if (index == null) {
+            index = dictionaryIndexes.size();
+            byte[] copy = new byte[key.remaining()];
+            key.duplicate().get(copy);
+            dictionaryIndexes.put(ByteBuffer.wrap(copy), index);
+            dictionary.writeBytes(copy, 0, copy.length, 0);
+        }
+        keyIndexes.writeVarint(index + 1);
+    }
+
+    /**
+     * @param recordHeaders headers to write
+     */
+    private void writeHeaders(Headers recordHeaders) {
+        headers.ensureCapacity(MAX_VARINT_LENGTH);
+        if (recordHeaders == null || recordHeaders.isEmpty()) {
+            headers.writeVarint(0);
+            return;
+        }
+        headers.writeVarint(recordHeaders.size());
+        for (Header h : recordHeaders) {
+            String key = h.key();
+            int len = Utf8.encode(key, scratch(key), 0);
+            headers.writeBytes(scratch, 0, len, 0);
+            Object value = h.value();
+            if (value == null || value instanceof byte[] || value instanceof ByteBuffer || value instanceof String) {
+                headers.writeData(value, this);
+            } else {
+                headers.writeData(Values.convertToString(h.schema(), value), this);
+            }
+        }
+    }
+
+    /**
+     * Assemble buffered records to segment and start new segment.
+     *
+     * @return length of the segment
+     */
+    private int writeSegment() {
+        segment.end = 0;
+        segment.ensureCapacity(MAX_VARINT_LENGTH + MAX_VARLONG_LENGTH);
+        segment.writeVarint(count);
+        segment.writeVarlong(recordsBefore);
+        segment.writeColumn(offsets.buffer, 0, offsets.end);
+        int bitmapLength = (count + 7) / 8;
+        segment.ensureCapacity(MAX_VARINT_LENGTH + bitmapLength + timestamps.end);
+        segment.writeVarint(bitmapLength + timestamps.end);
+        System.arraycopy(timestampBitmap, 0, segment.buffer, segment.end, bitmapLength);
+        segment.end += bitmapLength;
+        System.arraycopy(timestamps.buffer, 0, segment.buffer, segment.end, timestamps.end);
+        segment.end += timestamps.end;
+        int dictionaryLength = varintSize(dictionaryIndexes.size()) + dictionary.end + keyIndexes.end;
+        if (dictionaryLength < plainKeys.end) {
+            segment.ensureCapacity(MAX_VARINT_LENGTH * 2 + 1);
+            segment.writeVarint(1 + dictionaryLength);
+            segment.buffer[segment.end++] = KEYS_DICTIONARY;
+            segment.writeVarint(dictionaryIndexes.size());
+            segment.writeRaw(dictionary.buffer, 0, dictionary.end);
+            segment.writeRaw(keyIndexes.buffer, 0, keyIndexes.end);
+        } else {
+            segment.ensureCapacity(MAX_VARINT_LENGTH + 1);
+            segment.writeVarint(1 + plainKeys.end);
+            segment.buffer[segment.end++] = KEYS_PLAIN;
+            segment.writeRaw(plainKeys.buffer, 0, plainKeys.end);
+        }
+        segment.writeColumn(values.buffer, 0, values.end);
+        segment.writeColumn(headers.buffer, 0, headers.end);
+        recordsBefore += count;
+        resetSegment();
+        return segment.end;
+    }
+
+    /**
+     * Discard buffered records.
+     */
+    private void resetSegment() {
+        offsets.end = 0;
+        timestamps.end = 0;
+        plainKeys.end = 0;
+        dictionary.end = 0;
+        keyIndexes.end = 0;
+        values.end = 0;
+        headers.end = 0;
+        dictionaryIndexes.clear();
+        Arrays.fill(timestampBitmap, (byte) 0);
+        previousOffset = baseOffset;
+        previousTimestamp = 0L;
+        count = 0;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(OutputStream os) throws IOException {
+        if (length > 0) {
+            os.write(segment.buffer, 0, length);
+        }
+    }
+
+    @Override
+    public boolean atBoundary() {
+        return count == 0;
+    }
+
+    @Override
+    public int finish(OutputStream os) throws IOException {
+        length = 0;
+        if (count == 0) {
+            return 0;
+        }
+        int written = writeSegment();
+        os.write(segment.buffer, 0, written);
+        return written;
+    }
+
+    /**
+     * @param s string to be encoded
+     *
+     * @return scratch buffer large enough for encoded string
+     */
+    private byte[] scratch(String s) {
+        int max = Utf8.maxLength(s);
+        if (scratch.length < max) {
+            scratch = new byte[Math.max(max, scratch.length * 2)];
+        }
+        return scratch;
+    }
+
+    /**
+     * @param v unsigned int
+     *
+     * @return number of bytes of varint
+     */
+    private static int varintSize(int v) {
+        int size = 1;
+        while ((v & ~0x7f) != 0) {
+            size++;
+            v >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * Growable buffer of one column.
+     */
+    private static final class Column {
+
+        private byte[] buffer = new byte[1024];
+        private int end;
+
+        /**
+         * Write length prefixed data. Supported are {@code byte[]}, {@link ByteBuffer} and {@link String}.
+         * Position of {@link ByteBuffer} is not changed.
+         *
+         * @param value value to write
+         * @param encoder encoder providing scratch buffer for strings
+         *
+         * @throws IllegalArgumentException if value is of unsupported type
+         */
+        private void writeData(Object value, ColumnarRecordEncoder encoder) throws IllegalArgumentException {
+            if (value == null) {
+                ensureCapacity(1);
+                writeVarint(0);
+            } else if (value instanceof byte[]) {
+                byte[] b = (byte[]) value;
+                writeBytes(b, 0, b.length, 1);
+            } else if (value instanceof ByteBuffer) {
+                writeBuffer((ByteBuffer) value);
+            } else if (value instanceof String) {
+                String s = (String) value;
+                int len = Utf8.encode(s, encoder.scratch(s), 0);
+                writeBytes(encoder.scratch, 0, len, 1);
+            } else {
+                throw new IllegalArgumentException("Unsupported object to write - [class] " + value.getClass());
+            }
+        }
+
+        /**
+         * Write bytes of buffer prefixed by their length + 1. Position of the buffer is not changed.
+         *
+         * @param b buffer
+         */
+        private void writeBuffer(ByteBuffer b) {
+            int len = b.remaining();
+            ensureCapacity(MAX_VARINT_LENGTH + len);
+            writeVarint(len + 1);
+            if (b.hasArray()) {
+                System.arraycopy(b.array(), b.arrayOffset() + b.position(), buffer, end, len);
+            } else {
+                int pos = b.position();
+                for (int i = 0; i < len; i++) {
+                    buffer[end + i] = b.get(pos + i);
+                }
+            }
+            end += len;
+        }
+
+        /**
+         * @param b bytes
+         * @param off offset
+         * @param len length
+         * @param lengthDelta number added to length prefix
+         */
+        private void writeBytes(byte[] b, int off, int len, int lengthDelta) {
+            ensureCapacity(MAX_VARINT_LENGTH + len);
+            writeVarint(len + lengthDelta);
+            System.arraycopy(b, off, buffer, end, len);
+            end += len;
+        }
+
+        /**
+         * @param b bytes
+         * @param off offset
+         * @param len length
+         */
+        private void writeColumn(byte[] b, int off, int len) {
+            writeBytes(b, off, len, 0);
+        }
+
+        /**
+         * @param b bytes to write without length
+         * @param off offset
+         * @param len length
+         */
+        private void writeRaw(byte[] b, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(b, off, buffer, end, len);
+            end += len;
+        }
+
+        /**
+         * @param v unsigned int to write; capacity must be ensured
+         */
+        private void writeVarint(int v) {
+            while ((v & ~0x7f) != 0) {
+                buffer[end++] = (byte) (v & 0x7f | 0x80);
+                v >>>= 7;
+            }
+            buffer[end++] = (byte) v;
+        }
+
+        /**
+         * @param v signed long to write zig-zag encoded; capacity must be ensured
+         */
+        private void writeVarlong(long v) {
+            long z = (v << 1) ^ (v >> 63);
+            while ((z & ~0x7fL) != 0) {
+                buffer[end++] = (byte) (z & 0x7f | 0x80);
+                z >>>= 7;
+            }
+            buffer[end++] = (byte) z;
+        }
+
+        /**
+         * @param needed number of bytes which will be appended to buffer
+         */
+        private void ensureCapacity(int needed) {
+            int required = end + needed;
+            if (required > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+            }
+        }
+    }
+}
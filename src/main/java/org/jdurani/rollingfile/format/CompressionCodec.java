@@ -0,0 +1,212 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.xerial.snappy.SnappyFramedInputStream;
+import org.xerial.snappy.SnappyFramedOutputStream;
+
+/**
+ * Streaming compression codecs of rolled files. All codecs write self-describing framed streams, so codec of a file
+ * can be detected from its first bytes (see {@link #detect(InputStream)}). Codec libraries are the same as those used
+ * by Kafka clients, so they are always available in Kafka Connect worker.
+ */
+public enum CompressionCodec {
+
+    NONE("none", "", new byte[0]) {
+        @Override
+        public OutputStream wrapOutput(OutputStream os) {
+            return os;
+        }
+
+        @Override
+        public InputStream wrapInput(InputStream is) {
+            return is;
+        }
+    },
+    GZIP("gzip", ".gz", new byte[] {0x1f, (byte) 0x8b}) {
+        @Override
+        public OutputStream wrapOutput(OutputStream os) throws IOException {
+            return new GZIPOutputStream(os, BLOCK_SIZE);
+        }
+
+        @Override
+        public InputStream wrapInput(InputStream is) throws IOException {
+            return new GZIPInputStream(is, BLOCK_SIZE);
+        }
+    },
+    LZ4("lz4", ".lz4", new byte[] {0x04, 0x22, 0x4d, 0x18}) {
+        @Override
+        public OutputStream wrapOutput(OutputStream os) throws IOException {
+            return new LZ4FrameOutputStream(os, LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB);
+        }
+
+        @Override
+        public InputStream wrapInput(InputStream is) throws IOException {
+            return new LZ4FrameInputStream(is);
+        }
+    },
+    ZSTD("zstd", ".zst", new byte[] {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd}) {
+        @Override
+        public OutputStream wrapOutput(OutputStream os) throws IOException {
+            return new ZstdOutputStream(os);
+        }
+
+        @Override
+        public InputStream wrapInput(InputStream is) throws IOException {
+            return new ZstdInputStream(is);
+        }
+    },
+    SNAPPY("snappy", ".snappy", new byte[] {(byte) 0xff, 0x06, 0x00, 0x00, 's', 'N', 'a', 'P', 'p', 'Y'}) {
+        @Override
+        public OutputStream wrapOutput(OutputStream os) throws IOException {
+            return new SnappyFramedOutputStream(os, BLOCK_SIZE, SnappyFramedOutputStream.DEFAULT_MIN_COMPRESSION_RATIO);
+        }
+
+        @Override
+        public InputStream wrapInput(InputStream is) throws IOException {
+            return new SnappyFramedInputStream(is);
+        }
+    };
+
+    /**
+     * Maximum number of bytes read by {@link #detect(InputStream)}.
+     */
+    public static final int MAX_MAGIC_LENGTH = 10;
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final String configName;
+    private final String suffix;
+    private final byte[] magic;
+
+    /**
+     * @param configName name used in configuration
+     * @param suffix file name suffix
+     * @param magic first bytes of compressed stream
+     */
+    CompressionCodec(String configName, String suffix, byte[] magic) {
+        this.configName = configName;
+        this.suffix = suffix;
+        this.magic = magic;
+    }
+
+    /**
+     * @param os output stream to write compressed data to
+     *
+     * @return stream compressing data written to it
+     *
+     * @throws IOException in case of error
+     */
+    public abstract OutputStream wrapOutput(OutputStream os) throws IOException;
+
+    /**
+     * @param is input stream to read compressed data from
+     *
+     * @return stream of decompressed data
+     *
+     * @throws IOException in case of error
+     */
+    public abstract InputStream wrapInput(InputStream is) throws IOException;
+
+    /**
+     * @return file name suffix of this codec, empty for {@link #NONE}
+     */
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * @return name used in configuration
+     */
+    public String getConfigName() {
+        return configName;
+    }
+
+    /**
+     * @param name name from configuration, case insensitive
+     *
+     * @return codec
+     *
+     * @throws IllegalArgumentException if there is no such codec
+     */
+    public static CompressionCodec forName(String name) throws IllegalArgumentException {
+        String n = name.trim().toLowerCase(Locale.ROOT);
+        for (CompressionCodec c : values()) {
+            if (c.configName.equals(n)) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression codec '" + name + "'");
+    }
+
+    /**
+     * @return names of all codecs used in configuration
+     */
+    public static String[] configNames() {
+        CompressionCodec[] values = values();
+        String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].configName;
+        }
+        return names;
+    }
+
+    /**
+     * Detect codec from the first bytes of the stream. Stream is reset to its original position.
+     *
+     * @param is stream supporting {@link InputStream#mark(int)}
+     *
+     * @return detected codec or {@link #NONE} if data are not compressed
+     *
+     * @throws IOException in case of error
+     */
+    public static CompressionCodec detect(InputStream is) throws IOException {
+        if (!is.markSupported()) {
+            throw new IllegalArgumentException("Stream does not support mark: " + is.getClass());
+        }
+        byte[] head = new byte[MAX_MAGIC_LENGTH];
+        is.mark(MAX_MAGIC_LENGTH);
+        int read = 0;
+        try {
+            int n;
+            while (read < head.length && (n = is.read(head, read, head.length - read)) >= 0) {
+                read += n;
+            }
+        } finally {
+            is.reset();
+        }
+        for (CompressionCodec c : values()) {
+            if (c != NONE && startsWith(head, read, c.magic)) {
+                return c;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @param head data
+     * @param length valid length of data
+     * @param prefix expected prefix
+     *
+     * @return true if data start with prefix
+     */
+    private static boolean startsWith(byte[] head, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (head[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,67 @@
+package org.jdurani.rollingfile.format;
+
+import java.util.Locale;
+
+/**
+ * What to do when checksum of a block (see {@link BlockInputStream}) does not match its data.
+ */
+public enum CorruptionPolicy {
+
+    /**
+     * Stop reading the file with {@link org.jdurani.rollingfile.exception.ReadException}.
+     */
+    FAIL("fail"),
+    /**
+     * Log warning and skip records of the corrupted block.
+     */
+    SKIP("skip"),
+    /**
+     * Log error and read records of the corrupted block anyway.
+     */
+    LOG("log");
+
+    private final String configName;
+
+    /**
+     * @param configName name used in configuration
+     */
+    CorruptionPolicy(String configName) {
+        this.configName = configName;
+    }
+
+    /**
+     * @return name used in configuration
+     */
+    public String getConfigName() {
+        return configName;
+    }
+
+    /**
+     * @param name name from configuration, case insensitive
+     *
+     * @return policy
+     *
+     * @throws IllegalArgumentException if there is no such policy
+     */
+    public static CorruptionPolicy forName(String name) throws IllegalArgumentException {
+        String n = name.trim().toLowerCase(Locale.ROOT);
+        for (CorruptionPolicy p : values()) {
+            if (p.configName.equals(n)) {
+                return p;
+            }
+        }
+        throw new IllegalArgumentException("Unknown corruption policy '" + name + "'");
+    }
+
+    /**
+     * @return names of all policies used in configuration
+     */
+    public static String[] configNames() {
+        CorruptionPolicy[] values = values();
+        String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].configName;
+        }
+        return names;
+    }
+}
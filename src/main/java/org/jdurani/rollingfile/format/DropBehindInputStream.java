@@ -0,0 +1,93 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream of file dropping cached pages of consumed content from {@link PageCache} after each chunk of given
+ * size and the rest of the file when closed.
+ */
+public class DropBehindInputStream extends FilterInputStream {
+
+    private final File file;
+    private final PageCache cache;
+    private final long chunkBytes;
+    private long position;
+    private long dropped;
+
+    /**
+     * New instance.
+     *
+     * @param in stream of the file positioned at its start
+     * @param file the file
+     * @param cache page cache
+     * @param chunkBytes number of consumed bytes dropped at once
+     */
+    public DropBehindInputStream(InputStream in, File file, PageCache cache, long chunkBytes) {
+        super(in);
+        this.file = file;
+        this.cache = cache;
+        this.chunkBytes = chunkBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            consumed(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            consumed(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        if (skipped > 0) {
+            consumed(skipped);
+        }
+        return skipped;
+    }
+
+    private void consumed(long n) {
+        position += n;
+        if (position - dropped >= chunkBytes) {
+            cache.drop(file, dropped, position - dropped);
+            dropped = position;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            cache.drop(file, dropped, 0L);
+        }
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // not supported
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("Mark not supported");
+    }
+}
@@ -0,0 +1,180 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+import org.apache.kafka.common.utils.Crc32C;
+
+/**
+ * Summary of rolled file appended after its (compressed) content, so that file can be planned, skipped or verified
+ * without decoding it:
+ * <pre>
+ * RECORD_COUNT(8) FIRST_OFFSET(8) LAST_OFFSET(8) MIN_TIMESTAMP(8) MAX_TIMESTAMP(8)
+ * CONTENT_LENGTH(8) STORED_LENGTH(8) CHECKSUM(4) FOOTER_CHECKSUM(4) VERSION(1) MAGIC(4)
+ * </pre>
+ * {@code CONTENT_LENGTH} is length of decompressed content (including file header of {@link RecordFormat} and
+ * excluding headers of {@link BlockOutputStream}),
+ * {@code STORED_LENGTH} is length of the file without footer and {@code CHECKSUM} is CRC32C of those stored bytes.
+ * Timestamps are {@link #NO_TIMESTAMP} if no record has timestamp. {@code FOOTER_CHECKSUM} is CRC32C of preceding
+ * footer fields, so that file without footer is not mistaken for a file with footer. All numbers are big-endian.
+ */
+public class FileFooter {
+
+    public static final long NO_TIMESTAMP = -1L;
+    static final byte[] MAGIC = {(byte) 0x89, 'R', 'F', 'F'};
+    static final byte VERSION = 1;
+    private static final int CHECKED_LENGTH = 7 * Long.BYTES + Integer.BYTES;
+    public static final int LENGTH = CHECKED_LENGTH + Integer.BYTES + 1 + MAGIC.length;
+
+    private final long recordCount;
+    private final long firstOffset;
+    private final long lastOffset;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final long contentLength;
+    private final long storedLength;
+    private final int checksum;
+
+    /**
+     * New instance.
+     *
+     * @param recordCount number of records
+     * @param firstOffset offset of the first record
+     * @param lastOffset offset of the last record
+     * @param minTimestamp minimum timestamp of records
+     * @param maxTimestamp maximum timestamp of records
+     * @param contentLength length of decompressed content
+     * @param storedLength length of stored (compressed) content
+     * @param checksum CRC32C of stored content
+     */
+    public FileFooter(long recordCount, long firstOffset, long lastOffset, long minTimestamp, long maxTimestamp,
+            long contentLength, long storedLength, int checksum) {
+        this.recordCount = recordCount;
+        this.firstOffset = firstOffset;
+        this.lastOffset = lastOffset;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.contentLength = contentLength;
+        this.storedLength = storedLength;
+        this.checksum = checksum;
+    }
+
+    /**
+     * @return serialized footer
+     */
+    public byte[] toBytes() {
+        ByteBuffer b = ByteBuffer.allocate(LENGTH);
+        b.putLong(recordCount)
+                .putLong(firstOffset)
+                .putLong(lastOffset)
+                .putLong(minTimestamp)
+                .putLong(maxTimestamp)
+                .putLong(contentLength)
+                .putLong(storedLength)
+                .putInt(checksum);
+        b.putInt((int) Crc32C.compute(b.array(), 0, CHECKED_LENGTH));
+        b.put(VERSION);
+        b.put(MAGIC);
+        return b.array();
+    }
+
+    /**
+     * Read footer of a file.
+     *
+     * @param f data file
+     *
+     * @return footer or {@code null} if file has no (valid) footer
+     *
+     * @throws IOException in case of error
+     */
+    public static FileFooter read(File f) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            long length = raf.length();
+            if (length < LENGTH) {
+                return null;
+            }
+            byte[] bytes = new byte[LENGTH];
+            raf.seek(length - LENGTH);
+            raf.readFully(bytes);
+            ByteBuffer b = ByteBuffer.wrap(bytes);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (bytes[LENGTH - MAGIC.length + i] != MAGIC[i]) {
+                    return null;
+                }
+            }
+            if (bytes[LENGTH - MAGIC.length - 1] != VERSION
+                    || b.getInt(CHECKED_LENGTH) != (int) Crc32C.compute(bytes, 0, CHECKED_LENGTH)) {
+                return null;
+            }
+            FileFooter footer = new FileFooter(b.getLong(), b.getLong(), b.getLong(), b.getLong(), b.getLong(),
+                    b.getLong(), b.getLong(), b.getInt());
+            return footer.storedLength == length - LENGTH ? footer : null;
+        }
+    }
+
+    /**
+     * @return new checksum of the kind stored in footer
+     */
+    public static Checksum newChecksum() {
+        return Crc32C.create();
+    }
+
+    /**
+     * @return number of records
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return offset of the first record
+     */
+    public long getFirstOffset() {
+        return firstOffset;
+    }
+
+    /**
+     * @return offset of the last record
+     */
+    public long getLastOffset() {
+        return lastOffset;
+    }
+
+    /**
+     * @return minimum timestamp of records, {@link #NO_TIMESTAMP} if no record has timestamp
+     */
+    public long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    /**
+     * @return maximum timestamp of records, {@link #NO_TIMESTAMP} if no record has timestamp
+     */
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    /**
+     * @return length of decompressed content
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * @return length of stored (compressed) content, i.e. file length without footer
+     */
+    public long getStoredLength() {
+        return storedLength;
+    }
+
+    /**
+     * @return CRC32C of stored content
+     */
+    public int getChecksum() {
+        return checksum;
+    }
+}
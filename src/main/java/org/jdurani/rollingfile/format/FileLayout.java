@@ -0,0 +1,120 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.File;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Locale;
+
+/**
+ * Layouts of directories with rolled files of one topic. Files of a partition are placed to directory of the
+ * partition and optionally to buckets by UTC time when the file was opened, so that no directory grows without bounds:
+ * <ul>
+ * <li>{@link #FLAT} - {@code <topic>/<file>}</li>
+ * <li>{@link #PARTITION} - {@code <topic>/<partition>/<file>}</li>
+ * <li>{@link #DAILY} - {@code <topic>/<partition>/yyyy/MM/dd/<file>}</li>
+ * <li>{@link #HOURLY} - {@code <topic>/<partition>/yyyy/MM/dd/HH/<file>}</li>
+ * </ul>
+ * Names of time buckets sort in chronological order.
+ */
+public enum FileLayout {
+
+    FLAT("flat", 0),
+    PARTITION("partition", 1),
+    DAILY("daily", 4),
+    HOURLY("hourly", 5);
+
+    private final String configName;
+    private final int depth;
+
+    /**
+     * @param configName name used in configuration
+     * @param depth number of directory levels between topic directory and files
+     */
+    FileLayout(String configName, int depth) {
+        this.configName = configName;
+        this.depth = depth;
+    }
+
+    /**
+     * @param topicDir directory of the topic
+     * @param partition partition
+     * @param timeMs time when the file is opened
+     *
+     * @return directory of new file
+     */
+    public File directory(File topicDir, int partition, long timeMs) {
+        File d = partitionDirectory(topicDir, partition);
+        if (depth > PARTITION.depth) {
+            ZonedDateTime t = Instant.ofEpochMilli(timeMs).atZone(ZoneOffset.UTC);
+            d = new File(d, String.format(Locale.ROOT, "%04d", t.getYear()));
+            d = new File(d, String.format(Locale.ROOT, "%02d", t.getMonthValue()));
+            d = new File(d, String.format(Locale.ROOT, "%02d", t.getDayOfMonth()));
+            if (this == HOURLY) {
+                d = new File(d, String.format(Locale.ROOT, "%02d", t.getHour()));
+            }
+        }
+        return d;
+    }
+
+    /**
+     * @param topicDir directory of the topic
+     * @param partition partition
+     *
+     * @return directory with all files of the partition (possibly in its subdirectories), for {@link #FLAT} it is
+     *         directory of the topic shared by all partitions
+     */
+    public File partitionDirectory(File topicDir, int partition) {
+        return this == FLAT ? topicDir : new File(topicDir, Integer.toString(partition));
+    }
+
+    /**
+     * @return number of directory levels between topic directory and files
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return {@code true} if files of a partition are bucketed by time
+     */
+    public boolean isTimeBucketed() {
+        return depth > PARTITION.depth;
+    }
+
+    /**
+     * @return name used in configuration
+     */
+    public String getConfigName() {
+        return configName;
+    }
+
+    /**
+     * @param name name from configuration, case insensitive
+     *
+     * @return layout
+     *
+     * @throws IllegalArgumentException if there is no such layout
+     */
+    public static FileLayout forName(String name) throws IllegalArgumentException {
+        String n = name.trim().toLowerCase(Locale.ROOT);
+        for (FileLayout l : values()) {
+            if (l.configName.equals(n)) {
+                return l;
+            }
+        }
+        throw new IllegalArgumentException("Unknown file layout '" + name + "'");
+    }
+
+    /**
+     * @return names of all layouts used in configuration
+     */
+    public static String[] configNames() {
+        FileLayout[] values = values();
+        String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].configName;
+        }
+        return names;
+    }
+}
@@ -0,0 +1,325 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only manifest of committed files of one topic, stored in file {@value #FILE_NAME} in directory of the
+ * topic, so that files can be found without listing directories. Each committed file has one line of tab separated
+ * fields:
+ * <pre>
+ * PARTITION FIRST_OFFSET LAST_OFFSET MIN_TIMESTAMP MAX_TIMESTAMP RECORD_COUNT SIZE CHECKSUM PATH
+ * </pre>
+ * {@code SIZE} is length of the file, {@code CHECKSUM} is hexadecimal CRC32C of its stored content as in
+ * {@link FileFooter} ({@code 0} if the file has no footer) and {@code PATH} is path of the file relative to directory
+ * of the topic with {@code /} separators. Timestamps are {@link FileFooter#NO_TIMESTAMP} if no record has timestamp.
+ * Deleted files (e.g. replaced by compaction or deleted by retention) have one more line with {@code SIZE}
+ * {@value #DELETED} and unknown other fields, see {@link Entry#deleted(int, String)}. File committed again under the
+ * same name has one more line as well, the latest line of a path is valid. Each line is appended by single write to
+ * file opened for appending, so that writers of several partitions of the topic do not interleave. Lines are read only once they end by new line, malformed lines (e.g. torn by crash of
+ * writer) are skipped.
+ */
+public class FileManifest {
+
+    public static final String FILE_NAME = ".manifest";
+    /**
+     * Size of entries of deleted files.
+     */
+    public static final long DELETED = -1L;
+    private static final char SEPARATOR = '\t';
+    private static final byte NEW_LINE = '\n';
+    private static final int FIELDS = 9;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private FileManifest() {
+    }
+
+    /**
+     * @param topicDirectory directory of topic
+     *
+     * @return manifest file of the topic
+     */
+    public static File fileFor(File topicDirectory) {
+        return new File(topicDirectory, FILE_NAME);
+    }
+
+    /**
+     * Open manifest for appending, it is created if it does not exist.
+     *
+     * @param topicDirectory directory of topic
+     *
+     * @return channel positioned at the end of the manifest
+     *
+     * @throws IOException in case of error
+     */
+    public static FileChannel openForAppend(File topicDirectory) throws IOException {
+        return FileChannel.open(fileFor(topicDirectory).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Entry of one committed file.
+     */
+    public static class Entry {
+
+        private final int partition;
+        private final long firstOffset;
+        private final long lastOffset;
+        private final long minTimestamp;
+        private final long maxTimestamp;
+        private final long recordCount;
+        private final long size;
+        private final int checksum;
+        private final String path;
+
+        /**
+         * New instance.
+         *
+         * @param partition partition of records
+         * @param firstOffset offset of the first record
+         * @param lastOffset offset of the last record
+         * @param minTimestamp minimum timestamp of records
+         * @param maxTimestamp maximum timestamp of records
+         * @param recordCount number of records
+         * @param size length of the file
+         * @param checksum CRC32C of stored content, {@code 0} if unknown
+         * @param path path of the file relative to directory of its topic
+         */
+        public Entry(int partition, long firstOffset, long lastOffset, long minTimestamp, long maxTimestamp,
+                long recordCount, long size, int checksum, String path) {
+            this.partition = partition;
+            this.firstOffset = firstOffset;
+            this.lastOffset = lastOffset;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+            this.recordCount = recordCount;
+            this.size = size;
+            this.checksum = checksum;
+            this.path = path;
+        }
+
+        /**
+         * @param partition partition of records
+         * @param size length of the file
+         * @param footer summary of records of the file
+         * @param path path of the file relative to directory of its topic
+         *
+         * @return entry of the file
+         */
+        public static Entry of(int partition, long size, FileFooter footer, String path) {
+            return new Entry(partition, footer.getFirstOffset(), footer.getLastOffset(), footer.getMinTimestamp(),
+                    footer.getMaxTimestamp(), footer.getRecordCount(), size, footer.getChecksum(), path);
+        }
+
+        /**
+         * @param partition partition of records
+         * @param path path of the deleted file relative to directory of its topic
+         *
+         * @return entry of deleted file
+         */
+        public static Entry deleted(int partition, String path) {
+            return new Entry(partition, -1L, -1L, FileFooter.NO_TIMESTAMP, FileFooter.NO_TIMESTAMP, -1L, DELETED, 0,
+                    path);
+        }
+
+        /**
+         * @return line of the entry including new line
+         */
+        public byte[] toBytes() {
+            return new StringBuilder()
+                    .append(partition).append(SEPARATOR)
+                    .append(firstOffset).append(SEPARATOR)
+                    .append(lastOffset).append(SEPARATOR)
+                    .append(minTimestamp).append(SEPARATOR)
+                    .append(maxTimestamp).append(SEPARATOR)
+                    .append(recordCount).append(SEPARATOR)
+                    .append(size).append(SEPARATOR)
+                    .append(Integer.toHexString(checksum)).append(SEPARATOR)
+                    .append(path).append((char) NEW_LINE)
+                    .toString()
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @param line line without new line
+         *
+         * @return parsed entry or {@code null} if the line is malformed
+         */
+        static Entry parse(String line) {
+            String[] f = line.split(String.valueOf(SEPARATOR), FIELDS);
+            if (f.length != FIELDS || f[FIELDS - 1].isEmpty()) {
+                return null;
+            }
+            try {
+                return new Entry(Integer.parseInt(f[0]), Long.parseLong(f[1]), Long.parseLong(f[2]),
+                        Long.parseLong(f[3]), Long.parseLong(f[4]), Long.parseLong(f[5]), Long.parseLong(f[6]),
+                        Integer.parseUnsignedInt(f[7], 16), f[8]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @param topicDirectory directory of topic
+         *
+         * @return the file
+         */
+        public File fileIn(File topicDirectory) {
+            return new File(topicDirectory, path.replace('/', File.separatorChar));
+        }
+
+        /**
+         * @return partition of records
+         */
+        public int getPartition() {
+            return partition;
+        }
+
+        /**
+         * @return offset of the first record
+         */
+        public long getFirstOffset() {
+            return firstOffset;
+        }
+
+        /**
+         * @return offset of the last record
+         */
+        public long getLastOffset() {
+            return lastOffset;
+        }
+
+        /**
+         * @return minimum timestamp of records, {@link FileFooter#NO_TIMESTAMP} if no record has timestamp
+         */
+        public long getMinTimestamp() {
+            return minTimestamp;
+        }
+
+        /**
+         * @return maximum timestamp of records, {@link FileFooter#NO_TIMESTAMP} if no record has timestamp
+         */
+        public long getMaxTimestamp() {
+            return maxTimestamp;
+        }
+
+        /**
+         * @return number of records
+         */
+        public long getRecordCount() {
+            return recordCount;
+        }
+
+        /**
+         * @return length of the file, {@link #DELETED} if the file was deleted
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return {@code true} if this entry marks deleted file
+         */
+        public boolean isDeleted() {
+            return size == DELETED;
+        }
+
+        /**
+         * @return CRC32C of stored content, {@code 0} if unknown
+         */
+        public int getChecksum() {
+            return checksum;
+        }
+
+        /**
+         * @return path of the file relative to directory of its topic
+         */
+        public String getPath() {
+            return path;
+        }
+    }
+
+    /**
+     * Incremental reader of manifest of one topic. Each call of {@link #readNew()} reads only lines appended since the
+     * previous call.
+     */
+    public static class Reader {
+
+        private final File file;
+        private long position;
+
+        /**
+         * @param topicDirectory directory of topic
+         */
+        public Reader(File topicDirectory) {
+            this.file = fileFor(topicDirectory);
+        }
+
+        /**
+         * @return {@code true} if the manifest exists
+         */
+        public boolean exists() {
+            return file.isFile();
+        }
+
+        /**
+         * @return entries of complete lines appended since the last call, empty if manifest does not exist
+         *
+         * @throws IOException in case of error
+         */
+        public List<Entry> readNew() throws IOException {
+            List<Entry> entries = new ArrayList<>();
+            if (!file.isFile()) {
+                return entries;
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                long length = raf.length();
+                if (length < position) {
+                    // manifest was replaced
+                    position = 0L;
+                }
+                FileChannel channel = raf.getChannel();
+                ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+                byte[] line = new byte[256];
+                int lineLength = 0;
+                long consumed = position;
+                long read = position;
+                while (read < length) {
+                    buffer.clear();
+                    int n = channel.read(buffer, read);
+                    if (n < 0) {
+                        break;
+                    }
+                    read += n;
+                    byte[] b = buffer.array();
+                    for (int i = 0; i < n; i++) {
+                        if (b[i] == NEW_LINE) {
+                            Entry e = Entry.parse(new String(line, 0, lineLength, StandardCharsets.UTF_8));
+                            if (e != null) {
+                                entries.add(e);
+                            }
+                            consumed += lineLength + 1;
+                            lineLength = 0;
+                        } else {
+                            if (lineLength == line.length) {
+                                byte[] grown = new byte[line.length * 2];
+                                System.arraycopy(line, 0, grown, 0, lineLength);
+                                line = grown;
+                            }
+                            line[lineLength++] = b[i];
+                        }
+                    }
+                }
+                position = consumed;
+            }
+            return entries;
+        }
+    }
+}
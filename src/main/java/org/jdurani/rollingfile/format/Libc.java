@@ -0,0 +1,177 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Locale;
+
+/**
+ * File functions of libc which have no equivalent in Java. They are called by JNA using reflection, so JNA is optional
+ * dependency - without it (or on other systems than Linux) {@link #isAvailable()} returns {@code false} and all
+ * functions fail. Each function opens the file by its path, so it can be used for files already opened by channels.
+ */
+public final class Libc {
+
+    private static final int O_RDONLY = 0;
+    private static final int O_WRONLY = 1;
+    private static final int SYNC_FILE_RANGE_WAIT_BEFORE = 1;
+    private static final int SYNC_FILE_RANGE_WRITE = 2;
+    private static final int SYNC_FILE_RANGE_WAIT_AFTER = 4;
+    private static final int POSIX_FADV_DONTNEED = 4;
+    private static final Libc INSTANCE = load();
+
+    /**
+     * {@code com.sun.jna.Function#invokeInt(Object[])}
+     */
+    private final Method invokeInt;
+    private final Object open;
+    private final Object close;
+    private final Object syncFileRange;
+    private final Object fadvise;
+    private final Object fallocate;
+
+    private Libc(Method invokeInt, Object open, Object close, Object syncFileRange, Object fadvise, Object fallocate) {
+        this.invokeInt = invokeInt;
+        this.open = open;
+        this.close = close;
+        this.syncFileRange = syncFileRange;
+        this.fadvise = fadvise;
+        this.fallocate = fallocate;
+    }
+
+    /**
+     * @return libc or {@code null} if this is not Linux or JNA is not available
+     */
+    private static Libc load() {
+        if (!System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("linux")) {
+            return null;
+        }
+        try {
+            Class<?> library = Class.forName("com.sun.jna.NativeLibrary");
+            Object c = library.getMethod("getInstance", String.class).invoke(null, "c");
+            Method function = library.getMethod("getFunction", String.class);
+            return new Libc(
+                    Class.forName("com.sun.jna.Function").getMethod("invokeInt", Object[].class),
+                    function.invoke(c, "open"),
+                    function.invoke(c, "close"),
+                    function.invoke(c, "sync_file_range"),
+                    function.invoke(c, "posix_fadvise"),
+                    function.invoke(c, "fallocate"));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return {@code true} if libc functions can be called
+     */
+    public static boolean isAvailable() {
+        return INSTANCE != null;
+    }
+
+    /**
+     * Start write back of dirty pages of range of file by {@code sync_file_range(SYNC_FILE_RANGE_WRITE)}, it does not
+     * wait for the write back to complete.
+     *
+     * @param file file
+     * @param offset start of the range
+     * @param length length of the range, {@code 0} for range up to the end of file
+     *
+     * @return {@code true} if write back was started, {@code false} in case of error or if libc is not available
+     */
+    public static boolean writeBack(File file, long offset, long length) {
+        Libc c = INSTANCE;
+        if (c == null) {
+            return false;
+        }
+        try {
+            int fd = c.invoke(c.open, file.getAbsolutePath(), O_RDONLY);
+            if (fd < 0) {
+                return false;
+            }
+            try {
+                return c.invoke(c.syncFileRange, fd, offset, length, SYNC_FILE_RANGE_WRITE) == 0;
+            } finally {
+                c.invoke(c.close, fd);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Write back dirty pages of range of file by {@code sync_file_range} (waiting for write back in progress) and drop
+     * cached pages of the range by {@code posix_fadvise(POSIX_FADV_DONTNEED)}, which keeps dirty pages.
+     *
+     * @param file file
+     * @param offset start of the range
+     * @param length length of the range, {@code 0} for range up to the end of file
+     *
+     * @return {@code true} if pages were dropped, {@code false} in case of error or if libc is not available
+     */
+    public static boolean dropPages(File file, long offset, long length) {
+        Libc c = INSTANCE;
+        if (c == null) {
+            return false;
+        }
+        try {
+            int fd = c.invoke(c.open, file.getAbsolutePath(), O_RDONLY);
+            if (fd < 0) {
+                return false;
+            }
+            try {
+                c.invoke(c.syncFileRange, fd, offset, length,
+                        SYNC_FILE_RANGE_WAIT_BEFORE | SYNC_FILE_RANGE_WRITE | SYNC_FILE_RANGE_WAIT_AFTER);
+                return c.invoke(c.fadvise, fd, offset, length, POSIX_FADV_DONTNEED) == 0;
+            } finally {
+                c.invoke(c.close, fd);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Allocate disk blocks of range of file by {@code fallocate}, file is extended if the range ends after its end.
+     * Data of the file are not changed, allocated blocks read as zeros.
+     *
+     * @param file existing file
+     * @param offset start of the range
+     * @param length length of the range
+     *
+     * @return {@code true} if blocks were allocated, {@code false} in case of error (e.g. file system does not
+     *         support it) or if libc is not available
+     */
+    public static boolean allocate(File file, long offset, long length) {
+        Libc c = INSTANCE;
+        if (c == null) {
+            return false;
+        }
+        try {
+            int fd = c.invoke(c.open, file.getAbsolutePath(), O_WRONLY);
+            if (fd < 0) {
+                return false;
+            }
+            try {
+                return c.invoke(c.fallocate, fd, 0, offset, length) == 0;
+            } finally {
+                c.invoke(c.close, fd);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param function native function
+     * @param args arguments, {@link Long} for 64-bit {@code off_t}
+     *
+     * @return result of the function
+     *
+     * @throws IllegalAccessException in case of error
+     * @throws InvocationTargetException in case of error
+     */
+    private int invoke(Object function, Object... args) throws IllegalAccessException, InvocationTargetException {
+        return (Integer) invokeInt.invoke(function, (Object) args);
+    }
+}
@@ -0,0 +1,95 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.File;
+
+/**
+ * Drops cached pages of files which are written or read once (e.g. backups of topics), so that they do not evict
+ * pages of other processes (e.g. Kafka brokers on the same host) from page cache.
+ * <p>
+ * Pages are dropped by {@link Libc#dropPages(File, long, long)}, which waits for write back of dirty pages. Written
+ * files should be {@link #writeBack(File, long, long) written back} first and dropped later, once their write back
+ * is likely complete. If libc is not available, there is no way for Java to drop pages and {@link #get(boolean)}
+ * returns {@link #NONE}.
+ */
+public abstract class PageCache {
+
+    /**
+     * Page cache which keeps all pages.
+     */
+    public static final PageCache NONE = new PageCache() {
+
+        @Override
+        public boolean writeBack(File file, long offset, long length) {
+            return false;
+        }
+
+        @Override
+        public boolean drop(File file, long offset, long length) {
+            return false;
+        }
+
+        @Override
+        public boolean isSupported() {
+            return false;
+        }
+    };
+
+    /**
+     * @param enabled drop pages?
+     *
+     * @return native page cache if enabled and supported by this platform, {@link #NONE} otherwise
+     */
+    public static PageCache get(boolean enabled) {
+        return enabled ? NativePageCache.INSTANCE : NONE;
+    }
+
+    /**
+     * Start write back of dirty pages of range of file without waiting for it. Errors are ignored.
+     *
+     * @param file file
+     * @param offset start of the range
+     * @param length length of the range, {@code 0} for range up to the end of file
+     *
+     * @return {@code true} if write back was started
+     */
+    public abstract boolean writeBack(File file, long offset, long length);
+
+    /**
+     * Write back and drop cached pages of range of file. Errors are ignored, pages stay cached.
+     *
+     * @param file file
+     * @param offset start of the range
+     * @param length length of the range, {@code 0} for range up to the end of file
+     *
+     * @return {@code true} if pages were dropped
+     */
+    public abstract boolean drop(File file, long offset, long length);
+
+    /**
+     * @return {@code true} if pages are dropped
+     */
+    public abstract boolean isSupported();
+
+    /**
+     * Page cache dropping pages by {@link Libc}.
+     */
+    private static final class NativePageCache extends PageCache {
+
+        private static final PageCache INSTANCE = Libc.isAvailable() ? new NativePageCache() : NONE;
+
+        @Override
+        public boolean writeBack(File file, long offset, long length) {
+            return Libc.writeBack(file, offset, length);
+        }
+
+        @Override
+        public boolean drop(File file, long offset, long length) {
+            return Libc.dropPages(file, offset, length);
+        }
+
+        @Override
+        public boolean isSupported() {
+            return true;
+        }
+    }
+}
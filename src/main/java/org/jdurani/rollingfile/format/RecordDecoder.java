@@ -0,0 +1,35 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.IOException;
+
+import org.jdurani.rollingfile.exception.ReadException;
+
+/**
+ * Decoder of records stored in one of {@link RecordFormat}s. Decoder reads from {@link RecordInput} which is
+ * positioned after the file header.
+ */
+public interface RecordDecoder {
+
+    /**
+     * @return next record or {@code null} at the end of data
+     *
+     * @throws IOException in case of error while reading data
+     * @throws ReadException if data are malformed
+     */
+    StoredRecord next() throws IOException, ReadException;
+
+    /**
+     * @return position in input from which reading can be resumed after the last returned record; together with
+     *         number of returned records it is stored as offset of source records
+     */
+    long resumePosition();
+
+    /**
+     * Called after input is positioned to {@link #resumePosition()} of an earlier decoder. Decoders of formats
+     * which resume from position preceding some already returned records skip them.
+     *
+     * @param recordNumber number of records of the file returned before
+     */
+    default void resume(long recordNumber) {
+    }
+}
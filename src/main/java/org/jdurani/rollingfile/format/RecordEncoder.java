@@ -0,0 +1,70 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.kafka.connect.sink.SinkRecord;
+
+/**
+ * Encoder of sink records to one of {@link RecordFormat}s. Implementations encode to reusable buffers and they are
+ * not thread safe.
+ */
+public interface RecordEncoder {
+
+    /**
+     * Write header at the beginning of new file.
+     *
+     * @param os output stream of the file
+     * @param baseOffset offset of first record of the file
+     *
+     * @return number of written bytes
+     *
+     * @throws IOException in case of error
+     */
+    int writeHeader(OutputStream os, long baseOffset) throws IOException;
+
+    /**
+     * Encode record into internal buffer. Previous content of the buffer is discarded.
+     *
+     * @param r record to encode
+     *
+     * @throws IllegalArgumentException if record contains data of unsupported type
+     */
+    void encode(SinkRecord r) throws IllegalArgumentException;
+
+    /**
+     * @return length of data written by {@link #writeTo(OutputStream)}; for formats which buffer records (see
+     *         {@link #atBoundary()}) it is length of data completed by the last encoded record, possibly {@code 0}
+     */
+    int length();
+
+    /**
+     * Write last encoded record (or data completed by it) to output stream.
+     *
+     * @param os output stream
+     *
+     * @throws IOException in case of error
+     */
+    void writeTo(OutputStream os) throws IOException;
+
+    /**
+     * @return {@code true} if all encoded records were written by {@link #writeTo(OutputStream)}, so that reading
+     *         can start at the current position of the file
+     */
+    default boolean atBoundary() {
+        return true;
+    }
+
+    /**
+     * Write records which are still buffered. Called before the file is closed.
+     *
+     * @param os output stream
+     *
+     * @return number of written bytes
+     *
+     * @throws IOException in case of error
+     */
+    default int finish(OutputStream os) throws IOException {
+        return 0;
+    }
+}
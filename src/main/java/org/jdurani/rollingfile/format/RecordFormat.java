@@ -0,0 +1,155 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Formats of records stored in rolling files. Format of a file is detected from its first bytes (see
+ * {@link #detect(RecordInput)}), so files of all formats can be read regardless of configuration.
+ */
+public enum RecordFormat {
+
+    TEXT("text", ".txt") {
+        @Override
+        public RecordEncoder newEncoder() {
+            return new TextRecordEncoder();
+        }
+
+        @Override
+        public RecordDecoder newDecoder(RecordInput in, String file) {
+            return new TextRecordDecoder(in, file);
+        }
+    },
+    BINARY("binary", ".bin") {
+        @Override
+        public RecordEncoder newEncoder() {
+            return new BinaryRecordEncoder();
+        }
+
+        @Override
+        public RecordDecoder newDecoder(RecordInput in, String file) throws IOException {
+            return new BinaryRecordDecoder(in, file);
+        }
+    },
+    COLUMNAR("columnar", ".col") {
+        @Override
+        public RecordEncoder newEncoder() {
+            return new ColumnarRecordEncoder();
+        }
+
+        @Override
+        public RecordDecoder newDecoder(RecordInput in, String file) throws IOException {
+            return new ColumnarRecordDecoder(in, file, false);
+        }
+    };
+
+    private final String configName;
+    private final String extension;
+
+    /**
+     * @param configName name used in configuration
+     * @param extension file name extension
+     */
+    RecordFormat(String configName, String extension) {
+        this.configName = configName;
+        this.extension = extension;
+    }
+
+    /**
+     * @return new encoder of this format
+     */
+    public abstract RecordEncoder newEncoder();
+
+    /**
+     * @param in input positioned at the beginning of the file
+     * @param file file name used in error messages
+     *
+     * @return new decoder of this format; file header is already consumed
+     *
+     * @throws IOException in case of error
+     */
+    public abstract RecordDecoder newDecoder(RecordInput in, String file) throws IOException;
+
+    /**
+     * @return file name extension of this format
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @return name used in configuration
+     */
+    public String getConfigName() {
+        return configName;
+    }
+
+    /**
+     * @param name name from configuration, case insensitive
+     *
+     * @return format
+     *
+     * @throws IllegalArgumentException if there is no such format
+     */
+    public static RecordFormat forName(String name) throws IllegalArgumentException {
+        String n = name.trim().toLowerCase(Locale.ROOT);
+        for (RecordFormat f : values()) {
+            if (f.configName.equals(n)) {
+                return f;
+            }
+        }
+        throw new IllegalArgumentException("Unknown record format '" + name + "'");
+    }
+
+    /**
+     * @return names of all formats used in configuration
+     */
+    public static String[] configNames() {
+        RecordFormat[] values = values();
+        String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].configName;
+        }
+        return names;
+    }
+
+    /**
+     * Detect format from the first bytes of the input. Nothing is consumed from the input.
+     *
+     * @param in input positioned at the beginning of the file
+     *
+     * @return detected format; {@link #TEXT} if file does not start with magic of other formats
+     *
+     * @throws IOException in case of error
+     */
+    public static RecordFormat detect(RecordInput in) throws IOException {
+        if (startsWith(in, BinaryRecordEncoder.MAGIC)) {
+            return BINARY;
+        } else if (startsWith(in, ColumnarRecordEncoder.MAGIC)) {
+            return COLUMNAR;
+        }
+        return TEXT;
+    }
+
+    /**
+     * @param in input
+     * @param magic expected bytes
+     *
+     * @return {@code true} if unconsumed data of input start with magic bytes
+     *
+     * @throws IOException in case of error
+     */
+    private static boolean startsWith(RecordInput in, byte[] magic) throws IOException {
+        if (!in.ensure(magic.length)) {
+            return false;
+        }
+        byte[] b = in.buffer();
+        int p = in.bufferPosition();
+        for (int i = 0; i < magic.length; i++) {
+            if (b[p + i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
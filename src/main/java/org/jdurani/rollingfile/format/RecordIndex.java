@@ -0,0 +1,238 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.jdurani.rollingfile.exception.ReadException;
+
+/**
+ * Sparse index of one rolled file, stored in sidecar file next to it (see {@link #fileFor(File)}). Each entry maps a
+ * record to its position in (decompressed) file content, so that reader can skip directly to it:
+ * <pre>
+ * MAGIC(4) VERSION(1) ENTRY_COUNT(4)
+ * entry: RECORD_NUMBER(8) OFFSET(8) MAX_TIMESTAMP(8) POSITION(8)
+ * </pre>
+ * {@code RECORD_NUMBER} is number of records preceding the entry in the file, {@code OFFSET} is Kafka offset of the
+ * record, {@code MAX_TIMESTAMP} is maximum timestamp of all preceding records ({@link #NO_TIMESTAMP} if none of them
+ * has timestamp) and {@code POSITION} is position of the record. All numbers are big-endian. Entries are sorted by
+ * all their values.
+ */
+public class RecordIndex {
+
+    /**
+     * Suffix of index file name appended to name of data file.
+     */
+    public static final String EXTENSION = ".idx";
+    public static final long NO_TIMESTAMP = -1L;
+    static final byte[] MAGIC = {(byte) 0x89, 'R', 'F', 'I'};
+    static final byte VERSION = 1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] recordNumbers = new long[INITIAL_CAPACITY];
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    private long[] maxTimestamps = new long[INITIAL_CAPACITY];
+    private long[] positions = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @param data data file
+     *
+     * @return index file of data file
+     */
+    public static File fileFor(File data) {
+        return new File(data.getParentFile(), data.getName() + EXTENSION);
+    }
+
+    /**
+     * Append entry. Entries must be appended in order of records.
+     *
+     * @param recordNumber number of records preceding the record in the file
+     * @param offset Kafka offset of the record
+     * @param maxTimestamp maximum timestamp of preceding records, {@link #NO_TIMESTAMP} if there is none
+     * @param position position of the record in decompressed file content
+     */
+    public void add(long recordNumber, long offset, long maxTimestamp, long position) {
+        if (size == positions.length) {
+            int capacity = size * 2;
+            recordNumbers = Arrays.copyOf(recordNumbers, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            maxTimestamps = Arrays.copyOf(maxTimestamps, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+        }
+        recordNumbers[size] = recordNumber;
+        offsets[size] = offset;
+        maxTimestamps[size] = maxTimestamp;
+        positions[size] = position;
+        size++;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i index of entry
+     *
+     * @return number of records preceding the entry
+     */
+    public long getRecordNumber(int i) {
+        return recordNumbers[i];
+    }
+
+    /**
+     * @param i index of entry
+     *
+     * @return Kafka offset of the entry
+     */
+    public long getOffset(int i) {
+        return offsets[i];
+    }
+
+    /**
+     * @param i index of entry
+     *
+     * @return maximum timestamp of records preceding the entry
+     */
+    public long getMaxTimestamp(int i) {
+        return maxTimestamps[i];
+    }
+
+    /**
+     * @param i index of entry
+     *
+     * @return position of the entry in decompressed file content
+     */
+    public long getPosition(int i) {
+        return positions[i];
+    }
+
+    /**
+     * Find the last entry not after record with given offset.
+     *
+     * @param offset Kafka offset
+     *
+     * @return index of entry, {@code -1} if reading must start at the beginning of the file
+     */
+    public int lookupOffset(long offset) {
+        return lastLower(offsets, offset + 1);
+    }
+
+    /**
+     * Find the last entry such that all preceding records have timestamp lower than given timestamp (or no timestamp).
+     *
+     * @param timestamp timestamp
+     *
+     * @return index of entry, {@code -1} if reading must start at the beginning of the file
+     */
+    public int lookupTimestamp(long timestamp) {
+        return lastLower(maxTimestamps, timestamp);
+    }
+
+    /**
+     * @param values sorted values
+     * @param bound exclusive bound
+     *
+     * @return index of the last value lower than bound, {@code -1} if there is none
+     */
+    private int lastLower(long[] values, long bound) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < bound) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * @param os stream to write index to
+     *
+     * @throws IOException in case of error
+     */
+    public void writeTo(OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(recordNumbers[i]);
+            out.writeLong(offsets[i]);
+            out.writeLong(maxTimestamps[i]);
+            out.writeLong(positions[i]);
+        }
+        out.flush();
+    }
+
+    /**
+     * @param f file to write index to
+     *
+     * @throws IOException in case of error
+     */
+    public void writeTo(File f) throws IOException {
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(f))) {
+            writeTo(os);
+        }
+    }
+
+    /**
+     * Read index of data file.
+     *
+     * @param data data file
+     *
+     * @return index or {@code null} if data file has no index
+     *
+     * @throws IOException in case of error
+     * @throws ReadException if index file is not valid
+     */
+    public static RecordIndex read(File data) throws IOException, ReadException {
+        File f = fileFor(data);
+        if (!f.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new ReadException("Not an index file - [file=" + f.getAbsolutePath() + "]");
+            }
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new ReadException("Unsupported index version " + version + " - [file=" + f.getAbsolutePath() + "]");
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                throw new ReadException("Wrong number of index entries " + count + " - [file=" + f.getAbsolutePath() + "]");
+            }
+            RecordIndex index = new RecordIndex();
+            for (int i = 0; i < count; i++) {
+                index.add(in.readLong(), in.readLong(), in.readLong(), in.readLong());
+            }
+            return index;
+        } catch (EOFException e) {
+            throw new ReadException("Truncated index file - [file=" + f.getAbsolutePath() + "]", e);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Buffered input of record decoders. Tracks number of consumed bytes and allows decoders to parse records directly
+ * from its buffer. Blocks of {@link BlockInputStream} become the buffer without being copied.
+ */
+public class RecordInput implements Closeable {
+
+    private final InputStream in;
+    private final BlockInputStream blocks;
+    private byte[] buffer;
+    private int pos;
+    private int limit;
+    private long consumedBeforeBuffer;
+    private boolean eof;
+
+    /**
+     * New instance.
+     *
+     * @param in stream to read from
+     * @param bufferSize initial size of buffer
+     */
+    public RecordInput(InputStream in, int bufferSize) {
+        this.in = in;
+        this.blocks = in instanceof BlockInputStream ? (BlockInputStream) in : null;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * @return number of bytes consumed from the stream
+     */
+    public long position() {
+        return consumedBeforeBuffer + pos;
+    }
+
+    /**
+     * Make sure at least {@code n} bytes are available in buffer from {@link #bufferPosition()}.
+     *
+     * @param n number of bytes
+     *
+     * @return {@code true} if bytes are available, {@code false} if stream ended before
+     *
+     * @throws IOException in case of error
+     */
+    public boolean ensure(int n) throws IOException {
+        if (limit - pos >= n) {
+            return true;
+        }
+        if (pos == limit && blocks != null && !eof) {
+            takeBlock();
+            if (limit - pos >= n) {
+                return true;
+            }
+        }
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            consumedBeforeBuffer += pos;
+            limit -= pos;
+            pos = 0;
+        }
+        if (n > buffer.length) {
+            byte[] b = new byte[Math.max(n, buffer.length * 2)];
+            System.arraycopy(buffer, 0, b, 0, limit);
+            buffer = b;
+        }
+        while (limit < n && !eof) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                eof = true;
+            } else {
+                limit += read;
+            }
+        }
+        return limit >= n;
+    }
+
+    /**
+     * Replace consumed buffer by the next block of {@link #blocks}.
+     *
+     * @throws IOException in case of error
+     */
+    private void takeBlock() throws IOException {
+        consumedBeforeBuffer += pos;
+        ByteBuffer b = blocks.takeBlock(buffer);
+        if (b == null) {
+            pos = 0;
+            limit = 0;
+            eof = true;
+            return;
+        }
+        buffer = b.array();
+        pos = b.position();
+        limit = b.limit();
+        consumedBeforeBuffer -= pos;
+    }
+
+    /**
+     * @return number of bytes available in buffer from {@link #bufferPosition()}
+     */
+    public int available() {
+        return limit - pos;
+    }
+
+    /**
+     * Find delimiter reading more data if needed.
+     *
+     * @param delimiter byte to find
+     *
+     * @return index of delimiter relative to {@link #bufferPosition()} or {@code -1} if stream ended before delimiter
+     *
+     * @throws IOException in case of error
+     */
+    public int indexOf(byte delimiter) throws IOException {
+        int from = 0;
+        while (true) {
+            for (int i = pos + from; i < limit; i++) {
+                if (buffer[i] == delimiter) {
+                    return i - pos;
+                }
+            }
+            from = limit - pos;
+            if (eof || !ensure(from + 1)) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @return internal buffer; it may change after any call of other method
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return position of first unconsumed byte in {@link #buffer()}
+     */
+    public int bufferPosition() {
+        return pos;
+    }
+
+    /**
+     * Mark bytes as consumed.
+     *
+     * @param n number of bytes to consume; must not exceed {@link #available()}
+     */
+    public void consume(int n) {
+        if (n > limit - pos) {
+            throw new IllegalArgumentException("Cannot consume " + n + " bytes, available " + (limit - pos));
+        }
+        pos += n;
+    }
+
+    /**
+     * @return next byte or {@code -1} at the end of stream
+     *
+     * @throws IOException in case of error
+     */
+    public int read() throws IOException {
+        if (!ensure(1)) {
+            return -1;
+        }
+        return buffer[pos++] & 0xff;
+    }
+
+    /**
+     * @param len number of bytes
+     *
+     * @return new array with next {@code len} bytes
+     *
+     * @throws IOException in case of error or if stream ends prematurely
+     */
+    public byte[] readBytes(int len) throws IOException {
+        if (!ensure(len)) {
+            throw new EOFException("Expected " + len + " bytes, available " + available());
+        }
+        byte[] b = new byte[len];
+        System.arraycopy(buffer, pos, b, 0, len);
+        pos += len;
+        return b;
+    }
+
+    /**
+     * @return unsigned varint
+     *
+     * @throws IOException in case of error or if stream ends prematurely
+     */
+    public int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = read();
+            if (b < 0) {
+                throw new EOFException("Unexpected end of varint");
+            }
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * @return signed zig-zag encoded varlong
+     *
+     * @throws IOException in case of error or if stream ends prematurely
+     */
+    public long readVarlong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = read();
+            if (b < 0) {
+                throw new EOFException("Unexpected end of varlong");
+            }
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return (value >>> 1) ^ -(value & 1);
+            }
+        }
+        throw new IOException("Malformed varlong");
+    }
+
+    /**
+     * Skip bytes. Bytes beyond buffer are skipped by underlying stream, so uncompressed file is not read at all.
+     *
+     * @param n number of bytes to skip
+     *
+     * @return number of skipped bytes; less than {@code n} only if stream ended
+     *
+     * @throws IOException in case of error
+     */
+    public long skip(long n) throws IOException {
+        long skipped = Math.min(n, limit - pos);
+        pos += (int) skipped;
+        if (pos == limit && !eof) {
+            consumedBeforeBuffer += pos;
+            pos = 0;
+            limit = 0;
+            // last byte is read, because file streams skip beyond end of file
+            while (skipped < n - 1) {
+                long k = in.skip(n - 1 - skipped);
+                if (k <= 0) {
+                    break;
+                }
+                consumedBeforeBuffer += k;
+                skipped += k;
+            }
+        }
+        while (skipped < n) {
+            if (pos == limit && !ensure(1)) {
+                break;
+            }
+            int k = (int) Math.min(n - skipped, limit - pos);
+            pos += k;
+            skipped += k;
+        }
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,57 @@
+package org.jdurani.rollingfile.format;
+
+import org.apache.kafka.connect.header.Headers;
+
+/**
+ * Record read from rolling file.
+ */
+public class StoredRecord {
+
+    /**
+     * Offset of records in formats which do not store offsets.
+     */
+    public static final long UNKNOWN_OFFSET = -1L;
+
+    private final byte[] key;
+    private final byte[] value;
+    private final Long timestamp;
+    private final long offset;
+    private final Headers headers;
+
+    /**
+     * New instance.
+     *
+     * @param key key
+     * @param value value
+     * @param timestamp timestamp, may be {@code null}
+     * @param offset kafka offset or {@link #UNKNOWN_OFFSET}
+     * @param headers headers, may be {@code null}
+     */
+    public StoredRecord(byte[] key, byte[] value, Long timestamp, long offset, Headers headers) {
+        this.key = key;
+        this.value = value;
+        this.timestamp = timestamp;
+        this.offset = offset;
+        this.headers = headers;
+    }
+
+    public byte[] getKey() {
+        return key;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+
+    public Long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public Headers getHeaders() {
+        return headers;
+    }
+}
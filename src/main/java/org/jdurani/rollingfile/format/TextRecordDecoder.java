@@ -0,0 +1,221 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.jdurani.rollingfile.exception.ReadException;
+import org.jdurani.rollingfile.sink.RollingFileWriter;
+
+/**
+ * Decoder of text line format written by {@link TextRecordEncoder}. Lines are parsed directly from the buffer of
+ * {@link RecordInput} without creating intermediate strings. Text format does not store offsets nor headers.
+ */
+public class TextRecordDecoder implements RecordDecoder {
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+    private static final byte SEPARATOR = RollingFileWriter.KEY_VALUE_SEPARATOR.getBytes()[0];
+    private static final byte NEW_LINE = RollingFileWriter.RECORD_SEPARATOR[0];
+    private static final byte[] NO_TIMESTAMP_BYTES = RollingFileWriter.NO_TIMESTAMP.getBytes();
+    private static final byte[] NULL_BYTES = RollingFileWriter.NULL_OBJECT.getBytes();
+    private static final int[] BASE64_VALUES = new int[256];
+
+    static {
+        Arrays.fill(BASE64_VALUES, -1);
+        byte[] alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes();
+        for (int i = 0; i < alphabet.length; i++) {
+            BASE64_VALUES[alphabet[i]] = i;
+        }
+    }
+
+    private final RecordInput in;
+    private final String file;
+
+    /**
+     * New instance.
+     *
+     * @param in input to read from
+     * @param file file name used in error messages
+     */
+    public TextRecordDecoder(RecordInput in, String file) {
+        this.in = in;
+        this.file = file;
+    }
+
+    @Override
+    public StoredRecord next() throws IOException, ReadException {
+        int lineLength = in.indexOf(NEW_LINE);
+        int consumed = lineLength + 1;
+        if (lineLength < 0) {
+            // last line without separator
+            lineLength = in.available();
+            consumed = lineLength;
+            if (lineLength == 0) {
+                return null;
+            }
+        }
+        byte[] b = in.buffer();
+        int start = in.bufferPosition();
+        int end = start + lineLength;
+        int idx1 = indexOf(b, start, end);
+        int idx2 = idx1 < 0 ? -1 : indexOf(b, idx1 + 1, end);
+        if (idx2 < 0) {
+            throw wrongFormat(b, start, end);
+        }
+        StoredRecord r = new StoredRecord(
+                decode(b, idx1 + 1, idx2),
+                decode(b, idx2 + 1, end),
+                decodeTimestamp(b, start, idx1),
+                StoredRecord.UNKNOWN_OFFSET,
+                null);
+        in.consume(consumed);
+        return r;
+    }
+
+    /**
+     * @param b buffer
+     * @param from start index
+     * @param to end index (exclusive)
+     *
+     * @return index of separator or {@code -1}
+     */
+    private static int indexOf(byte[] b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (b[i] == SEPARATOR) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param b buffer
+     * @param from start index
+     * @param to end index (exclusive)
+     *
+     * @return decoded timestamp or {@code null}
+     */
+    private Long decodeTimestamp(byte[] b, int from, int to) {
+        if (equals(b, from, to, NO_TIMESTAMP_BYTES)) {
+            return null;
+        }
+        boolean negative = from < to && b[from] == '-';
+        int i = negative ? from + 1 : from;
+        if (i == to || to - i > 19) {
+            throw wrongFormat(b, from, to);
+        }
+        long v = 0;
+        for (; i < to; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) {
+                throw wrongFormat(b, from, to);
+            }
+            // accumulate negative value so that Long.MIN_VALUE fits
+            v = v * 10 - d;
+            if (v > 0) {
+                throw wrongFormat(b, from, to);
+            }
+        }
+        if (!negative) {
+            if (v == Long.MIN_VALUE) {
+                throw wrongFormat(b, from, to);
+            }
+            v = -v;
+        }
+        return v;
+    }
+
+    /**
+     * @param b buffer
+     * @param from start index
+     * @param to end index (exclusive)
+     *
+     * @return decoded bytes
+     */
+    private byte[] decode(byte[] b, int from, int to) {
+        if (from == to) {
+            return EMPTY_BYTES;
+        }
+        if (equals(b, from, to, NULL_BYTES)) {
+            return null;
+        }
+        while (to > from && b[to - 1] == '=') {
+            to--;
+        }
+        int len = to - from;
+        if (len % 4 == 1) {
+            throw wrongFormat(b, from, to);
+        }
+        byte[] out = new byte[len / 4 * 3 + Math.max(0, len % 4 - 1)];
+        int o = 0;
+        int i = from;
+        int full = from + len / 4 * 4;
+        while (i < full) {
+            int bits = value(b, i++) << 18 | value(b, i++) << 12 | value(b, i++) << 6 | value(b, i++);
+            out[o++] = (byte) (bits >> 16);
+            out[o++] = (byte) (bits >> 8);
+            out[o++] = (byte) bits;
+        }
+        if (i < to) {
+            int bits = value(b, i++) << 18 | value(b, i++) << 12;
+            out[o++] = (byte) (bits >> 16);
+            if (i < to) {
+                bits |= value(b, i) << 6;
+                out[o] = (byte) (bits >> 8);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @param b buffer
+     * @param i index of base64 character
+     *
+     * @return value of the character
+     */
+    private int value(byte[] b, int i) {
+        int v = BASE64_VALUES[b[i] & 0xff];
+        if (v < 0) {
+            throw new ReadException("Wrong line format - [file=" + file + ", position=" + in.position()
+                    + "] illegal base64 character " + (b[i] & 0xff));
+        }
+        return v;
+    }
+
+    /**
+     * @param b buffer
+     * @param from start index
+     * @param to end index (exclusive)
+     * @param expected expected bytes
+     *
+     * @return true if range contains exactly expected bytes
+     */
+    private static boolean equals(byte[] b, int from, int to, byte[] expected) {
+        if (to - from != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (b[from + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param b buffer
+     * @param from start index of wrong part
+     * @param to end index of wrong part (exclusive)
+     *
+     * @return exception to throw
+     */
+    private ReadException wrongFormat(byte[] b, int from, int to) {
+        return new ReadException("Wrong line format - [file=" + file + ", position=" + in.position() + "] "
+                + new String(b, from, to - from, StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public long resumePosition() {
+        return in.position();
+    }
+}
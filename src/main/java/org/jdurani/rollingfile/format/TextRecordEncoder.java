@@ -0,0 +1,246 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.jdurani.rollingfile.sink.RollingFileWriter;
+
+/**
+ * Encoder of records to text line format {@code <timestamp> <base64 key> <base64 value>\n}.
+ * <p>
+ * Encoded line is written to reusable buffer owned by this encoder, so once the buffer has grown to the size of the
+ * largest record, encoding does not allocate. Instances are not thread safe - each writer owns its encoder.
+ */
+public class TextRecordEncoder implements RecordEncoder {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final byte[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes();
+    private static final byte PAD = '=';
+    private static final byte[] NO_TIMESTAMP_BYTES = RollingFileWriter.NO_TIMESTAMP.getBytes();
+    private static final byte[] NULL_BYTES = RollingFileWriter.NULL_OBJECT.getBytes();
+    private static final byte[] KEY_VALUE_SEPARATOR_BYTES = RollingFileWriter.KEY_VALUE_SEPARATOR.getBytes();
+    private static final byte[] MIN_LONG_BYTES = String.valueOf(Long.MIN_VALUE).getBytes();
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private byte[] scratch = new byte[INITIAL_BUFFER_SIZE];
+    private int length;
+
+    /**
+     * Text files have no header.
+     *
+     * @return {@code 0}
+     */
+    @Override
+    public int writeHeader(OutputStream os, long baseOffset) {
+        return 0;
+    }
+
+    /**
+     * Encode record into internal buffer. Previous content of the buffer is discarded.
+     *
+     * @param r record to encode
+     *
+     * @throws IllegalArgumentException if key or value is of unsupported type
+     * @see #buffer()
+     * @see #length()
+     */
+    @Override
+    public void encode(SinkRecord r) throws IllegalArgumentException {
+        length = 0;
+        writeTimestamp(r.timestamp());
+        append(KEY_VALUE_SEPARATOR_BYTES);
+        writeBase64(r.key());
+        append(KEY_VALUE_SEPARATOR_BYTES);
+        writeBase64(r.value());
+        append(RollingFileWriter.RECORD_SEPARATOR);
+    }
+
+    /**
+     * @return buffer with last encoded record; valid bytes are from {@code 0} to {@link #length()}
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(OutputStream os) throws IOException {
+        os.write(buffer, 0, length);
+    }
+
+    /**
+     * @param ts timestamp to write as decimal digits
+     */
+    private void writeTimestamp(Long ts) {
+        if (ts == null) {
+            append(NO_TIMESTAMP_BYTES);
+            return;
+        }
+        long v = ts;
+        if (v == Long.MIN_VALUE) {
+            append(MIN_LONG_BYTES);
+            return;
+        }
+        ensureCapacity(20);
+        if (v < 0) {
+            buffer[length++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long x = v / 10; x > 0; x /= 10) {
+            digits++;
+        }
+        int pos = length + digits;
+        do {
+            buffer[--pos] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v > 0);
+        length += digits;
+    }
+
+    /**
+     * Write value encoded as base64. Supported are {@code byte[]}, {@link ByteBuffer} and {@link String}.
+     * Position of {@link ByteBuffer} is not changed.
+     *
+     * @param value value to write
+     *
+     * @throws IllegalArgumentException if value is of unsupported type
+     */
+    private void writeBase64(Object value) throws IllegalArgumentException {
+        if (value == null) {
+            append(NULL_BYTES);
+        } else if (value instanceof byte[]) {
+            byte[] b = (byte[]) value;
+            base64(b, 0, b.length);
+        } else if (value instanceof ByteBuffer) {
+            base64((ByteBuffer) value);
+        } else if (value instanceof String) {
+            int len = utf8((String) value);
+            base64(scratch, 0, len);
+        } else {
+            throw new IllegalArgumentException("Unsupported object to write - [class] " + value.getClass());
+        }
+    }
+
+    /**
+     * @param src source bytes
+     * @param off offset
+     * @param len number of bytes to encode
+     */
+    private void base64(byte[] src, int off, int len) {
+        ensureCapacity(base64Length(len));
+        int end = off + len;
+        int full = off + len / 3 * 3;
+        int i = off;
+        while (i < full) {
+            int bits = (src[i++] & 0xff) << 16 | (src[i++] & 0xff) << 8 | (src[i++] & 0xff);
+            putQuantum(bits);
+        }
+        if (i < end) {
+            int b0 = src[i++] & 0xff;
+            int b1 = i < end ? src[i] & 0xff : -1;
+            putTail(b0, b1);
+        }
+    }
+
+    /**
+     * @param src source buffer; its position is not changed
+     */
+    private void base64(ByteBuffer src) {
+        int len = src.remaining();
+        if (src.hasArray()) {
+            base64(src.array(), src.arrayOffset() + src.position(), len);
+            return;
+        }
+        ensureCapacity(base64Length(len));
+        int end = src.limit();
+        int full = src.position() + len / 3 * 3;
+        int i = src.position();
+        while (i < full) {
+            int bits = (src.get(i++) & 0xff) << 16 | (src.get(i++) & 0xff) << 8 | (src.get(i++) & 0xff);
+            putQuantum(bits);
+        }
+        if (i < end) {
+            int b0 = src.get(i++) & 0xff;
+            int b1 = i < end ? src.get(i) & 0xff : -1;
+            putTail(b0, b1);
+        }
+    }
+
+    /**
+     * @param bits 24 bits to write as 4 base64 characters
+     */
+    private void putQuantum(int bits) {
+        buffer[length++] = BASE64[(bits >>> 18) & 0x3f];
+        buffer[length++] = BASE64[(bits >>> 12) & 0x3f];
+        buffer[length++] = BASE64[(bits >>> 6) & 0x3f];
+        buffer[length++] = BASE64[bits & 0x3f];
+    }
+
+    /**
+     * @param b0 first remaining byte
+     * @param b1 second remaining byte or {@code -1} if there is only one
+     */
+    private void putTail(int b0, int b1) {
+        buffer[length++] = BASE64[b0 >>> 2];
+        if (b1 < 0) {
+            buffer[length++] = BASE64[(b0 << 4) & 0x3f];
+            buffer[length++] = PAD;
+        } else {
+            buffer[length++] = BASE64[(b0 << 4) & 0x3f | b1 >>> 4];
+            buffer[length++] = BASE64[(b1 << 2) & 0x3f];
+        }
+        buffer[length++] = PAD;
+    }
+
+    /**
+     * Encode string as UTF-8 to {@link #scratch} buffer.
+     *
+     * @param s string to encode
+     *
+     * @return number of bytes written to {@link #scratch}
+     */
+    private int utf8(String s) {
+        int max = Utf8.maxLength(s);
+        if (scratch.length < max) {
+            scratch = new byte[Math.max(max, scratch.length * 2)];
+        }
+        return Utf8.encode(s, scratch, 0);
+    }
+
+    /**
+     * @param len number of bytes to encode
+     *
+     * @return length of base64 encoded data
+     */
+    private static int base64Length(int len) {
+        return (len + 2) / 3 * 4;
+    }
+
+    /**
+     * @param b bytes to append to buffer
+     */
+    private void append(byte[] b) {
+        ensureCapacity(b.length);
+        System.arraycopy(b, 0, buffer, length, b.length);
+        length += b.length;
+    }
+
+    /**
+     * @param needed number of bytes which will be appended to buffer
+     */
+    private void ensureCapacity(int needed) {
+        int required = length + needed;
+        if (required > buffer.length) {
+            byte[] n = new byte[Math.max(required, buffer.length * 2)];
+            System.arraycopy(buffer, 0, n, 0, length);
+            buffer = n;
+        }
+    }
+}
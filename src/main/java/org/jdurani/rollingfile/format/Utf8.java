@@ -0,0 +1,60 @@
+package org.jdurani.rollingfile.format;
+
+/**
+ * Allocation free UTF-8 encoding of strings.
+ */
+final class Utf8 {
+
+    private Utf8() {
+    }
+
+    /**
+     * @param s string
+     *
+     * @return maximum number of bytes needed to encode string
+     */
+    static int maxLength(String s) {
+        return s.length() * 3;
+    }
+
+    /**
+     * Encode string as UTF-8. Malformed surrogates are replaced with {@code '?'} same way as
+     * {@link String#getBytes(java.nio.charset.Charset)} does.
+     *
+     * @param s string to encode
+     * @param out output array with at least {@link #maxLength(String)} bytes available from {@code off}
+     * @param off offset in output array
+     *
+     * @return number of bytes written
+     */
+    static int encode(String s, byte[] out, int off) {
+        int n = s.length();
+        int p = off;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                out[p++] = (byte) c;
+            } else if (c < 0x800) {
+                out[p++] = (byte) (0xc0 | c >> 6);
+                out[p++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                char d;
+                if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(d = s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, d);
+                    i++;
+                    out[p++] = (byte) (0xf0 | cp >> 18);
+                    out[p++] = (byte) (0x80 | cp >> 12 & 0x3f);
+                    out[p++] = (byte) (0x80 | cp >> 6 & 0x3f);
+                    out[p++] = (byte) (0x80 | cp & 0x3f);
+                } else {
+                    out[p++] = '?';
+                }
+            } else {
+                out[p++] = (byte) (0xe0 | c >> 12);
+                out[p++] = (byte) (0x80 | c >> 6 & 0x3f);
+                out[p++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        return p - off;
+    }
+}
@@ -0,0 +1,39 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.File;
+
+import org.jdurani.rollingfile.format.FileFooter;
+
+/**
+ * Notified about data files committed by {@link RollingFileWriter}. May be called by thread of {@link FileCommitter}.
+ */
+public interface CommitListener {
+
+    /**
+     * Listener which ignores commits.
+     */
+    CommitListener NONE = (file, bytes, summary) -> {
+    };
+
+    /**
+     * Rolled data file is committed (renamed to its final name and forced to disk if configured).
+     *
+     * @param file committed file
+     * @param bytes size of the file
+     * @param summary summary of records of the file, its checksum is {@code 0} if the file has no footer
+     */
+    void fileCommitted(File file, long bytes, FileFooter summary);
+
+    /**
+     * @param listeners listeners
+     *
+     * @return listener notifying all given listeners
+     */
+    static CommitListener all(CommitListener... listeners) {
+        return (file, bytes, summary) -> {
+            for (CommitListener l : listeners) {
+                l.fileCommitted(file, bytes, summary);
+            }
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Renames rolled files immediately without forcing them to disk.
+ */
+public class DirectFileCommitter implements FileCommitter {
+
+    public static final DirectFileCommitter INSTANCE = new DirectFileCommitter();
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    @Override
+    public CompletableFuture<Void> commit(File tmp, File target) throws IOException {
+        FileCommitter.rename(tmp, target);
+        return DONE;
+    }
+
+    @Override
+    public void close() {
+        // no-op
+    }
+}
@@ -0,0 +1,45 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.File;
+
+import org.jdurani.rollingfile.format.FileFooter;
+import org.jdurani.rollingfile.format.PageCache;
+
+/**
+ * Drops pages of committed files of one partition from {@link PageCache} behind the writer. Write back of each
+ * committed file is only started, so that commit does not wait for disk, and its pages are dropped when the next file
+ * of the partition is committed - by then they are usually clean, so dropping does not wait either. Pages of the last
+ * committed file stay cached until the next commit.
+ */
+final class DropBehindListener implements CommitListener {
+
+    private final PageCache pageCache;
+    /**
+     * Committed file whose pages are not dropped yet, guarded by this.
+     */
+    private File pending;
+    private long pendingBytes;
+
+    /**
+     * @param pageCache page cache
+     */
+    DropBehindListener(PageCache pageCache) {
+        this.pageCache = pageCache;
+    }
+
+    @Override
+    public void fileCommitted(File file, long bytes, FileFooter summary) {
+        pageCache.writeBack(file, 0L, bytes);
+        File previous;
+        long previousBytes;
+        synchronized (this) {
+            previous = pending;
+            previousBytes = pendingBytes;
+            pending = file;
+            pendingBytes = bytes;
+        }
+        if (previous != null) {
+            pageCache.drop(previous, 0L, previousBytes);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jdurani.rollingfile.format.Libc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Output stream of a rolled file written through {@link java.nio.channels.FileChannel}. Closing the stream closes the
+ * channel.
+ */
+public abstract class FileChannelOutputStream extends OutputStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileChannelOutputStream.class);
+    private static final AtomicBoolean ALLOCATE_FAILED = new AtomicBoolean();
+
+    /**
+     * Allocate disk blocks of the file up to expected size before it is written, so that file system can allocate it
+     * in as few extents as possible. File is truncated to the written length on {@link #close()}. Position of writing
+     * is not changed. Nothing is allocated if the system does not support it.
+     *
+     * @param size expected size of the file in bytes
+     *
+     * @throws IOException in case of error
+     */
+    public abstract void preallocate(long size) throws IOException;
+
+    /**
+     * @return number of bytes written to this stream
+     */
+    public abstract long getPosition();
+
+    /**
+     * Allocate blocks of range of file by {@link Libc#allocate(File, long, long)}. If it is not available, the range is
+     * not allocated (writing zeros instead would write the file twice) and warning is logged once.
+     *
+     * @param file the file
+     * @param from start of the range
+     * @param to end of the range (exclusive)
+     *
+     * @return {@code true} if the range was allocated
+     */
+    static boolean allocate(File file, long from, long to) {
+        if (Libc.allocate(file, from, to - from)) {
+            return true;
+        }
+        if (ALLOCATE_FAILED.compareAndSet(false, true)) {
+            LOG.warn("Preallocation is not supported (it requires Linux, JNA and file system supporting fallocate),"
+                    + " files are not preallocated");
+        }
+        return false;
+    }
+}
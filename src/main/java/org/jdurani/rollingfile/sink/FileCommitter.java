@@ -0,0 +1,36 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Makes rolled files visible under their target names.
+ */
+public interface FileCommitter extends Closeable {
+
+    /**
+     * Commit written and closed temporal file.
+     *
+     * @param tmp temporal file
+     * @param target target file
+     *
+     * @return future completed once the file is committed
+     *
+     * @throws IOException if the file cannot be committed immediately
+     */
+    CompletableFuture<Void> commit(File tmp, File target) throws IOException;
+
+    /**
+     * @param tmp temporal file
+     * @param target target file
+     *
+     * @throws IOException if file is not renamed
+     */
+    static void rename(File tmp, File target) throws IOException {
+        if (!tmp.renameTo(target)) {
+            throw new IOException("File " + tmp.getAbsolutePath() + " not moved to " + target.getAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,757 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.jdurani.rollingfile.format.BlockOutputStream;
+import org.jdurani.rollingfile.format.CompressionCodec;
+import org.jdurani.rollingfile.format.FileFooter;
+import org.jdurani.rollingfile.format.FileLayout;
+import org.jdurani.rollingfile.format.RecordDecoder;
+import org.jdurani.rollingfile.format.RecordEncoder;
+import org.jdurani.rollingfile.format.RecordFormat;
+import org.jdurani.rollingfile.format.RecordIndex;
+import org.jdurani.rollingfile.format.RecordInput;
+import org.jdurani.rollingfile.format.StoredRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background compaction of committed files of partitions to the latest value of each key. The newest file of a
+ * partition is never rewritten, it keeps the offset recovered by {@link RollingFileWriter#recover()} (which may be
+ * known only from records of that file). When a partition has at least two other committed files, of which some were
+ * not compacted yet, they are read twice:
+ * <ol>
+ * <li>MD5 digest of each key of files not compacted yet (and of the newest file) is mapped to number of its latest
+ * record in {@link KeyHashIndex}, so that memory depends only on number of distinct keys of new records,</li>
+ * <li>the latest records of each key and all records without key are written to a new file, records of the previously
+ * compacted file are kept unless their key has a newer record, tombstones (records with {@code null} value) older
+ * than tombstone retention are dropped.</li>
+ * </ol>
+ * The new file (with format and compression of the newest compacted file) is committed together with its
+ * {@link RecordIndex} under a new name (see {@link #targetFor(TopicPartition, List, File, File, long, long, long)}).
+ * Existing files are never replaced, so that offsets kept by source for their paths stay valid. Compacted files are
+ * deleted afterwards and {@link RewriteListener} is notified. Any intermediate state after crash restores the same
+ * latest values, only with more history.
+ * <p>
+ * Adjacent small committed files of a partition (in the same directory) may be merged as well - all their records
+ * are written to one new file of up to target size, which atomically replaces the first merged file (it keeps its
+ * name given by its first offset), the other merged files are deleted afterwards. The newest file of a partition is
+ * never merged, it keeps the offset recovered by {@link RollingFileWriter#recover()}.
+ * <p>
+ * New files are committed under {@link PartitionLocks lock of their partition} shared with {@link FileRetention}, only
+ * if the partition is still assigned and none of the rewritten files was deleted in the meantime. Compaction or merge
+ * of a partition which is no longer assigned stops before reading its next file.
+ */
+public class FileCompactor implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileCompactor.class);
+    static final String COMPACT_PREFIX = ".compact-";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String dir;
+    private final FileLayout layout;
+    private final long indexInterval;
+    private final boolean footer;
+    private final int checksumBlockBytes;
+    private final long tombstoneRetentionMs;
+    private final long mergeTargetBytes;
+    private final PartitionLocks locks;
+    private final RewriteListener rewritten;
+    private final Set<TopicPartition> partitions = ConcurrentHashMap.newKeySet();
+    /**
+     * The last compacted file of each partition, it and older files need not be compacted again.
+     */
+    private final Map<TopicPartition, File> compacted = new ConcurrentHashMap<>();
+    private final MessageDigest digest;
+    private final byte[] digestBuffer = new byte[16];
+    private final ScheduledExecutorService executor;
+
+    /**
+     * @param dir base directory
+     * @param layout layout of directories of topics
+     * @param indexInterval number of records between two entries of {@link RecordIndex} of compacted files, {@code 0}
+     *         to disable index
+     * @param footer append {@link FileFooter} to compacted files?
+     * @param checksumBlockBytes size of blocks protected by checksum, {@code 0} to disable checksums
+     * @param tombstoneRetentionMs how long to keep tombstones
+     * @param intervalMs interval of compaction of all partitions, {@code 0} to compact only by
+     *         {@link #compact(TopicPartition)}
+     * @param mergeTargetBytes target size of merged files, {@code 0} to disable merging
+     * @param mergeIntervalMs interval of merging small files of all partitions
+     * @param locks locks of partitions shared with {@link FileRetention}
+     * @param rewritten notified about files rewritten by compaction or merge, under lock of their partition
+     */
+    public FileCompactor(String dir, FileLayout layout, long indexInterval, boolean footer, int checksumBlockBytes,
+            long tombstoneRetentionMs, long intervalMs, long mergeTargetBytes, long mergeIntervalMs,
+            PartitionLocks locks, RewriteListener rewritten) {
+        this.dir = dir;
+        this.layout = layout;
+        this.indexInterval = indexInterval;
+        this.footer = footer;
+        this.checksumBlockBytes = checksumBlockBytes;
+        this.tombstoneRetentionMs = tombstoneRetentionMs;
+        this.mergeTargetBytes = mergeTargetBytes;
+        this.locks = locks;
+        this.rewritten = rewritten;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+        if (intervalMs > 0 || mergeTargetBytes > 0) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "rolling-file-compactor");
+                t.setDaemon(true);
+                return t;
+            });
+            if (intervalMs > 0) {
+                executor.scheduleWithFixedDelay(() -> forEachPartition(this::compact, "compacting"),
+                        intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+            }
+            if (mergeTargetBytes > 0) {
+                executor.scheduleWithFixedDelay(() -> forEachPartition(this::merge, "merging"),
+                        mergeIntervalMs, mergeIntervalMs, TimeUnit.MILLISECONDS);
+            }
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * @param tps partitions to compact
+     */
+    public void add(Collection<TopicPartition> tps) {
+        partitions.addAll(tps);
+    }
+
+    /**
+     * Stop compacting partitions. Compaction or merge of the partitions in progress stops before reading the next
+     * file, only commit of a rewritten file in progress is waited for.
+     *
+     * @param tps partitions
+     */
+    public void remove(Collection<TopicPartition> tps) {
+        partitions.removeAll(tps);
+        for (TopicPartition tp : tps) {
+            compacted.remove(tp);
+            synchronized (locks.lockFor(tp)) {
+                // rewritten files are committed under the lock only if their partition is assigned
+            }
+        }
+    }
+
+    private void forEachPartition(PartitionJob job, String name) {
+        for (TopicPartition tp : new ArrayList<>(partitions)) {
+            if (!partitions.contains(tp)) {
+                continue;
+            }
+            try {
+                job.run(tp);
+            } catch (CancellationException e) {
+                LOG.info("Stopped {} files of {} - partition is not assigned", name, tp);
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Error {} files of {}", name, tp, e);
+            }
+        }
+    }
+
+    /**
+     * @param tp partition
+     *
+     * @throws CancellationException if the partition is not assigned
+     */
+    private void checkAssigned(TopicPartition tp) throws CancellationException {
+        if (!partitions.contains(tp)) {
+            throw new CancellationException("Partition " + tp + " is not assigned");
+        }
+    }
+
+    /**
+     * Compact committed files of the partition except the newest one.
+     *
+     * @param tp partition
+     *
+     * @return {@code true} if files were compacted, {@code false} if there are less than two files to compact or all
+     *         of them were compacted already
+     *
+     * @throws IOException in case of error, all files are kept
+     * @throws CancellationException if the partition is not assigned, all files are kept
+     */
+    boolean compact(TopicPartition tp) throws IOException, CancellationException {
+        deleteStale(tp);
+        List<File> files = RollingFileWriter.committedFiles(dir, layout, tp);
+        List<File> sources = files.subList(0, Math.max(files.size() - 1, 0));
+        int clean = sources.indexOf(compacted.get(tp)) + 1;
+        if (sources.size() < 2 || clean == sources.size()) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        KeyHashIndex latest = new KeyHashIndex();
+        long records = 0L;
+        for (File f : files.subList(clean, files.size())) {
+            checkAssigned(tp);
+            try (RecordInput in = new RecordInput(RollingFileWriter.openContent(f), BUFFER_SIZE)) {
+                RecordDecoder decoder = RecordFormat.detect(in).newDecoder(in, f.getAbsolutePath());
+                StoredRecord s;
+                while ((s = decoder.next()) != null) {
+                    if (s.getKey() != null) {
+                        digest(s.getKey());
+                        latest.put(digestHalf(0), digestHalf(8), records);
+                    }
+                    records++;
+                }
+            }
+        }
+        File last = sources.get(sources.size() - 1);
+        File output = new File(last.getParentFile(), COMPACT_PREFIX + last.getName());
+        Set<File> cleanFiles = new HashSet<>(sources.subList(0, clean));
+        long[] cleanRecords = {0L};
+        long tombstoneDeadline = System.currentTimeMillis() - tombstoneRetentionMs;
+        RecordIndex index = new RecordIndex();
+        FileFooter summary = rewrite(tp, sources, last, output, index, (f, s, n) -> {
+            boolean compactedRecord = cleanFiles.contains(f);
+            if (compactedRecord) {
+                cleanRecords[0]++;
+            }
+            if (s.getKey() != null) {
+                digest(s.getKey());
+                long latestRecord = latest.get(digestHalf(0), digestHalf(8));
+                // records of the compacted file are not indexed, they are kept unless their key has a newer record
+                if (compactedRecord ? latestRecord != KeyHashIndex.NO_VALUE : latestRecord != n - cleanRecords[0]) {
+                    return false;
+                }
+            }
+            if (s.getValue() == null) {
+                long time = s.getTimestamp() == null ? f.lastModified() : s.getTimestamp();
+                return time >= tombstoneDeadline;
+            }
+            return true;
+        });
+        if (summary.getRecordCount() == 0) {
+            // all records have newer records in the newest file
+            if (!delete(tp, sources, output)) {
+                return false;
+            }
+            compacted.remove(tp);
+            LOG.info("Deleted {} files of {} with {} new records and {} keys superseded by the newest file in {} ms",
+                    sources.size(), tp, records, latest.size(), System.currentTimeMillis() - start);
+            return true;
+        }
+        long first = summary.getFirstOffset() >= 0 ? summary.getFirstOffset() : baseOffset(tp, sources.get(0));
+        // name stays lower than name of the newest file
+        File committed = commit(tp, sources, last, output, index, summary, first, 0L,
+                baseOffset(tp, files.get(files.size() - 1)) - 1);
+        if (committed == null) {
+            return false;
+        }
+        compacted.put(tp, committed);
+        LOG.info("Compacted {} files of {} with {} new records and {} keys to {} with {} records in {} ms",
+                sources.size(), tp, records, latest.size(), committed.getName(), summary.getRecordCount(),
+                System.currentTimeMillis() - start);
+        return true;
+    }
+
+    /**
+     * Merge adjacent small committed files of the partition. All but the newest file are merged in runs of files of
+     * the same directory with total size up to target size.
+     *
+     * @param tp partition
+     *
+     * @return {@code true} if any files were merged
+     *
+     * @throws IOException in case of error, files of the run being merged are kept
+     * @throws CancellationException if the partition is not assigned, files of the run being merged are kept
+     */
+    boolean merge(TopicPartition tp) throws IOException, CancellationException {
+        deleteStale(tp);
+        List<File> files = RollingFileWriter.committedFiles(dir, layout, tp);
+        boolean merged = false;
+        List<File> run = new ArrayList<>();
+        long runBytes = 0L;
+        for (File f : files.subList(0, Math.max(files.size() - 1, 0))) {
+            long length = f.length();
+            if (!run.isEmpty() && (runBytes + length > mergeTargetBytes
+                    || !f.getParentFile().equals(run.get(0).getParentFile()))) {
+                merged |= merge(tp, run);
+                run.clear();
+                runBytes = 0L;
+            }
+            if (length < mergeTargetBytes) {
+                run.add(f);
+                runBytes += length;
+            }
+        }
+        merged |= merge(tp, run);
+        return merged;
+    }
+
+    /**
+     * @param tp partition
+     * @param run adjacent files to merge, the newest file is not included
+     *
+     * @return {@code true} if files were merged, {@code false} if there are less than two files
+     *
+     * @throws IOException in case of error
+     */
+    private boolean merge(TopicPartition tp, List<File> run) throws IOException {
+        if (run.size() < 2) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        File first = run.get(0);
+        File merged = new File(first.getParentFile(), COMPACT_PREFIX + first.getName());
+        RecordIndex index = new RecordIndex();
+        FileFooter summary = rewrite(tp, run, first, merged, index, (f, s, n) -> true);
+        if (!replace(tp, run, merged, index, summary)) {
+            return false;
+        }
+        // merged file may contain records which were not compacted
+        compacted.remove(tp);
+        LOG.info("Merged {} files of {} with {} records to {} ({} bytes) in {} ms", run.size(), tp,
+                summary.getRecordCount(), first.getName(), first.length(), System.currentTimeMillis() - start);
+        return true;
+    }
+
+    /**
+     * Commit rewritten file and its index under new name, delete the replaced files and notify listener - all under
+     * lock of the partition.
+     *
+     * @param tp partition
+     * @param replaced rewritten files ordered by their base offsets
+     * @param template file which gives format and compression of the new file by its name
+     * @param output rewritten file
+     * @param index index of the rewritten file
+     * @param summary summary of records of the rewritten file
+     * @param first offset of the first record of the rewritten file
+     * @param min the lowest offset which may name the new file
+     * @param max the highest offset which may name the new file
+     *
+     * @return committed file or {@code null} if there is no free name, the partition is not assigned or a replaced
+     *         file was deleted, the rewritten file is deleted then
+     *
+     * @throws IOException in case of error
+     */
+    private File commit(TopicPartition tp, List<File> replaced, File template, File output, RecordIndex index,
+            FileFooter summary, long first, long min, long max) throws IOException {
+        synchronized (locks.lockFor(tp)) {
+            File target = targetFor(tp, replaced, template, output.getParentFile(), first, min, max);
+            String skipped = target == null ? "all offsets of their range name existing files" : skipped(tp, replaced);
+            if (skipped != null) {
+                LOG.info("Files {} of {} are not rewritten - {}", replaced, tp, skipped);
+                delete(output);
+                return null;
+            }
+            commitIndex(index, target);
+            FileCommitter.rename(output, target);
+            // replaced files only add history until they are deleted
+            deleteAll(replaced);
+            rewritten.filesRewritten(tp, target, target.length(), summary, replaced);
+            return target;
+        }
+    }
+
+    /**
+     * Replace the first rewritten file by the merged file (rename replaces it atomically, so that it has either the
+     * original or the merged content) and its index, delete the other rewritten files and notify listener - all under
+     * lock of the partition.
+     *
+     * @param tp partition
+     * @param replaced rewritten files ordered by their base offsets
+     * @param output merged file
+     * @param index index of the merged file
+     * @param summary summary of records of the merged file
+     *
+     * @return {@code false} if the partition is not assigned or a replaced file was deleted, the merged file is
+     *         deleted then
+     *
+     * @throws IOException in case of error
+     */
+    private boolean replace(TopicPartition tp, List<File> replaced, File output, RecordIndex index,
+            FileFooter summary) throws IOException {
+        synchronized (locks.lockFor(tp)) {
+            String skipped = skipped(tp, replaced);
+            if (skipped != null) {
+                LOG.info("Files {} of {} are not merged - {}", replaced, tp, skipped);
+                delete(output);
+                return false;
+            }
+            File target = replaced.get(0);
+            // index of the original content must not be used for the merged content
+            delete(RecordIndex.fileFor(target));
+            FileCommitter.rename(output, target);
+            commitIndex(index, target);
+            // merged files only add history until they are deleted
+            deleteAll(replaced.subList(1, replaced.size()));
+            rewritten.filesRewritten(tp, target, target.length(), summary, replaced);
+            return true;
+        }
+    }
+
+    /**
+     * @param index index of rewritten file, nothing is written if it is empty
+     * @param target committed name of the rewritten file
+     *
+     * @throws IOException in case of error
+     */
+    private static void commitIndex(RecordIndex index, File target) throws IOException {
+        if (index.size() > 0) {
+            File indexTarget = RecordIndex.fileFor(target);
+            File indexOutput = new File(target.getParentFile(), COMPACT_PREFIX + indexTarget.getName());
+            index.writeTo(indexOutput);
+            FileCommitter.rename(indexOutput, indexTarget);
+        }
+    }
+
+    /**
+     * Delete files without any record to keep and notify listener - all under lock of the partition.
+     *
+     * @param tp partition
+     * @param deleted rewritten files ordered by their base offsets
+     * @param output rewritten file without records, it is deleted
+     *
+     * @return {@code false} if the partition is not assigned or a file was deleted in the meantime
+     *
+     * @throws IOException in case of error
+     */
+    private boolean delete(TopicPartition tp, List<File> deleted, File output) throws IOException {
+        synchronized (locks.lockFor(tp)) {
+            delete(output);
+            String skipped = skipped(tp, deleted);
+            if (skipped != null) {
+                LOG.info("Files {} of {} are not deleted - {}", deleted, tp, skipped);
+                return false;
+            }
+            deleteAll(deleted);
+            rewritten.filesDeleted(tp, deleted);
+            return true;
+        }
+    }
+
+    /**
+     * @param tp partition
+     * @param replaced rewritten files
+     *
+     * @return why the files must not be replaced, {@code null} if they may be
+     */
+    private String skipped(TopicPartition tp, List<File> replaced) {
+        if (!partitions.contains(tp)) {
+            return "partition is not assigned";
+        }
+        for (File f : replaced) {
+            if (!f.exists()) {
+                return "file " + f.getName() + " was deleted";
+            }
+        }
+        return null;
+    }
+
+    private static void deleteAll(List<File> files) throws IOException {
+        for (File f : files) {
+            delete(RecordIndex.fileFor(f));
+            delete(f);
+        }
+    }
+
+    /**
+     * Name of compacted file is given by offset of its first record. If an existing file has that name, the nearest
+     * free lower offset is taken instead (down to the minimum), then the nearest free greater offset (up to the
+     * maximum). The range is given by names of files around the replaced files, so that order of files by names is
+     * kept.
+     *
+     * @param tp partition
+     * @param replaced rewritten files ordered by their base offsets
+     * @param template file which gives format and compression of the new file by its name
+     * @param directory directory of the new file
+     * @param first offset of the first record of the new file
+     * @param min the lowest offset which may name the new file
+     * @param max the highest offset which may name the new file
+     *
+     * @return new file or {@code null} if all offsets of the range name existing files
+     */
+    private static File targetFor(TopicPartition tp, List<File> replaced, File template, File directory, long first,
+            long min, long max) {
+        String name = template.getName();
+        CompressionCodec codec = codecOf(name);
+        String suffix = formatOf(name.substring(0, name.length() - codec.getSuffix().length())).getExtension()
+                + codec.getSuffix();
+        Set<String> taken = new HashSet<>();
+        for (File f : replaced) {
+            taken.add(f.getName());
+        }
+        for (long offset = first; offset >= min; offset--) {
+            File f = new File(directory, String.format(RollingFileWriter.FILE_NAME_FORMAT, tp.partition(), offset,
+                    suffix));
+            if (!taken.contains(f.getName()) && !f.exists()) {
+                return f;
+            }
+        }
+        for (long offset = first + 1; offset <= max; offset++) {
+            File f = new File(directory, String.format(RollingFileWriter.FILE_NAME_FORMAT, tp.partition(), offset,
+                    suffix));
+            if (!taken.contains(f.getName()) && !f.exists()) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param tp partition
+     * @param f committed file of the partition
+     *
+     * @return base offset of the file given by its name
+     */
+    private static long baseOffset(TopicPartition tp, File f) {
+        return RollingFileWriter.baseOffset(f.getName(), RollingFileWriter.partitionPrefix(tp.partition()).length());
+    }
+
+    /**
+     * Delete output of interrupted compaction or merge.
+     *
+     * @param tp partition
+     *
+     * @throws IOException in case of error
+     */
+    private void deleteStale(TopicPartition tp) throws IOException {
+        String stale = COMPACT_PREFIX + RollingFileWriter.partitionPrefix(tp.partition());
+        for (File f : RollingFileWriter.partitionFiles(dir, layout, tp)) {
+            if (f.getName().startsWith(stale)) {
+                delete(f);
+            }
+        }
+    }
+
+    /**
+     * Write records of files accepted by filter to new file, the new file is deleted in case of error.
+     *
+     * @param tp partition
+     * @param files source files
+     * @param template file which gives format and compression of new file by its name
+     * @param output new file
+     * @param index index to add entries of the new file to
+     * @param filter records to keep
+     *
+     * @return summary of written records
+     *
+     * @throws IOException in case of error
+     * @throws CancellationException if the partition is not assigned
+     */
+    private FileFooter rewrite(TopicPartition tp, List<File> files, File template, File output, RecordIndex index,
+            RecordFilter filter) throws IOException {
+        try {
+            return write(tp, files, template, output, index, filter);
+        } catch (IOException | RuntimeException e) {
+            delete(output);
+            throw e;
+        }
+    }
+
+    private FileFooter write(TopicPartition tp, List<File> files, File template, File output, RecordIndex index,
+            RecordFilter filter) throws IOException {
+        File last = files.get(files.size() - 1);
+        String name = template.getName();
+        CompressionCodec codec = codecOf(name);
+        RecordFormat format = formatOf(name.substring(0, name.length() - codec.getSuffix().length()));
+        FileFooter firstFooter = FileFooter.read(files.get(0));
+        FileFooter lastFooter = FileFooter.read(last);
+        RecordEncoder encoder = format.newEncoder();
+        OutputStream fileOs = new BufferedOutputStream(new FileOutputStream(output), BUFFER_SIZE);
+        FooterOutputStream footerOs = footer ? new FooterOutputStream(fileOs) : null;
+        OutputStream os = fileOs;
+        BlockOutputStream blockOs = null;
+        long number = 0L;
+        long kept = 0L;
+        long lastIndexed = 0L;
+        long length = 0L;
+        long firstOffset = StoredRecord.UNKNOWN_OFFSET;
+        long lastOffset = StoredRecord.UNKNOWN_OFFSET;
+        long minTimestamp = FileFooter.NO_TIMESTAMP;
+        long maxTimestamp = FileFooter.NO_TIMESTAMP;
+        try {
+            os = codec.wrapOutput(footerOs == null ? fileOs : footerOs);
+            if (checksumBlockBytes > 0) {
+                blockOs = new BlockOutputStream(os, checksumBlockBytes);
+                os = blockOs;
+            }
+            boolean header = false;
+            for (File f : files) {
+                checkAssigned(tp);
+                try (RecordInput in = new RecordInput(RollingFileWriter.openContent(f), BUFFER_SIZE)) {
+                    RecordDecoder decoder = RecordFormat.detect(in).newDecoder(in, f.getAbsolutePath());
+                    StoredRecord s;
+                    while ((s = decoder.next()) != null) {
+                        if (!filter.keep(f, s, number++)) {
+                            continue;
+                        }
+                        if (!header) {
+                            length += encoder.writeHeader(os, Math.max(s.getOffset(), 0L));
+                            header = true;
+                        }
+                        if (indexInterval > 0 && kept > 0 && kept - lastIndexed >= indexInterval
+                                && s.getOffset() != StoredRecord.UNKNOWN_OFFSET && encoder.atBoundary()) {
+                            index.add(kept, s.getOffset(), maxTimestamp, length);
+                            lastIndexed = kept;
+                        }
+                        encoder.encode(new SinkRecord(tp.topic(), tp.partition(), null, s.getKey(), null,
+                                s.getValue(), s.getOffset(), s.getTimestamp(),
+                                s.getTimestamp() == null ? TimestampType.NO_TIMESTAMP_TYPE : TimestampType.CREATE_TIME,
+                                s.getHeaders()));
+                        encoder.writeTo(os);
+                        if (blockOs != null) {
+                            blockOs.endRecord();
+                        }
+                        length += encoder.length();
+                        kept++;
+                        if (firstOffset == StoredRecord.UNKNOWN_OFFSET) {
+                            firstOffset = s.getOffset();
+                        }
+                        lastOffset = s.getOffset();
+                        Long timestamp = s.getTimestamp();
+                        if (timestamp != null) {
+                            maxTimestamp = Math.max(maxTimestamp, timestamp);
+                            if (minTimestamp == FileFooter.NO_TIMESTAMP || timestamp < minTimestamp) {
+                                minTimestamp = timestamp;
+                            }
+                        }
+                    }
+                }
+            }
+            length += encoder.finish(os);
+            if (lastOffset == StoredRecord.UNKNOWN_OFFSET && firstFooter != null && lastFooter != null) {
+                // records of text files have no offsets
+                firstOffset = firstFooter.getFirstOffset();
+                lastOffset = lastFooter.getLastOffset();
+            }
+            if (footerOs != null) {
+                footerOs.summary(kept, firstOffset, lastOffset, minTimestamp, maxTimestamp, length);
+            }
+        } finally {
+            os.close();
+        }
+        try (FileChannel channel = FileChannel.open(output.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        return footerOs != null
+                ? footerOs.getFooter()
+                : new FileFooter(kept, firstOffset, lastOffset, minTimestamp, maxTimestamp, length, output.length(), 0);
+    }
+
+    /**
+     * Compute MD5 digest of key to {@link #digestBuffer}.
+     *
+     * @param key key
+     */
+    private void digest(byte[] key) {
+        digest.update(key);
+        try {
+            digest.digest(digestBuffer, 0, digestBuffer.length);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param from index of the first byte of the half in {@link #digestBuffer}
+     *
+     * @return half of the last computed digest
+     */
+    private long digestHalf(int from) {
+        long h = 0L;
+        for (int i = from; i < from + 8; i++) {
+            h = (h << 8) | (digestBuffer[i] & 0xFF);
+        }
+        return h;
+    }
+
+    /**
+     * @param name name of data file
+     *
+     * @return codec of the file according to its suffix
+     */
+    private static CompressionCodec codecOf(String name) {
+        for (CompressionCodec c : CompressionCodec.values()) {
+            if (c != CompressionCodec.NONE && name.endsWith(c.getSuffix())) {
+                return c;
+            }
+        }
+        return CompressionCodec.NONE;
+    }
+
+    /**
+     * @param name name of data file without codec suffix
+     *
+     * @return format of the file according to its extension
+     */
+    private static RecordFormat formatOf(String name) {
+        for (RecordFormat f : RecordFormat.values()) {
+            if (name.endsWith(f.getExtension())) {
+                return f;
+            }
+        }
+        throw new IllegalArgumentException("Unknown format of file " + name);
+    }
+
+    /**
+     * Job run for each partition.
+     */
+    private interface PartitionJob {
+
+        boolean run(TopicPartition tp) throws IOException;
+    }
+
+    /**
+     * Records kept by {@link #rewrite(TopicPartition, List, File, File, RecordIndex, RecordFilter)}.
+     */
+    private interface RecordFilter {
+
+        /**
+         * @param f file of the record
+         * @param s record
+         * @param number number of the record in all rewritten files
+         *
+         * @return {@code true} to keep the record
+         */
+        boolean keep(File f, StoredRecord s, long number);
+    }
+
+    private static void delete(File f) throws IOException {
+        if (f.exists() && !f.delete()) {
+            throw new IOException("File '" + f.getAbsolutePath() + "' not deleted.");
+        }
+    }
+
+    /**
+     * Stop compaction, waits only for commit of a rewritten file in progress.
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        remove(new ArrayList<>(partitions));
+    }
+}
@@ -0,0 +1,286 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.common.TopicPartition;
+import org.jdurani.rollingfile.format.FileFooter;
+import org.jdurani.rollingfile.format.FileLayout;
+import org.jdurani.rollingfile.format.RecordIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retention of committed files of partitions by their age and total size. Files of a partition are listed (and their
+ * footers read) only when the partition is added. Afterwards committed files are accounted by {@link CommitListener}
+ * of each partition and files rewritten by {@link FileCompactor} by {@link RewriteListener}, so that retention does not
+ * walk directories of assigned partitions.
+ * <p>
+ * The oldest files of a partition are deleted (together with their indexes) when their newest record is older than
+ * retention time or when total size of files of the partition exceeds retention size. The newest file of a partition
+ * is never deleted, it keeps the offset recovered by {@link RollingFileWriter#recover()}. Files are deleted under
+ * {@link PartitionLocks lock of their partition} shared with {@link FileCompactor} and reported to
+ * {@link RewriteListener#filesDeleted(TopicPartition, List)}.
+ */
+public class FileRetention implements RewriteListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileRetention.class);
+
+    private final String dir;
+    private final FileLayout layout;
+    private final long retentionMs;
+    private final long retentionBytes;
+    private final PartitionLocks locks;
+    private final RewriteListener deleted;
+    private final Map<TopicPartition, Partition> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * @param dir base directory
+     * @param layout layout of directories of topics
+     * @param retentionMs maximum age of files, {@code -1} for no limit
+     * @param retentionBytes maximum total size of files of one partition, {@code -1} for no limit
+     * @param locks locks of partitions shared with {@link FileCompactor}
+     * @param deleted notified about deleted files
+     */
+    public FileRetention(String dir, FileLayout layout, long retentionMs, long retentionBytes, PartitionLocks locks,
+            RewriteListener deleted) {
+        this.dir = dir;
+        this.layout = layout;
+        this.retentionMs = retentionMs;
+        this.retentionBytes = retentionBytes;
+        this.locks = locks;
+        this.deleted = deleted;
+    }
+
+    /**
+     * @param tp partition
+     *
+     * @return listener which accounts committed files of the partition
+     */
+    public CommitListener forPartition(TopicPartition tp) {
+        return partitions.computeIfAbsent(tp, Partition::new);
+    }
+
+    /**
+     * Account existing files of partitions.
+     *
+     * @param tps partitions
+     *
+     * @throws IOException in case of error
+     */
+    public void add(Collection<TopicPartition> tps) throws IOException {
+        for (TopicPartition tp : tps) {
+            partitions.computeIfAbsent(tp, Partition::new).load();
+        }
+    }
+
+    /**
+     * Replace accounted files by the new file. Does nothing for partitions which were not added.
+     */
+    @Override
+    public void filesRewritten(TopicPartition tp, File file, long bytes, FileFooter summary, List<File> replaced) {
+        Partition p = partitions.get(tp);
+        if (p != null) {
+            p.fileRewritten(file, bytes, summary, replaced);
+        }
+    }
+
+    /**
+     * Stop accounting files deleted by {@link FileCompactor}. Does nothing for partitions which were not added.
+     */
+    @Override
+    public void filesDeleted(TopicPartition tp, List<File> deleted) {
+        Partition p = partitions.get(tp);
+        if (p != null) {
+            p.fileRewritten(null, 0L, null, deleted);
+        }
+    }
+
+    /**
+     * @param tps partitions to stop accounting
+     */
+    public void remove(Collection<TopicPartition> tps) {
+        partitions.keySet().removeAll(tps);
+    }
+
+    /**
+     * Delete the oldest files of all partitions which exceed retention.
+     *
+     * @return number of deleted files
+     */
+    public int enforce() {
+        long deadline = retentionMs < 0 ? Long.MIN_VALUE : System.currentTimeMillis() - retentionMs;
+        int count = 0;
+        for (Partition p : partitions.values()) {
+            List<File> files = new ArrayList<>();
+            synchronized (locks.lockFor(p.tp)) {
+                try {
+                    p.enforce(deadline, files);
+                } catch (IOException e) {
+                    LOG.error("Error deleting files of {}", p.tp, e);
+                } finally {
+                    if (!files.isEmpty()) {
+                        deleted.filesDeleted(p.tp, files);
+                    }
+                }
+            }
+            count += files.size();
+        }
+        return count;
+    }
+
+    /**
+     * Committed file.
+     */
+    private static final class Segment {
+
+        private final File file;
+        private final long bytes;
+        private final long timestamp;
+
+        private Segment(File file, long bytes, long timestamp) {
+            this.file = file;
+            this.bytes = bytes;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Committed files of one partition ordered by their base offsets.
+     */
+    private final class Partition implements CommitListener {
+
+        private final TopicPartition tp;
+        private final File partitionDir;
+        private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+        /**
+         * Files of {@link #segments}.
+         */
+        private final Set<File> accounted = new HashSet<>();
+        private long bytes;
+
+        private Partition(TopicPartition tp) {
+            this.tp = tp;
+            this.partitionDir = layout.partitionDirectory(new File(dir, tp.topic()), tp.partition());
+        }
+
+        private synchronized void load() throws IOException {
+            segments.clear();
+            accounted.clear();
+            bytes = 0L;
+            for (File f : RollingFileWriter.committedFiles(dir, layout, tp)) {
+                FileFooter footer = FileFooter.read(f);
+                long timestamp = footer == null || footer.getMaxTimestamp() == FileFooter.NO_TIMESTAMP
+                        ? f.lastModified()
+                        : footer.getMaxTimestamp();
+                append(new Segment(f, f.length(), timestamp));
+            }
+        }
+
+        @Override
+        public synchronized void fileCommitted(File file, long fileBytes, FileFooter summary) {
+            Segment last = segments.peekLast();
+            if (accounted.contains(file) || last != null && last.file.getName().compareTo(file.getName()) > 0) {
+                // file listed by load or committed again under the same name replaces the accounted one, file
+                // committed after rewind of offsets is placed by its name
+                fileRewritten(file, fileBytes, summary, Collections.singletonList(file));
+                return;
+            }
+            append(segment(file, fileBytes, summary));
+        }
+
+        /**
+         * @param file new file, {@code null} if the replaced files were deleted without replacement
+         * @param fileBytes size of the file
+         * @param summary summary of records of the file
+         * @param replaced files replaced by the new file
+         */
+        private synchronized void fileRewritten(File file, long fileBytes, FileFooter summary, List<File> replaced) {
+            Set<File> removed = new HashSet<>(replaced);
+            Segment added = file == null ? null : segment(file, fileBytes, summary);
+            ArrayDeque<Segment> kept = new ArrayDeque<>(segments.size());
+            for (Segment s : segments) {
+                if (added != null && s.file.getName().compareTo(file.getName()) > 0) {
+                    kept.addLast(added);
+                    added = null;
+                }
+                if (!removed.contains(s.file)) {
+                    kept.addLast(s);
+                }
+            }
+            if (added != null) {
+                kept.addLast(added);
+            }
+            segments.clear();
+            accounted.clear();
+            bytes = 0L;
+            for (Segment s : kept) {
+                append(s);
+            }
+        }
+
+        private Segment segment(File file, long fileBytes, FileFooter summary) {
+            return new Segment(file, fileBytes, summary.getMaxTimestamp() == FileFooter.NO_TIMESTAMP
+                    ? System.currentTimeMillis()
+                    : summary.getMaxTimestamp());
+        }
+
+        private void append(Segment s) {
+            segments.addLast(s);
+            accounted.add(s.file);
+            bytes += s.bytes;
+        }
+
+        /**
+         * @param deadline files with all records older than deadline are expired
+         * @param files list to add deleted files to
+         *
+         * @throws IOException in case of error
+         */
+        private synchronized void enforce(long deadline, List<File> files) throws IOException {
+            while (segments.size() > 1) {
+                Segment oldest = segments.peekFirst();
+                boolean expired = oldest.timestamp < deadline;
+                boolean oversized = retentionBytes >= 0 && bytes > retentionBytes;
+                if (!expired && !oversized) {
+                    break;
+                }
+                LOG.debug("Deleting file {} of {} - {}", oldest.file.getAbsolutePath(), tp,
+                        expired ? "retention time elapsed" : "retention size exceeded");
+                delete(RecordIndex.fileFor(oldest.file));
+                delete(oldest.file);
+                deleteEmptyDirectories(oldest.file.getParentFile());
+                segments.removeFirst();
+                accounted.remove(oldest.file);
+                bytes -= oldest.bytes;
+                files.add(oldest.file);
+            }
+        }
+
+        /**
+         * Delete empty time buckets of {@link FileLayout} left by deleted files.
+         *
+         * @param d directory of deleted file
+         */
+        private void deleteEmptyDirectories(File d) {
+            while (d != null && !d.equals(partitionDir) && d.delete()) {
+                d = d.getParentFile();
+            }
+        }
+    }
+
+    private static void delete(File f) throws IOException {
+        if (!f.delete() && f.exists()) {
+            throw new IOException("File '" + f.getAbsolutePath() + "' not deleted.");
+        }
+    }
+}
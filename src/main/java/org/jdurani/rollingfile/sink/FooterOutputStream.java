@@ -0,0 +1,94 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Checksum;
+
+import org.jdurani.rollingfile.format.FileFooter;
+
+/**
+ * Output stream counting and checksumming stored bytes of a file and appending {@link FileFooter} on {@link #close()}.
+ * Summary of records must be set by {@link #summary(long, long, long, long, long, long)} before the stream is closed.
+ */
+public class FooterOutputStream extends FilterOutputStream {
+
+    private final Checksum checksum = FileFooter.newChecksum();
+    private long storedLength;
+    private long recordCount;
+    private long firstOffset;
+    private long lastOffset;
+    private long minTimestamp = FileFooter.NO_TIMESTAMP;
+    private long maxTimestamp = FileFooter.NO_TIMESTAMP;
+    private long contentLength;
+    private boolean closed;
+
+    /**
+     * New instance.
+     *
+     * @param out stream of the file
+     */
+    public FooterOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        checksum.update(b);
+        storedLength++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        checksum.update(b, off, len);
+        storedLength += len;
+    }
+
+    /**
+     * Set summary of written records.
+     *
+     * @param recordCount number of records
+     * @param firstOffset offset of the first record
+     * @param lastOffset offset of the last record
+     * @param minTimestamp minimum timestamp of records
+     * @param maxTimestamp maximum timestamp of records
+     * @param contentLength length of decompressed content
+     */
+    public void summary(long recordCount, long firstOffset, long lastOffset, long minTimestamp, long maxTimestamp,
+            long contentLength) {
+        this.recordCount = recordCount;
+        this.firstOffset = firstOffset;
+        this.lastOffset = lastOffset;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * @return footer of written content, complete once summary is set and the stream is closed
+     */
+    public FileFooter getFooter() {
+        return new FileFooter(recordCount, firstOffset, lastOffset, minTimestamp, maxTimestamp, contentLength,
+                storedLength, (int) checksum.getValue());
+    }
+
+    /**
+     * Append footer and close underlying stream.
+     *
+     * @throws IOException in case of error
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            out.write(getFooter().toBytes());
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Durable committer. Files rolled within one window are committed together by single thread:
+ * <ol>
+ * <li>all temporal files are forced to disk,</li>
+ * <li>all files are renamed to their target names,</li>
+ * <li>each affected directory is forced to disk once.</li>
+ * </ol>
+ * So with thousands of partitions, cost of directory fsync is shared by all files rolled in the window and cost of
+ * file fsyncs overlaps with writing. Latency of group commits is available via {@link #getLastCommitNanos()} and
+ * {@link #getMaxCommitNanos()}.
+ */
+public class GroupFileCommitter implements FileCommitter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GroupFileCommitter.class);
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final long windowMs;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Object windowLock = new Object();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private volatile long lastCommitNanos;
+    private volatile long maxCommitNanos;
+    private volatile long commits;
+    private volatile long committedFiles;
+    private long reportStart = System.nanoTime();
+    private long reportCommits;
+    private long reportNanos;
+    private long reportMaxNanos;
+
+    /**
+     * New instance. Worker thread is started immediately.
+     *
+     * @param windowMs how long to collect rolled files before committing them together
+     */
+    public GroupFileCommitter(long windowMs) {
+        this.windowMs = windowMs;
+        worker = new Thread(this::run, "rolling-file-group-commit");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public CompletableFuture<Void> commit(File tmp, File target) throws IOException {
+        if (!running) {
+            throw new IOException("Committer closed, file " + tmp.getAbsolutePath() + " not committed");
+        }
+        Pending p = new Pending(tmp, target);
+        queue.add(p);
+        return p.completion;
+    }
+
+    /**
+     * Worker loop.
+     */
+    private void run() {
+        List<Pending> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                if (windowMs > 0) {
+                    synchronized (windowLock) {
+                        if (running) {
+                            windowLock.wait(windowMs);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                // nobody but us owns this thread - stop after committing what is queued
+                running = false;
+            }
+            queue.drainTo(batch);
+            if (!batch.isEmpty()) {
+                commitBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Commit all files of a batch.
+     *
+     * @param batch files to commit
+     */
+    private void commitBatch(List<Pending> batch) {
+        long start = System.nanoTime();
+        Set<File> dirs = new LinkedHashSet<>();
+        List<Pending> renamed = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            try {
+                force(p.tmp);
+                FileCommitter.rename(p.tmp, p.target);
+                dirs.add(p.target.getAbsoluteFile().getParentFile());
+                renamed.add(p);
+            } catch (IOException | RuntimeException e) {
+                p.completion.completeExceptionally(e);
+            }
+        }
+        IOException dirFailure = null;
+        for (File dir : dirs) {
+            try {
+                force(dir);
+            } catch (IOException e) {
+                dirFailure = e;
+            }
+        }
+        long took = System.nanoTime() - start;
+        lastCommitNanos = took;
+        if (took > maxCommitNanos) {
+            maxCommitNanos = took;
+        }
+        commits++;
+        committedFiles += renamed.size();
+        // complete after statistics are updated, so that waiting callers see them
+        for (Pending p : renamed) {
+            if (dirFailure == null) {
+                p.completion.complete(null);
+            } else {
+                p.completion.completeExceptionally(dirFailure);
+            }
+        }
+        LOG.debug("Group commit of {} files in {} directories took {} ms", batch.size(), dirs.size(),
+                TimeUnit.NANOSECONDS.toMillis(took));
+        report(took);
+    }
+
+    /**
+     * Periodically log latency of group commits.
+     *
+     * @param took duration of the last group commit
+     */
+    private void report(long took) {
+        reportCommits++;
+        reportNanos += took;
+        reportMaxNanos = Math.max(reportMaxNanos, took);
+        long now = System.nanoTime();
+        if (now - reportStart >= REPORT_INTERVAL_NANOS) {
+            LOG.info("Group commits: {}, average latency: {} ms, max latency: {} ms, window: {} ms", reportCommits,
+                    TimeUnit.NANOSECONDS.toMillis(reportNanos / reportCommits),
+                    TimeUnit.NANOSECONDS.toMillis(reportMaxNanos), windowMs);
+            reportStart = now;
+            reportCommits = 0;
+            reportNanos = 0;
+            reportMaxNanos = 0;
+        }
+    }
+
+    /**
+     * Force file or directory to disk.
+     *
+     * @param f file or directory
+     *
+     * @throws IOException in case of error
+     */
+    private static void force(File f) throws IOException {
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            ch.force(true);
+        }
+    }
+
+    /**
+     * @return duration in nanoseconds of the last group commit, including fsync of files and directories
+     */
+    public long getLastCommitNanos() {
+        return lastCommitNanos;
+    }
+
+    /**
+     * @return maximum duration in nanoseconds of group commit
+     */
+    public long getMaxCommitNanos() {
+        return maxCommitNanos;
+    }
+
+    /**
+     * @return number of group commits
+     */
+    public long getCommits() {
+        return commits;
+    }
+
+    /**
+     * @return number of committed files
+     */
+    public long getCommittedFiles() {
+        return committedFiles;
+    }
+
+    /**
+     * Commit pending files and stop worker thread.
+     */
+    @Override
+    public void close() {
+        synchronized (windowLock) {
+            running = false;
+            windowLock.notifyAll();
+        }
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * File waiting for commit.
+     */
+    private static final class Pending {
+
+        private final File tmp;
+        private final File target;
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+        /**
+         * @param tmp temporal file
+         * @param target target file
+         */
+        private Pending(File tmp, File target) {
+            this.tmp = tmp;
+            this.target = target;
+        }
+    }
+}
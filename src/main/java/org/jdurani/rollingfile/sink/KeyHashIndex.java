@@ -0,0 +1,99 @@
+package org.jdurani.rollingfile.sink;
+
+/**
+ * Open addressing hash map from 128-bit key digests (two {@code long} halves) to non-negative {@code long} values
+ * stored in three primitive arrays, so that it takes about 48 bytes per key regardless of size of keys and values.
+ * Keys whose digests share one half are different entries. Not thread safe.
+ */
+class KeyHashIndex {
+
+    /**
+     * Value returned for digests which are not in the index.
+     */
+    static final long NO_VALUE = -1L;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] hashes;
+    private long[] checks;
+    /**
+     * Values increased by one, {@code 0} marks free slots.
+     */
+    private long[] values;
+    private int size;
+
+    KeyHashIndex() {
+        hashes = new long[INITIAL_CAPACITY];
+        checks = new long[INITIAL_CAPACITY];
+        values = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @param hash the first half of digest of key
+     * @param check the second half of digest of key
+     * @param value value to store, replaces previous value of the digest
+     */
+    void put(long hash, long check, long value) {
+        int slot = slot(hashes, checks, values, hash, check);
+        if (values[slot] == 0L) {
+            hashes[slot] = hash;
+            checks[slot] = check;
+            size++;
+        }
+        values[slot] = value + 1;
+        if (size * 2 > hashes.length) {
+            grow();
+        }
+    }
+
+    /**
+     * @param hash the first half of digest of key
+     * @param check the second half of digest of key
+     *
+     * @return value of the digest, {@link #NO_VALUE} if there is none
+     */
+    long get(long hash, long check) {
+        return values[slot(hashes, checks, values, hash, check)] - 1;
+    }
+
+    /**
+     * @return number of digests in the index
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param hashes table of the first halves, its length is power of two
+     * @param checks table of the second halves
+     * @param values table of values
+     * @param hash the first half of digest
+     * @param check the second half of digest
+     *
+     * @return slot with the digest or the first free slot of its probe sequence
+     */
+    private static int slot(long[] hashes, long[] checks, long[] values, long hash, long check) {
+        int mask = hashes.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (values[slot] != 0L && (hashes[slot] != hash || checks[slot] != check)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldHashes = hashes;
+        long[] oldChecks = checks;
+        long[] oldValues = values;
+        hashes = new long[oldHashes.length * 2];
+        checks = new long[oldChecks.length * 2];
+        values = new long[oldValues.length * 2];
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldValues[i] != 0L) {
+                int slot = slot(hashes, checks, values, oldHashes[i], oldChecks[i]);
+                hashes[slot] = oldHashes[i];
+                checks[slot] = oldChecks[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
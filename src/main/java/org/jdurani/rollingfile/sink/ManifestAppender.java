@@ -0,0 +1,276 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.common.TopicPartition;
+import org.jdurani.rollingfile.format.FileFooter;
+import org.jdurani.rollingfile.format.FileLayout;
+import org.jdurani.rollingfile.format.FileManifest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends entries of committed files to {@link FileManifest} of their topics. Files written by {@link FileCompactor}
+ * are appended when they are committed and files replaced by them or deleted by {@link FileRetention} get entries of
+ * deleted files, see {@link RewriteListener}.
+ * <p>
+ * Manifest of each topic is read incrementally by one {@link FileManifest.Reader} and paths and sizes of files listed
+ * in it and not deleted are kept. When partitions are added, committed files missing in the manifest (e.g. because
+ * of crash between commit and append) or listed with other size are appended, entries of files without footer have
+ * unknown offsets, timestamps and record count ({@code -1}). Listed files which no longer exist get entries of
+ * deleted files. Afterwards committed files are appended unless the manifest lists them with the same size, so that
+ * file committed again under the same name gets a new entry.
+ */
+public class ManifestAppender implements Closeable, RewriteListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ManifestAppender.class);
+    private static final long UNKNOWN = -1L;
+
+    private final String dir;
+    private final FileLayout layout;
+    private final boolean force;
+    private final Map<TopicPartition, Partition> partitions = new ConcurrentHashMap<>();
+    /**
+     * Open manifests by topic, guarded by this.
+     */
+    private final Map<String, FileChannel> manifests = new HashMap<>();
+    /**
+     * Read manifests by topic, used only by {@link #add(Collection)}.
+     */
+    private final Map<String, Listing> listings = new HashMap<>();
+
+    /**
+     * @param dir base directory
+     * @param layout layout of directories of topics
+     * @param force force manifest to disk after each entry?
+     */
+    public ManifestAppender(String dir, FileLayout layout, boolean force) {
+        this.dir = dir;
+        this.layout = layout;
+        this.force = force;
+    }
+
+    /**
+     * @param tp partition
+     *
+     * @return listener which appends committed files of the partition
+     */
+    public CommitListener forPartition(TopicPartition tp) {
+        return partitions.computeIfAbsent(tp, Partition::new);
+    }
+
+    /**
+     * Append committed files of partitions missing in manifests.
+     *
+     * @param tps partitions
+     *
+     * @throws IOException in case of error
+     */
+    public void add(Collection<TopicPartition> tps) throws IOException {
+        Set<String> read = new HashSet<>();
+        for (TopicPartition tp : tps) {
+            Listing listing = listings.computeIfAbsent(tp.topic(), Listing::new);
+            if (read.add(tp.topic())) {
+                listing.readNew();
+            }
+            Partition p = partitions.computeIfAbsent(tp, Partition::new);
+            p.catchUp(listing.files.getOrDefault(tp.partition(), Collections.emptyMap()));
+        }
+    }
+
+    @Override
+    public void filesRewritten(TopicPartition tp, File file, long bytes, FileFooter summary, List<File> replaced) {
+        Partition p = partitions.get(tp);
+        if (p != null) {
+            p.fileRewritten(file, bytes, summary, replaced);
+        }
+    }
+
+    @Override
+    public void filesDeleted(TopicPartition tp, List<File> deleted) {
+        Partition p = partitions.get(tp);
+        if (p != null) {
+            p.fileRewritten(null, 0L, null, deleted);
+        }
+    }
+
+    /**
+     * @param tps partitions to stop appending
+     */
+    public void remove(Collection<TopicPartition> tps) {
+        partitions.keySet().removeAll(tps);
+    }
+
+    private synchronized void append(String topic, FileManifest.Entry entry) throws IOException {
+        FileChannel channel = manifests.get(topic);
+        if (channel == null) {
+            channel = FileManifest.openForAppend(new File(dir, topic));
+            manifests.put(topic, channel);
+        }
+        ByteBuffer b = ByteBuffer.wrap(entry.toBytes());
+        while (b.hasRemaining()) {
+            channel.write(b);
+        }
+        if (force) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Close all manifests.
+     */
+    @Override
+    public synchronized void close() {
+        for (FileChannel c : manifests.values()) {
+            try {
+                c.close();
+            } catch (IOException e) {
+                LOG.error("Error closing manifest", e);
+            }
+        }
+        manifests.clear();
+        listings.clear();
+        partitions.clear();
+    }
+
+    /**
+     * Files listed in manifest of one topic and not deleted, read incrementally.
+     */
+    private final class Listing {
+
+        private final FileManifest.Reader reader;
+        /**
+         * Sizes of files by their paths by partitions.
+         */
+        private final Map<Integer, Map<String, Long>> files = new HashMap<>();
+
+        private Listing(String topic) {
+            this.reader = new FileManifest.Reader(new File(dir, topic));
+        }
+
+        private void readNew() throws IOException {
+            for (FileManifest.Entry e : reader.readNew()) {
+                Map<String, Long> p = files.computeIfAbsent(e.getPartition(), k -> new HashMap<>());
+                if (e.isDeleted()) {
+                    p.remove(e.getPath());
+                } else {
+                    p.put(e.getPath(), e.getSize());
+                }
+            }
+        }
+    }
+
+    /**
+     * Appender of files of one partition.
+     */
+    private final class Partition implements CommitListener {
+
+        private final TopicPartition tp;
+        private final File topicDir;
+        /**
+         * Sizes of files in manifest by their paths.
+         */
+        private final Map<String, Long> listed = new HashMap<>();
+
+        private Partition(TopicPartition tp) {
+            this.tp = tp;
+            this.topicDir = new File(dir, tp.topic()).getAbsoluteFile();
+        }
+
+        /**
+         * @param files sizes of files of the partition listed in manifest and not deleted by their paths
+         *
+         * @throws IOException in case of error
+         */
+        private synchronized void catchUp(Map<String, Long> files) throws IOException {
+            listed.clear();
+            Map<String, Long> missing = new HashMap<>(files);
+            for (File f : RollingFileWriter.committedFiles(dir, layout, tp)) {
+                String path = path(f);
+                long length = f.length();
+                Long size = missing.remove(path);
+                if (size == null || size != length) {
+                    FileFooter footer = FileFooter.read(f);
+                    append(f, length, footer == null
+                            ? new FileFooter(UNKNOWN, UNKNOWN, UNKNOWN, FileFooter.NO_TIMESTAMP,
+                                    FileFooter.NO_TIMESTAMP, UNKNOWN, UNKNOWN, 0)
+                            : footer);
+                } else {
+                    listed.put(path, size);
+                }
+            }
+            for (String path : missing.keySet()) {
+                ManifestAppender.this.append(tp.topic(), FileManifest.Entry.deleted(tp.partition(), path));
+            }
+        }
+
+        @Override
+        public synchronized void fileCommitted(File file, long bytes, FileFooter summary) {
+            Long size = listed.get(path(file));
+            if (size != null && size == bytes) {
+                // already appended by catch up
+                return;
+            }
+            try {
+                append(file, bytes, summary);
+            } catch (IOException e) {
+                LOG.error("Error appending file {} to manifest of {}", file.getAbsolutePath(), tp.topic(), e);
+            }
+        }
+
+        /**
+         * Append file of compactor and deleted files (except the new file if it replaced one of them).
+         *
+         * @param file new file, {@code null} if files were only deleted
+         * @param bytes size of the file
+         * @param summary summary of records of the file
+         * @param deleted deleted files
+         */
+        private synchronized void fileRewritten(File file, long bytes, FileFooter summary, List<File> deleted) {
+            try {
+                if (file != null) {
+                    append(file, bytes, summary);
+                }
+                for (File f : deleted) {
+                    if (f.equals(file)) {
+                        // replaced by the new file
+                        continue;
+                    }
+                    String path = path(f);
+                    ManifestAppender.this.append(tp.topic(), FileManifest.Entry.deleted(tp.partition(), path));
+                    listed.remove(path);
+                }
+            } catch (IOException e) {
+                LOG.error("Error appending files {} to manifest of {}", deleted, tp.topic(), e);
+            }
+        }
+
+        /**
+         * @param file file of the partition
+         *
+         * @return path of the file relative to directory of the topic
+         */
+        private String path(File file) {
+            return topicDir.toPath().relativize(file.getAbsoluteFile().toPath()).toString()
+                    .replace(File.separatorChar, '/');
+        }
+
+        private void append(File file, long bytes, FileFooter summary) throws IOException {
+            String path = path(file);
+            ManifestAppender.this.append(tp.topic(), FileManifest.Entry.of(tp.partition(), bytes, summary, path));
+            listed.put(path, bytes);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.kafka.common.utils.ByteBufferUnmapper;
+
+/**
+ * Output stream copying data directly into memory mapped regions of a file. At most one region of fixed size is
+ * mapped at a time and it is unmapped as soon as it is full or the stream is closed, so virtual memory used by the
+ * stream is bounded by the region size. Mapping extends the file to the end of the region; file is truncated to the
+ * written length on {@link #close()}.
+ * <p>
+ * Data are visible to other readers of the file as soon as they are written, {@link #flush()} does nothing. Channel
+ * must be opened for reading and writing. Not thread safe - callers must synchronize.
+ */
+public class MappedFileOutputStream extends FileChannelOutputStream {
+
+    private final FileChannel channel;
+    private final String file;
+    private final int regionSize;
+    private final byte[] single = new byte[1];
+    private MappedByteBuffer region;
+    private long position;
+    private long preallocated;
+
+    /**
+     * New instance.
+     *
+     * @param channel channel to write to
+     * @param file file name used in messages
+     * @param regionSize size of mapped regions in bytes
+     */
+    public MappedFileOutputStream(FileChannel channel, String file, int regionSize) {
+        this.channel = channel;
+        this.file = file;
+        this.regionSize = regionSize;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (region == null || !region.hasRemaining()) {
+                nextRegion();
+            }
+            int n = Math.min(region.remaining(), len);
+            region.put(b, off, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Unmap current region and map region starting at current position.
+     *
+     * @throws IOException in case of error
+     */
+    private void nextRegion() throws IOException {
+        unmap();
+        region = channel.map(FileChannel.MapMode.READ_WRITE, position, regionSize);
+    }
+
+    /**
+     * Unmap current region (if any).
+     *
+     * @throws IOException in case of error
+     */
+    private void unmap() throws IOException {
+        ByteBuffer b = region;
+        if (b != null) {
+            region = null;
+            ByteBufferUnmapper.unmap(file, b);
+        }
+    }
+
+    @Override
+    public void preallocate(long size) throws IOException {
+        if (size > preallocated && size > position
+                && allocate(new File(file), Math.max(position, preallocated), size)) {
+            preallocated = size;
+        }
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            unmap();
+            if (channel.size() > position) {
+                channel.truncate(position);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
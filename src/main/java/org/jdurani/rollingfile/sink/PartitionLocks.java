@@ -0,0 +1,24 @@
+package org.jdurani.rollingfile.sink;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Locks of partitions held while committed files of a partition are deleted or replaced, so that
+ * {@link FileRetention} and {@link FileCompactor} never change files of one partition at the same time.
+ */
+public class PartitionLocks {
+
+    private final Map<TopicPartition, Object> locks = new ConcurrentHashMap<>();
+
+    /**
+     * @param tp partition
+     *
+     * @return lock of the partition, the same for all calls
+     */
+    public Object lockFor(TopicPartition tp) {
+        return locks.computeIfAbsent(tp, t -> new Object());
+    }
+}
@@ -0,0 +1,231 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Output stream buffering data in buffers drawn from {@link WriteBufferPool} and writing them to
+ * {@link FileChannel} with gathering writes.
+ * <p>
+ * Buffers are kept until {@link #flush()}, {@link #close()} or {@link #spill()} by another stream of the pool. If
+ * pool has no buffer left, data already buffered by this stream are written out and the buffers are reused; if this
+ * stream does not hold any buffer, data are written to the channel directly. Not thread safe - callers must
+ * synchronize; only {@link #spill()} can be called from any thread.
+ */
+public class PooledFileOutputStream extends FileChannelOutputStream {
+
+    private final FileChannel channel;
+    private final File file;
+    private final WriteBufferPool pool;
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+    private final byte[] single = new byte[1];
+    private final ReentrantLock lock = new ReentrantLock();
+    private ByteBuffer[] gather = new ByteBuffer[0];
+    private ByteBuffer current;
+    private long position;
+    private long preallocated;
+    private volatile boolean spillRequested;
+    private IOException spillError;
+
+    /**
+     * New instance.
+     *
+     * @param channel channel to write to
+     * @param file file of the channel
+     * @param pool pool to draw buffers from
+     */
+    public PooledFileOutputStream(FileChannel channel, File file, WriteBufferPool pool) {
+        this.channel = channel;
+        this.file = file;
+        this.pool = pool;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        lock.lock();
+        try {
+            checkSpillError();
+            if (spillRequested) {
+                drain(true);
+            }
+            position += len;
+            while (len > 0) {
+                if (current == null || !current.hasRemaining()) {
+                    nextBuffer();
+                    if (current == null) {
+                        writeFully(ByteBuffer.wrap(b, off, len));
+                        return;
+                    }
+                }
+                int n = Math.min(current.remaining(), len);
+                current.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set {@link #current} to next empty buffer or to {@code null} if there is none available.
+     *
+     * @throws IOException in case of error
+     */
+    private void nextBuffer() throws IOException {
+        ByteBuffer b = pool.acquire(this);
+        if (b != null) {
+            buffers.add(b);
+            current = b;
+        } else if (!buffers.isEmpty()) {
+            drain(false);
+        } else {
+            current = null;
+        }
+    }
+
+    /**
+     * Write all buffered data to the channel.
+     *
+     * @param release return buffers to the pool? if {@code false}, first buffer is kept for further writing and
+     *         others are returned to the pool
+     *
+     * @throws IOException in case of error
+     */
+    private void drain(boolean release) throws IOException {
+        spillRequested = false;
+        int n = buffers.size();
+        if (n == 0) {
+            return;
+        }
+        if (gather.length < n) {
+            gather = new ByteBuffer[n];
+        }
+        for (int i = 0; i < n; i++) {
+            ByteBuffer b = buffers.get(i);
+            b.flip();
+            gather[i] = b;
+        }
+        long remaining = 0;
+        for (int i = 0; i < n; i++) {
+            remaining += gather[i].remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(gather, 0, n);
+        }
+        for (int i = 0; i < n; i++) {
+            gather[i] = null;
+        }
+        int keep = release ? 0 : 1;
+        for (int i = n - 1; i >= keep; i--) {
+            pool.release(this, buffers.remove(i));
+        }
+        current = buffers.isEmpty() ? null : buffers.get(0);
+        if (current != null) {
+            current.clear();
+        }
+    }
+
+    /**
+     * @param b buffer to write to channel
+     *
+     * @throws IOException in case of error
+     */
+    private void writeFully(ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            channel.write(b);
+        }
+    }
+
+    /**
+     * Write buffered data and return buffers to the pool. Can be called from any thread. If this stream is being
+     * written right now, spill is only requested and done on its next write so that caller is never blocked. Error of
+     * the write is thrown by the next operation of this stream, not to the caller.
+     *
+     * @return {@code true} if buffers were returned to the pool, {@code false} if spill was only requested
+     */
+    public boolean spill() {
+        if (!lock.tryLock()) {
+            spillRequested = true;
+            return false;
+        }
+        try {
+            if (spillError == null) {
+                drain(true);
+            }
+            return true;
+        } catch (IOException e) {
+            spillError = e;
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @throws IOException error of the last {@link #spill()} by another thread
+     */
+    private void checkSpillError() throws IOException {
+        if (spillError != null) {
+            throw new IOException("Spill of " + file + " failed", spillError);
+        }
+    }
+
+    @Override
+    public void preallocate(long size) throws IOException {
+        if (size > preallocated && size > position && allocate(file, Math.max(position, preallocated), size)) {
+            preallocated = size;
+        }
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Write buffered data to the channel and return all buffers to the pool.
+     *
+     * @throws IOException in case of error
+     */
+    @Override
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            checkSpillError();
+            drain(true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            flush();
+            if (preallocated > position) {
+                channel.truncate(position);
+            }
+        } finally {
+            for (ByteBuffer b : buffers) {
+                pool.release(this, b);
+            }
+            buffers.clear();
+            current = null;
+            lock.unlock();
+            channel.close();
+        }
+    }
+}
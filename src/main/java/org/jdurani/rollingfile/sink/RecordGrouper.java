@@ -0,0 +1,122 @@
+package org.jdurani.rollingfile.sink;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+/**
+ * Groups records of one batch by partition. Partitions of each topic are looked up in array indexed by partition
+ * number and {@link TopicPartition} of each partition is created once, so that grouping does not allocate per
+ * record. Not thread safe.
+ */
+class RecordGrouper {
+
+    private static final Group[] NO_GROUPS = new Group[0];
+
+    private final Map<String, Group[]> topics = new HashMap<>();
+    private final List<Group> groups = new ArrayList<>();
+    private String lastTopic;
+    private Group[] lastGroups;
+
+    /**
+     * @param records records of a batch
+     *
+     * @return groups of records by partition, in order of the first record of each partition; records of each group
+     *         keep their order. Returned list is valid until the next call, lists of records are not reused.
+     */
+    List<Group> group(Collection<SinkRecord> records) {
+        for (Group g : groups) {
+            g.batch = null;
+        }
+        groups.clear();
+        for (SinkRecord r : records) {
+            Group g = groupFor(r.topic(), r.kafkaPartition());
+            if (g.records == null) {
+                g.records = new ArrayList<>();
+                groups.add(g);
+            }
+            g.records.add(r);
+        }
+        for (Group g : groups) {
+            g.batch = g.records;
+            g.records = null;
+        }
+        return groups;
+    }
+
+    /**
+     * @param topic topic
+     * @param partition partition
+     *
+     * @return group of the partition
+     */
+    private Group groupFor(String topic, int partition) {
+        Group[] partitions;
+        if (topic.equals(lastTopic)) {
+            partitions = lastGroups;
+        } else {
+            partitions = topics.getOrDefault(topic, NO_GROUPS);
+        }
+        if (partition >= partitions.length) {
+            Group[] grown = new Group[Math.max(partition + 1, partitions.length * 2)];
+            System.arraycopy(partitions, 0, grown, 0, partitions.length);
+            partitions = grown;
+            topics.put(topic, partitions);
+        }
+        lastTopic = topic;
+        lastGroups = partitions;
+        Group g = partitions[partition];
+        if (g == null) {
+            g = new Group(new TopicPartition(topic, partition));
+            partitions[partition] = g;
+        }
+        return g;
+    }
+
+    /**
+     * Forget partitions, e.g. when they are revoked.
+     *
+     * @param partitions partitions to forget
+     */
+    void remove(Collection<TopicPartition> partitions) {
+        for (TopicPartition tp : partitions) {
+            Group[] groups = topics.get(tp.topic());
+            if (groups != null && tp.partition() < groups.length) {
+                groups[tp.partition()] = null;
+            }
+        }
+    }
+
+    /**
+     * Records of one partition.
+     */
+    static final class Group {
+
+        private final TopicPartition tp;
+        private List<SinkRecord> records;
+        private List<SinkRecord> batch;
+
+        private Group(TopicPartition tp) {
+            this.tp = tp;
+        }
+
+        /**
+         * @return topic partition
+         */
+        TopicPartition getTopicPartition() {
+            return tp;
+        }
+
+        /**
+         * @return records of the partition in the last grouped batch
+         */
+        List<SinkRecord> getRecords() {
+            return batch;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.kafka.common.TopicPartition;
+import org.jdurani.rollingfile.format.FileFooter;
+
+/**
+ * Notified about committed files rewritten by {@link FileCompactor} or deleted by {@link FileRetention} (or by
+ * compactor if none of their records is kept). Called by thread of the compactor or of the task enforcing retention,
+ * under {@link PartitionLocks lock of the partition}.
+ */
+public interface RewriteListener {
+
+    /**
+     * Listener which ignores rewrites.
+     */
+    RewriteListener NONE = (tp, file, bytes, summary, replaced) -> {
+    };
+
+    /**
+     * Committed files were replaced by new committed file. Called after the new file is committed and the replaced
+     * files (and their indexes) are deleted.
+     *
+     * @param tp partition of the files
+     * @param file new committed file, it may replace the first replaced file (which is then in replaced files too)
+     * @param bytes size of the new file
+     * @param summary summary of records of the new file, its checksum is {@code 0} if the file has no footer
+     * @param replaced deleted files ordered by their base offsets
+     */
+    void filesRewritten(TopicPartition tp, File file, long bytes, FileFooter summary, List<File> replaced);
+
+    /**
+     * Committed files were deleted (together with their indexes) without replacement.
+     *
+     * @param tp partition of the files
+     * @param deleted deleted files ordered by their base offsets
+     */
+    default void filesDeleted(TopicPartition tp, List<File> deleted) {
+    }
+
+    /**
+     * @param listeners listeners
+     *
+     * @return listener notifying all given listeners
+     */
+    static RewriteListener all(RewriteListener... listeners) {
+        return new RewriteListener() {
+
+            @Override
+            public void filesRewritten(TopicPartition tp, File file, long bytes, FileFooter summary,
+                    List<File> replaced) {
+                for (RewriteListener l : listeners) {
+                    l.filesRewritten(tp, file, bytes, summary, replaced);
+                }
+            }
+
+            @Override
+            public void filesDeleted(TopicPartition tp, List<File> deleted) {
+                for (RewriteListener l : listeners) {
+                    l.filesDeleted(tp, deleted);
+                }
+            }
+        };
+    }
+}
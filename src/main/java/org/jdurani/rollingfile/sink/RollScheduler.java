@@ -0,0 +1,214 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed timing wheel running periodic tasks of all writers of one task on a single thread.
+ * <p>
+ * Each periodic task gets random phase (jitter) so that tasks registered at the same time with the same period do not
+ * fire in the same millisecond. Registrations and cancellations are cheap and can be done from any thread.
+ */
+public class RollScheduler implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RollScheduler.class);
+    private static final int WHEEL_SIZE = 512;
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    private final long tickMs;
+    private final long jitterMs;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final List<Registration>[] wheel = new List[WHEEL_SIZE];
+    private final Queue<Registration> pending = new ConcurrentLinkedQueue<>();
+    private final List<Registration> due = new ArrayList<>();
+    private final long startNanos = System.nanoTime();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long tick;
+
+    /**
+     * New instance. Worker thread is started immediately.
+     *
+     * @param tickMs duration of one tick of the wheel - precision of the scheduler
+     * @param jitterMs maximum random delay added to the first run of each periodic task
+     */
+    public RollScheduler(long tickMs, long jitterMs) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMs);
+        }
+        this.tickMs = tickMs;
+        this.jitterMs = jitterMs;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        worker = new Thread(this::run, "rolling-file-roll-scheduler");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Schedule periodic task. First run is delayed by {@code periodMs} plus random jitter of at most
+     * {@code min(jitterMs, periodMs)}.
+     *
+     * @param task task to run
+     * @param periodMs period in milliseconds
+     *
+     * @return registration which can be used to cancel the task
+     */
+    public Registration schedule(Runnable task, long periodMs) {
+        if (periodMs <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + periodMs);
+        }
+        long maxJitter = Math.min(jitterMs, periodMs);
+        long jitter = maxJitter > 0 ? ThreadLocalRandom.current().nextLong(maxJitter) : 0L;
+        Registration r = new Registration(task, periodMs, saturatedAdd(nowMs(), saturatedAdd(periodMs, jitter)));
+        pending.add(r);
+        return r;
+    }
+
+    /**
+     * Worker loop.
+     */
+    private void run() {
+        while (running) {
+            long deadline = (tick + 1) * tickMs;
+            long sleep = deadline - nowMs();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                }
+                continue;
+            }
+            transferPending();
+            expire(wheel[(int) (tick & MASK)]);
+            tick++;
+        }
+    }
+
+    /**
+     * Move newly registered tasks to the wheel.
+     */
+    private void transferPending() {
+        Registration r;
+        while ((r = pending.poll()) != null) {
+            if (!r.cancelled) {
+                place(r);
+            }
+        }
+    }
+
+    /**
+     * Run tasks from bucket which are due and reschedule them.
+     *
+     * @param bucket bucket of current tick
+     */
+    private void expire(List<Registration> bucket) {
+        for (int i = bucket.size() - 1; i >= 0; i--) {
+            Registration r = bucket.get(i);
+            if (r.cancelled || r.rounds <= 0) {
+                bucket.set(i, bucket.get(bucket.size() - 1));
+                bucket.remove(bucket.size() - 1);
+                if (!r.cancelled) {
+                    due.add(r);
+                }
+            } else {
+                r.rounds--;
+            }
+        }
+        for (Registration r : due) {
+            try {
+                r.task.run();
+            } catch (Throwable t) {
+                LOG.error("Error running scheduled task", t);
+            }
+            if (!r.cancelled) {
+                r.deadline = saturatedAdd(r.deadline, r.periodMs);
+                pending.add(r); // placed on next tick, current bucket is already processed
+            }
+        }
+        due.clear();
+    }
+
+    /**
+     * @param r registration to put to the wheel according to its deadline
+     */
+    private void place(Registration r) {
+        long ticks = Math.max(r.deadline / tickMs, tick);
+        r.rounds = (ticks - tick) / WHEEL_SIZE;
+        wheel[(int) (ticks & MASK)].add(r);
+    }
+
+    /**
+     * @return milliseconds since start of this scheduler
+     */
+    private long nowMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @param a first
+     * @param b second
+     *
+     * @return sum or {@link Long#MAX_VALUE} on overflow
+     */
+    private static long saturatedAdd(long a, long b) {
+        long r = a + b;
+        return ((a ^ r) & (b ^ r)) < 0 ? Long.MAX_VALUE : r;
+    }
+
+    /**
+     * Stop worker thread. Registered tasks will not run anymore.
+     */
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Registered periodic task.
+     */
+    public static class Registration {
+
+        private final Runnable task;
+        private final long periodMs;
+        private long deadline;
+        private long rounds;
+        private volatile boolean cancelled;
+
+        /**
+         * @param task task
+         * @param periodMs period
+         * @param deadline first deadline in ms since start of scheduler
+         */
+        private Registration(Runnable task, long periodMs, long deadline) {
+            this.task = task;
+            this.periodMs = periodMs;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel task. It does not run anymore and it is removed from the wheel when its bucket is visited next time.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
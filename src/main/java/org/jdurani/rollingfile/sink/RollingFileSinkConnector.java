@@ -17,16 +17,70 @@ import org.jdurani.rollingfile.VersionHolder;
  */
 public class RollingFileSinkConnector extends SinkConnector {
 
+    private String name;
     private String dir;
+    private String layout;
     private long flushCount;
     private long flushMs;
+    private long flushBytes;
+    private long flushJitterMs;
+    private long bufferMemory;
+    private int bufferSize;
+    private String compression;
+    private String format;
+    private int ioThreads;
+    private int ioQueueSize;
+    private boolean fsync;
+    private long fsyncWindowMs;
+    private long preallocateBytes;
+    private long indexInterval;
+    private boolean footer;
+    private int checksumBlockBytes;
+    private int mmapRegionBytes;
+    private int maxOpenFiles;
+    private long writerIdleMs;
+    private long compactionIntervalMs;
+    private long tombstoneRetentionMs;
+    private long mergeTargetBytes;
+    private long mergeIntervalMs;
+    private long retentionMs;
+    private long retentionBytes;
+    private boolean manifest;
+    private boolean dropCache;
 
     @Override
     public void start(Map<String, String> props) {
         AbstractConfig c = new AbstractConfig(config(), props);
+        name = props.get(RollingFileConfig.CONNECTOR_NAME_CONFIG);
         dir = c.getString(RollingFileConfig.ROLLING_FILE_DIRECTORY_CONFIG);
+        layout = c.getString(RollingFileConfig.ROLLING_FILE_LAYOUT_CONFIG);
         flushCount = c.getLong(RollingFileConfig.ROLLING_FILE_FLUSH_COUNT_CONFIG);
         flushMs = c.getLong(RollingFileConfig.ROLLING_FILE_FLUSH_MS_CONFIG);
+        flushBytes = c.getLong(RollingFileConfig.ROLLING_FILE_FLUSH_BYTES_CONFIG);
+        flushJitterMs = c.getLong(RollingFileConfig.ROLLING_FILE_FLUSH_JITTER_MS_CONFIG);
+        bufferMemory = c.getLong(RollingFileConfig.ROLLING_FILE_BUFFER_MEMORY_CONFIG);
+        bufferSize = c.getInt(RollingFileConfig.ROLLING_FILE_BUFFER_SIZE_CONFIG);
+        compression = c.getString(RollingFileConfig.ROLLING_FILE_COMPRESSION_CONFIG);
+        format = c.getString(RollingFileConfig.ROLLING_FILE_FORMAT_CONFIG);
+        ioThreads = c.getInt(RollingFileConfig.ROLLING_FILE_IO_THREADS_CONFIG);
+        ioQueueSize = c.getInt(RollingFileConfig.ROLLING_FILE_IO_QUEUE_SIZE_CONFIG);
+        fsync = c.getBoolean(RollingFileConfig.ROLLING_FILE_FSYNC_CONFIG);
+        fsyncWindowMs = c.getLong(RollingFileConfig.ROLLING_FILE_FSYNC_WINDOW_MS_CONFIG);
+        preallocateBytes = c.getLong(RollingFileConfig.ROLLING_FILE_PREALLOCATE_BYTES_CONFIG);
+        indexInterval = c.getLong(RollingFileConfig.ROLLING_FILE_INDEX_INTERVAL_CONFIG);
+        footer = c.getBoolean(RollingFileConfig.ROLLING_FILE_FOOTER_CONFIG);
+        checksumBlockBytes = c.getInt(RollingFileConfig.ROLLING_FILE_CHECKSUM_BLOCK_BYTES_CONFIG);
+        mmapRegionBytes = c.getInt(RollingFileConfig.ROLLING_FILE_MMAP_REGION_BYTES_CONFIG);
+        maxOpenFiles = c.getInt(RollingFileConfig.ROLLING_FILE_MAX_OPEN_FILES_CONFIG);
+        writerIdleMs = c.getLong(RollingFileConfig.ROLLING_FILE_WRITER_IDLE_MS_CONFIG);
+        compactionIntervalMs = c.getLong(RollingFileConfig.ROLLING_FILE_COMPACTION_INTERVAL_MS_CONFIG);
+        tombstoneRetentionMs = c.getLong(RollingFileConfig.ROLLING_FILE_COMPACTION_TOMBSTONE_RETENTION_MS_CONFIG);
+        mergeTargetBytes = c.getLong(RollingFileConfig.ROLLING_FILE_MERGE_TARGET_BYTES_CONFIG);
+        mergeIntervalMs = c.getLong(RollingFileConfig.ROLLING_FILE_MERGE_INTERVAL_MS_CONFIG);
+        retentionMs = c.getLong(RollingFileConfig.ROLLING_FILE_RETENTION_MS_CONFIG);
+        retentionBytes = c.getLong(RollingFileConfig.ROLLING_FILE_RETENTION_BYTES_CONFIG);
+        manifest = c.getBoolean(RollingFileConfig.ROLLING_FILE_MANIFEST_CONFIG);
+        dropCache = c.getBoolean(RollingFileConfig.ROLLING_FILE_DROP_CACHE_CONFIG);
     }
 
     @Override
@@ -39,9 +93,37 @@ public class RollingFileSinkConnector extends SinkConnector {
         List<Map<String, String>> configs = new ArrayList<>(maxTasks);
         for (int i = 0; i < maxTasks; i++) {
             Map<String, String> c = new HashMap<>();
+            c.put(RollingFileConfig.CONNECTOR_NAME_CONFIG, name);
             c.put(RollingFileConfig.ROLLING_FILE_DIRECTORY_CONFIG, dir);
+            c.put(RollingFileConfig.ROLLING_FILE_LAYOUT_CONFIG, layout);
             c.put(RollingFileConfig.ROLLING_FILE_FLUSH_COUNT_CONFIG, Long.toString(flushCount));
             c.put(RollingFileConfig.ROLLING_FILE_FLUSH_MS_CONFIG, Long.toString(flushMs));
+            c.put(RollingFileConfig.ROLLING_FILE_FLUSH_BYTES_CONFIG, Long.toString(flushBytes));
+            c.put(RollingFileConfig.ROLLING_FILE_FLUSH_JITTER_MS_CONFIG, Long.toString(flushJitterMs));
+            c.put(RollingFileConfig.ROLLING_FILE_BUFFER_MEMORY_CONFIG, Long.toString(bufferMemory));
+            c.put(RollingFileConfig.ROLLING_FILE_BUFFER_SIZE_CONFIG, Integer.toString(bufferSize));
+            c.put(RollingFileConfig.ROLLING_FILE_COMPRESSION_CONFIG, compression);
+            c.put(RollingFileConfig.ROLLING_FILE_FORMAT_CONFIG, format);
+            c.put(RollingFileConfig.ROLLING_FILE_IO_THREADS_CONFIG, Integer.toString(ioThreads));
+            c.put(RollingFileConfig.ROLLING_FILE_IO_QUEUE_SIZE_CONFIG, Integer.toString(ioQueueSize));
+            c.put(RollingFileConfig.ROLLING_FILE_FSYNC_CONFIG, Boolean.toString(fsync));
+            c.put(RollingFileConfig.ROLLING_FILE_FSYNC_WINDOW_MS_CONFIG, Long.toString(fsyncWindowMs));
+            c.put(RollingFileConfig.ROLLING_FILE_PREALLOCATE_BYTES_CONFIG, Long.toString(preallocateBytes));
+            c.put(RollingFileConfig.ROLLING_FILE_INDEX_INTERVAL_CONFIG, Long.toString(indexInterval));
+            c.put(RollingFileConfig.ROLLING_FILE_FOOTER_CONFIG, Boolean.toString(footer));
+            c.put(RollingFileConfig.ROLLING_FILE_CHECKSUM_BLOCK_BYTES_CONFIG, Integer.toString(checksumBlockBytes));
+            c.put(RollingFileConfig.ROLLING_FILE_MMAP_REGION_BYTES_CONFIG, Integer.toString(mmapRegionBytes));
+            c.put(RollingFileConfig.ROLLING_FILE_MAX_OPEN_FILES_CONFIG, Integer.toString(maxOpenFiles));
+            c.put(RollingFileConfig.ROLLING_FILE_WRITER_IDLE_MS_CONFIG, Long.toString(writerIdleMs));
+            c.put(RollingFileConfig.ROLLING_FILE_COMPACTION_INTERVAL_MS_CONFIG, Long.toString(compactionIntervalMs));
+            c.put(RollingFileConfig.ROLLING_FILE_COMPACTION_TOMBSTONE_RETENTION_MS_CONFIG,
+                    Long.toString(tombstoneRetentionMs));
+            c.put(RollingFileConfig.ROLLING_FILE_MERGE_TARGET_BYTES_CONFIG, Long.toString(mergeTargetBytes));
+            c.put(RollingFileConfig.ROLLING_FILE_MERGE_INTERVAL_MS_CONFIG, Long.toString(mergeIntervalMs));
+            c.put(RollingFileConfig.ROLLING_FILE_RETENTION_MS_CONFIG, Long.toString(retentionMs));
+            c.put(RollingFileConfig.ROLLING_FILE_RETENTION_BYTES_CONFIG, Long.toString(retentionBytes));
+            c.put(RollingFileConfig.ROLLING_FILE_MANIFEST_CONFIG, Boolean.toString(manifest));
+            c.put(RollingFileConfig.ROLLING_FILE_DROP_CACHE_CONFIG, Boolean.toString(dropCache));
             configs.add(c);
         }
         return configs;
@@ -1,10 +1,15 @@
 package org.jdurani.rollingfile.sink;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
@@ -16,6 +21,10 @@ import org.jdurani.rollingfile.VersionHolder;
 import org.jdurani.rollingfile.exception.CloseException;
 import org.jdurani.rollingfile.exception.FlushException;
 import org.jdurani.rollingfile.exception.WriteException;
+import org.jdurani.rollingfile.format.CompressionCodec;
+import org.jdurani.rollingfile.format.FileLayout;
+import org.jdurani.rollingfile.format.PageCache;
+import org.jdurani.rollingfile.format.RecordFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,12 +34,41 @@ import org.slf4j.LoggerFactory;
 public class RollingFileSinkTask extends SinkTask {
 
     private static final Logger LOG = LoggerFactory.getLogger(RollingFileSinkTask.class);
+    private static final long ROLL_SCHEDULER_TICK_MS = 10L;
 
     private String dir;
+    private FileLayout layout;
     private long flushCount;
     private long flushMs;
+    private long flushBytes;
+    private long preallocateBytes;
+    private long indexInterval;
+    private boolean footer;
+    private int checksumBlockBytes;
+    private int mmapRegionBytes;
+    private int maxOpenFiles;
+    private long writerIdleMs;
+    private RecordFormat format;
+    private CompressionCodec codec;
+    private WriteBufferPool bufferPool;
+    private RollScheduler rollScheduler;
+    private ShardedIoExecutor ioExecutor;
+    private FileCommitter committer;
+    private SinkMetrics metrics;
+    private FileCompactor compactor;
+    private FileRetention retention;
+    private ManifestAppender manifest;
+    /**
+     * Page cache to drop pages of committed files from, {@link PageCache#NONE} to keep them.
+     */
+    private PageCache pageCache = PageCache.NONE;
 
     private final Map<TopicPartition, RollingFileWriter> writeInfoMap = new HashMap<>();
+    private final RecordGrouper grouper = new RecordGrouper();
+    /**
+     * Persisted offsets of partitions whose writers were released after being idle.
+     */
+    private final Map<TopicPartition, Long> reclaimedOffsets = new HashMap<>();
 
     @Override
     public String version() {
@@ -40,8 +78,60 @@ public class RollingFileSinkTask extends SinkTask {
     @Override
     public void start(Map<String, String> props) {
         dir = props.get(RollingFileConfig.ROLLING_FILE_DIRECTORY_CONFIG);
+        metrics = SinkMetrics.jmx(props.get(RollingFileConfig.CONNECTOR_NAME_CONFIG));
+        String layoutName = props.get(RollingFileConfig.ROLLING_FILE_LAYOUT_CONFIG);
+        layout = layoutName == null ? FileLayout.FLAT : FileLayout.forName(layoutName);
         flushCount = Long.parseLong(props.get(RollingFileConfig.ROLLING_FILE_FLUSH_COUNT_CONFIG));
         flushMs = Long.parseLong(props.get(RollingFileConfig.ROLLING_FILE_FLUSH_MS_CONFIG));
+        flushBytes = Long.parseLong(props.get(RollingFileConfig.ROLLING_FILE_FLUSH_BYTES_CONFIG));
+        preallocateBytes = Long.parseLong(props.get(RollingFileConfig.ROLLING_FILE_PREALLOCATE_BYTES_CONFIG));
+        indexInterval = Long.parseLong(props.get(RollingFileConfig.ROLLING_FILE_INDEX_INTERVAL_CONFIG));
+        footer = Boolean.parseBoolean(props.get(RollingFileConfig.ROLLING_FILE_FOOTER_CONFIG));
+        checksumBlockBytes = Integer.parseInt(props.get(RollingFileConfig.ROLLING_FILE_CHECKSUM_BLOCK_BYTES_CONFIG));
+        mmapRegionBytes = Integer.parseInt(props.get(RollingFileConfig.ROLLING_FILE_MMAP_REGION_BYTES_CONFIG));
+        maxOpenFiles = Integer.parseInt(props.get(RollingFileConfig.ROLLING_FILE_MAX_OPEN_FILES_CONFIG));
+        writerIdleMs = Long.parseLong(props.get(RollingFileConfig.ROLLING_FILE_WRITER_IDLE_MS_CONFIG));
+        format = RecordFormat.forName(props.get(RollingFileConfig.ROLLING_FILE_FORMAT_CONFIG));
+        codec = CompressionCodec.forName(props.get(RollingFileConfig.ROLLING_FILE_COMPRESSION_CONFIG));
+        bufferPool = new WriteBufferPool(Long.parseLong(props.get(RollingFileConfig.ROLLING_FILE_BUFFER_MEMORY_CONFIG)),
+                Integer.parseInt(props.get(RollingFileConfig.ROLLING_FILE_BUFFER_SIZE_CONFIG)));
+        rollScheduler = new RollScheduler(ROLL_SCHEDULER_TICK_MS,
+                Long.parseLong(props.get(RollingFileConfig.ROLLING_FILE_FLUSH_JITTER_MS_CONFIG)));
+        committer = Boolean.parseBoolean(props.get(RollingFileConfig.ROLLING_FILE_FSYNC_CONFIG))
+                ? new GroupFileCommitter(Long.parseLong(props.get(RollingFileConfig.ROLLING_FILE_FSYNC_WINDOW_MS_CONFIG)))
+                : DirectFileCommitter.INSTANCE;
+        int ioThreads = Integer.parseInt(props.get(RollingFileConfig.ROLLING_FILE_IO_THREADS_CONFIG));
+        if (ioThreads > 0) {
+            ioExecutor = new ShardedIoExecutor(ioThreads,
+                    Integer.parseInt(props.get(RollingFileConfig.ROLLING_FILE_IO_QUEUE_SIZE_CONFIG)));
+        }
+        if (Boolean.parseBoolean(props.get(RollingFileConfig.ROLLING_FILE_MANIFEST_CONFIG))) {
+            manifest = new ManifestAppender(dir, layout,
+                    Boolean.parseBoolean(props.get(RollingFileConfig.ROLLING_FILE_FSYNC_CONFIG)));
+        }
+        PartitionLocks partitionLocks = new PartitionLocks();
+        long retentionMs = Long.parseLong(props.get(RollingFileConfig.ROLLING_FILE_RETENTION_MS_CONFIG));
+        long retentionBytes = Long.parseLong(props.get(RollingFileConfig.ROLLING_FILE_RETENTION_BYTES_CONFIG));
+        if (retentionMs >= 0 || retentionBytes >= 0) {
+            retention = new FileRetention(dir, layout, retentionMs, retentionBytes, partitionLocks,
+                    manifest == null ? RewriteListener.NONE : manifest);
+        }
+        if (Boolean.parseBoolean(props.get(RollingFileConfig.ROLLING_FILE_DROP_CACHE_CONFIG))) {
+            pageCache = PageCache.get(true);
+            if (!pageCache.isSupported()) {
+                LOG.warn("Dropping pages from page cache is not supported (it requires Linux and JNA), pages are kept");
+            }
+        }
+        long compactionIntervalMs = Long.parseLong(props.get(RollingFileConfig.ROLLING_FILE_COMPACTION_INTERVAL_MS_CONFIG));
+        long mergeTargetBytes = Long.parseLong(props.get(RollingFileConfig.ROLLING_FILE_MERGE_TARGET_BYTES_CONFIG));
+        if (compactionIntervalMs > 0 || mergeTargetBytes > 0) {
+            compactor = new FileCompactor(dir, layout, indexInterval, footer, checksumBlockBytes,
+                    Long.parseLong(props.get(RollingFileConfig.ROLLING_FILE_COMPACTION_TOMBSTONE_RETENTION_MS_CONFIG)),
+                    compactionIntervalMs, mergeTargetBytes,
+                    Long.parseLong(props.get(RollingFileConfig.ROLLING_FILE_MERGE_INTERVAL_MS_CONFIG)),
+                    partitionLocks, RewriteListener.all(retention == null ? RewriteListener.NONE : retention,
+                            manifest == null ? RewriteListener.NONE : manifest));
+        }
     }
 
     @Override
@@ -50,16 +140,87 @@ public class RollingFileSinkTask extends SinkTask {
             return;
         }
         try {
-            for (SinkRecord r : records) {
-                TopicPartition tp = new TopicPartition(r.topic(), r.kafkaPartition());
-                writeInfoMap.computeIfAbsent(tp, this::getWriter)
-                        .write(r);
+            for (RecordGrouper.Group g : grouper.group(records)) {
+                TopicPartition tp = g.getTopicPartition();
+                List<SinkRecord> batch = g.getRecords();
+                RollingFileWriter w = writeInfoMap.computeIfAbsent(tp, this::getWriter);
+                if (maxOpenFiles > 0) {
+                    limitOpenFiles(w);
+                }
+                if (ioExecutor == null) {
+                    w.writeBatch(batch);
+                } else {
+                    // writes and closes of the writer run on the I/O thread of the partition, in order
+                    ioExecutor.execute(tp, batch.size(), () -> w.writeBatch(batch));
+                }
             }
         } catch (IOException e) {
             throw new WriteException("Error writing data", e);
         }
     }
 
+    /**
+     * Roll files of least recently written partitions, so that writer can open a new file without exceeding
+     * {@link RollingFileConfig#ROLLING_FILE_MAX_OPEN_FILES_CONFIG}. Evicted writers are kept until they are idle.
+     * Files are closed on I/O threads of their partitions (if any) after batches queued before.
+     *
+     * @param opening writer which is going to write
+     *
+     * @throws IOException in case of error
+     */
+    private void limitOpenFiles(RollingFileWriter opening) throws IOException {
+        if (opening.isOpen()) {
+            return;
+        }
+        List<Map.Entry<TopicPartition, RollingFileWriter>> open = new ArrayList<>();
+        for (Map.Entry<TopicPartition, RollingFileWriter> e : writeInfoMap.entrySet()) {
+            if (e.getValue() != opening && e.getValue().isOpen()) {
+                open.add(e);
+            }
+        }
+        if (open.size() < maxOpenFiles) {
+            return;
+        }
+        open.sort(Comparator.comparingLong(e -> e.getValue().getLastWriteMs()));
+        for (int i = 0; i <= open.size() - maxOpenFiles; i++) {
+            LOG.debug("Rolling least recently written file - limit of {} open files reached", maxOpenFiles);
+            RollingFileWriter w = open.get(i).getValue();
+            if (ioExecutor == null) {
+                w.close();
+            } else {
+                ioExecutor.execute(open.get(i).getKey(), 0, w::close);
+            }
+        }
+    }
+
+    /**
+     * Release writers which did not write for {@link RollingFileConfig#ROLLING_FILE_WRITER_IDLE_MS_CONFIG}. Their
+     * persisted offsets are remembered for {@link #preCommit(Map)}.
+     */
+    private void reclaimIdleWriters() {
+        if (writerIdleMs <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Map<TopicPartition, RollingFileWriter> idle = new HashMap<>();
+        writeInfoMap.forEach((tp, w) -> {
+            if (now - w.getLastWriteMs() >= writerIdleMs) {
+                idle.put(tp, w);
+            }
+        });
+        if (idle.isEmpty()) {
+            return;
+        }
+        LOG.debug("Releasing {} idle writers", idle.size());
+        destroyWriters(idle.keySet());
+        idle.forEach((tp, w) -> {
+            long offset = w.getPersistedOffset();
+            if (offset != RollingFileWriter.NO_OFFSET) {
+                reclaimedOffsets.put(tp, offset);
+            }
+        });
+    }
+
     /**
      * This method exists for better testing and mocking.
      *
@@ -68,12 +229,48 @@ public class RollingFileSinkTask extends SinkTask {
      * @return writer
      */
     RollingFileWriter getWriter(TopicPartition tp) {
-        return new RollingFileWriter(tp, dir, flushCount, flushMs);
+        return new RollingFileWriter(tp, dir, layout, flushCount, flushMs, flushBytes, preallocateBytes, indexInterval, footer, checksumBlockBytes,
+                mmapRegionBytes, format, codec, bufferPool,
+                rollScheduler, committer, metrics == null ? WriterMetrics.NONE : metrics.forPartition(tp),
+                CommitListener.all(retention == null ? CommitListener.NONE : retention.forPartition(tp),
+                        manifest == null ? CommitListener.NONE : manifest.forPartition(tp),
+                        pageCache.isSupported() ? new DropBehindListener(pageCache) : CommitListener.NONE));
     }
 
     @Override
     public void stop() {
-        close(null);
+        try {
+            if (compactor != null) {
+                compactor.close();
+                compactor = null;
+            }
+            close(null);
+        } finally {
+            if (rollScheduler != null) {
+                rollScheduler.close();
+                rollScheduler = null;
+            }
+            if (ioExecutor != null) {
+                ioExecutor.close();
+                ioExecutor = null;
+            }
+            if (committer != null) {
+                try {
+                    committer.close();
+                } catch (IOException e) {
+                    LOG.error("Error closing committer", e);
+                }
+                committer = null;
+            }
+            if (manifest != null) {
+                manifest.close();
+                manifest = null;
+            }
+            if (metrics != null) {
+                metrics.close();
+                metrics = null;
+            }
+        }
     }
 
     @Override
@@ -83,6 +280,20 @@ public class RollingFileSinkTask extends SinkTask {
 
     @Override
     public void flush(Map<TopicPartition, OffsetAndMetadata> currentOffsets) {
+        if (ioExecutor != null) {
+            Collection<TopicPartition> toFlush = currentOffsets == null ? writeInfoMap.keySet() : currentOffsets.keySet();
+            Map<TopicPartition, CompletableFuture<Void>> futures = new HashMap<>();
+            toFlush.forEach(tp -> {
+                RollingFileWriter w = writeInfoMap.get(tp);
+                if (w != null) {
+                    futures.put(tp, submit(tp, w::flush));
+                }
+            });
+            if (!await(futures, "flushing")) {
+                throw new FlushException("Error flushing files. See previous log.");
+            }
+            return;
+        }
         AtomicBoolean thrown = new AtomicBoolean(false);
         writeInfoMap.forEach((k, v) -> {
             try {
@@ -97,14 +308,117 @@ public class RollingFileSinkTask extends SinkTask {
         }
     }
 
+    /**
+     * Report offsets of records stored in committed files only - records in temporal files are not persisted yet.
+     * Partitions without committed files are not reported. Idle writers are released and files exceeding retention
+     * are deleted afterwards.
+     */
+    @Override
+    public Map<TopicPartition, OffsetAndMetadata> preCommit(Map<TopicPartition, OffsetAndMetadata> currentOffsets) {
+        flush(currentOffsets);
+        reclaimIdleWriters();
+        if (retention != null) {
+            retention.enforce();
+        }
+        Map<TopicPartition, OffsetAndMetadata> persisted = new HashMap<>();
+        currentOffsets.forEach((tp, current) -> {
+            RollingFileWriter w = writeInfoMap.get(tp);
+            long offset = w == null ? RollingFileWriter.NO_OFFSET : w.getPersistedOffset();
+            if (offset == RollingFileWriter.NO_OFFSET) {
+                offset = reclaimedOffsets.getOrDefault(tp, RollingFileWriter.NO_OFFSET);
+            }
+            if (offset != RollingFileWriter.NO_OFFSET) {
+                persisted.put(tp, offset < current.offset() ? new OffsetAndMetadata(offset, current.metadata()) : current);
+            }
+        });
+        return persisted;
+    }
+
+    /**
+     * Recover files left by previous run of assigned partitions and skip records already stored in them.
+     *
+     * @see RollingFileWriter#recover()
+     */
     @Override
     public void open(Collection<TopicPartition> partitions) {
-        // no-op
+        if (retention != null) {
+            try {
+                retention.add(partitions);
+            } catch (IOException e) {
+                throw new WriteException("Error listing files of " + partitions, e);
+            }
+        }
+        if (manifest != null) {
+            try {
+                manifest.add(partitions);
+            } catch (IOException e) {
+                throw new WriteException("Error appending files of " + partitions + " to manifests", e);
+            }
+        }
+        for (TopicPartition tp : partitions) {
+            if (writeInfoMap.containsKey(tp)) {
+                continue;
+            }
+            RollingFileWriter w = getWriter(tp);
+            writeInfoMap.put(tp, w);
+            long next;
+            try {
+                next = w.recover();
+            } catch (IOException e) {
+                throw new WriteException("Error recovering files of " + tp, e);
+            }
+            if (next != RollingFileWriter.NO_OFFSET) {
+                LOG.info("Records of {} before offset {} are already stored", tp, next);
+                context.offset(tp, next);
+            }
+        }
+        if (compactor != null) {
+            compactor.add(partitions);
+        }
     }
 
     @Override
     public void close(Collection<TopicPartition> partitions) {
         Collection<TopicPartition> toClose = partitions == null ? new HashSet<>(writeInfoMap.keySet()) : partitions;
+        if (partitions == null) {
+            reclaimedOffsets.clear();
+        } else {
+            reclaimedOffsets.keySet().removeAll(partitions);
+        }
+        if (compactor != null) {
+            compactor.remove(toClose);
+        }
+        destroyWriters(toClose);
+        if (retention != null) {
+            retention.remove(toClose);
+        }
+        if (manifest != null) {
+            manifest.remove(toClose);
+        }
+    }
+
+    /**
+     * Close files and destroy writers of partitions.
+     *
+     * @param toClose partitions
+     *
+     * @throws CloseException if any file is not closed
+     */
+    private void destroyWriters(Collection<TopicPartition> toClose) {
+        grouper.remove(toClose);
+        if (ioExecutor != null) {
+            Map<TopicPartition, CompletableFuture<Void>> futures = new HashMap<>();
+            toClose.forEach(tp -> {
+                RollingFileWriter w = writeInfoMap.remove(tp);
+                if (w != null) {
+                    futures.put(tp, submit(tp, w::destroy));
+                }
+            });
+            if (!await(futures, "closing")) {
+                throw new CloseException("Error closing files. See previous log.");
+            }
+            return;
+        }
         AtomicBoolean thrown = new AtomicBoolean(false);
         toClose.forEach(key -> {
             RollingFileWriter item = writeInfoMap.remove(key);
@@ -121,4 +435,54 @@ public class RollingFileSinkTask extends SinkTask {
             throw new CloseException("Error closing files. See previous log.");
         }
     }
+
+    /**
+     * Submit control task to I/O thread of the partition.
+     *
+     * @param tp topic-partition
+     * @param task task
+     *
+     * @return future of the task; failed future if task cannot be submitted
+     */
+    private CompletableFuture<Void> submit(TopicPartition tp, ShardedIoExecutor.IoTask task) {
+        try {
+            return ioExecutor.submit(tp, task);
+        } catch (IOException e) {
+            CompletableFuture<Void> f = new CompletableFuture<>();
+            f.completeExceptionally(e);
+            return f;
+        }
+    }
+
+    /**
+     * Wait for all tasks.
+     *
+     * @param futures futures of tasks by topic-partition
+     * @param action action for logging
+     *
+     * @return {@code true} if all tasks succeeded
+     */
+    private static boolean await(Map<TopicPartition, CompletableFuture<Void>> futures, String action) {
+        boolean ok = true;
+        boolean interrupted = false;
+        for (Map.Entry<TopicPartition, CompletableFuture<Void>> e : futures.entrySet()) {
+            while (true) {
+                try {
+                    e.getValue().get();
+                    break;
+                } catch (InterruptedException ex) {
+                    // files must be flushed or closed before offsets are committed or partition is reassigned
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    LOG.error("Error {} data of {}", action, e.getKey(), ex.getCause());
+                    ok = false;
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return ok;
+    }
 }
@@ -1,19 +1,39 @@
 package org.jdurani.rollingfile.sink;
 
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Paths;
-import java.util.Base64;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
 import org.apache.kafka.connect.sink.SinkRecord;
+import org.jdurani.rollingfile.format.BlockInputStream;
+import org.jdurani.rollingfile.format.BlockOutputStream;
+import org.jdurani.rollingfile.format.CompressionCodec;
+import org.jdurani.rollingfile.format.CorruptionPolicy;
+import org.jdurani.rollingfile.format.FileFooter;
+import org.jdurani.rollingfile.format.FileLayout;
+import org.jdurani.rollingfile.format.LimitedInputStream;
+import org.jdurani.rollingfile.format.RecordDecoder;
+import org.jdurani.rollingfile.format.RecordEncoder;
+import org.jdurani.rollingfile.format.RecordFormat;
+import org.jdurani.rollingfile.format.RecordIndex;
+import org.jdurani.rollingfile.format.RecordInput;
+import org.jdurani.rollingfile.format.StoredRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,27 +44,70 @@ public class RollingFileWriter {
 
     private static final Logger LOG = LoggerFactory.getLogger(RollingFileWriter.class);
 
-    public static final String FILE_NAME_FORMAT = "%1$010d-%2$019d.txt";
+    /**
+     * Format of file name - partition, base offset and extension of {@link RecordFormat}.
+     */
+    public static final String FILE_NAME_FORMAT = "%1$010d-%2$019d%3$s";
     public static final String KEY_VALUE_SEPARATOR = " ";
     public static final String NO_TIMESTAMP = "$NO_TS$";
     public static final byte[] RECORD_SEPARATOR = {'\n'};
-
-    private static final byte[] KEY_VALUE_SEPARATOR_BYTES = KEY_VALUE_SEPARATOR.getBytes();
-    private static final byte[] NO_TIMESTAMP_BYTES = NO_TIMESTAMP.getBytes();
     public static final String NULL_OBJECT = "$NULL$";
-    private static final byte[] NULL_BYTES = NULL_OBJECT.getBytes();
+    /**
+     * Value of preallocation size which estimates file size from previously written files.
+     */
+    public static final long PREALLOCATE_ESTIMATE = -1L;
+    /**
+     * Unknown offset - see {@link #recover()} and {@link #getPersistedOffset()}.
+     */
+    public static final long NO_OFFSET = -1L;
+    private static final long MAX_PREALLOCATION = 1024L * 1024L * 1024L;
+    private static final String PARTITION_PREFIX_FORMAT = "%010d-";
+    private static final int OFFSET_LENGTH = 19;
+    private static final String TMP_PREFIX = ".tmp-";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final String SALVAGE_PREFIX = ".salvage-";
+    private static final int SALVAGE_BUFFER_SIZE = 64 * 1024;
 
-    private final ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1, r -> {
-        Thread t = new Thread(r);
-        t.setDaemon(true);
-        return t;
-    });
+    private final RecordFormat format;
+    private final RecordEncoder encoder;
     private final TopicPartition tp;
     private final String dir;
+    private final FileLayout layout;
     private final long flushCount;
     private final long flushMs;
+    private final long flushBytes;
+    private final long preallocateBytes;
+    private final long indexInterval;
+    private final boolean footer;
+    private final int checksumBlockBytes;
+    private final int mmapRegionBytes;
+    private final CompressionCodec codec;
+    private final WriteBufferPool bufferPool;
+    private final FileCommitter committer;
+    private final WriterMetrics metrics;
+    private final CommitListener commitListener;
+    private final RollScheduler.Registration rollRegistration;
+    private final Map<File, CompletableFuture<Void>> pendingCommits = new LinkedHashMap<>();
+    private final RecordIndex index = new RecordIndex();
+    private long persistedOffset = NO_OFFSET;
+    private long pendingOffset = NO_OFFSET;
+    private long skipBelow = NO_OFFSET;
     private long writtenLines;
+    private long writtenBytes;
+    private long lastIndexedLines;
+    private int headerLength;
+    private long maxTimestamp = RecordIndex.NO_TIMESTAMP;
+    private long minTimestamp = FileFooter.NO_TIMESTAMP;
+    private long firstOffset;
+    private long lastOffset;
+    private long totalRecords;
+    private long totalEncodedBytes;
+    private long totalFileBytes;
+    private FileChannelOutputStream fileOs;
+    private FooterOutputStream footerOs;
+    private BlockOutputStream blockOs;
     private long lastFileRoll;
+    private volatile long lastWriteMs = System.currentTimeMillis();
     private OutputStream os;
     private File targetFile;
     private File openedFile;
@@ -55,139 +118,603 @@ public class RollingFileWriter {
      *
      * @param tp topic partition for writing
      * @param dir base directory to write data
+     * @param layout layout of directories of the topic
      * @param flushCount flush count
      * @param flushMs flush time
+     * @param flushBytes number of encoded bytes after which file is rolled, {@code 0} to disable
+     * @param preallocateBytes size to preallocate for new files, {@code 0} to disable, {@link #PREALLOCATE_ESTIMATE}
+     *         to estimate it from previous files
+     * @param indexInterval number of records between two entries of {@link RecordIndex} written next to each file,
+     *         {@code 0} to disable index
+     * @param footer append {@link FileFooter} to each file?
+     * @param checksumBlockBytes size of blocks of content protected by CRC32C, {@code 0} to disable checksums
+     * @param mmapRegionBytes size of memory mapped regions of written files, {@code 0} to write files through
+     *         buffers of {@code bufferPool}
+     * @param format format of written records
+     * @param codec compression codec of written files
+     * @param bufferPool pool of write buffers
+     * @param scheduler scheduler for time based rolling
+     * @param committer committer of rolled files
+     * @param metrics metrics of the writer
+     * @param commitListener listener of committed data files
      */
-    public RollingFileWriter(TopicPartition tp, String dir, long flushCount, long flushMs) {
+    public RollingFileWriter(TopicPartition tp, String dir, FileLayout layout, long flushCount, long flushMs, long flushBytes,
+            long preallocateBytes, long indexInterval, boolean footer, int checksumBlockBytes, int mmapRegionBytes,
+            RecordFormat format,
+            CompressionCodec codec, WriteBufferPool bufferPool, RollScheduler scheduler,
+            FileCommitter committer, WriterMetrics metrics, CommitListener commitListener) {
         this.tp = tp;
         this.dir = dir;
+        this.layout = layout;
         this.flushCount = flushCount;
         this.flushMs = flushMs;
-        executor.scheduleWithFixedDelay(() -> {
+        this.flushBytes = flushBytes;
+        this.preallocateBytes = preallocateBytes;
+        this.indexInterval = indexInterval;
+        this.footer = footer;
+        this.checksumBlockBytes = checksumBlockBytes;
+        this.mmapRegionBytes = mmapRegionBytes;
+        this.format = format;
+        this.encoder = format.newEncoder();
+        this.codec = codec;
+        this.bufferPool = bufferPool;
+        this.committer = committer;
+        this.metrics = metrics;
+        this.commitListener = commitListener;
+        rollRegistration = scheduler.schedule(() -> {
             try {
                 rollIfNeeded();
             } catch (IOException e) {
                 LOG.error("Error while flushing data", e);
             }
-        }, this.flushMs, this.flushMs, TimeUnit.MILLISECONDS);
+        }, this.flushMs);
     }
 
     /**
-     * Flush bytes to underlying output stream.
+     * Flush buffered bytes to underlying file, return write buffers to the pool and wait until all rolled files are
+     * committed.
      *
      * @throws IOException in case of error
      */
     public synchronized void flush() throws IOException {
+        long start = System.nanoTime();
         if (os != null) {
             os.flush();
         }
+        awaitCommits();
+        metrics.flushed(System.nanoTime() - start);
     }
 
     /**
-     * Close underlying output stream and rename temporal file to target file.
+     * Close underlying output stream and commit (rename) temporal file to target file. Index of the file is committed
+     * before the file, so that the file is never visible without its index. Commit may be asynchronous - see
+     * {@link #flush()}.
      *
      * @throws IOException in case of error
      */
     public synchronized void close() throws IOException {
         if (os != null) {
-            os.flush();
+            long start = System.nanoTime();
+            writtenBytes += encoder.finish(os);
+            if (footerOs != null) {
+                footerOs.summary(writtenLines, firstOffset, lastOffset, minTimestamp, maxTimestamp,
+                        headerLength + writtenBytes);
+            }
             os.close();
-            LOG.debug("Closing and renaming file {} -> {}", openedFile.getAbsolutePath(), targetFile.getAbsolutePath());
-            if (!openedFile.renameTo(targetFile)) {
-                throw new IOException("File " + openedFile.getAbsolutePath() + " not moved to " + targetFile.getAbsolutePath());
+            FileFooter summary = footerOs != null ? footerOs.getFooter() : new FileFooter(writtenLines, firstOffset,
+                    lastOffset, minTimestamp, maxTimestamp, headerLength + writtenBytes, fileOs.getPosition(), 0);
+            totalRecords += writtenLines;
+            totalEncodedBytes += writtenBytes;
+            long fileBytes = fileOs.getPosition();
+            totalFileBytes += fileBytes;
+            if (index.size() > 0) {
+                File indexTarget = RecordIndex.fileFor(targetFile);
+                File indexOpened = tmpFileFor(indexTarget);
+                index.writeTo(indexOpened);
+                commit(indexOpened, indexTarget, NO_OFFSET);
             }
+            LOG.debug("Closing and committing file {} -> {}", openedFile.getAbsolutePath(), targetFile.getAbsolutePath());
+            long oldestTimestamp = minTimestamp;
+            File committed = targetFile;
+            commit(openedFile, targetFile, lastOffset + 1).thenRun(() -> {
+                metrics.fileCommitted(oldestTimestamp);
+                commitListener.fileCommitted(committed, fileBytes, summary);
+            });
             os = null;
+            fileOs = null;
+            footerOs = null;
+            blockOs = null;
             openedFile = null;
             targetFile = null;
             writtenLines = 0L;
+            writtenBytes = 0L;
+            lastIndexedLines = 0L;
+            index.clear();
+            maxTimestamp = RecordIndex.NO_TIMESTAMP;
+            minTimestamp = FileFooter.NO_TIMESTAMP;
             lastFileRoll = System.currentTimeMillis();
+            metrics.fileRolled(System.nanoTime() - start);
         }
     }
 
     /**
-     * Write data to underlying output stream.
+     * Commit temporal file and remember the commit if it is not done yet.
      *
-     * @param r data to write
+     * @param tmp temporal file
+     * @param target target file
+     * @param persisted offset of the first record not stored in committed files once the file is committed,
+     *         {@link #NO_OFFSET} if the file has no records
+     *
+     * @return commit of the file
      *
      * @throws IOException in case of error
-     * @throws IllegalStateException if record does not belong to our topic-partition or writer is destroyed
      */
-    public synchronized void write(SinkRecord r) throws IOException, IllegalStateException {
-        if (destroyed) {
-            throw new IllegalStateException("Writer destroyed.");
+    private CompletableFuture<Void> commit(File tmp, File target, long persisted) throws IOException {
+        CompletableFuture<Void> commit = committer.commit(tmp, target);
+        if (!commit.isDone() || commit.isCompletedExceptionally()) {
+            pendingCommits.put(target, commit);
+            if (persisted != NO_OFFSET) {
+                pendingOffset = persisted;
+            }
+        } else if (persisted != NO_OFFSET) {
+            persistedOffset = persisted;
         }
-        validateTopicPartition(r);
-        openIfNeeded(r.kafkaOffset());
-        os.write(timestampToBytes(r));
-        os.write(KEY_VALUE_SEPARATOR_BYTES);
-        os.write(toBase64(r.key()));
-        os.write(KEY_VALUE_SEPARATOR_BYTES);
-        os.write(toBase64(r.value()));
-        os.write(RECORD_SEPARATOR);
-        writtenLines++;
-        rollIfNeeded();
+        return commit;
     }
 
     /**
-     * @param r record
+     * @param target target file
      *
-     * @return timestamp as bytes
+     * @return temporal file written before it is committed to target file
      */
-    private byte[] timestampToBytes(SinkRecord r) {
-        Long ts = r.timestamp();
-        return ts == null ? NO_TIMESTAMP_BYTES : String.valueOf(ts).getBytes();
+    private static File tmpFileFor(File target) {
+        return new File(target.getParentFile(), TMP_PREFIX + target.getName() + TMP_SUFFIX);
     }
 
     /**
-     * Validate record.
+     * Offset of the first record not stored in committed files, i.e. offset up to which records are persisted. Commits
+     * still in progress are not taken into account - see {@link #flush()}.
      *
-     * @param r record to validate
+     * @return offset or {@link #NO_OFFSET} if no file was committed nor found by {@link #recover()}
+     */
+    public synchronized long getPersistedOffset() {
+        return persistedOffset;
+    }
+
+    /**
+     * @return {@code true} if a file is open, i.e. records were written since the last roll
+     */
+    public synchronized boolean isOpen() {
+        return os != null;
+    }
+
+    /**
+     * @return time of the last call of {@link #write(SinkRecord)}, time of creation if there was none
+     */
+    public long getLastWriteMs() {
+        return lastWriteMs;
+    }
+
+    /**
+     * Recover files of the partition left by previous run. Must be called before the first {@link #write(SinkRecord)}.
+     * <ul>
+     * <li>Offset of the last record in committed files is found using {@link FileFooter} or by decoding the last
+     * file. Records of text files have no offsets, so without footer only the last {@link RecordIndex} entry tells
+     * an offset which is surely stored. If there is neither, the offset is unknown and nothing is skipped.</li>
+     * <li>Temporal files with valid footer were closed, but not committed - they are committed.</li>
+     * <li>Complete records of other temporal files are salvaged - they are written again to a new temporal file
+     * (which is the same as if they were received from Kafka). Only records with offsets (binary format) can be
+     * salvaged, other temporal files are deleted.</li>
+     * </ul>
+     * Records with lower offset than returned offset are already stored, so they are skipped by
+     * {@link #write(SinkRecord)} until the first record with higher offset is written.
      *
-     * @throws IllegalStateException if record does not belong to our topic-partition
-     * @see #write(SinkRecord)
+     * @return offset of the first record which is not stored in files, {@link #NO_OFFSET} if unknown
+     *
+     * @throws IOException in case of error
      */
-    private void validateTopicPartition(SinkRecord r) throws IllegalStateException {
-        if (!Objects.equals(r.topic(), tp.topic()) ||
-                !Objects.equals(r.kafkaPartition(), tp.partition())) {
-            throw new IllegalStateException("Sink record does not belong to this topic-partition '" + tp + "' - " + r);
+    public synchronized long recover() throws IOException {
+        List<File> files = partitionFiles(dir, layout, tp);
+        if (files.isEmpty()) {
+            return NO_OFFSET;
+        }
+        String prefix = partitionPrefix(tp.partition());
+        File lastCommitted = null;
+        long lastBaseOffset = NO_OFFSET;
+        List<File> salvaged = new ArrayList<>();
+        List<File> tmp = new ArrayList<>();
+        for (File f : files) {
+            String name = f.getName();
+            if (name.startsWith(prefix) && !name.endsWith(RecordIndex.EXTENSION)) {
+                long base = baseOffset(name, prefix.length());
+                if (base > lastBaseOffset) {
+                    lastBaseOffset = base;
+                    lastCommitted = f;
+                }
+            } else if (name.startsWith(SALVAGE_PREFIX + prefix)) {
+                salvaged.add(f);
+            } else if (name.startsWith(TMP_PREFIX + prefix) && name.endsWith(TMP_SUFFIX)) {
+                tmp.add(f);
+            }
+        }
+        if (lastCommitted != null) {
+            long last = lastOffset(lastCommitted);
+            if (last != NO_OFFSET) {
+                persistedOffset = last + 1;
+                skipBelow = persistedOffset;
+            } else {
+                // base offset of the file does not tell how many of its records are stored
+                LOG.info("Offset of the last record of {} is not known", lastCommitted.getAbsolutePath());
+            }
+        }
+        salvaged.sort(Comparator.comparing(File::getName));
+        tmp.sort(Comparator.comparing(File::getName));
+        for (File f : salvaged) {
+            // previous salvaging was interrupted - its incomplete output is replaced
+            File target = new File(f.getParentFile(), f.getName().substring(SALVAGE_PREFIX.length()));
+            File partial = tmpFileFor(target);
+            if (tmp.remove(partial)) {
+                delete(partial);
+            }
+            salvage(f, target);
+        }
+        for (File f : tmp) {
+            String name = f.getName();
+            File target = new File(f.getParentFile(),
+                    name.substring(TMP_PREFIX.length(), name.length() - TMP_SUFFIX.length()));
+            if (target.getName().endsWith(RecordIndex.EXTENSION)) {
+                delete(f);
+                continue;
+            }
+            FileFooter closed = FileFooter.read(f);
+            if (closed != null && target.exists()) {
+                // file with the same offsets was written again and committed
+                delete(f);
+            } else if (closed != null) {
+                LOG.info("Committing closed file {} -> {}", f.getAbsolutePath(), target.getAbsolutePath());
+                long persisted = closed.getRecordCount() > 0 ? closed.getLastOffset() + 1 : NO_OFFSET;
+                commit(f, target, persisted).thenRun(() -> commitListener.fileCommitted(target, target.length(), closed));
+                if (persisted != NO_OFFSET && persisted > skipBelow) {
+                    skipBelow = persisted;
+                }
+            } else {
+                File renamed = new File(f.getParentFile(), SALVAGE_PREFIX + target.getName());
+                FileCommitter.rename(f, renamed);
+                salvage(renamed, target);
+            }
+        }
+        awaitCommits();
+        return skipBelow;
+    }
+
+    /**
+     * @param dir base directory
+     * @param layout layout of directories of the topic
+     * @param tp topic partition
+     *
+     * @return all files in directories of the partition - its data files, indexes and temporal files, for
+     *         {@link FileLayout#FLAT} also files of other partitions
+     */
+    static List<File> partitionFiles(String dir, FileLayout layout, TopicPartition tp) {
+        List<File> files = new ArrayList<>();
+        File partitionDir = layout.partitionDirectory(new File(dir, tp.topic()), tp.partition());
+        listFiles(partitionDir, layout.getDepth() - (layout == FileLayout.FLAT ? 0 : 1), files);
+        return files;
+    }
+
+    /**
+     * @param dir base directory
+     * @param layout layout of directories of the topic
+     * @param tp topic partition
+     *
+     * @return committed data files of the partition sorted by their base offsets
+     */
+    static List<File> committedFiles(String dir, FileLayout layout, TopicPartition tp) {
+        String prefix = partitionPrefix(tp.partition());
+        List<File> files = new ArrayList<>();
+        for (File f : partitionFiles(dir, layout, tp)) {
+            String name = f.getName();
+            if (name.startsWith(prefix) && !name.endsWith(RecordIndex.EXTENSION)
+                    && baseOffset(name, prefix.length()) != NO_OFFSET) {
+                files.add(f);
+            }
+        }
+        files.sort(Comparator.comparing(File::getName));
+        return files;
+    }
+
+    /**
+     * @param partition partition
+     *
+     * @return prefix of names of data files of the partition
+     */
+    static String partitionPrefix(int partition) {
+        return String.format(PARTITION_PREFIX_FORMAT, partition);
+    }
+
+    /**
+     * @param directory directory to list
+     * @param levels number of levels of subdirectories to descend to
+     * @param out list to add files to
+     */
+    private static void listFiles(File directory, int levels, List<File> out) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File f : children) {
+            if (levels > 0 && f.isDirectory()) {
+                listFiles(f, levels - 1, out);
+            } else if (levels == 0 && f.isFile()) {
+                out.add(f);
+            }
+        }
+    }
+
+    /**
+     * Write complete records of temporal file again and delete the file.
+     *
+     * @param f file to salvage
+     * @param target target file of the temporal file
+     *
+     * @throws IOException in case of error
+     */
+    private void salvage(File f, File target) throws IOException {
+        long count = 0L;
+        try (RecordInput in = new RecordInput(openContent(f), SALVAGE_BUFFER_SIZE)) {
+            RecordDecoder decoder = newDecoder(in, f);
+            StoredRecord s;
+            while (decoder != null && (s = next(decoder, f)) != null) {
+                if (s.getOffset() == StoredRecord.UNKNOWN_OFFSET) {
+                    LOG.warn("Records of {} have no offsets and cannot be salvaged", target.getAbsolutePath());
+                    break;
+                }
+                if (s.getOffset() >= skipBelow) {
+                    append(new SinkRecord(tp.topic(), tp.partition(), null, s.getKey(), null, s.getValue(),
+                            s.getOffset(), s.getTimestamp(),
+                            s.getTimestamp() == null ? TimestampType.NO_TIMESTAMP_TYPE : TimestampType.CREATE_TIME,
+                            s.getHeaders()));
+                    skipBelow = s.getOffset() + 1;
+                    count++;
+                }
+            }
+        }
+        LOG.info("Salvaged {} records of {}", count, target.getAbsolutePath());
+        delete(f);
+    }
+
+    /**
+     * @param data committed file
+     *
+     * @return offset of the last record of the file, offset of the last indexed record if records have no offsets,
+     * {@link #NO_OFFSET} if it cannot be found
+     *
+     * @throws IOException in case of error
+     */
+    private static long lastOffset(File data) throws IOException {
+        FileFooter fileFooter = FileFooter.read(data);
+        if (fileFooter != null) {
+            return fileFooter.getRecordCount() > 0 ? fileFooter.getLastOffset() : NO_OFFSET;
+        }
+        RecordIndex fileIndex;
+        try {
+            fileIndex = RecordIndex.read(data);
+        } catch (RuntimeException e) {
+            fileIndex = null;
+        }
+        long last = NO_OFFSET;
+        try (RecordInput in = new RecordInput(openContent(data), SALVAGE_BUFFER_SIZE)) {
+            RecordDecoder decoder = newDecoder(in, data);
+            if (decoder == null) {
+                return NO_OFFSET;
+            }
+            if (fileIndex != null && fileIndex.size() > 0) {
+                in.skip(fileIndex.getPosition(fileIndex.size() - 1) - in.position());
+            }
+            StoredRecord s;
+            while ((s = next(decoder, data)) != null) {
+                if (s.getOffset() == StoredRecord.UNKNOWN_OFFSET) {
+                    // records of text files have no offsets, indexed record is stored, later ones may be too
+                    return fileIndex != null && fileIndex.size() > 0
+                            ? fileIndex.getOffset(fileIndex.size() - 1) : NO_OFFSET;
+                }
+                last = s.getOffset();
+            }
         }
+        return last;
     }
 
     /**
-     * @param value value to encode as base64
+     * @param f file
      *
-     * @return encoded bytes or {@link #NULL_BYTES} if value is {@code null}
+     * @return decompressed content of the file without its footer (if any)
      *
-     * @see #toBytes(Object)
+     * @throws IOException in case of error
+     */
+    static InputStream openContent(File f) throws IOException {
+        FileFooter fileFooter = FileFooter.read(f);
+        InputStream fis = new FileInputStream(f);
+        // buffered only for detection of codec, content is buffered by codec, checksum blocks or record input
+        InputStream is = new BufferedInputStream(
+                fileFooter == null ? fis : new LimitedInputStream(fis, fileFooter.getStoredLength()),
+                CompressionCodec.MAX_MAGIC_LENGTH);
+        try {
+            InputStream content = CompressionCodec.detect(is).wrapInput(is);
+            return BlockInputStream.wrapIfBlocked(content, f.getAbsolutePath(), CorruptionPolicy.FAIL);
+        } catch (IOException | RuntimeException e) {
+            is.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param in content of the file
+     * @param f file
+     *
+     * @return decoder of the file, {@code null} if file header is not complete
+     */
+    private static RecordDecoder newDecoder(RecordInput in, File f) {
+        try {
+            return RecordFormat.detect(in).newDecoder(in, f.getAbsolutePath());
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("No records can be read from {} - {}", f.getAbsolutePath(), e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * @param decoder decoder
+     * @param f decoded file
+     *
+     * @return next record, {@code null} at the end of file or at the first incomplete or corrupted record
+     */
+    private static StoredRecord next(RecordDecoder decoder, File f) {
+        try {
+            return decoder.next();
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Reading of {} stopped at incomplete record - {}", f.getAbsolutePath(), e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * @param name name of data file
+     * @param from start of base offset in the name
+     *
+     * @return base offset of the file, {@link #NO_OFFSET} if name is not a name of data file
+     */
+    static long baseOffset(String name, int from) {
+        if (name.length() < from + OFFSET_LENGTH) {
+            return NO_OFFSET;
+        }
+        try {
+            return Long.parseLong(name.substring(from, from + OFFSET_LENGTH));
+        } catch (NumberFormatException e) {
+            return NO_OFFSET;
+        }
+    }
+
+    /**
+     * @param f file to delete
+     *
+     * @throws IOException if file is not deleted
+     */
+    private static void delete(File f) throws IOException {
+        if (f.exists() && !f.delete()) {
+            throw new IOException("File '" + f.getAbsolutePath() + "' not deleted.");
+        }
+    }
+
+    /**
+     * Write data to underlying output stream.
+     *
+     * @param r data to write
+     *
+     * @throws IOException in case of error
+     * @throws IllegalStateException if record does not belong to our topic-partition or writer is destroyed
+     * @throws IllegalArgumentException if key or value is not {@code byte[]}, {@code ByteBuffer} or {@code String}
+     */
+    public void write(SinkRecord r) throws IOException, IllegalStateException, IllegalArgumentException {
+        writeBatch(Collections.singletonList(r));
+    }
+
+    /**
+     * Write records of one batch to underlying output stream. Lock of the writer is taken once for the whole batch,
+     * roll conditions are checked after each record.
+     *
+     * @param records records of our topic-partition to write, in order of their offsets
+     *
+     * @throws IOException in case of error
+     * @throws IllegalStateException if any record does not belong to our topic-partition or writer is destroyed
+     * @throws IllegalArgumentException if key or value is not {@code byte[]}, {@code ByteBuffer} or {@code String}
      */
-    private byte[] toBase64(Object value) {
-        if (value == null) {
-            return NULL_BYTES;
+    public synchronized void writeBatch(List<SinkRecord> records)
+            throws IOException, IllegalStateException, IllegalArgumentException {
+        if (destroyed) {
+            throw new IllegalStateException("Writer destroyed.");
+        }
+        long now = System.currentTimeMillis();
+        lastWriteMs = now;
+        int written = 0;
+        long bytes = 0L;
+        try {
+            for (int i = 0, n = records.size(); i < n; i++) {
+                SinkRecord r = records.get(i);
+                validateTopicPartition(r);
+                if (skipBelow != NO_OFFSET) {
+                    if (r.kafkaOffset() < skipBelow) {
+                        // redelivered record already stored in files
+                        continue;
+                    }
+                    skipBelow = NO_OFFSET;
+                }
+                bytes += append(r);
+                written++;
+            }
+        } finally {
+            if (written > 0) {
+                metrics.recordsWritten(written, bytes, now);
+            }
         }
-        return Base64.getEncoder().encode(toBytes(value));
     }
 
     /**
-     * Converts value to bytes. Supported are only {@code byte[]} and {@code String}.
+     * Write validated record.
      *
-     * @param value value to get bytes from
+     * @param r record to write
      *
-     * @return bytes
+     * @return number of encoded bytes of the record
      *
-     * @see #toBase64(Object)
+     * @throws IOException in case of error
+     * @see #writeBatch(List)
      */
-    private byte[] toBytes(Object value) {
-        if (value instanceof byte[]) {
-            return (byte[]) value;
+    private int append(SinkRecord r) throws IOException {
+        openIfNeeded(r.kafkaOffset());
+        if (indexInterval > 0 && writtenLines > 0 && writtenLines - lastIndexedLines >= indexInterval
+                && encoder.atBoundary()) {
+            // formats buffering records can be read only from their boundaries
+            index.add(writtenLines, r.kafkaOffset(), maxTimestamp, headerLength + writtenBytes);
+            lastIndexedLines = writtenLines;
+        }
+        encoder.encode(r);
+        encoder.writeTo(os);
+        if (blockOs != null) {
+            blockOs.endRecord();
+        }
+        writtenLines++;
+        int length = encoder.length();
+        writtenBytes += length;
+        lastOffset = r.kafkaOffset();
+        Long timestamp = r.timestamp();
+        if (timestamp != null) {
+            if (timestamp > maxTimestamp) {
+                maxTimestamp = timestamp;
+            }
+            if (minTimestamp == FileFooter.NO_TIMESTAMP || timestamp < minTimestamp) {
+                minTimestamp = timestamp;
+            }
         }
-        if (value instanceof String) {
-            return ((String) value).getBytes(StandardCharsets.UTF_8);
+        rollIfNeeded();
+        return length;
+    }
+
+    /**
+     * Validate record.
+     *
+     * @param r record to validate
+     *
+     * @throws IllegalStateException if record does not belong to our topic-partition
+     * @see #write(SinkRecord)
+     */
+    private void validateTopicPartition(SinkRecord r) throws IllegalStateException {
+        if (!Objects.equals(r.topic(), tp.topic()) ||
+                !Objects.equals(r.kafkaPartition(), tp.partition())) {
+            throw new IllegalStateException("Sink record does not belong to this topic-partition '" + tp + "' - " + r);
         }
-        throw new IllegalArgumentException("Unsupported object to write - [class] " + value.getClass());
     }
 
     /**
-     * Close current stream if enough lines has been written or flush time has elapsed.
+     * Close current stream if enough lines or bytes has been written or flush time has elapsed.
      *
      * @throws IOException on case of error
      * @see #close()
@@ -196,8 +723,11 @@ public class RollingFileWriter {
     private synchronized void rollIfNeeded() throws IOException {
         long sinceLastRoll = System.currentTimeMillis() - lastFileRoll;
         if (writtenLines > 0
-                && (writtenLines >= flushCount || sinceLastRoll >= flushMs)) {
-            LOG.debug("Rolling file - written lines: {}, ms since last flush: {}", writtenLines, sinceLastRoll);
+                && (writtenLines >= flushCount
+                || (flushBytes > 0 && writtenBytes >= flushBytes)
+                || sinceLastRoll >= flushMs)) {
+            LOG.debug("Rolling file - written lines: {}, written bytes: {}, ms since last flush: {}",
+                    writtenLines, writtenBytes, sinceLastRoll);
             close();
         }
     }
@@ -211,25 +741,88 @@ public class RollingFileWriter {
      */
     private synchronized void openIfNeeded(long offset) throws IOException {
         if (os == null) {
-            File target = Paths
-                    .get(dir,
-                            tp.topic(),
-                            String.format(FILE_NAME_FORMAT, tp.partition(), offset))
-                    .toFile();
+            File target = new File(
+                    layout.directory(new File(dir, tp.topic()), tp.partition(), System.currentTimeMillis()),
+                    String.format(FILE_NAME_FORMAT, tp.partition(), offset, format.getExtension()) + codec.getSuffix());
             File parent = target.getParentFile();
-            File opened = new File(parent, ".tmp-" + target.getName() + ".tmp");
+            File opened = tmpFileFor(target);
             LOG.debug("Opening new file [tmp: {}] - {}", opened.getAbsolutePath(), target.getAbsolutePath());
             if (!parent.exists() && !parent.mkdirs()) {
                 throw new IOException("Cannot create parent directory " + parent.getAbsolutePath());
             }
+            if (pendingCommits.containsKey(target)) {
+                // same offsets are written again before previous file was committed
+                awaitCommits();
+            }
             if(target.exists() && !target.delete()){
                 throw new IOException("Target file '" + target.getAbsolutePath() + "'not deleted.");
             }
-            os = new FileOutputStream(opened, false); // we are writing same offsets again - we can override file
+            File targetIndex = RecordIndex.fileFor(target);
+            if (targetIndex.exists() && !targetIndex.delete()) {
+                throw new IOException("Index file '" + targetIndex.getAbsolutePath() + "' not deleted.");
+            }
+            // we are writing same offsets again - we can override file
+            FileChannelOutputStream fileStream;
+            if (mmapRegionBytes > 0) {
+                FileChannel channel = FileChannel.open(opened.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                fileStream = new MappedFileOutputStream(channel, opened.getAbsolutePath(), mmapRegionBytes);
+            } else {
+                FileChannel channel = FileChannel.open(opened.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                fileStream = new PooledFileOutputStream(channel, opened, bufferPool);
+            }
+            FooterOutputStream footerStream = footer ? new FooterOutputStream(fileStream) : null;
+            BlockOutputStream blocks = null;
+            OutputStream wrapped;
+            int header;
+            try {
+                long preallocate = preallocationSize();
+                if (preallocate > 0) {
+                    fileStream.preallocate(preallocate);
+                }
+                wrapped = codec.wrapOutput(footerStream == null ? fileStream : footerStream);
+                if (checksumBlockBytes > 0) {
+                    blocks = new BlockOutputStream(wrapped, checksumBlockBytes);
+                    wrapped = blocks;
+                }
+                header = encoder.writeHeader(wrapped, offset);
+            } catch (IOException | RuntimeException e) {
+                fileStream.close();
+                throw e;
+            }
+            os = wrapped;
+            fileOs = fileStream;
+            footerOs = footerStream;
+            blockOs = blocks;
+            headerLength = header;
+            firstOffset = offset;
             openedFile = opened;
             targetFile = target;
             lastFileRoll = System.currentTimeMillis();
+            metrics.fileOpened();
+        }
+    }
+
+    /**
+     * Expected size of new file. Estimate is {@code flushCount} times average size of record in previous files,
+     * limited by {@code flushBytes} (scaled by compression ratio) and by 1 GiB.
+     *
+     * @return number of bytes to preallocate, {@code 0} if nothing should be preallocated
+     */
+    private long preallocationSize() {
+        if (preallocateBytes != PREALLOCATE_ESTIMATE) {
+            return preallocateBytes;
+        }
+        if (totalRecords == 0 || totalFileBytes == 0) {
+            return 0L;
+        }
+        double recordSize = (double) totalFileBytes / totalRecords;
+        double expected = recordSize * flushCount;
+        if (flushBytes > 0 && totalEncodedBytes > 0) {
+            expected = Math.min(expected, (double) flushBytes * totalFileBytes / totalEncodedBytes);
         }
+        return (long) Math.min(expected, MAX_PREALLOCATION);
     }
 
     /**
@@ -239,8 +832,49 @@ public class RollingFileWriter {
      * @see #close()
      */
     public synchronized void destroy() throws IOException {
-        close();
-        executor.shutdown();
-        destroyed = true;
+        try {
+            close();
+            awaitCommits();
+        } finally {
+            rollRegistration.cancel();
+            metrics.close();
+            destroyed = true;
+        }
+    }
+
+    /**
+     * Wait until all rolled files are committed.
+     *
+     * @throws IOException if any file was not committed
+     */
+    private void awaitCommits() throws IOException {
+        IOException failure = null;
+        boolean interrupted = false;
+        for (CompletableFuture<Void> c : pendingCommits.values()) {
+            while (true) {
+                try {
+                    c.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = new IOException("Rolled file not committed", e.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        pendingCommits.clear();
+        if (failure == null && pendingOffset != NO_OFFSET) {
+            persistedOffset = pendingOffset;
+        }
+        pendingOffset = NO_OFFSET;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
     }
 }
@@ -0,0 +1,257 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fixed set of I/O threads, each owning a shard of topic-partitions. All tasks of one topic-partition run on the same
+ * thread in submission order, so writers need no additional coordination. Number of records of write tasks waiting
+ * for each shard is bounded, so a slow disk applies back-pressure to the caller instead of buffering unbounded number
+ * of records.
+ * <p>
+ * First failure of a write task fails its shard - following write tasks of the shard are rejected and all control
+ * tasks (see {@link #submit(TopicPartition, IoTask)}) report the failure.
+ */
+public class ShardedIoExecutor implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShardedIoExecutor.class);
+    private static final Entry STOP = new Entry(() -> { }, null, 0);
+
+    private final Shard[] shards;
+
+    /**
+     * New instance. Threads are started immediately.
+     *
+     * @param threads number of I/O threads
+     * @param queueSize maximum number of records of write tasks waiting for each thread
+     */
+    public ShardedIoExecutor(int threads, int queueSize) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        shards = new Shard[threads];
+        for (int i = 0; i < threads; i++) {
+            shards[i] = new Shard(i, queueSize);
+        }
+    }
+
+    /**
+     * Enqueue write task. Blocks while records of write tasks waiting for the shard would exceed its queue size. Task
+     * with more records than the queue size waits until the queue is empty.
+     *
+     * @param tp topic-partition the task belongs to
+     * @param records number of records written by the task
+     * @param task task to run
+     *
+     * @throws IOException if previous task of the shard failed or if interrupted while waiting
+     */
+    public void execute(TopicPartition tp, int records, IoTask task) throws IOException {
+        Shard s = shard(tp);
+        Throwable failure = s.failure;
+        if (failure != null) {
+            throw new IOException("Previous write of shard " + s.index + " failed", failure);
+        }
+        s.enqueue(new Entry(task, null, Math.min(records, s.queueSize)));
+    }
+
+    /**
+     * Enqueue control task (e.g. flush or close). Control task runs even if the shard has failed.
+     *
+     * @param tp topic-partition the task belongs to
+     * @param task task to run
+     *
+     * @return future completed after the task and all tasks of the shard submitted before it have run; it is completed
+     * exceptionally if the task or any previous write task of the shard failed
+     *
+     * @throws IOException if the shard is stopped
+     */
+    public CompletableFuture<Void> submit(TopicPartition tp, IoTask task) throws IOException {
+        CompletableFuture<Void> f = new CompletableFuture<>();
+        shard(tp).enqueue(new Entry(task, f, 0));
+        return f;
+    }
+
+    /**
+     * @param tp topic-partition
+     *
+     * @return shard owning the topic-partition
+     */
+    private Shard shard(TopicPartition tp) {
+        return shards[Math.floorMod(tp.hashCode(), shards.length)];
+    }
+
+    /**
+     * Stop all threads. Tasks still waiting in queues are discarded, the task being run is finished.
+     */
+    @Override
+    public void close() {
+        for (Shard s : shards) {
+            s.running = false;
+            List<Entry> discarded = new ArrayList<>();
+            s.queue.drainTo(discarded);
+            // wake up caller waiting for space
+            discarded.forEach(e -> s.permits.release(e.permits));
+            s.queue.add(STOP);
+        }
+        for (Shard s : shards) {
+            try {
+                s.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Task doing I/O.
+     */
+    @FunctionalInterface
+    public interface IoTask {
+
+        /**
+         * @throws IOException in case of error
+         */
+        void run() throws IOException;
+    }
+
+    /**
+     * Queued task.
+     */
+    private static final class Entry {
+
+        private final IoTask task;
+        private final CompletableFuture<Void> completion;
+        private final int permits;
+
+        /**
+         * @param task task
+         * @param completion future of control task, {@code null} for write task
+         * @param permits number of records the task holds in queue of the shard
+         */
+        private Entry(IoTask task, CompletableFuture<Void> completion, int permits) {
+            this.task = task;
+            this.completion = completion;
+            this.permits = permits;
+        }
+    }
+
+    /**
+     * One I/O thread with its queue.
+     */
+    private static final class Shard {
+
+        private final int index;
+        private final int queueSize;
+        private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+        /**
+         * Records which can still be queued.
+         */
+        private final Semaphore permits;
+        private final Thread thread;
+        private volatile Throwable failure;
+        private volatile boolean running = true;
+
+        /**
+         * @param index index of the shard
+         * @param queueSize maximum number of records of queued write tasks
+         */
+        private Shard(int index, int queueSize) {
+            this.index = index;
+            this.queueSize = queueSize;
+            this.permits = new Semaphore(queueSize);
+            this.thread = new Thread(this::run, "rolling-file-io-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * @param e entry to enqueue
+         *
+         * @throws IOException if interrupted or shard is stopped
+         */
+        private void enqueue(Entry e) throws IOException {
+            if (!running) {
+                throw new IOException("I/O thread " + index + " stopped");
+            }
+            try {
+                permits.acquire(e.permits);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for I/O thread " + index);
+            }
+            if (!running) {
+                permits.release(e.permits);
+                throw new IOException("I/O thread " + index + " stopped");
+            }
+            queue.add(e);
+        }
+
+        /**
+         * Worker loop.
+         */
+        private void run() {
+            while (running) {
+                Entry e;
+                try {
+                    e = queue.take();
+                } catch (InterruptedException ex) {
+                    continue;
+                }
+                if (e == STOP) {
+                    break;
+                }
+                if (e.completion == null) {
+                    runWrite(e.task);
+                    permits.release(e.permits);
+                } else {
+                    runControl(e.task, e.completion);
+                }
+            }
+        }
+
+        /**
+         * @param task write task; skipped if the shard has failed
+         */
+        private void runWrite(IoTask task) {
+            if (failure != null) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (IOException | RuntimeException ex) {
+                LOG.error("Error writing data on I/O thread {}", index, ex);
+                failure = ex;
+            }
+        }
+
+        /**
+         * @param task control task
+         * @param completion future to complete
+         */
+        private void runControl(IoTask task, CompletableFuture<Void> completion) {
+            try {
+                task.run();
+                Throwable t = failure;
+                if (t == null) {
+                    completion.complete(null);
+                } else {
+                    completion.completeExceptionally(t);
+                }
+            } catch (IOException | RuntimeException ex) {
+                completion.completeExceptionally(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.metrics.JmxReporter;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Avg;
+import org.apache.kafka.common.metrics.stats.CumulativeCount;
+import org.apache.kafka.common.metrics.stats.Max;
+import org.apache.kafka.common.metrics.stats.Meter;
+import org.apache.kafka.common.metrics.stats.Percentile;
+import org.apache.kafka.common.metrics.stats.Percentiles;
+import org.apache.kafka.common.metrics.stats.WindowedCount;
+import org.apache.kafka.common.utils.Time;
+import org.jdurani.rollingfile.format.FileFooter;
+
+/**
+ * Metrics of one sink task and its partitions registered in Kafka {@link Metrics} and reported through JMX (MBeans
+ * {@code kafka.connect.rolling-file:type=rolling-file-sink-task-metrics,connector=...,task=...} and
+ * {@code kafka.connect.rolling-file:type=rolling-file-sink-partition-metrics,connector=...,task=...,topic=...,partition=...}):
+ * <ul>
+ * <li>rate and total of written records and encoded bytes (per task and per partition)</li>
+ * <li>number of open files (per task)</li>
+ * <li>rate and total of rolls, latency of rolls and flushes - average, maximum and percentiles (per task)</li>
+ * <li>time since the last committed file (per partition)</li>
+ * <li>lag from timestamp of the oldest record of a file to its commit - average, maximum and percentiles per task,
+ * average and maximum per partition</li>
+ * </ul>
+ * Percentiles are kept only per task, so that memory used by metrics of wide topics stays small.
+ */
+public class SinkMetrics implements Closeable {
+
+    static final String TASK_GROUP = "rolling-file-sink-task-metrics";
+    static final String PARTITION_GROUP = "rolling-file-sink-partition-metrics";
+    private static final String JMX_PREFIX = "kafka.connect.rolling-file";
+    /**
+     * Sequence of tasks created in this JVM - the framework does not tell task its id.
+     */
+    private static final AtomicInteger TASK_SEQUENCE = new AtomicInteger();
+    private static final int PERCENTILES_BYTES = 4 * 1024;
+    private static final double MAX_LATENCY_MS = 30_000.0;
+    private static final double MAX_LAG_MS = 3_600_000.0;
+
+    private final Metrics metrics;
+    private final Map<String, String> taskTags;
+    private final AtomicInteger openFiles = new AtomicInteger();
+    private final Sensor records;
+    private final Sensor bytes;
+    private final Sensor rolls;
+    private final Sensor flushes;
+    private final Sensor lag;
+
+    /**
+     * New metrics reported through JMX, they are removed by {@link #close()}.
+     *
+     * @param connector name of the connector
+     *
+     * @return metrics of the task
+     */
+    public static SinkMetrics jmx(String connector) {
+        Metrics metrics = new Metrics(new MetricConfig(), Collections.singletonList(new JmxReporter(JMX_PREFIX)),
+                Time.SYSTEM);
+        return new SinkMetrics(metrics, connector, Integer.toString(TASK_SEQUENCE.getAndIncrement()));
+    }
+
+    /**
+     * @param metrics registry of metrics, it is closed by {@link #close()}
+     * @param connector name of the connector
+     * @param task identifier of the task
+     */
+    SinkMetrics(Metrics metrics, String connector, String task) {
+        this.metrics = metrics;
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("connector", String.valueOf(connector));
+        tags.put("task", task);
+        taskTags = Collections.unmodifiableMap(tags);
+
+        records = metrics.sensor(sensorName("records", null));
+        records.add(meter(TASK_GROUP, taskTags, "records-written", "records"));
+        bytes = metrics.sensor(sensorName("bytes", null));
+        bytes.add(meter(TASK_GROUP, taskTags, "bytes-written", "encoded bytes"));
+        rolls = metrics.sensor(sensorName("rolls", null));
+        rolls.add(new Meter(TimeUnit.SECONDS, new WindowedCount(),
+                metrics.metricName("rolls-rate", TASK_GROUP, "Number of rolled files per second", taskTags),
+                metrics.metricName("rolls-total", TASK_GROUP, "Total number of rolled files", taskTags)));
+        addLatency(rolls, "roll-latency", "closing rolled file", MAX_LATENCY_MS);
+        flushes = metrics.sensor(sensorName("flushes", null));
+        flushes.add(metrics.metricName("flush-total", TASK_GROUP, "Total number of flushes of files", taskTags),
+                new CumulativeCount());
+        addLatency(flushes, "flush-latency", "flushing file and waiting for commits of rolled files", MAX_LATENCY_MS);
+        lag = metrics.sensor(sensorName("lag", null));
+        addLatency(lag, "commit-lag", "from timestamp of the oldest record of a file to commit of the file",
+                MAX_LAG_MS);
+        metrics.addMetric(metrics.metricName("open-files", TASK_GROUP, "Number of files currently open", taskTags),
+                (config, now) -> openFiles.get());
+    }
+
+    /**
+     * @param tp topic partition
+     *
+     * @return metrics of writer of the partition, removed by {@link WriterMetrics#close()}
+     */
+    public WriterMetrics forPartition(TopicPartition tp) {
+        return new PartitionMetrics(tp);
+    }
+
+    /**
+     * @return registry of metrics
+     */
+    Metrics getMetrics() {
+        return metrics;
+    }
+
+    private String sensorName(String name, TopicPartition tp) {
+        return TASK_GROUP + ":" + taskTags + ":" + name + (tp == null ? "" : ":" + tp);
+    }
+
+    private Meter meter(String group, Map<String, String> tags, String name, String what) {
+        return new Meter(TimeUnit.SECONDS,
+                metrics.metricName(name + "-rate", group, "Number of " + what + " per second", tags),
+                metrics.metricName(name + "-total", group, "Total number of " + what, tags));
+    }
+
+    private void addLatency(Sensor sensor, String name, String what, double maxMs) {
+        sensor.add(metrics.metricName(name + "-avg", TASK_GROUP, "Average time in ms " + what, taskTags), new Avg());
+        sensor.add(metrics.metricName(name + "-max", TASK_GROUP, "Maximum time in ms " + what, taskTags), new Max());
+        sensor.add(new Percentiles(PERCENTILES_BYTES, 0.0, maxMs, Percentiles.BucketSizing.LINEAR,
+                percentile(name, what, 50), percentile(name, what, 95), percentile(name, what, 99)));
+    }
+
+    private Percentile percentile(String name, String what, int p) {
+        return new Percentile(metrics.metricName(name + "-p" + p, TASK_GROUP,
+                p + "th percentile of time in ms " + what, taskTags), p);
+    }
+
+    private static double toMs(long ns) {
+        return ns / 1_000_000.0;
+    }
+
+    /**
+     * Remove all metrics of the task and close JMX reporter.
+     */
+    @Override
+    public void close() {
+        metrics.close();
+    }
+
+    /**
+     * Metrics of writer of one partition.
+     */
+    private class PartitionMetrics implements WriterMetrics {
+
+        private final String[] sensorNames;
+        private final Sensor partitionRecords;
+        private final Sensor partitionBytes;
+        private final Sensor partitionLag;
+        private final MetricName sinceCommit;
+        private volatile long lastCommitMs = System.currentTimeMillis();
+        private boolean open;
+
+        PartitionMetrics(TopicPartition tp) {
+            Map<String, String> tags = new LinkedHashMap<>(taskTags);
+            tags.put("topic", tp.topic());
+            tags.put("partition", Integer.toString(tp.partition()));
+            sensorNames = new String[] {sensorName("records", tp), sensorName("bytes", tp), sensorName("lag", tp)};
+            partitionRecords = metrics.sensor(sensorNames[0], records);
+            partitionRecords.add(meter(PARTITION_GROUP, tags, "records-written", "records"));
+            partitionBytes = metrics.sensor(sensorNames[1], bytes);
+            partitionBytes.add(meter(PARTITION_GROUP, tags, "bytes-written", "encoded bytes"));
+            partitionLag = metrics.sensor(sensorNames[2], lag);
+            partitionLag.add(metrics.metricName("commit-lag-avg", PARTITION_GROUP,
+                    "Average time in ms from timestamp of the oldest record of a file to commit of the file", tags),
+                    new Avg());
+            partitionLag.add(metrics.metricName("commit-lag-max", PARTITION_GROUP,
+                    "Maximum time in ms from timestamp of the oldest record of a file to commit of the file", tags),
+                    new Max());
+            sinceCommit = metrics.metricName("time-since-last-commit-ms", PARTITION_GROUP,
+                    "Time in ms since the last file was committed or since the partition was assigned", tags);
+            metrics.addMetric(sinceCommit, (config, now) -> now - lastCommitMs);
+        }
+
+        @Override
+        public void recordsWritten(int records, long bytes, long nowMs) {
+            partitionRecords.record(records, nowMs);
+            partitionBytes.record(bytes, nowMs);
+        }
+
+        @Override
+        public void fileOpened() {
+            if (!open) {
+                open = true;
+                openFiles.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void fileRolled(long latencyNs) {
+            if (open) {
+                open = false;
+                openFiles.decrementAndGet();
+            }
+            rolls.record(toMs(latencyNs));
+        }
+
+        @Override
+        public void flushed(long latencyNs) {
+            flushes.record(toMs(latencyNs));
+        }
+
+        @Override
+        public void fileCommitted(long minTimestamp) {
+            long now = System.currentTimeMillis();
+            lastCommitMs = now;
+            if (minTimestamp != FileFooter.NO_TIMESTAMP) {
+                partitionLag.record(Math.max(0L, now - minTimestamp), now);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                openFiles.decrementAndGet();
+            }
+            for (String name : sensorNames) {
+                metrics.removeSensor(name);
+            }
+            metrics.removeMetric(sinceCommit);
+        }
+    }
+}
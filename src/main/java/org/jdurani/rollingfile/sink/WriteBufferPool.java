@@ -0,0 +1,126 @@
+package org.jdurani.rollingfile.sink;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Task-wide pool of direct write buffers with global memory budget.
+ * <p>
+ * Buffers are allocated lazily until the budget is used up and then they are only recycled. If there is no free
+ * buffer when one is requested, the requesting thread spills the owner holding the most buffers (see
+ * {@link PooledFileOutputStream#spill()}) and takes one of the returned buffers, so idle owners do not keep buffers
+ * until their next write. If that owner is being written at the moment, it only spills on its next write and the
+ * requester has to make progress with buffers it already holds. No owner is ever blocked on another owner's lock.
+ */
+public class WriteBufferPool {
+
+    private final long memoryBudget;
+    private final int bufferSize;
+    private final Deque<ByteBuffer> free = new ArrayDeque<>();
+    private final Map<PooledFileOutputStream, Integer> held = new HashMap<>();
+    private long allocated;
+
+    /**
+     * New instance.
+     *
+     * @param memoryBudget maximum number of bytes allocated by all buffers of this pool
+     * @param bufferSize size of one buffer
+     */
+    public WriteBufferPool(long memoryBudget, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.memoryBudget = memoryBudget;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Get free buffer.
+     *
+     * @param owner owner of the buffer
+     *
+     * @return cleared buffer or {@code null} if memory budget is exhausted
+     */
+    public ByteBuffer acquire(PooledFileOutputStream owner) {
+        ByteBuffer b = take(owner);
+        if (b == null) {
+            PooledFileOutputStream victim = largestHolder(owner);
+            // spilled outside of the pool monitor, the victim returns its buffers with release
+            if (victim != null && victim.spill()) {
+                b = take(owner);
+            }
+        }
+        return b;
+    }
+
+    /**
+     * @param owner owner of the buffer
+     *
+     * @return free or newly allocated buffer or {@code null} if memory budget is exhausted
+     */
+    private synchronized ByteBuffer take(PooledFileOutputStream owner) {
+        ByteBuffer b = free.pollFirst();
+        if (b == null && allocated + bufferSize <= memoryBudget) {
+            b = ByteBuffer.allocateDirect(bufferSize);
+            allocated += bufferSize;
+        }
+        if (b != null) {
+            held.merge(owner, 1, Integer::sum);
+            b.clear();
+        }
+        return b;
+    }
+
+    /**
+     * Return buffer to the pool.
+     *
+     * @param owner owner of the buffer
+     * @param b buffer to return
+     */
+    public synchronized void release(PooledFileOutputStream owner, ByteBuffer b) {
+        held.computeIfPresent(owner, (k, v) -> v <= 1 ? null : v - 1);
+        b.clear();
+        free.addFirst(b);
+    }
+
+    /**
+     * @param requester owner requesting buffer
+     *
+     * @return owner holding the most buffers other than requester or {@code null} if there is none
+     */
+    private synchronized PooledFileOutputStream largestHolder(PooledFileOutputStream requester) {
+        PooledFileOutputStream victim = null;
+        int max = 0;
+        for (Map.Entry<PooledFileOutputStream, Integer> e : held.entrySet()) {
+            if (e.getKey() != requester && e.getValue() > max) {
+                max = e.getValue();
+                victim = e.getKey();
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * @return size of one buffer
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return number of bytes currently allocated by this pool
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocated;
+    }
+
+    /**
+     * @return number of bytes in buffers currently held by owners
+     */
+    public synchronized long getHeldBytes() {
+        return allocated - (long) free.size() * bufferSize;
+    }
+}
@@ -0,0 +1,59 @@
+package org.jdurani.rollingfile.sink;
+
+import org.jdurani.rollingfile.format.FileFooter;
+
+/**
+ * Metrics of one {@link RollingFileWriter}. All methods are called by the writer holding its lock, except
+ * {@link #fileCommitted(long)} which may be called by thread of {@link FileCommitter}.
+ */
+public interface WriterMetrics {
+
+    /**
+     * Metrics which record nothing.
+     */
+    WriterMetrics NONE = new WriterMetrics() {
+    };
+
+    /**
+     * @param records number of written records
+     * @param bytes number of encoded bytes of written records
+     * @param nowMs current time
+     */
+    default void recordsWritten(int records, long bytes, long nowMs) {
+    }
+
+    /**
+     * New file was opened.
+     */
+    default void fileOpened() {
+    }
+
+    /**
+     * File was closed and its commit was started.
+     *
+     * @param latencyNs time spent closing the file
+     */
+    default void fileRolled(long latencyNs) {
+    }
+
+    /**
+     * @param latencyNs time spent flushing buffered bytes and waiting for commits
+     */
+    default void flushed(long latencyNs) {
+    }
+
+    /**
+     * Rolled file is committed (renamed to its final name and forced to disk if configured).
+     *
+     * @param minTimestamp lowest timestamp of records of the file, {@link FileFooter#NO_TIMESTAMP} if records have
+     *         no timestamps
+     */
+    default void fileCommitted(long minTimestamp) {
+    }
+
+    /**
+     * Writer is destroyed, its metrics are removed.
+     */
+    default void close() {
+    }
+}
@@ -1,10 +1,10 @@
 package org.jdurani.rollingfile.source;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.Base64;
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -12,8 +12,18 @@ import java.util.Map;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.source.SourceRecord;
 import org.apache.kafka.connect.storage.OffsetStorageReader;
-import org.jdurani.rollingfile.exception.ReadException;
-import org.jdurani.rollingfile.sink.RollingFileWriter;
+import org.jdurani.rollingfile.format.BlockInputStream;
+import org.jdurani.rollingfile.format.CompressionCodec;
+import org.jdurani.rollingfile.format.CorruptionPolicy;
+import org.jdurani.rollingfile.format.DropBehindInputStream;
+import org.jdurani.rollingfile.format.FileFooter;
+import org.jdurani.rollingfile.format.LimitedInputStream;
+import org.jdurani.rollingfile.format.PageCache;
+import org.jdurani.rollingfile.format.RecordDecoder;
+import org.jdurani.rollingfile.format.RecordFormat;
+import org.jdurani.rollingfile.format.RecordIndex;
+import org.jdurani.rollingfile.format.RecordInput;
+import org.jdurani.rollingfile.format.StoredRecord;
 
 /**
  * Reader of rolling files.
@@ -22,42 +32,132 @@ public class RollingFileReader {
 
     static final String FILE_NAME_KEY = "file";
     static final String LINES_READ_OFFSETS = "lines_read";
+    /**
+     * Number of bytes of (decompressed) file content read so far, including file header and excluding headers of
+     * checksum blocks. For text files it equals number of characters.
+     */
     static final String CHARS_READ_OFFSETS = "chars_read";
-    private static final byte[] EMPTY_BYTES = new byte[0];
+    /**
+     * Value of start timestamp which loads all records.
+     */
+    static final long NO_START_TIMESTAMP = -1L;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * Number of read bytes of file dropped from page cache at once.
+     */
+    private static final long DROP_BEHIND_BYTES = 8L * 1024 * 1024;
 
     private final String topic;
-    private final BufferedReader reader;
+    private final RecordInput input;
+    private final BlockInputStream blocks;
+    private final RecordDecoder decoder;
     private final String fileAbsolutePath;
+    private final FileFooter footer;
     private final Map<String, String> sourcePartition;
     private final Integer partition;
+    private final long startTimestamp;
 
     private long linesRead;
     private long charsRead;
 
     /**
+     * Compression codec and record format of the file are detected from its content.
+     *
      * @param data data file to read
+     * @param footer footer of the file (see {@link FileFooter#read(File)}), {@code null} if file has no footer
      * @param topic topic for data
      * @param osr offset storage reader to get stored (already read) offsets
+     * @param startTimestamp records with timestamp lower than this one or without timestamp are skipped;
+     *         {@link #NO_START_TIMESTAMP} to read all records
+     * @param corruptionPolicy what to do with blocks of content with wrong checksum
+     * @param pageCache page cache to drop read pages of the file from
      *
      * @throws IOException in case there is error while seeking to correct position in file
      */
-    public RollingFileReader(File data, String topic, Integer partition, OffsetStorageReader osr) throws IOException {
+    public RollingFileReader(File data, FileFooter footer, String topic, Integer partition, OffsetStorageReader osr,
+            long startTimestamp, CorruptionPolicy corruptionPolicy, PageCache pageCache) throws IOException {
         this.fileAbsolutePath = data.getAbsolutePath();
+        this.footer = footer;
         this.topic = topic;
         this.partition = partition;
-        reader = new BufferedReader(new FileReader(data));
+        this.startTimestamp = startTimestamp;
         sourcePartition = Collections.singletonMap(FILE_NAME_KEY, this.fileAbsolutePath);
+        InputStream content = open(data, footer, pageCache);
+        try {
+            content = BlockInputStream.wrapIfBlocked(content, fileAbsolutePath, corruptionPolicy);
+        } catch (IOException | RuntimeException e) {
+            content.close();
+            throw e;
+        }
+        blocks = content instanceof BlockInputStream ? (BlockInputStream) content : null;
+        input = new RecordInput(content, BUFFER_SIZE);
+        try {
+            decoder = RecordFormat.detect(input).newDecoder(input, fileAbsolutePath);
+            seek(data, osr);
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param data file to open
+     * @param footer footer of the file, {@code null} if there is none
+     * @param pageCache page cache to drop read pages of the file from
+     *
+     * @return stream of decompressed data
+     *
+     * @throws IOException in case of error
+     */
+    private static InputStream open(File data, FileFooter footer, PageCache pageCache) throws IOException {
+        InputStream fis = new FileInputStream(data);
+        if (pageCache.isSupported()) {
+            fis = new DropBehindInputStream(fis, data.getAbsoluteFile(), pageCache, DROP_BEHIND_BYTES);
+        }
+        // buffered only for detection of codec, content is buffered by codec, checksum blocks or record input
+        InputStream is = new BufferedInputStream(
+                footer == null ? fis : new LimitedInputStream(fis, footer.getStoredLength()),
+                CompressionCodec.MAX_MAGIC_LENGTH);
+        try {
+            return CompressionCodec.detect(is).wrapInput(is);
+        } catch (IOException | RuntimeException e) {
+            is.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Skip data already read according to stored offsets. If there are no stored offsets, skip records older than
+     * start timestamp using index of the file (if any).
+     *
+     * @param data data file
+     * @param osr offset storage reader
+     *
+     * @throws IOException in case of error
+     */
+    private void seek(File data, OffsetStorageReader osr) throws IOException {
         Map<String, Object> offset = osr.offset(sourcePartition);
         linesRead = 0L;
         charsRead = 0L;
         if (offset != null && !offset.isEmpty()) {
             linesRead = getLong(offset, LINES_READ_OFFSETS);
             charsRead = getLong(offset, CHARS_READ_OFFSETS);
+        } else if (startTimestamp != NO_START_TIMESTAMP) {
+            RecordIndex index = RecordIndex.read(data);
+            int entry = index == null ? -1 : index.lookupTimestamp(startTimestamp);
+            if (entry >= 0) {
+                linesRead = index.getRecordNumber(entry);
+                charsRead = index.getPosition(entry);
+            }
         }
-        long skipped = reader.skip(charsRead);
-        if (skipped != charsRead) {
-            throw new IllegalStateException("Expected to skip " + charsRead + " characters, but actually skipped " + skipped + " [" + data.getAbsolutePath() + "]");
+        long toSkip = charsRead - input.position();
+        if (toSkip > 0) {
+            long skipped = input.skip(toSkip);
+            if (skipped != toSkip) {
+                throw new IllegalStateException("Expected to skip " + toSkip + " bytes, but actually skipped " + skipped + " [" + data.getAbsolutePath() + "]");
+            }
         }
+        decoder.resume(linesRead);
     }
 
     /**
@@ -82,69 +182,40 @@ public class RollingFileReader {
         return fileAbsolutePath;
     }
 
+    /**
+     * @return footer of the file, {@code null} if file has no footer
+     */
+    public FileFooter getFooter() {
+        return footer;
+    }
+
     /**
      * @return next record read from file
      *
      * @throws IOException in case of error while reading data
      */
     public SourceRecord nextRecord(final boolean ignoreTimestamp) throws IOException {
-        String s = reader.readLine();
-        if (s == null) {
-            return null;
-        }
-        int idx1 = s.indexOf(RollingFileWriter.KEY_VALUE_SEPARATOR);
-        if (idx1 < 0) {
-            throw new ReadException("Wrong line format - [file=" + fileAbsolutePath + ", line=" + (linesRead + 1) + "] " + s);
-        }
-        int keyStart = idx1 + RollingFileWriter.KEY_VALUE_SEPARATOR.length();
-        int idx2 = s.indexOf(RollingFileWriter.KEY_VALUE_SEPARATOR, keyStart);
-        if (idx2 < 0) {
-            throw new ReadException("Wrong line format - [file=" + fileAbsolutePath + ", line=" + (linesRead + 1) + "] " + s);
-        }
-        int valueStart = idx2 + RollingFileWriter.KEY_VALUE_SEPARATOR.length();
-        Long timestamp = decodeTimestamp(s.substring(0, idx1), ignoreTimestamp);
-        byte[] key = decode(s.substring(keyStart, idx2));
-        byte[] value = decode(s.substring(valueStart));
+        StoredRecord r;
+        do {
+            r = decoder.next();
+            if (r == null) {
+                return null;
+            }
+            linesRead++;
+        } while (startTimestamp != NO_START_TIMESTAMP
+                && (r.getTimestamp() == null || r.getTimestamp() < startTimestamp));
         Map<String, Long> sourceOffset = new HashMap<>();
-        sourceOffset.put(LINES_READ_OFFSETS, ++linesRead);
-        charsRead += s.length() + RollingFileWriter.RECORD_SEPARATOR.length;
+        sourceOffset.put(LINES_READ_OFFSETS, linesRead);
+        long position = decoder.resumePosition();
+        charsRead = position + (blocks == null ? 0L : blocks.skippedBefore(position));
         sourceOffset.put(CHARS_READ_OFFSETS, charsRead);
 
         return new SourceRecord(sourcePartition, sourceOffset,
                 topic, partition,
-                Schema.BYTES_SCHEMA, key,
-                Schema.BYTES_SCHEMA, value,
-                timestamp);
-    }
-
-    /**
-     * @param s string to decode from base64
-     *
-     * @return decoded bytes
-     */
-    private byte[] decode(String s) {
-        if (s.isEmpty()) {
-            return EMPTY_BYTES;
-        }
-        if (RollingFileWriter.NULL_OBJECT.equals(s)) {
-            return null;
-        }
-        return Base64.getDecoder().decode(s);
-    }
-
-    /**
-     * Decode string to Long.
-     *
-     * @param s string to decode
-     * @param ignore ignore timestamp?
-     *
-     * @return decoded timestamp as Long
-     */
-    private Long decodeTimestamp(String s, boolean ignore) {
-        if (ignore || RollingFileWriter.NO_TIMESTAMP.equals(s)) {
-            return null;
-        }
-        return Long.parseLong(s);
+                Schema.BYTES_SCHEMA, r.getKey(),
+                Schema.BYTES_SCHEMA, r.getValue(),
+                ignoreTimestamp ? null : r.getTimestamp(),
+                r.getHeaders());
     }
 
     /**
@@ -153,8 +224,8 @@ public class RollingFileReader {
      * @throws IOException in case of error
      */
     public void close() throws IOException {
-        if (reader != null) {
-            reader.close();
+        if (input != null) {
+            input.close();
         }
     }
 }
@@ -18,17 +18,27 @@ import org.jdurani.rollingfile.VersionHolder;
 public class RollingFileSourceConnector extends SourceConnector {
 
     private String dir;
+    private String layout;
     private int batchSize;
     private boolean ignoreTimestamp;
     private boolean ignorePartition;
+    private long startTimestamp;
+    private String corruptionPolicy;
+    private boolean manifest;
+    private boolean dropCache;
 
     @Override
     public void start(Map<String, String> props) {
         AbstractConfig c = new AbstractConfig(config(), props);
         dir = c.getString(RollingFileConfig.ROLLING_FILE_DIRECTORY_CONFIG);
+        layout = c.getString(RollingFileConfig.ROLLING_FILE_LAYOUT_CONFIG);
         batchSize = c.getInt(RollingFileConfig.ROLLING_FILE_BATCH_SIZE_CONFIG);
         ignorePartition = c.getBoolean(RollingFileConfig.ROLLING_FILE_IGNORE_PARTITION_CONFIG);
         ignoreTimestamp = c.getBoolean(RollingFileConfig.ROLLING_FILE_IGNORE_TIMESTAMP_CONFIG);
+        startTimestamp = c.getLong(RollingFileConfig.ROLLING_FILE_START_TIMESTAMP_CONFIG);
+        corruptionPolicy = c.getString(RollingFileConfig.ROLLING_FILE_CORRUPTION_POLICY_CONFIG);
+        manifest = c.getBoolean(RollingFileConfig.ROLLING_FILE_MANIFEST_CONFIG);
+        dropCache = c.getBoolean(RollingFileConfig.ROLLING_FILE_DROP_CACHE_CONFIG);
     }
 
     @Override
@@ -39,11 +49,16 @@ public class RollingFileSourceConnector extends SourceConnector {
     @Override
     public List<Map<String, String>> taskConfigs(int maxTasks) {
         List<Map<String, String>> cfgs = new ArrayList<>(1);
-        Map<String, String> cfg = new HashMap<>(4);
+        Map<String, String> cfg = new HashMap<>(9);
         cfg.put(RollingFileConfig.ROLLING_FILE_DIRECTORY_CONFIG, dir);
+        cfg.put(RollingFileConfig.ROLLING_FILE_LAYOUT_CONFIG, layout);
         cfg.put(RollingFileConfig.ROLLING_FILE_BATCH_SIZE_CONFIG, String.valueOf(batchSize));
         cfg.put(RollingFileConfig.ROLLING_FILE_IGNORE_TIMESTAMP_CONFIG, String.valueOf(ignoreTimestamp));
         cfg.put(RollingFileConfig.ROLLING_FILE_IGNORE_PARTITION_CONFIG, String.valueOf(ignorePartition));
+        cfg.put(RollingFileConfig.ROLLING_FILE_START_TIMESTAMP_CONFIG, String.valueOf(startTimestamp));
+        cfg.put(RollingFileConfig.ROLLING_FILE_CORRUPTION_POLICY_CONFIG, corruptionPolicy);
+        cfg.put(RollingFileConfig.ROLLING_FILE_MANIFEST_CONFIG, String.valueOf(manifest));
+        cfg.put(RollingFileConfig.ROLLING_FILE_DROP_CACHE_CONFIG, String.valueOf(dropCache));
         cfgs.add(cfg);
         return cfgs;
     }
@@ -3,8 +3,10 @@ package org.jdurani.rollingfile.source;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -12,6 +14,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import org.apache.kafka.connect.source.SourceRecord;
 import org.apache.kafka.connect.source.SourceTask;
@@ -19,6 +22,13 @@ import org.apache.kafka.connect.storage.OffsetStorageReader;
 import org.jdurani.rollingfile.RollingFileConfig;
 import org.jdurani.rollingfile.VersionHolder;
 import org.jdurani.rollingfile.exception.ReadException;
+import org.jdurani.rollingfile.format.CompressionCodec;
+import org.jdurani.rollingfile.format.CorruptionPolicy;
+import org.jdurani.rollingfile.format.FileFooter;
+import org.jdurani.rollingfile.format.FileLayout;
+import org.jdurani.rollingfile.format.FileManifest;
+import org.jdurani.rollingfile.format.PageCache;
+import org.jdurani.rollingfile.format.RecordFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,13 +38,35 @@ import org.slf4j.LoggerFactory;
 public class RollingFileSourceTask extends SourceTask {
 
     private static final Logger LOG = LoggerFactory.getLogger(RollingFileSourceTask.class);
-    private static final Pattern FILE_NAME_PATTERN = Pattern.compile("^([0-9]{10})-[0-9]{19}\\.txt$");
+    private static final Pattern FILE_NAME_PATTERN = Pattern.compile("^([0-9]{10})-[0-9]{19}("
+            + Arrays.stream(RecordFormat.values())
+                    .map(f -> Pattern.quote(f.getExtension()))
+                    .collect(Collectors.joining("|"))
+            + ")("
+            + Arrays.stream(CompressionCodec.values())
+                    .filter(c -> c != CompressionCodec.NONE)
+                    .map(c -> Pattern.quote(c.getSuffix()))
+                    .collect(Collectors.joining("|"))
+            + ")?$");
     private String dir;
+    private FileLayout layout;
     private int batchSize;
     private boolean ignoreTimestamp;
     private boolean ignorePartition;
+    private long startTimestamp;
+    private CorruptionPolicy corruptionPolicy;
+    private boolean manifest;
+    private PageCache pageCache;
     private List<RollingFileReader> toRead;
     private final Set<String> fullyReadFiles = new HashSet<>();
+    /**
+     * Time buckets which are fully read and will not get new files, they are not listed again.
+     */
+    private final Set<String> sealedDirectories = new HashSet<>();
+    /**
+     * Readers of manifests by topic, each remembers how far its manifest was read.
+     */
+    private final Map<String, FileManifest.Reader> manifests = new HashMap<>();
 
     @Override
     public String version() {
@@ -44,9 +76,22 @@ public class RollingFileSourceTask extends SourceTask {
     @Override
     public void start(Map<String, String> props) {
         dir = props.get(RollingFileConfig.ROLLING_FILE_DIRECTORY_CONFIG);
+        String layoutName = props.get(RollingFileConfig.ROLLING_FILE_LAYOUT_CONFIG);
+        layout = layoutName == null ? FileLayout.FLAT : FileLayout.forName(layoutName);
         batchSize = Integer.parseInt(props.get(RollingFileConfig.ROLLING_FILE_BATCH_SIZE_CONFIG));
         ignorePartition = Boolean.parseBoolean(props.get(RollingFileConfig.ROLLING_FILE_IGNORE_PARTITION_CONFIG));
         ignoreTimestamp = Boolean.parseBoolean(props.get(RollingFileConfig.ROLLING_FILE_IGNORE_TIMESTAMP_CONFIG));
+        String start = props.get(RollingFileConfig.ROLLING_FILE_START_TIMESTAMP_CONFIG);
+        startTimestamp = start == null ? RollingFileReader.NO_START_TIMESTAMP : Long.parseLong(start);
+        String policy = props.get(RollingFileConfig.ROLLING_FILE_CORRUPTION_POLICY_CONFIG);
+        corruptionPolicy = policy == null ? CorruptionPolicy.FAIL : CorruptionPolicy.forName(policy);
+        manifest = Boolean.parseBoolean(props.get(RollingFileConfig.ROLLING_FILE_MANIFEST_CONFIG));
+        manifests.clear();
+        boolean dropCache = Boolean.parseBoolean(props.get(RollingFileConfig.ROLLING_FILE_DROP_CACHE_CONFIG));
+        pageCache = PageCache.get(dropCache);
+        if (dropCache && !pageCache.isSupported()) {
+            LOG.warn("Dropping pages from page cache is not supported (it requires Linux and JNA), pages are kept");
+        }
     }
 
     @Override
@@ -76,6 +121,9 @@ public class RollingFileSourceTask extends SourceTask {
     }
 
     /**
+     * Files are found by reading new entries of {@link FileManifest} of each topic if enabled and the topic has
+     * manifest, otherwise by listing directories of the topic.
+     *
      * @return all files currently available for reading
      *
      * @throws IOException in case of error
@@ -89,26 +137,130 @@ public class RollingFileSourceTask extends SourceTask {
         if (topics == null) {
             return Collections.emptyList();
         }
-        List<File> out = new ArrayList<>();
+        Arrays.sort(topics, Comparator.comparing(File::getName));
+        OffsetStorageReader osr = context.offsetStorageReader();
+        List<RollingFileReader> list = new ArrayList<>();
+        long plannedRecords = 0;
         for (File topic : topics) {
-            File[] files = topic.listFiles(x -> x.isFile()
-                    && !fullyReadFiles.contains(x.getAbsolutePath()) // do not load already read files
-                    && FILE_NAME_PATTERN.matcher(x.getName()).matches());
-            if (files != null) {
-                for (File r : files) {
-                    out.add(r.getAbsoluteFile());
+            List<File> out = new ArrayList<>();
+            FileManifest.Reader manifestReader = manifest
+                    ? manifests.computeIfAbsent(topic.getName(), t -> new FileManifest.Reader(topic))
+                    : null;
+            if (manifestReader != null && manifestReader.exists()) {
+                collectManifestFiles(topic, manifestReader, out);
+            } else {
+                collectFiles(topic, layout.getDepth(), out);
+            }
+            out.sort(Comparator.comparing(File::getName));
+            for (File x : out) {
+                FileFooter footer = FileFooter.read(x);
+                if (footer != null && startTimestamp != RollingFileReader.NO_START_TIMESTAMP
+                        && footer.getMaxTimestamp() < startTimestamp) {
+                    LOG.debug("Skipping file {} - all records are older than start timestamp", x);
+                    fullyReadFiles.add(x.getAbsolutePath());
+                    continue;
+                }
+                if (footer != null) {
+                    plannedRecords += footer.getRecordCount();
                 }
+                list.add(new RollingFileReader(x, footer, topic.getName(),
+                        ignorePartition ? null : getPartition(x), osr, startTimestamp, corruptionPolicy, pageCache));
             }
         }
-        out.sort(Comparator.<File, String>comparing(x -> x.getParentFile().getName()).thenComparing(File::getName));
-        OffsetStorageReader osr = context.offsetStorageReader();
-        List<RollingFileReader> list = new ArrayList<>();
-        for (File x : out) {
-            list.add(new RollingFileReader(x, x.getParentFile().getName(), ignorePartition ? null : getPartition(x), osr));
+        if (!list.isEmpty()) {
+            LOG.info("Reading {} files, {} records in files with footer", list.size(), plannedRecords);
         }
         return list;
     }
 
+    /**
+     * Collect files of entries appended to manifest since it was read last time. Files deleted since then (by entries
+     * of deleted files or missing) and files with all records older than start timestamp are skipped (entries with
+     * unknown record count are kept).
+     *
+     * @param topic directory of topic
+     * @param manifestReader reader of manifest of the topic
+     * @param out list to add files to
+     *
+     * @throws IOException in case of error
+     */
+    private void collectManifestFiles(File topic, FileManifest.Reader manifestReader, List<File> out)
+            throws IOException {
+        for (FileManifest.Entry e : manifestReader.readNew()) {
+            File f = e.fileIn(topic);
+            if (e.isDeleted()) {
+                out.remove(f.getAbsoluteFile());
+            } else if (startTimestamp != RollingFileReader.NO_START_TIMESTAMP
+                    && e.getRecordCount() >= 0 && e.getMaxTimestamp() < startTimestamp) {
+                LOG.debug("Skipping file {} - all records are older than start timestamp", f);
+            } else if (f.isFile()) {
+                out.add(f.getAbsoluteFile());
+            } else {
+                LOG.debug("Skipping file {} - it was deleted", f);
+            }
+        }
+    }
+
+    /**
+     * Collect files which are not read yet. Time buckets (see {@link FileLayout#isTimeBucketed()}) which are complete
+     * and have a newer sibling are sealed - sink opens files only in the newest bucket, so they will not get new
+     * files and they are never listed again.
+     *
+     * @param directory directory to list
+     * @param levels number of directory levels between the directory and files
+     * @param out list to add files to
+     *
+     * @return {@code true} if the directory contains no unread files and no temporal files of the sink
+     */
+    private boolean collectFiles(File directory, int levels, List<File> out) {
+        File[] children = directory.listFiles(x -> !sealedDirectories.contains(x.getAbsolutePath()));
+        if (children == null) {
+            return true;
+        }
+        boolean complete = true;
+        if (levels == 0) {
+            for (File f : children) {
+                if (f.getName().startsWith(".")) {
+                    // temporal file of the sink
+                    complete = false;
+                } else if (f.isFile()
+                        && !fullyReadFiles.contains(f.getAbsolutePath()) // do not load already read files
+                        && FILE_NAME_PATTERN.matcher(f.getName()).matches()) {
+                    out.add(f.getAbsoluteFile());
+                    complete = false;
+                }
+            }
+            return complete;
+        }
+        File[] directories = Arrays.stream(children)
+                .filter(x -> x.isDirectory() && !x.getName().startsWith("."))
+                .sorted(Comparator.comparing(File::getName))
+                .toArray(File[]::new);
+        boolean buckets = layout.isTimeBucketed() && levels < layout.getDepth();
+        for (int i = 0; i < directories.length; i++) {
+            boolean c = collectFiles(directories[i], levels - 1, out);
+            if (c && buckets && i < directories.length - 1) {
+                seal(directories[i]);
+            }
+            complete &= c;
+        }
+        return complete;
+    }
+
+    /**
+     * Remember directory as sealed and forget its read files.
+     *
+     * @param directory time bucket
+     */
+    private void seal(File directory) {
+        String path = directory.getAbsolutePath();
+        String prefix = path + File.separator;
+        LOG.debug("Directory {} is fully read", path);
+        fullyReadFiles.removeIf(x -> x.startsWith(prefix));
+        sealedDirectories.removeIf(x -> x.startsWith(prefix));
+        sealedDirectories.add(path);
+    }
+
     /**
      * Reads kafka partition from file name.
      *
@@ -19,10 +19,11 @@ public class Utils {
                 "test_data_tmp",
                 cls.substring(cls.lastIndexOf('.') + 1),
                 String.valueOf(++idx));
+        if (Files.exists(path) && deleteIfExists) {
+            delete(path.toFile());
+        }
         if (!Files.exists(path)) {
             Files.createDirectories(path);
-        } else if (deleteIfExists) {
-            delete(path.toFile());
         }
         return path;
     }
@@ -0,0 +1,155 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.header.ConnectHeaders;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.jdurani.rollingfile.exception.ReadException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BinaryRecordEncoderTest {
+
+    private BinaryRecordEncoder test;
+    private ByteArrayOutputStream out;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        test = new BinaryRecordEncoder();
+        out = new ByteArrayOutputStream();
+        test.writeHeader(out, 100L);
+    }
+
+    @Test
+    void header() {
+        byte[] h = out.toByteArray();
+        Assertions.assertEquals(BinaryRecordEncoder.HEADER_LENGTH, h.length);
+        Assertions.assertArrayEquals(BinaryRecordEncoder.MAGIC, Arrays.copyOf(h, BinaryRecordEncoder.MAGIC.length));
+        Assertions.assertEquals(BinaryRecordEncoder.VERSION, h[BinaryRecordEncoder.MAGIC.length]);
+        Assertions.assertEquals(100L, ByteBuffer.wrap(h, BinaryRecordEncoder.MAGIC.length + 1, Long.BYTES).getLong());
+    }
+
+    @Test
+    void nulls() throws IOException {
+        write(new SinkRecord("t", 0, null, null, null, null, 100L));
+        StoredRecord r = decodeSingle();
+        Assertions.assertAll(
+                () -> Assertions.assertNull(r.getKey()),
+                () -> Assertions.assertNull(r.getValue()),
+                () -> Assertions.assertNull(r.getTimestamp()),
+                () -> Assertions.assertEquals(100L, r.getOffset()),
+                () -> Assertions.assertTrue(r.getHeaders().isEmpty()));
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        Random rnd = new Random(42);
+        SinkRecord[] records = new SinkRecord[50];
+        for (int i = 0; i < records.length; i++) {
+            byte[] key = new byte[i];
+            byte[] value = new byte[i * 301];
+            rnd.nextBytes(key);
+            rnd.nextBytes(value);
+            long ts = i % 2 == 0 ? -i : Long.MAX_VALUE - i;
+            records[i] = new SinkRecord("t", 0, null, key, null, value, 100L + i * 1000L, ts, null);
+            write(records[i]);
+        }
+        RecordDecoder decoder = decoder();
+        for (SinkRecord expected : records) {
+            StoredRecord r = decoder.next();
+            Assertions.assertNotNull(r);
+            Assertions.assertArrayEquals((byte[]) expected.key(), r.getKey());
+            Assertions.assertArrayEquals((byte[]) expected.value(), r.getValue());
+            Assertions.assertEquals(expected.timestamp(), r.getTimestamp());
+            Assertions.assertEquals(expected.kafkaOffset(), r.getOffset());
+        }
+        Assertions.assertNull(decoder.next());
+    }
+
+    @Test
+    void otherTypes() throws IOException {
+        byte[] data = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+        direct.position(3);
+        String s = "kč😀";
+        write(new SinkRecord("t", 0, null, s, null, direct, 99L, 5L, null));
+        Assertions.assertEquals(3, direct.position());
+        StoredRecord r = decodeSingle();
+        Assertions.assertAll(
+                () -> Assertions.assertArrayEquals(s.getBytes(StandardCharsets.UTF_8), r.getKey()),
+                () -> Assertions.assertArrayEquals(Arrays.copyOfRange(data, 3, data.length), r.getValue()),
+                () -> Assertions.assertEquals(5L, r.getTimestamp()),
+                () -> Assertions.assertEquals(99L, r.getOffset()));
+    }
+
+    @Test
+    void headers() throws IOException {
+        ConnectHeaders headers = new ConnectHeaders();
+        headers.addBytes("bytes", new byte[] {1, 2});
+        headers.addString("string", "sč");
+        headers.addInt("int", 42);
+        headers.add("null", null, Schema.OPTIONAL_BYTES_SCHEMA);
+        headers.addBytes("bytes", new byte[] {3});
+        write(new SinkRecord("t", 0, null, null, null, null, 100L, null, null, headers));
+        StoredRecord r = decodeSingle();
+        Assertions.assertEquals(5, r.getHeaders().size());
+        Assertions.assertAll(
+                () -> Assertions.assertArrayEquals(new byte[] {3}, (byte[]) r.getHeaders().lastWithName("bytes").value()),
+                () -> Assertions.assertArrayEquals("sč".getBytes(StandardCharsets.UTF_8), (byte[]) r.getHeaders().lastWithName("string").value()),
+                () -> Assertions.assertArrayEquals("42".getBytes(StandardCharsets.UTF_8), (byte[]) r.getHeaders().lastWithName("int").value()),
+                () -> Assertions.assertNull(r.getHeaders().lastWithName("null").value()));
+    }
+
+    @Test
+    void unsupportedType() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> test.encode(new SinkRecord("t", 0, null, 1, null, null, 100L)));
+    }
+
+    @Test
+    void truncatedRecord() throws IOException {
+        write(new SinkRecord("t", 0, null, new byte[] {1}, null, new byte[100], 100L));
+        byte[] b = out.toByteArray();
+        RecordInput in = new RecordInput(new ByteArrayInputStream(b, 0, b.length - 1), 16);
+        RecordDecoder decoder = RecordFormat.BINARY.newDecoder(in, "f");
+        Assertions.assertThrows(ReadException.class, decoder::next);
+    }
+
+    @Test
+    void wrongVersion() {
+        byte[] b = out.toByteArray();
+        b[BinaryRecordEncoder.MAGIC.length]++;
+        Assertions.assertThrows(ReadException.class,
+                () -> RecordFormat.BINARY.newDecoder(new RecordInput(new ByteArrayInputStream(b), 16), "f"));
+    }
+
+    private void write(SinkRecord r) throws IOException {
+        test.encode(r);
+        int before = out.size();
+        test.writeTo(out);
+        Assertions.assertEquals(test.length(), out.size() - before);
+    }
+
+    private RecordDecoder decoder() throws IOException {
+        RecordInput in = new RecordInput(new ByteArrayInputStream(out.toByteArray()), 16);
+        Assertions.assertSame(RecordFormat.BINARY, RecordFormat.detect(in));
+        return RecordFormat.BINARY.newDecoder(in, "f");
+    }
+
+    private StoredRecord decodeSingle() throws IOException {
+        RecordDecoder decoder = decoder();
+        StoredRecord r = decoder.next();
+        Assertions.assertNotNull(r);
+        Assertions.assertNull(decoder.next());
+        return r;
+    }
+}
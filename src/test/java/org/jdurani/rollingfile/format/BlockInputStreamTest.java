@@ -0,0 +1,142 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.jdurani.rollingfile.exception.ReadException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class BlockInputStreamTest {
+
+    private static final int STREAM_HEADER_LENGTH = BlockOutputStream.MAGIC.length + 1;
+    private static final int SECOND_BLOCK_DATA = STREAM_HEADER_LENGTH + 2 * BlockOutputStream.BLOCK_HEADER_LENGTH + 4;
+
+    @Test
+    void readBlocks() throws IOException {
+        byte[] blocks = write("abcd", "efgh", "ij");
+        Assertions.assertEquals(STREAM_HEADER_LENGTH + 3 * BlockOutputStream.BLOCK_HEADER_LENGTH + 10, blocks.length);
+        InputStream in = BlockInputStream.wrapIfBlocked(new ByteArrayInputStream(blocks), "f", CorruptionPolicy.FAIL);
+        Assertions.assertTrue(in instanceof BlockInputStream);
+        Assertions.assertEquals("abcdefghij", read(in));
+    }
+
+    @Test
+    void notBlocked() throws IOException {
+        byte[] data = "abcdefghij".getBytes(StandardCharsets.UTF_8);
+        InputStream in = BlockInputStream.wrapIfBlocked(new ByteArrayInputStream(data), "f", CorruptionPolicy.FAIL);
+        Assertions.assertFalse(in instanceof BlockInputStream);
+        Assertions.assertEquals("abcdefghij", read(in));
+        in = BlockInputStream.wrapIfBlocked(new ByteArrayInputStream(new byte[] {1}), "f", CorruptionPolicy.FAIL);
+        Assertions.assertEquals(1, in.read());
+        Assertions.assertEquals(-1, in.read());
+    }
+
+    @Test
+    void largeRecord() throws IOException {
+        byte[] blocks = write("abcdefghij", "k");
+        // record is never split between blocks
+        Assertions.assertEquals(STREAM_HEADER_LENGTH + 2 * BlockOutputStream.BLOCK_HEADER_LENGTH + 11, blocks.length);
+        Assertions.assertEquals("abcdefghijk", read(new ByteArrayInputStream(blocks), CorruptionPolicy.FAIL));
+    }
+
+    @Test
+    void corruptedBlock() throws IOException {
+        byte[] blocks = write("abcd", "efgh", "ij");
+        blocks[SECOND_BLOCK_DATA] = 'x';
+        Assertions.assertThrows(ReadException.class,
+                () -> read(new ByteArrayInputStream(blocks), CorruptionPolicy.FAIL));
+        Assertions.assertEquals("abcdxfghij", read(new ByteArrayInputStream(blocks), CorruptionPolicy.LOG));
+        BlockInputStream in = blockStream(blocks, CorruptionPolicy.SKIP);
+        Assertions.assertEquals("abcdij", read(in));
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(1, in.getSkippedBlocks()),
+                () -> Assertions.assertEquals(0L, in.skippedBefore(3L)),
+                () -> Assertions.assertEquals(4L, in.skippedBefore(4L)),
+                () -> Assertions.assertEquals(4L, in.skippedBefore(6L)));
+    }
+
+    @Test
+    void truncated() throws IOException {
+        byte[] blocks = write("abcd", "efgh");
+        byte[] data = Arrays.copyOf(blocks, blocks.length - 1);
+        Assertions.assertThrows(ReadException.class,
+                () -> read(new ByteArrayInputStream(data), CorruptionPolicy.FAIL));
+        Assertions.assertEquals("abcd", read(new ByteArrayInputStream(data), CorruptionPolicy.SKIP));
+        byte[] header = Arrays.copyOf(blocks, SECOND_BLOCK_DATA - 1);
+        Assertions.assertThrows(ReadException.class,
+                () -> read(new ByteArrayInputStream(header), CorruptionPolicy.FAIL));
+        Assertions.assertEquals("abcd", read(new ByteArrayInputStream(header), CorruptionPolicy.LOG));
+    }
+
+    @Test
+    void skip() throws IOException {
+        byte[] blocks = write("abcd", "efgh", "ij");
+        // skipped blocks are not verified
+        blocks[STREAM_HEADER_LENGTH + BlockOutputStream.BLOCK_HEADER_LENGTH] = 'x';
+        BlockInputStream in = blockStream(blocks, CorruptionPolicy.FAIL);
+        Assertions.assertEquals(6L, in.skip(6L));
+        Assertions.assertEquals("ghij", read(in));
+        in = blockStream(blocks, CorruptionPolicy.FAIL);
+        Assertions.assertEquals(4L, in.skip(4L));
+        Assertions.assertEquals('e', in.read());
+        Assertions.assertEquals(4L, in.skip(4L));
+        Assertions.assertEquals(1L, in.skip(2L));
+        Assertions.assertEquals(-1, in.read());
+    }
+
+    @Test
+    void takeBlock() throws IOException {
+        byte[] blocks = write("abcd", "efgh", "ij");
+        blocks[SECOND_BLOCK_DATA] = 'x';
+        BlockInputStream in = blockStream(blocks, CorruptionPolicy.SKIP);
+        Assertions.assertEquals('a', in.read());
+        byte[] spare = new byte[16];
+        ByteBuffer b = in.takeBlock(spare);
+        Assertions.assertEquals("bcd", string(b));
+        // corrupted block is skipped, the next one is loaded to the spare array
+        b = in.takeBlock(new byte[1]);
+        Assertions.assertSame(spare, b.array());
+        Assertions.assertEquals("ij", string(b));
+        Assertions.assertNull(in.takeBlock(new byte[1]));
+        Assertions.assertEquals(4L, in.skippedBefore(4L));
+    }
+
+    private static String string(ByteBuffer b) {
+        return new String(b.array(), b.position(), b.remaining(), StandardCharsets.UTF_8);
+    }
+
+    private byte[] write(String... records) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (BlockOutputStream os = new BlockOutputStream(bos, 4)) {
+            for (String r : records) {
+                os.write(r.getBytes(StandardCharsets.UTF_8));
+                os.endRecord();
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    private BlockInputStream blockStream(byte[] blocks, CorruptionPolicy policy) throws IOException {
+        return (BlockInputStream) BlockInputStream.wrapIfBlocked(new ByteArrayInputStream(blocks), "f", policy);
+    }
+
+    private String read(InputStream in, CorruptionPolicy policy) throws IOException {
+        return read(BlockInputStream.wrapIfBlocked(in, "f", policy));
+    }
+
+    private String read(InputStream in) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] b = new byte[3];
+        int n;
+        while ((n = in.read(b, 0, b.length)) >= 0) {
+            bos.write(b, 0, n);
+        }
+        return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
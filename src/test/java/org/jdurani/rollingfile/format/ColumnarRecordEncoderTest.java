@@ -0,0 +1,266 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.header.ConnectHeaders;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.jdurani.rollingfile.exception.ReadException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ColumnarRecordEncoderTest {
+
+    private ColumnarRecordEncoder test;
+    private ByteArrayOutputStream out;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        test = new ColumnarRecordEncoder();
+        out = new ByteArrayOutputStream();
+        test.writeHeader(out, 100L);
+    }
+
+    @Test
+    void header() {
+        byte[] h = out.toByteArray();
+        Assertions.assertEquals(ColumnarRecordEncoder.HEADER_LENGTH, h.length);
+        Assertions.assertArrayEquals(ColumnarRecordEncoder.MAGIC, Arrays.copyOf(h, ColumnarRecordEncoder.MAGIC.length));
+        Assertions.assertEquals(ColumnarRecordEncoder.VERSION, h[ColumnarRecordEncoder.MAGIC.length]);
+        Assertions.assertEquals(100L, ByteBuffer.wrap(h, ColumnarRecordEncoder.MAGIC.length + 1, Long.BYTES).getLong());
+    }
+
+    @Test
+    void nulls() throws IOException {
+        write(new SinkRecord("t", 0, null, null, null, null, 100L));
+        Assertions.assertFalse(test.atBoundary());
+        finish();
+        StoredRecord r = decodeSingle();
+        Assertions.assertAll(
+                () -> Assertions.assertNull(r.getKey()),
+                () -> Assertions.assertNull(r.getValue()),
+                () -> Assertions.assertNull(r.getTimestamp()),
+                () -> Assertions.assertEquals(100L, r.getOffset()),
+                () -> Assertions.assertTrue(r.getHeaders().isEmpty()));
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        Random rnd = new Random(42);
+        SinkRecord[] records = new SinkRecord[ColumnarRecordEncoder.SEGMENT_RECORDS + 50];
+        for (int i = 0; i < records.length; i++) {
+            byte[] key = new byte[i % 20];
+            byte[] value = new byte[i % 301];
+            rnd.nextBytes(key);
+            rnd.nextBytes(value);
+            Long ts = i % 3 == 0 ? null : i % 2 == 0 ? (long) -i : Long.MAX_VALUE - i;
+            records[i] = new SinkRecord("t", 0, null, key, null, value, 100L + i * 1000L, ts, null);
+            write(records[i]);
+        }
+        finish();
+        RecordDecoder decoder = decoder(false);
+        for (SinkRecord expected : records) {
+            StoredRecord r = decoder.next();
+            Assertions.assertNotNull(r);
+            Assertions.assertArrayEquals((byte[]) expected.key(), r.getKey());
+            Assertions.assertArrayEquals((byte[]) expected.value(), r.getValue());
+            Assertions.assertEquals(expected.timestamp(), r.getTimestamp());
+            Assertions.assertEquals(expected.kafkaOffset(), r.getOffset());
+        }
+        Assertions.assertNull(decoder.next());
+    }
+
+    @Test
+    void segments() throws IOException {
+        for (int i = 0; i < ColumnarRecordEncoder.SEGMENT_RECORDS - 1; i++) {
+            write(new SinkRecord("t", 0, null, null, null, null, 100L + i));
+            Assertions.assertEquals(0, test.length());
+        }
+        write(new SinkRecord("t", 0, null, null, null, null, 100L + ColumnarRecordEncoder.SEGMENT_RECORDS));
+        Assertions.assertTrue(test.length() > 0);
+        Assertions.assertTrue(test.atBoundary());
+        Assertions.assertEquals(0, test.finish(out));
+        // segment of large values is written before it is full
+        write(new SinkRecord("t", 0, null, null, null, new byte[ColumnarRecordEncoder.SEGMENT_BYTES], 1L));
+        Assertions.assertTrue(test.length() > ColumnarRecordEncoder.SEGMENT_BYTES);
+    }
+
+    @Test
+    void dictionaryKeys() throws IOException {
+        for (int i = 0; i < 1000; i++) {
+            write(new SinkRecord("t", 0, null, i % 10 == 9 ? null : "key-of-some-length-" + i % 3, null,
+                    null, 100L + i));
+        }
+        int dictionary = finish();
+        ColumnarRecordEncoder plain = new ColumnarRecordEncoder();
+        plain.writeHeader(new ByteArrayOutputStream(), 100L);
+        for (int i = 0; i < 1000; i++) {
+            plain.encode(new SinkRecord("t", 0, null, "key-of-some-length-" + i, null, null, 100L + i));
+        }
+        Assertions.assertTrue(dictionary < plain.finish(new ByteArrayOutputStream()) / 5);
+        RecordDecoder decoder = decoder(false);
+        for (int i = 0; i < 1000; i++) {
+            byte[] expected = i % 10 == 9 ? null : ("key-of-some-length-" + i % 3).getBytes(StandardCharsets.UTF_8);
+            Assertions.assertArrayEquals(expected, decoder.next().getKey());
+        }
+        Assertions.assertNull(decoder.next());
+    }
+
+    @Test
+    void keysOnly() throws IOException {
+        ConnectHeaders headers = new ConnectHeaders();
+        headers.addString("h", "v");
+        write(new SinkRecord("t", 0, null, "k", null, "v", 100L, 5L, null, headers));
+        write(new SinkRecord("t", 0, null, "l", null, "w", 101L, 6L, null, headers));
+        finish();
+        RecordDecoder decoder = decoder(true);
+        StoredRecord r = decoder.next();
+        Assertions.assertAll(
+                () -> Assertions.assertArrayEquals("k".getBytes(StandardCharsets.UTF_8), r.getKey()),
+                () -> Assertions.assertNull(r.getValue()),
+                () -> Assertions.assertTrue(r.getHeaders().isEmpty()),
+                () -> Assertions.assertEquals(5L, r.getTimestamp()),
+                () -> Assertions.assertEquals(100L, r.getOffset()));
+        Assertions.assertEquals(101L, decoder.next().getOffset());
+        Assertions.assertNull(decoder.next());
+    }
+
+    @Test
+    void otherTypes() throws IOException {
+        byte[] data = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+        direct.position(3);
+        String s = "kč😀";
+        write(new SinkRecord("t", 0, null, s, null, direct, 99L, 5L, null));
+        Assertions.assertEquals(3, direct.position());
+        finish();
+        StoredRecord r = decodeSingle();
+        Assertions.assertAll(
+                () -> Assertions.assertArrayEquals(s.getBytes(StandardCharsets.UTF_8), r.getKey()),
+                () -> Assertions.assertArrayEquals(Arrays.copyOfRange(data, 3, data.length), r.getValue()),
+                () -> Assertions.assertEquals(5L, r.getTimestamp()),
+                () -> Assertions.assertEquals(99L, r.getOffset()));
+    }
+
+    @Test
+    void headers() throws IOException {
+        ConnectHeaders headers = new ConnectHeaders();
+        headers.addBytes("bytes", new byte[] {1, 2});
+        headers.addString("string", "sč");
+        headers.addInt("int", 42);
+        headers.add("null", null, Schema.OPTIONAL_BYTES_SCHEMA);
+        headers.addBytes("bytes", new byte[] {3});
+        write(new SinkRecord("t", 0, null, null, null, null, 100L, null, null, headers));
+        finish();
+        StoredRecord r = decodeSingle();
+        Assertions.assertEquals(5, r.getHeaders().size());
+        Assertions.assertAll(
+                () -> Assertions.assertArrayEquals(new byte[] {3}, (byte[]) r.getHeaders().lastWithName("bytes").value()),
+                () -> Assertions.assertArrayEquals("sč".getBytes(StandardCharsets.UTF_8), (byte[]) r.getHeaders().lastWithName("string").value()),
+                () -> Assertions.assertArrayEquals("42".getBytes(StandardCharsets.UTF_8), (byte[]) r.getHeaders().lastWithName("int").value()),
+                () -> Assertions.assertNull(r.getHeaders().lastWithName("null").value()));
+    }
+
+    @Test
+    void unsupportedType() throws IOException {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> test.encode(new SinkRecord("t", 0, null, 1, null, null, 100L)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> test.encode(new SinkRecord("t", 0, null, "k", null, 1, 100L)));
+        // failed records are not buffered
+        write(new SinkRecord("t", 0, null, "k", null, "v", 101L));
+        finish();
+        Assertions.assertEquals(101L, decodeSingle().getOffset());
+    }
+
+    @Test
+    void resume() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            write(new SinkRecord("t", 0, null, null, null, null, 100L + i));
+        }
+        finish();
+        RecordInput in = new RecordInput(new ByteArrayInputStream(out.toByteArray()), 16);
+        RecordDecoder decoder = RecordFormat.COLUMNAR.newDecoder(in, "f");
+        long start = decoder.resumePosition();
+        decoder.next();
+        decoder.next();
+        // records of partially read segment are read again
+        Assertions.assertEquals(start, decoder.resumePosition());
+        in = new RecordInput(new ByteArrayInputStream(out.toByteArray()), 16);
+        decoder = RecordFormat.COLUMNAR.newDecoder(in, "f");
+        decoder.resume(2L);
+        Assertions.assertEquals(102L, decoder.next().getOffset());
+        for (int i = 3; i < 10; i++) {
+            Assertions.assertEquals(100L + i, decoder.next().getOffset());
+        }
+        Assertions.assertEquals(out.size(), decoder.resumePosition());
+        Assertions.assertNull(decoder.next());
+    }
+
+    @Test
+    void corruptedColumn() throws IOException {
+        write(new SinkRecord("t", 0, null, new byte[] {1}, null, new byte[100], 100L));
+        finish();
+        byte[] b = out.toByteArray();
+        // length of offsets column follows record count and number of preceding records
+        b[ColumnarRecordEncoder.HEADER_LENGTH + 2]++;
+        RecordInput in = new RecordInput(new ByteArrayInputStream(b), 16);
+        RecordDecoder decoder = RecordFormat.COLUMNAR.newDecoder(in, "f");
+        Assertions.assertThrows(ReadException.class, decoder::next);
+    }
+
+    @Test
+    void truncatedSegment() throws IOException {
+        write(new SinkRecord("t", 0, null, new byte[] {1}, null, new byte[100], 100L));
+        finish();
+        byte[] b = out.toByteArray();
+        RecordInput in = new RecordInput(new ByteArrayInputStream(b, 0, b.length - 1), 16);
+        RecordDecoder decoder = RecordFormat.COLUMNAR.newDecoder(in, "f");
+        Assertions.assertThrows(ReadException.class, decoder::next);
+    }
+
+    @Test
+    void wrongVersion() {
+        byte[] b = out.toByteArray();
+        b[ColumnarRecordEncoder.MAGIC.length]++;
+        Assertions.assertThrows(ReadException.class,
+                () -> RecordFormat.COLUMNAR.newDecoder(new RecordInput(new ByteArrayInputStream(b), 16), "f"));
+    }
+
+    private void write(SinkRecord r) throws IOException {
+        test.encode(r);
+        int before = out.size();
+        test.writeTo(out);
+        Assertions.assertEquals(test.length(), out.size() - before);
+    }
+
+    private int finish() throws IOException {
+        int before = out.size();
+        int written = test.finish(out);
+        Assertions.assertEquals(written, out.size() - before);
+        Assertions.assertTrue(test.atBoundary());
+        return written;
+    }
+
+    private RecordDecoder decoder(boolean keysOnly) throws IOException {
+        RecordInput in = new RecordInput(new ByteArrayInputStream(out.toByteArray()), 16);
+        Assertions.assertSame(RecordFormat.COLUMNAR, RecordFormat.detect(in));
+        return new ColumnarRecordDecoder(in, "f", keysOnly);
+    }
+
+    private StoredRecord decodeSingle() throws IOException {
+        RecordDecoder decoder = decoder(false);
+        StoredRecord r = decoder.next();
+        Assertions.assertNotNull(r);
+        Assertions.assertNull(decoder.next());
+        return r;
+    }
+}
@@ -0,0 +1,69 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CompressionCodecTest {
+
+    @Test
+    void roundTripAndDetect() throws IOException {
+        byte[] data = new byte[300_000];
+        Random rnd = new Random(1);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + rnd.nextInt(4));
+        }
+        for (CompressionCodec c : CompressionCodec.values()) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (OutputStream os = c.wrapOutput(bos)) {
+                os.write(data, 0, 1000);
+                os.flush();
+                os.write(data, 1000, data.length - 1000);
+            }
+            byte[] compressed = bos.toByteArray();
+            if (c != CompressionCodec.NONE) {
+                Assertions.assertTrue(compressed.length < data.length, c + " did not compress");
+            }
+            InputStream is = new BufferedInputStream(new ByteArrayInputStream(compressed));
+            Assertions.assertSame(c, CompressionCodec.detect(is), "wrong codec detected");
+            Assertions.assertArrayEquals(data, readAll(c.wrapInput(is)), c + " round trip failed");
+        }
+    }
+
+    @Test
+    void detectShortAndPlain() throws IOException {
+        Assertions.assertSame(CompressionCodec.NONE, CompressionCodec.detect(new BufferedInputStream(new ByteArrayInputStream(new byte[0]))));
+        InputStream is = new BufferedInputStream(new ByteArrayInputStream("123 AA== AA==\n".getBytes()));
+        Assertions.assertSame(CompressionCodec.NONE, CompressionCodec.detect(is));
+        Assertions.assertEquals('1', is.read(), "stream not reset");
+    }
+
+    @Test
+    void forName() {
+        Assertions.assertAll(
+                () -> Assertions.assertSame(CompressionCodec.NONE, CompressionCodec.forName("none")),
+                () -> Assertions.assertSame(CompressionCodec.GZIP, CompressionCodec.forName("GZIP")),
+                () -> Assertions.assertSame(CompressionCodec.LZ4, CompressionCodec.forName("lz4")),
+                () -> Assertions.assertSame(CompressionCodec.ZSTD, CompressionCodec.forName(" zstd ")),
+                () -> Assertions.assertSame(CompressionCodec.SNAPPY, CompressionCodec.forName("snappy")),
+                () -> Assertions.assertThrows(IllegalArgumentException.class, () -> CompressionCodec.forName("brotli")));
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = is.read(buf)) >= 0) {
+            bos.write(buf, 0, n);
+        }
+        is.close();
+        return bos.toByteArray();
+    }
+}
@@ -0,0 +1,36 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+class DropBehindInputStreamTest {
+
+    @Test
+    void dropConsumedChunks() throws IOException {
+        File f = new File("data");
+        PageCache cache = Mockito.mock(PageCache.class);
+        try (InputStream in = new DropBehindInputStream(new ByteArrayInputStream(new byte[100]), f, cache, 10)) {
+            Assertions.assertEquals(0, in.read());
+            Assertions.assertEquals(8, in.read(new byte[8]));
+            Mockito.verifyNoInteractions(cache);
+            Assertions.assertEquals(5, in.read(new byte[5]));
+            Assertions.assertEquals(30, in.skip(30));
+            Assertions.assertEquals(56, in.read(new byte[64]));
+            Assertions.assertEquals(-1, in.read());
+            Assertions.assertFalse(in.markSupported());
+        }
+        InOrder order = Mockito.inOrder(cache);
+        order.verify(cache).drop(f, 0L, 14L);
+        order.verify(cache).drop(f, 14L, 30L);
+        order.verify(cache).drop(f, 44L, 56L);
+        order.verify(cache).drop(f, 100L, 0L);
+        Mockito.verifyNoMoreInteractions(cache);
+    }
+}
@@ -0,0 +1,58 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import org.jdurani.rollingfile.Utils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FileFooterTest {
+
+    private File dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Utils.tmpDir(true).toFile();
+    }
+
+    @Test
+    void writeAndRead() throws IOException {
+        File f = new File(dir, "data.txt");
+        try (OutputStream os = Files.newOutputStream(f.toPath())) {
+            os.write(new byte[] {1, 2, 3});
+            os.write(new FileFooter(2L, 10L, 11L, 100L, 200L, 5L, 3L, 42).toBytes());
+        }
+        Assertions.assertEquals(3L + FileFooter.LENGTH, f.length());
+        FileFooter footer = FileFooter.read(f);
+        Assertions.assertNotNull(footer);
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(2L, footer.getRecordCount()),
+                () -> Assertions.assertEquals(10L, footer.getFirstOffset()),
+                () -> Assertions.assertEquals(11L, footer.getLastOffset()),
+                () -> Assertions.assertEquals(100L, footer.getMinTimestamp()),
+                () -> Assertions.assertEquals(200L, footer.getMaxTimestamp()),
+                () -> Assertions.assertEquals(5L, footer.getContentLength()),
+                () -> Assertions.assertEquals(3L, footer.getStoredLength()),
+                () -> Assertions.assertEquals(42, footer.getChecksum()));
+    }
+
+    @Test
+    void noFooter() throws IOException {
+        File f = new File(dir, "short.txt");
+        Files.write(f.toPath(), new byte[] {1, 2, 3});
+        Assertions.assertNull(FileFooter.read(f));
+        // wrong stored length
+        byte[] footer = new FileFooter(1L, 1L, 1L, 1L, 1L, 1L, 1L, 1).toBytes();
+        Files.write(f.toPath(), footer);
+        Assertions.assertNull(FileFooter.read(f));
+        // corrupted footer
+        footer = new FileFooter(1L, 1L, 1L, 1L, 1L, 1L, 0L, 1).toBytes();
+        footer[0] = 7;
+        Files.write(f.toPath(), footer);
+        Assertions.assertNull(FileFooter.read(f));
+    }
+}
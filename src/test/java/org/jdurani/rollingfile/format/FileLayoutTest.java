@@ -0,0 +1,51 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.File;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class FileLayoutTest {
+
+    private static final File TOPIC = new File("topic");
+    private static final long TIME = Instant.parse("2024-03-07T05:59:59.999Z").toEpochMilli();
+
+    @Test
+    void directory() {
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(TOPIC, FileLayout.FLAT.directory(TOPIC, 12, TIME)),
+                () -> Assertions.assertEquals(new File(TOPIC, "12"), FileLayout.PARTITION.directory(TOPIC, 12, TIME)),
+                () -> Assertions.assertEquals(new File(TOPIC, path("12", "2024", "03", "07")),
+                        FileLayout.DAILY.directory(TOPIC, 12, TIME)),
+                () -> Assertions.assertEquals(new File(TOPIC, path("12", "2024", "03", "07", "05")),
+                        FileLayout.HOURLY.directory(TOPIC, 12, TIME)),
+                () -> Assertions.assertEquals(new File(TOPIC, path("12", "2024", "03", "07", "06")),
+                        FileLayout.HOURLY.directory(TOPIC, 12, TIME + 1)));
+    }
+
+    @Test
+    void depth() {
+        for (FileLayout l : FileLayout.values()) {
+            File d = l.directory(TOPIC, 3, TIME);
+            int depth = 0;
+            while (!TOPIC.equals(d)) {
+                d = d.getParentFile();
+                depth++;
+            }
+            Assertions.assertEquals(l.getDepth(), depth, l.name());
+            Assertions.assertEquals(depth > 1, l.isTimeBucketed(), l.name());
+        }
+    }
+
+    @Test
+    void forName() {
+        Assertions.assertSame(FileLayout.HOURLY, FileLayout.forName(" Hourly "));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FileLayout.forName("weekly"));
+        Assertions.assertArrayEquals(new String[] {"flat", "partition", "daily", "hourly"}, FileLayout.configNames());
+    }
+
+    private static String path(String... parts) {
+        return String.join(File.separator, parts);
+    }
+}
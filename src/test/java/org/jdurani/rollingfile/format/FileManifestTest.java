@@ -0,0 +1,77 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.jdurani.rollingfile.Utils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class FileManifestTest {
+
+    @Test
+    void appendAndReadIncrementally() throws IOException {
+        File topic = Utils.tmpDir(true).toFile();
+        FileManifest.Reader reader = new FileManifest.Reader(topic);
+        Assertions.assertFalse(reader.exists());
+        Assertions.assertTrue(reader.readNew().isEmpty());
+
+        FileManifest.Entry first = FileManifest.Entry.of(3, 100L, new FileFooter(2L, 10L, 11L, 5L, 6L, 40L, 60L, -7),
+                "3/2024/01/01/0000000003-0000000000000000010.bin.lz4");
+        FileManifest.Entry second = new FileManifest.Entry(0, -1L, -1L, FileFooter.NO_TIMESTAMP,
+                FileFooter.NO_TIMESTAMP, -1L, 20L, 0, "0000000000-0000000000000000000.txt");
+        try (FileChannel c = FileManifest.openForAppend(topic)) {
+            c.write(ByteBuffer.wrap(first.toBytes()));
+        }
+        Assertions.assertTrue(reader.exists());
+        List<FileManifest.Entry> read = reader.readNew();
+        Assertions.assertEquals(1, read.size());
+        FileManifest.Entry e = read.get(0);
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(3, e.getPartition()),
+                () -> Assertions.assertEquals(10L, e.getFirstOffset()),
+                () -> Assertions.assertEquals(11L, e.getLastOffset()),
+                () -> Assertions.assertEquals(5L, e.getMinTimestamp()),
+                () -> Assertions.assertEquals(6L, e.getMaxTimestamp()),
+                () -> Assertions.assertEquals(2L, e.getRecordCount()),
+                () -> Assertions.assertEquals(100L, e.getSize()),
+                () -> Assertions.assertEquals(-7, e.getChecksum()),
+                () -> Assertions.assertEquals(new File(topic, "3/2024/01/01/0000000003-0000000000000000010.bin.lz4"),
+                        e.fileIn(topic)));
+        Assertions.assertTrue(reader.readNew().isEmpty());
+
+        // incomplete line is read once it is complete, malformed line is skipped
+        byte[] line = second.toBytes();
+        try (FileChannel c = FileManifest.openForAppend(topic)) {
+            c.write(ByteBuffer.wrap("garbage\n".getBytes(StandardCharsets.UTF_8)));
+            c.write(ByteBuffer.wrap(line, 0, 10));
+            Assertions.assertTrue(reader.readNew().isEmpty());
+            c.write(ByteBuffer.wrap(line, 10, line.length - 10));
+        }
+        read = reader.readNew();
+        Assertions.assertEquals(1, read.size());
+        Assertions.assertEquals("0000000000-0000000000000000000.txt", read.get(0).getPath());
+        Assertions.assertEquals(-1L, read.get(0).getRecordCount());
+
+        // deleted file
+        try (FileChannel c = FileManifest.openForAppend(topic)) {
+            c.write(ByteBuffer.wrap(FileManifest.Entry.deleted(0, "0000000000-0000000000000000000.txt").toBytes()));
+        }
+        read = reader.readNew();
+        Assertions.assertEquals(1, read.size());
+        Assertions.assertTrue(read.get(0).isDeleted());
+        Assertions.assertEquals(0, read.get(0).getPartition());
+        Assertions.assertEquals("0000000000-0000000000000000000.txt", read.get(0).getPath());
+        Assertions.assertFalse(FileManifest.Entry.of(3, 0L, new FileFooter(0L, -1L, -1L, -1L, -1L, 0L, 0L, 0),
+                "x").isDeleted());
+
+        // replaced manifest is read from the beginning
+        Files.write(FileManifest.fileFor(topic).toPath(), first.toBytes());
+        Assertions.assertEquals(1, reader.readNew().size());
+    }
+}
@@ -0,0 +1,50 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.jdurani.rollingfile.Utils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class LibcTest {
+
+    // JNA is on test class path
+    private final boolean linux = System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("linux");
+
+    @Test
+    void available() {
+        Assertions.assertEquals(linux, Libc.isAvailable());
+    }
+
+    @Test
+    void allocate() throws IOException {
+        File f = new File(Utils.tmpDir(true).toFile(), "data");
+        byte[] data = new byte[] {1, 2, 3};
+        Files.write(f.toPath(), data);
+        Assertions.assertEquals(linux, Libc.allocate(f, 3L, 65536L));
+        if (linux) {
+            Assertions.assertArrayEquals(Arrays.copyOf(data, 65539), Files.readAllBytes(f.toPath()));
+        }
+        Assertions.assertFalse(Libc.allocate(new File(f.getParentFile(), "missing"), 0L, 10L));
+    }
+
+    @Test
+    void writeBack() throws IOException {
+        File f = new File(Utils.tmpDir(true).toFile(), "data");
+        Files.write(f.toPath(), new byte[8192]);
+        Assertions.assertEquals(linux, Libc.writeBack(f, 0L, 0L));
+        Assertions.assertFalse(Libc.writeBack(new File(f.getParentFile(), "missing"), 0L, 0L));
+    }
+
+    @Test
+    void dropPages() throws IOException {
+        File f = new File(Utils.tmpDir(true).toFile(), "data");
+        Files.write(f.toPath(), new byte[8192]);
+        Assertions.assertEquals(linux, Libc.dropPages(f, 0L, 0L));
+        Assertions.assertFalse(Libc.dropPages(new File(f.getParentFile(), "missing"), 0L, 0L));
+    }
+}
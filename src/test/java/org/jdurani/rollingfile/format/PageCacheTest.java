@@ -0,0 +1,43 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Locale;
+
+import org.jdurani.rollingfile.Utils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PageCacheTest {
+
+    @Test
+    void disabled() throws IOException {
+        File f = file();
+        Assertions.assertSame(PageCache.NONE, PageCache.get(false));
+        Assertions.assertFalse(PageCache.NONE.isSupported());
+        Assertions.assertFalse(PageCache.NONE.writeBack(f, 0L, 0L));
+        Assertions.assertFalse(PageCache.NONE.drop(f, 0L, 0L));
+    }
+
+    @Test
+    void drop() throws IOException {
+        File f = file();
+        PageCache cache = PageCache.get(true);
+        Assertions.assertSame(cache, PageCache.get(true));
+        // JNA is on test class path
+        boolean linux = System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("linux");
+        Assertions.assertEquals(linux, cache.isSupported());
+        Assertions.assertEquals(linux, cache.writeBack(f, 0L, 0L));
+        Assertions.assertEquals(linux, cache.drop(f, 0L, 4096L));
+        Assertions.assertEquals(linux, cache.drop(f, 4096L, 0L));
+        Assertions.assertFalse(cache.drop(new File(f.getParentFile(), "missing"), 0L, 0L));
+        Assertions.assertArrayEquals(new byte[8192], Files.readAllBytes(f.toPath()));
+    }
+
+    private static File file() throws IOException {
+        File f = new File(Utils.tmpDir(true).toFile(), "data");
+        Files.write(f.toPath(), new byte[8192]);
+        return f;
+    }
+}
@@ -0,0 +1,81 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.jdurani.rollingfile.Utils;
+import org.jdurani.rollingfile.exception.ReadException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RecordIndexTest {
+
+    private File dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Utils.tmpDir(true).toFile();
+    }
+
+    @Test
+    void writeAndRead() throws IOException {
+        RecordIndex index = new RecordIndex();
+        for (int i = 1; i <= 40; i++) {
+            index.add(i * 10L, 100L + i * 10L, i == 1 ? RecordIndex.NO_TIMESTAMP : 1000L + i, i * 200L);
+        }
+        File data = new File(dir, "data.bin");
+        index.writeTo(RecordIndex.fileFor(data));
+        Assertions.assertEquals("data.bin" + RecordIndex.EXTENSION, RecordIndex.fileFor(data).getName());
+        RecordIndex read = RecordIndex.read(data);
+        Assertions.assertNotNull(read);
+        Assertions.assertEquals(40, read.size());
+        for (int i = 0; i < 40; i++) {
+            Assertions.assertEquals(index.getRecordNumber(i), read.getRecordNumber(i));
+            Assertions.assertEquals(index.getOffset(i), read.getOffset(i));
+            Assertions.assertEquals(index.getMaxTimestamp(i), read.getMaxTimestamp(i));
+            Assertions.assertEquals(index.getPosition(i), read.getPosition(i));
+        }
+    }
+
+    @Test
+    void lookup() {
+        RecordIndex index = new RecordIndex();
+        index.add(10L, 110L, RecordIndex.NO_TIMESTAMP, 100L);
+        index.add(20L, 120L, 50L, 200L);
+        index.add(30L, 130L, 50L, 300L);
+        index.add(40L, 140L, 70L, 400L);
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(-1, index.lookupOffset(100L)),
+                () -> Assertions.assertEquals(0, index.lookupOffset(110L)),
+                () -> Assertions.assertEquals(0, index.lookupOffset(119L)),
+                () -> Assertions.assertEquals(3, index.lookupOffset(1000L)),
+                () -> Assertions.assertEquals(-1, index.lookupTimestamp(-1L)),
+                () -> Assertions.assertEquals(0, index.lookupTimestamp(0L)),
+                () -> Assertions.assertEquals(0, index.lookupTimestamp(50L)),
+                () -> Assertions.assertEquals(2, index.lookupTimestamp(51L)),
+                () -> Assertions.assertEquals(3, index.lookupTimestamp(71L)));
+        index.clear();
+        Assertions.assertEquals(-1, index.lookupOffset(1000L));
+    }
+
+    @Test
+    void missingIndex() throws IOException {
+        Assertions.assertNull(RecordIndex.read(new File(dir, "missing.txt")));
+    }
+
+    @Test
+    void invalidIndex() throws IOException {
+        File data = new File(dir, "data.txt");
+        Files.write(RecordIndex.fileFor(data).toPath(), new byte[] {1, 2, 3, 4, 5});
+        Assertions.assertThrows(ReadException.class, () -> RecordIndex.read(data));
+        RecordIndex index = new RecordIndex();
+        index.add(1L, 1L, 1L, 1L);
+        index.writeTo(RecordIndex.fileFor(data));
+        byte[] b = Files.readAllBytes(RecordIndex.fileFor(data).toPath());
+        Files.write(RecordIndex.fileFor(data).toPath(), Arrays.copyOf(b, b.length - 1));
+        Assertions.assertThrows(ReadException.class, () -> RecordIndex.read(data));
+    }
+}
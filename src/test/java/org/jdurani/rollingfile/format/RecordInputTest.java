@@ -0,0 +1,117 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import org.jdurani.rollingfile.Utils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RecordInputTest {
+
+    @Test
+    void ensureGrowsBuffer() throws IOException {
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        RecordInput in = new RecordInput(new ByteArrayInputStream(data), 8);
+        in.consume(0);
+        Assertions.assertEquals(0, in.read());
+        Assertions.assertTrue(in.ensure(50));
+        Assertions.assertEquals(1, in.buffer()[in.bufferPosition()]);
+        Assertions.assertArrayEquals(new byte[] {1, 2, 3}, in.readBytes(3));
+        Assertions.assertEquals(4L, in.position());
+        Assertions.assertFalse(in.ensure(97));
+        Assertions.assertEquals(96, in.available());
+    }
+
+    @Test
+    void indexOf() throws IOException {
+        RecordInput in = new RecordInput(new ByteArrayInputStream("abcdefghij\nk".getBytes()), 4);
+        Assertions.assertEquals(10, in.indexOf((byte) '\n'));
+        in.consume(11);
+        Assertions.assertEquals(-1, in.indexOf((byte) '\n'));
+        Assertions.assertEquals(1, in.available());
+    }
+
+    @Test
+    void varints() throws IOException {
+        byte[] data = {
+                0x00,
+                (byte) 0xac, 0x02, // 300
+                (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f, // -1 as unsigned int
+                0x01, // zig-zag -1
+                0x04, // zig-zag 2
+                (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x01, // zig-zag MIN
+        };
+        RecordInput in = new RecordInput(new ByteArrayInputStream(data), 4);
+        Assertions.assertEquals(0, in.readVarint());
+        Assertions.assertEquals(300, in.readVarint());
+        Assertions.assertEquals(-1, in.readVarint());
+        Assertions.assertEquals(-1L, in.readVarlong());
+        Assertions.assertEquals(2L, in.readVarlong());
+        Assertions.assertEquals(Long.MIN_VALUE, in.readVarlong());
+        Assertions.assertEquals(-1, in.read());
+    }
+
+    @Test
+    void skip() throws IOException {
+        RecordInput in = new RecordInput(new ByteArrayInputStream(new byte[100]), 8);
+        Assertions.assertEquals(3, in.readBytes(3).length);
+        Assertions.assertEquals(50L, in.skip(50));
+        Assertions.assertEquals(53L, in.position());
+        Assertions.assertEquals(47L, in.skip(1000));
+        Assertions.assertEquals(100L, in.position());
+    }
+
+    @Test
+    void takeBlocks() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (BlockOutputStream os = new BlockOutputStream(bos, 4)) {
+            for (int i = 0; i < 5; i++) {
+                os.write(new byte[] {(byte) i, (byte) i, (byte) i, (byte) i});
+                os.endRecord();
+            }
+        }
+        InputStream blocks = BlockInputStream.wrapIfBlocked(new ByteArrayInputStream(bos.toByteArray()), "f",
+                CorruptionPolicy.FAIL);
+        RecordInput in = new RecordInput(blocks, 64);
+        byte[] buffer = in.buffer();
+        Assertions.assertEquals(0, in.read());
+        // buffer is the array of the block, not a copy of it
+        Assertions.assertNotSame(buffer, in.buffer());
+        Assertions.assertEquals(3, in.available());
+        in.consume(3);
+        Assertions.assertEquals(5L, in.skip(5));
+        Assertions.assertEquals(9L, in.position());
+        Assertions.assertTrue(in.ensure(6));
+        Assertions.assertArrayEquals(new byte[] {2, 2, 2, 3, 3, 3}, in.readBytes(6));
+        Assertions.assertEquals(15L, in.position());
+        Assertions.assertEquals(5L, in.skip(10));
+        Assertions.assertEquals(-1, in.read());
+        Assertions.assertEquals(20L, in.position());
+    }
+
+    @Test
+    void skipFile() throws IOException {
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        File f = new File(Utils.tmpDir(true).toFile(), "skip");
+        Files.write(f.toPath(), data);
+        try (RecordInput in = new RecordInput(new FileInputStream(f), 8)) {
+            Assertions.assertEquals(0, in.read());
+            Assertions.assertEquals(50L, in.skip(50));
+            Assertions.assertEquals(51, in.read());
+            Assertions.assertTrue(in.skip(1000) < 1000);
+            Assertions.assertEquals(-1, in.read());
+        }
+    }
+}
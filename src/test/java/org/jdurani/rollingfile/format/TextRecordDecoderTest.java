@@ -0,0 +1,80 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.jdurani.rollingfile.exception.ReadException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TextRecordDecoderTest {
+
+    @Test
+    void roundTrip() throws IOException {
+        Random rnd = new Random(42);
+        TextRecordEncoder encoder = new TextRecordEncoder();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SinkRecord[] records = new SinkRecord[100];
+        long[] timestamps = {0L, 1L, -1L, 123456789L, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (int i = 0; i < records.length; i++) {
+            byte[] key = i % 7 == 0 ? null : new byte[i];
+            byte[] value = new byte[i * 37];
+            if (key != null) {
+                rnd.nextBytes(key);
+            }
+            rnd.nextBytes(value);
+            Long ts = i % 5 == 0 ? null : timestamps[i % timestamps.length];
+            records[i] = new SinkRecord("t", 0, null, key, null, value, i, ts, null);
+            encoder.encode(records[i]);
+            encoder.writeTo(out);
+        }
+        RecordInput in = new RecordInput(new ByteArrayInputStream(out.toByteArray()), 16);
+        Assertions.assertSame(RecordFormat.TEXT, RecordFormat.detect(in));
+        RecordDecoder decoder = RecordFormat.TEXT.newDecoder(in, "f");
+        for (SinkRecord expected : records) {
+            StoredRecord r = decoder.next();
+            Assertions.assertNotNull(r);
+            Assertions.assertArrayEquals((byte[]) expected.key(), r.getKey());
+            Assertions.assertArrayEquals((byte[]) expected.value(), r.getValue());
+            Assertions.assertEquals(expected.timestamp(), r.getTimestamp());
+            Assertions.assertEquals(StoredRecord.UNKNOWN_OFFSET, r.getOffset());
+        }
+        Assertions.assertNull(decoder.next());
+        Assertions.assertEquals(out.size(), in.position());
+    }
+
+    @Test
+    void withoutPaddingAndLastSeparator() throws IOException {
+        RecordDecoder decoder = decoder("5 YQ YWI");
+        StoredRecord r = decoder.next();
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(5L, r.getTimestamp()),
+                () -> Assertions.assertArrayEquals(new byte[] {'a'}, r.getKey()),
+                () -> Assertions.assertArrayEquals(new byte[] {'a', 'b'}, r.getValue()));
+        Assertions.assertNull(decoder.next());
+    }
+
+    @Test
+    void emptyValues() throws IOException {
+        StoredRecord r = decoder("$NO_TS$  \n").next();
+        Assertions.assertAll(
+                () -> Assertions.assertNull(r.getTimestamp()),
+                () -> Assertions.assertArrayEquals(new byte[0], r.getKey()),
+                () -> Assertions.assertArrayEquals(new byte[0], r.getValue()));
+    }
+
+    @Test
+    void wrongFormat() {
+        for (String line : new String[] {"1", "1 YQ", "x YQ YQ", "1 Y YQ", "1 Y* YQ", "99999999999999999999 YQ YQ", "- YQ YQ"}) {
+            Assertions.assertThrows(ReadException.class, () -> decoder(line + "\n").next(), line);
+        }
+    }
+
+    private RecordDecoder decoder(String data) throws IOException {
+        return RecordFormat.TEXT.newDecoder(new RecordInput(new ByteArrayInputStream(data.getBytes(StandardCharsets.US_ASCII)), 4), "f");
+    }
+}
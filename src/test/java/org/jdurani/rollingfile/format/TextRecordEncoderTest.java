@@ -0,0 +1,113 @@
+package org.jdurani.rollingfile.format;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.jdurani.rollingfile.sink.RollingFileWriter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TextRecordEncoderTest {
+
+    private TextRecordEncoder test;
+
+    @BeforeEach
+    void setUp() {
+        test = new TextRecordEncoder();
+    }
+
+    @Test
+    void nulls() {
+        Assertions.assertEquals(
+                RollingFileWriter.NO_TIMESTAMP
+                        + RollingFileWriter.KEY_VALUE_SEPARATOR
+                        + RollingFileWriter.NULL_OBJECT
+                        + RollingFileWriter.KEY_VALUE_SEPARATOR
+                        + RollingFileWriter.NULL_OBJECT
+                        + "\n",
+                encode(null, null, null));
+    }
+
+    @Test
+    void timestamps() {
+        for (long ts : new long[] {0L, 1L, 9L, 10L, 123456789L, -1L, -10L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            Assertions.assertEquals(line(ts, new byte[0], new byte[0]), encode(ts, new byte[0], new byte[0]), "ts " + ts);
+        }
+    }
+
+    @Test
+    void byteArrays() {
+        Random rnd = new Random(42);
+        for (int len = 0; len < 100; len++) {
+            byte[] key = new byte[len];
+            byte[] value = new byte[len * 37];
+            rnd.nextBytes(key);
+            rnd.nextBytes(value);
+            Assertions.assertEquals(line(1L, key, value), encode(1L, key, value), "length " + len);
+        }
+    }
+
+    @Test
+    void byteBuffers() {
+        byte[] data = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        ByteBuffer heap = ByteBuffer.wrap(data, 2, 5);
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data);
+        direct.position(3);
+        byte[] expectedHeap = {2, 3, 4, 5, 6};
+        byte[] expectedDirect = {3, 4, 5, 6, 7, 8, 9};
+        Assertions.assertEquals(line(5L, expectedHeap, expectedDirect), encode(5L, heap, direct));
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(2, heap.position()),
+                () -> Assertions.assertEquals(3, direct.position()));
+    }
+
+    @Test
+    void strings() {
+        String key = "aačxx😀";
+        String value = "broken \uD83D surrogate \uDE00";
+        Assertions.assertEquals(
+                line(2L, key.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8)),
+                encode(2L, key, value));
+    }
+
+    @Test
+    void reuseBuffer() throws IOException {
+        byte[] big = new byte[10_000];
+        encode(1L, big, big);
+        byte[] buffer = test.buffer();
+        String l = encode(2L, new byte[] {1}, new byte[] {2});
+        Assertions.assertSame(buffer, test.buffer());
+        Assertions.assertEquals(line(2L, new byte[] {1}, new byte[] {2}), l);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        test.writeTo(bos);
+        Assertions.assertEquals(l, bos.toString());
+    }
+
+    @Test
+    void unsupported() {
+        Assertions.assertAll(
+                () -> Assertions.assertThrows(IllegalArgumentException.class, () -> encode(null, new Object(), null)),
+                () -> Assertions.assertThrows(IllegalArgumentException.class, () -> encode(null, null, 1)));
+    }
+
+    private String encode(Long ts, Object key, Object value) {
+        test.encode(new SinkRecord("t", 0, null, key, null, value, 0, ts, null));
+        return new String(test.buffer(), 0, test.length(), StandardCharsets.US_ASCII);
+    }
+
+    private static String line(long ts, byte[] key, byte[] value) {
+        return ts
+                + RollingFileWriter.KEY_VALUE_SEPARATOR
+                + Base64.getEncoder().encodeToString(key)
+                + RollingFileWriter.KEY_VALUE_SEPARATOR
+                + Base64.getEncoder().encodeToString(value)
+                + "\n";
+    }
+}
@@ -0,0 +1,32 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.File;
+
+import org.jdurani.rollingfile.format.FileFooter;
+import org.jdurani.rollingfile.format.PageCache;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+class DropBehindListenerTest {
+
+    @Test
+    void dropPreviousFile() {
+        PageCache cache = Mockito.mock(PageCache.class);
+        DropBehindListener listener = new DropBehindListener(cache);
+        File first = new File("first");
+        File second = new File("second");
+        FileFooter summary = new FileFooter(1L, 0L, 0L, 1L, 1L, 10L, 10L, 0);
+
+        listener.fileCommitted(first, 10L, summary);
+        Mockito.verify(cache).writeBack(first, 0L, 10L);
+        Mockito.verify(cache, Mockito.never()).drop(Mockito.any(), Mockito.anyLong(), Mockito.anyLong());
+
+        // pages of the previous file are dropped after write back of the next one is started
+        listener.fileCommitted(second, 20L, summary);
+        InOrder order = Mockito.inOrder(cache);
+        order.verify(cache).writeBack(second, 0L, 20L);
+        order.verify(cache).drop(first, 0L, 10L);
+        Mockito.verify(cache, Mockito.never()).drop(Mockito.eq(second), Mockito.anyLong(), Mockito.anyLong());
+    }
+}
@@ -0,0 +1,312 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.jdurani.rollingfile.Utils;
+import org.jdurani.rollingfile.format.CompressionCodec;
+import org.jdurani.rollingfile.format.FileFooter;
+import org.jdurani.rollingfile.format.FileLayout;
+import org.jdurani.rollingfile.format.RecordDecoder;
+import org.jdurani.rollingfile.format.RecordFormat;
+import org.jdurani.rollingfile.format.RecordIndex;
+import org.jdurani.rollingfile.format.RecordInput;
+import org.jdurani.rollingfile.format.StoredRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FileCompactorTest {
+
+    private final TopicPartition tp = new TopicPartition("t", 3);
+    private final WriteBufferPool pool = new WriteBufferPool(1024 * 1024, 1024);
+    private RollScheduler scheduler;
+    private String dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Utils.tmpDir(true).toFile().getAbsolutePath();
+        scheduler = new RollScheduler(10, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.close();
+    }
+
+    @Test
+    void compactBinary() throws IOException {
+        long now = System.currentTimeMillis();
+        write(RecordFormat.BINARY, CompressionCodec.LZ4, FileLayout.DAILY, 3,
+                record("a", "1", 0, now), record("b", "1", 1, now), record(null, "x", 2, now),
+                record("a", "2", 3, now), record("c", "1", 4, now), record("b", null, 5, now - 10_000L),
+                record("d", null, 6, now), record("a", "3", 7, now), record("e", "1", 8, now),
+                record("c", "2", 9, now));
+        List<File> before = RollingFileWriter.committedFiles(dir, FileLayout.DAILY, tp);
+        Assertions.assertEquals(4, before.size());
+
+        List<File> replaced = new ArrayList<>();
+        FileCompactor compactor = new FileCompactor(dir, FileLayout.DAILY, 1L, true, 256, 1000L, 0L, 0L, 1L,
+                new PartitionLocks(), (p, file, bytes, summary, files) -> {
+                    Assertions.assertEquals(file.length(), bytes);
+                    replaced.addAll(files);
+                });
+        compactor.add(Collections.singleton(tp));
+        Assertions.assertTrue(compactor.compact(tp));
+        // the newest file is not compacted
+        Assertions.assertEquals(before.subList(0, 3), replaced);
+        List<File> after = RollingFileWriter.committedFiles(dir, FileLayout.DAILY, tp);
+        Assertions.assertEquals(2, after.size());
+        Assertions.assertEquals(before.get(3), after.get(1));
+        // new file is named by its first record, no existing file is replaced
+        Assertions.assertEquals("0000000003-0000000000000000002.bin.lz4", after.get(0).getName());
+        Assertions.assertEquals(before.get(2).getParentFile(), after.get(0).getParentFile());
+        RecordIndex index = RecordIndex.read(after.get(0));
+        Assertions.assertNotNull(index);
+        Assertions.assertEquals(3, index.size());
+        Assertions.assertEquals(6, index.getOffset(0));
+        List<StoredRecord> records = read(after.get(0));
+        // old tombstone of 'b' is dropped, recent tombstone of 'd' is kept, 'c' has newer record in the newest file
+        Assertions.assertEquals(4, records.size());
+        assertRecord(records.get(0), null, "x", 2);
+        assertRecord(records.get(1), "d", null, 6);
+        assertRecord(records.get(2), "a", "3", 7);
+        assertRecord(records.get(3), "e", "1", 8);
+        FileFooter footer = FileFooter.read(after.get(0));
+        Assertions.assertNotNull(footer);
+        Assertions.assertEquals(4, footer.getRecordCount());
+        Assertions.assertEquals(2, footer.getFirstOffset());
+        Assertions.assertEquals(8, footer.getLastOffset());
+
+        // compacted file is not compacted again until there are new files
+        replaced.clear();
+        Assertions.assertFalse(compactor.compact(tp));
+        write(RecordFormat.BINARY, CompressionCodec.LZ4, FileLayout.DAILY, 3,
+                record("c", "3", 10, now), record("f", "1", 11, now), record("a", null, 12, now));
+        Assertions.assertTrue(compactor.compact(tp));
+        Assertions.assertEquals(after, replaced);
+        after = RollingFileWriter.committedFiles(dir, FileLayout.DAILY, tp);
+        Assertions.assertEquals(2, after.size());
+        Assertions.assertEquals("0000000003-0000000000000000001.bin.lz4", after.get(0).getName());
+        records = read(after.get(0));
+        // 'a' and 'c' have newer records in the newest file
+        Assertions.assertEquals(3, records.size());
+        assertRecord(records.get(0), null, "x", 2);
+        assertRecord(records.get(1), "d", null, 6);
+        assertRecord(records.get(2), "e", "1", 8);
+
+        // recovery finds the same offset in the newest file
+        RollingFileWriter w = newWriter(RecordFormat.BINARY, CompressionCodec.LZ4, FileLayout.DAILY, 3);
+        Assertions.assertEquals(13L, w.recover());
+        w.destroy();
+        compactor.close();
+    }
+
+    @Test
+    void compactTextKeepsNewestFile() throws IOException {
+        long old = System.currentTimeMillis() - 10_000L;
+        write(RecordFormat.TEXT, CompressionCodec.NONE, FileLayout.FLAT, 2,
+                record("a", "1", 10, old), record("a", "2", 11, old), record("b", "1", 12, old),
+                record(null, "x", 13, old), record("b", null, 14, old), record("c", "1", 15, old),
+                record("a", "3", 16, old));
+        // file of other partition is not touched
+        File other = new File(dir, tp.topic() + "/0000000004-0000000000000000000.txt");
+        Assertions.assertTrue(other.createNewFile());
+        FileCompactor compactor = new FileCompactor(dir, FileLayout.FLAT, 0L, true, 0, 0L, 0L, 0L, 1L,
+                new PartitionLocks(), RewriteListener.NONE);
+        compactor.add(Collections.singleton(tp));
+        File stale = new File(dir, tp.topic() + "/" + FileCompactor.COMPACT_PREFIX + "0000000003-0000000000000000011.txt");
+        Assertions.assertTrue(stale.createNewFile());
+        List<File> before = RollingFileWriter.committedFiles(dir, FileLayout.FLAT, tp);
+        Assertions.assertEquals(4, before.size());
+        Assertions.assertTrue(compactor.compact(tp));
+        Assertions.assertFalse(stale.exists());
+        Assertions.assertTrue(other.exists());
+        List<File> after = RollingFileWriter.committedFiles(dir, FileLayout.FLAT, tp);
+        Assertions.assertEquals(2, after.size());
+        // records of text files have no offsets, the first file has the name of the first offset
+        Assertions.assertEquals("0000000003-0000000000000000009.txt", after.get(0).getName());
+        Assertions.assertEquals(before.get(3), after.get(1));
+        Assertions.assertFalse(RecordIndex.fileFor(after.get(0)).exists());
+        List<StoredRecord> records = read(after.get(0));
+        // old tombstone is dropped, 'a' has newer record in the newest file
+        Assertions.assertEquals(2, records.size());
+        assertRecord(records.get(0), null, "x", StoredRecord.UNKNOWN_OFFSET);
+        assertRecord(records.get(1), "c", "1", StoredRecord.UNKNOWN_OFFSET);
+        FileFooter footer = FileFooter.read(after.get(0));
+        Assertions.assertEquals(10, footer.getFirstOffset());
+        Assertions.assertEquals(15, footer.getLastOffset());
+
+        // the newest file keeps the recovered offset
+        RollingFileWriter w = newWriter(RecordFormat.TEXT, CompressionCodec.NONE, FileLayout.FLAT, 2);
+        Assertions.assertEquals(17L, w.recover());
+        w.destroy();
+        compactor.close();
+    }
+
+    @Test
+    void compactDeletesSupersededFiles() throws IOException {
+        long now = System.currentTimeMillis();
+        write(RecordFormat.BINARY, CompressionCodec.NONE, FileLayout.FLAT, 1,
+                record("a", "1", 0, now), record("a", "2", 1, now), record("a", "3", 2, now));
+        List<File> before = RollingFileWriter.committedFiles(dir, FileLayout.FLAT, tp);
+        List<File> deleted = new ArrayList<>();
+        FileCompactor compactor = new FileCompactor(dir, FileLayout.FLAT, 0L, true, 0, 0L, 0L, 0L, 1L,
+                new PartitionLocks(), new RewriteListener() {
+
+                    @Override
+                    public void filesRewritten(TopicPartition p, File file, long bytes, FileFooter summary,
+                            List<File> replaced) {
+                        Assertions.fail("no file is rewritten");
+                    }
+
+                    @Override
+                    public void filesDeleted(TopicPartition p, List<File> files) {
+                        deleted.addAll(files);
+                    }
+                });
+        compactor.add(Collections.singleton(tp));
+        Assertions.assertTrue(compactor.compact(tp));
+        Assertions.assertEquals(before.subList(0, 2), deleted);
+        Assertions.assertEquals(before.subList(2, 3), RollingFileWriter.committedFiles(dir, FileLayout.FLAT, tp));
+        Assertions.assertEquals(1, RollingFileWriter.partitionFiles(dir, FileLayout.FLAT, tp).size());
+        compactor.close();
+    }
+
+    @Test
+    void compactStopsForRemovedPartition() throws IOException {
+        long now = System.currentTimeMillis();
+        write(RecordFormat.BINARY, CompressionCodec.NONE, FileLayout.FLAT, 1,
+                record("a", "1", 0, now), record("b", "1", 1, now), record("c", "1", 2, now));
+        List<File> before = RollingFileWriter.committedFiles(dir, FileLayout.FLAT, tp);
+        FileCompactor compactor = new FileCompactor(dir, FileLayout.FLAT, 0L, true, 0, 0L, 0L, 0L, 1L,
+                new PartitionLocks(), RewriteListener.NONE);
+        compactor.add(Collections.singleton(tp));
+        compactor.remove(Collections.singleton(tp));
+        Assertions.assertThrows(CancellationException.class, () -> compactor.compact(tp));
+        Assertions.assertEquals(before, RollingFileWriter.committedFiles(dir, FileLayout.FLAT, tp));
+        Assertions.assertEquals(3, RollingFileWriter.partitionFiles(dir, FileLayout.FLAT, tp).size());
+        compactor.close();
+    }
+
+    @Test
+    void mergeSmallFiles() throws IOException {
+        long now = System.currentTimeMillis();
+        write(RecordFormat.BINARY, CompressionCodec.GZIP, FileLayout.PARTITION, 2,
+                record("a", "1", 0, now), record("a", "2", 1, now), record("b", "1", 2, now),
+                record(null, "x", 3, now), record("c", "1", 4, now), record("d", "1", 5, now),
+                record("e", "1", 6, now), record("f", "1", 7, now));
+        List<File> before = RollingFileWriter.committedFiles(dir, FileLayout.PARTITION, tp);
+        Assertions.assertEquals(4, before.size());
+        long runBytes = before.get(0).length() + before.get(1).length() + before.get(2).length();
+        File index = new File(before.get(1).getParentFile(), before.get(1).getName() + ".idx");
+        Assertions.assertTrue(index.createNewFile());
+        File firstIndex = new File(before.get(0).getParentFile(), before.get(0).getName() + ".idx");
+        Assertions.assertTrue(firstIndex.createNewFile());
+
+        // runs of up to 3 files, the newest file is not merged
+        List<File> replaced = new ArrayList<>();
+        FileCompactor compactor = new FileCompactor(dir, FileLayout.PARTITION, 0L, false, 0, 0L, 0L, runBytes, 60_000L,
+                new PartitionLocks(), (p, file, bytes, summary, files) -> replaced.addAll(files));
+        compactor.add(Collections.singleton(tp));
+        Assertions.assertTrue(compactor.merge(tp));
+        Assertions.assertEquals(before.subList(0, 3), replaced);
+        List<File> after = RollingFileWriter.committedFiles(dir, FileLayout.PARTITION, tp);
+        Assertions.assertEquals(2, after.size());
+        // merged file replaces the first merged file, index of its original content is deleted
+        Assertions.assertEquals(before.get(0), after.get(0));
+        Assertions.assertEquals(before.get(3), after.get(1));
+        Assertions.assertFalse(index.exists());
+        Assertions.assertFalse(firstIndex.exists());
+        List<StoredRecord> merged = read(after.get(0));
+        Assertions.assertEquals(6, merged.size());
+        assertRecord(merged.get(0), "a", "1", 0);
+        assertRecord(merged.get(1), "a", "2", 1);
+        assertRecord(merged.get(3), null, "x", 3);
+        assertRecord(merged.get(5), "d", "1", 5);
+
+        // recovery finds the same offset in the newest file
+        RollingFileWriter w = newWriter(RecordFormat.BINARY, CompressionCodec.GZIP, FileLayout.PARTITION, 2);
+        Assertions.assertEquals(8L, w.recover());
+        w.destroy();
+        compactor.close();
+    }
+
+    @Test
+    void mergeSingleRecordFiles() throws IOException {
+        long now = System.currentTimeMillis();
+        write(RecordFormat.BINARY, CompressionCodec.NONE, FileLayout.PARTITION, 1,
+                record("a", "1", 0, now), record("b", "1", 1, now), record("c", "1", 2, now));
+        List<File> before = RollingFileWriter.committedFiles(dir, FileLayout.PARTITION, tp);
+        Assertions.assertEquals(3, before.size());
+        // each offset names one file, merged file keeps the name of the first one
+        List<File> rewritten = new ArrayList<>();
+        List<File> replaced = new ArrayList<>();
+        FileCompactor compactor = new FileCompactor(dir, FileLayout.PARTITION, 0L, false, 0, 0L, 0L, 1024L, 60_000L,
+                new PartitionLocks(), (p, file, bytes, summary, files) -> {
+                    rewritten.add(file);
+                    replaced.addAll(files);
+                });
+        compactor.add(Collections.singleton(tp));
+        Assertions.assertTrue(compactor.merge(tp));
+        Assertions.assertEquals(before.subList(0, 1), rewritten);
+        Assertions.assertEquals(before.subList(0, 2), replaced);
+        Assertions.assertEquals(Arrays.asList(before.get(0), before.get(2)),
+                RollingFileWriter.committedFiles(dir, FileLayout.PARTITION, tp));
+        Assertions.assertEquals(2, RollingFileWriter.partitionFiles(dir, FileLayout.PARTITION, tp).size());
+        List<StoredRecord> merged = read(before.get(0));
+        Assertions.assertEquals(2, merged.size());
+        assertRecord(merged.get(0), "a", "1", 0);
+        assertRecord(merged.get(1), "b", "1", 1);
+        compactor.close();
+    }
+
+    private void write(RecordFormat format, CompressionCodec codec, FileLayout layout, int flushCount,
+            SinkRecord... records) throws IOException {
+        RollingFileWriter w = newWriter(format, codec, layout, flushCount);
+        for (SinkRecord r : records) {
+            w.write(r);
+        }
+        w.destroy();
+    }
+
+    private RollingFileWriter newWriter(RecordFormat format, CompressionCodec codec, FileLayout layout,
+            int flushCount) {
+        return new RollingFileWriter(tp, dir, layout, flushCount, Long.MAX_VALUE, 0, 0, 0, true, 0, 0, format, codec,
+                pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+    }
+
+    private SinkRecord record(String key, String value, long offset, long timestamp) {
+        return new SinkRecord(tp.topic(), tp.partition(), null, key == null ? null : key.getBytes(StandardCharsets.UTF_8),
+                null, value == null ? null : value.getBytes(StandardCharsets.UTF_8), offset, timestamp,
+                TimestampType.CREATE_TIME);
+    }
+
+    private static List<StoredRecord> read(File f) throws IOException {
+        List<StoredRecord> records = new ArrayList<>();
+        try (RecordInput in = new RecordInput(RollingFileWriter.openContent(f), 1024)) {
+            RecordDecoder decoder = RecordFormat.detect(in).newDecoder(in, f.getAbsolutePath());
+            StoredRecord s;
+            while ((s = decoder.next()) != null) {
+                records.add(s);
+            }
+        }
+        return records;
+    }
+
+    private static void assertRecord(StoredRecord r, String key, String value, long offset) {
+        Assertions.assertEquals(key, r.getKey() == null ? null : new String(r.getKey(), StandardCharsets.UTF_8));
+        Assertions.assertEquals(value, r.getValue() == null ? null : new String(r.getValue(), StandardCharsets.UTF_8));
+        Assertions.assertEquals(offset, r.getOffset());
+    }
+}
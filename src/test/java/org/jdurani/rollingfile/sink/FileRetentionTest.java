@@ -0,0 +1,171 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.jdurani.rollingfile.Utils;
+import org.jdurani.rollingfile.format.CompressionCodec;
+import org.jdurani.rollingfile.format.FileFooter;
+import org.jdurani.rollingfile.format.FileLayout;
+import org.jdurani.rollingfile.format.RecordFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FileRetentionTest {
+
+    private final TopicPartition tp = new TopicPartition("t", 1);
+    private final WriteBufferPool pool = new WriteBufferPool(1024 * 1024, 1024);
+    private RollScheduler scheduler;
+    private String dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Utils.tmpDir(true).toFile().getAbsolutePath();
+        scheduler = new RollScheduler(10, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.close();
+    }
+
+    @Test
+    void retentionBytes() throws IOException {
+        write(FileLayout.PARTITION, CommitListener.NONE, 0, 3, 1000L);
+        List<File> existing = RollingFileWriter.committedFiles(dir, FileLayout.PARTITION, tp);
+        Assertions.assertEquals(3, existing.size());
+        long fileBytes = existing.get(0).length();
+        File index = new File(existing.get(0).getParentFile(), existing.get(0).getName() + ".idx");
+        Assertions.assertTrue(index.createNewFile());
+
+        List<File> deleted = new ArrayList<>();
+        FileRetention retention = new FileRetention(dir, FileLayout.PARTITION, -1L, 4 * fileBytes,
+                new PartitionLocks(), new RewriteListener() {
+
+                    @Override
+                    public void filesRewritten(TopicPartition tp, File file, long bytes, FileFooter summary,
+                            List<File> replaced) {
+                        Assertions.fail();
+                    }
+
+                    @Override
+                    public void filesDeleted(TopicPartition tp, List<File> files) {
+                        deleted.addAll(files);
+                    }
+                });
+        retention.add(Collections.singletonList(tp));
+        Assertions.assertEquals(0, retention.enforce());
+        // committed files are accounted without listing
+        write(FileLayout.PARTITION, retention.forPartition(tp), 3, 2, 1000L);
+        Assertions.assertEquals(1, retention.enforce());
+        Assertions.assertEquals(Collections.singletonList(existing.get(0)), deleted);
+        List<File> files = RollingFileWriter.committedFiles(dir, FileLayout.PARTITION, tp);
+        Assertions.assertEquals(4, files.size());
+        Assertions.assertEquals(existing.get(1), files.get(0));
+        Assertions.assertFalse(index.exists());
+
+        // the newest file is kept
+        FileRetention tiny = new FileRetention(dir, FileLayout.PARTITION, -1L, 0L, new PartitionLocks(),
+                RewriteListener.NONE);
+        tiny.add(Collections.singletonList(tp));
+        Assertions.assertEquals(3, tiny.enforce());
+        files = RollingFileWriter.committedFiles(dir, FileLayout.PARTITION, tp);
+        Assertions.assertEquals(1, files.size());
+        Assertions.assertTrue(files.get(0).getName().endsWith("0000000000000000004.bin"));
+    }
+
+    @Test
+    void retentionMs() throws IOException {
+        long now = System.currentTimeMillis();
+        FileRetention retention = new FileRetention(dir, FileLayout.DAILY, 60_000L, -1L, new PartitionLocks(),
+                RewriteListener.NONE);
+        retention.add(Collections.singletonList(tp));
+        write(FileLayout.DAILY, retention.forPartition(tp), 0, 2, now - 120_000L);
+        write(FileLayout.DAILY, retention.forPartition(tp), 2, 2, now);
+        Assertions.assertEquals(2, retention.enforce());
+        Assertions.assertEquals(2, RollingFileWriter.committedFiles(dir, FileLayout.DAILY, tp).size());
+
+        // empty time bucket of deleted file is removed
+        File bucket = new File(dir, tp.topic() + "/1/2000/01/01");
+        Assertions.assertTrue(bucket.mkdirs());
+        File old = new File(bucket, "0000000001-0000000000000000000.bin");
+        Assertions.assertTrue(old.createNewFile());
+        Assertions.assertTrue(old.setLastModified(now - 120_000L));
+        retention.add(Collections.singletonList(tp));
+        Assertions.assertEquals(1, retention.enforce());
+        Assertions.assertFalse(new File(dir, tp.topic() + "/1/2000").exists());
+        Assertions.assertTrue(new File(dir, tp.topic() + "/1").exists());
+        Assertions.assertEquals(2, RollingFileWriter.committedFiles(dir, FileLayout.DAILY, tp).size());
+
+        retention.remove(Collections.singletonList(tp));
+        write(FileLayout.DAILY, CommitListener.NONE, 4, 2, now - 120_000L);
+        Assertions.assertEquals(0, retention.enforce());
+    }
+
+    @Test
+    void rewrittenFiles() throws IOException {
+        long now = System.currentTimeMillis();
+        write(FileLayout.PARTITION, CommitListener.NONE, 0, 3, now);
+        List<File> existing = RollingFileWriter.committedFiles(dir, FileLayout.PARTITION, tp);
+        long fileBytes = existing.get(0).length();
+        FileRetention retention = new FileRetention(dir, FileLayout.PARTITION, -1L, 2 * fileBytes,
+                new PartitionLocks(), RewriteListener.NONE);
+        retention.add(Collections.singletonList(tp));
+
+        // the first two files are replaced by smaller file, it is accounted without listing
+        File rewritten = new File(existing.get(0).getParentFile(), "0000000001-0000000000000000001.bin");
+        Files.write(rewritten.toPath(), new byte[1]);
+        Assertions.assertTrue(existing.get(0).delete());
+        Assertions.assertTrue(existing.get(1).delete());
+        retention.filesRewritten(tp, rewritten, 1L, new FileFooter(1L, 1L, 1L, now, now, 1L, 1L, 0),
+                Arrays.asList(existing.get(0), existing.get(1)));
+        Assertions.assertEquals(0, retention.enforce());
+
+        write(FileLayout.PARTITION, retention.forPartition(tp), 3, 1, now);
+        Assertions.assertEquals(1, retention.enforce());
+        Assertions.assertFalse(rewritten.exists());
+        Assertions.assertEquals(2, RollingFileWriter.committedFiles(dir, FileLayout.PARTITION, tp).size());
+    }
+
+    @Test
+    void filesCommittedAgain() throws IOException {
+        write(FileLayout.FLAT, CommitListener.NONE, 0, 1, 1000L);
+        write(FileLayout.FLAT, CommitListener.NONE, 5, 1, 1000L);
+        List<File> existing = RollingFileWriter.committedFiles(dir, FileLayout.FLAT, tp);
+        long fileBytes = existing.get(0).length();
+        FileRetention retention = new FileRetention(dir, FileLayout.FLAT, -1L, 2 * fileBytes, new PartitionLocks(),
+                RewriteListener.NONE);
+        retention.add(Collections.singletonList(tp));
+
+        // file committed after rewind of offsets is accounted even if its name is not the greatest one
+        write(FileLayout.FLAT, retention.forPartition(tp), 2, 1, 1000L);
+        Assertions.assertEquals(1, retention.enforce());
+        Assertions.assertFalse(existing.get(0).exists());
+        // file committed again under the same name is accounted once
+        write(FileLayout.FLAT, retention.forPartition(tp), 5, 1, 1000L);
+        Assertions.assertEquals(0, retention.enforce());
+        Assertions.assertEquals(2, RollingFileWriter.committedFiles(dir, FileLayout.FLAT, tp).size());
+    }
+
+    private void write(FileLayout layout, CommitListener listener, long firstOffset, int count, long timestamp)
+            throws IOException {
+        RollingFileWriter w = new RollingFileWriter(tp, dir, layout, 1, Long.MAX_VALUE, 0, 0, 0, false, 0,
+                0, RecordFormat.BINARY, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE,
+                WriterMetrics.NONE, listener);
+        for (int i = 0; i < count; i++) {
+            w.write(new SinkRecord(tp.topic(), tp.partition(), null, null, null, new byte[16], firstOffset + i,
+                    timestamp, TimestampType.CREATE_TIME));
+        }
+        w.destroy();
+    }
+}
@@ -0,0 +1,76 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.jdurani.rollingfile.Utils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GroupFileCommitterTest {
+
+    private File dir;
+    private GroupFileCommitter test;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Utils.tmpDir(true).toFile();
+        test = new GroupFileCommitter(50);
+    }
+
+    @AfterEach
+    void tearDown() {
+        test.close();
+    }
+
+    @Test
+    void commitsFilesOfWindowTogether() throws Exception {
+        File tmp1 = tmp("a");
+        File tmp2 = tmp("b");
+        File target1 = new File(dir, "a");
+        File target2 = new File(dir, "b");
+        CompletableFuture<Void> c1 = test.commit(tmp1, target1);
+        CompletableFuture<Void> c2 = test.commit(tmp2, target2);
+        c1.get(10, TimeUnit.SECONDS);
+        c2.get(10, TimeUnit.SECONDS);
+        Assertions.assertAll(
+                () -> Assertions.assertTrue(target1.exists()),
+                () -> Assertions.assertTrue(target2.exists()),
+                () -> Assertions.assertFalse(tmp1.exists()),
+                () -> Assertions.assertFalse(tmp2.exists()),
+                () -> Assertions.assertEquals(1L, test.getCommits()),
+                () -> Assertions.assertEquals(2L, test.getCommittedFiles()),
+                () -> Assertions.assertTrue(test.getLastCommitNanos() > 0),
+                () -> Assertions.assertTrue(test.getMaxCommitNanos() >= test.getLastCommitNanos()));
+    }
+
+    @Test
+    void missingFileFails() throws Exception {
+        CompletableFuture<Void> c = test.commit(new File(dir, "missing"), new File(dir, "target"));
+        Assertions.assertThrows(ExecutionException.class, () -> c.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void closeCommitsPendingFiles() throws Exception {
+        File tmp = tmp("c");
+        File target = new File(dir, "c");
+        CompletableFuture<Void> c = test.commit(tmp, target);
+        test.close();
+        Assertions.assertTrue(c.isDone());
+        c.get();
+        Assertions.assertTrue(target.exists());
+        Assertions.assertThrows(IOException.class, () -> test.commit(tmp("d"), new File(dir, "d")));
+    }
+
+    private File tmp(String name) throws IOException {
+        File f = new File(dir, ".tmp-" + name + ".tmp");
+        Files.write(f.toPath(), name.getBytes());
+        return f;
+    }
+}
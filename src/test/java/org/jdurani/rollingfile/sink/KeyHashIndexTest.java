@@ -0,0 +1,40 @@
+package org.jdurani.rollingfile.sink;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class KeyHashIndexTest {
+
+    @Test
+    void putAndGet() {
+        KeyHashIndex index = new KeyHashIndex();
+        Assertions.assertEquals(KeyHashIndex.NO_VALUE, index.get(1L, 1L));
+        Assertions.assertEquals(KeyHashIndex.NO_VALUE, index.get(0L, 0L));
+        int keys = 100_000;
+        for (long i = 0; i < keys; i++) {
+            index.put(i * 0x9E3779B97F4A7C15L, i, i);
+        }
+        for (long i = 0; i < keys; i += 2) {
+            index.put(i * 0x9E3779B97F4A7C15L, i, i + keys);
+        }
+        Assertions.assertEquals(keys, index.size());
+        for (long i = 0; i < keys; i++) {
+            Assertions.assertEquals(i % 2 == 0 ? i + keys : i, index.get(i * 0x9E3779B97F4A7C15L, i));
+        }
+        Assertions.assertEquals(KeyHashIndex.NO_VALUE, index.get(-1L, -1L));
+    }
+
+    @Test
+    void collidingHashes() {
+        KeyHashIndex index = new KeyHashIndex();
+        // digests sharing the first half are different keys
+        index.put(7L, 1L, 10L);
+        index.put(7L, 2L, 20L);
+        index.put(0L, 0L, 30L);
+        Assertions.assertEquals(3, index.size());
+        Assertions.assertEquals(10L, index.get(7L, 1L));
+        Assertions.assertEquals(20L, index.get(7L, 2L));
+        Assertions.assertEquals(30L, index.get(0L, 0L));
+        Assertions.assertEquals(KeyHashIndex.NO_VALUE, index.get(7L, 3L));
+    }
+}
@@ -0,0 +1,177 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.jdurani.rollingfile.Utils;
+import org.jdurani.rollingfile.format.CompressionCodec;
+import org.jdurani.rollingfile.format.FileFooter;
+import org.jdurani.rollingfile.format.FileLayout;
+import org.jdurani.rollingfile.format.FileManifest;
+import org.jdurani.rollingfile.format.RecordFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ManifestAppenderTest {
+
+    private final TopicPartition tp = new TopicPartition("t", 2);
+    private final WriteBufferPool pool = new WriteBufferPool(1024 * 1024, 1024);
+    private RollScheduler scheduler;
+    private String dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Utils.tmpDir(true).toFile().getAbsolutePath();
+        scheduler = new RollScheduler(10, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.close();
+    }
+
+    @Test
+    void appendCommittedFiles() throws IOException {
+        File topic = new File(dir, tp.topic());
+        // files committed before manifest was enabled are caught up
+        write(CommitListener.NONE, false, 0, 2);
+        ManifestAppender appender = new ManifestAppender(dir, FileLayout.DAILY, true);
+        appender.add(Collections.singletonList(tp));
+        write(appender.forPartition(tp), true, 2, 2);
+        FileManifest.Reader reader = new FileManifest.Reader(topic);
+        List<FileManifest.Entry> entries = reader.readNew();
+        Assertions.assertEquals(2, entries.size());
+        List<File> files = RollingFileWriter.committedFiles(dir, FileLayout.DAILY, tp);
+        Assertions.assertEquals(2, files.size());
+        for (int i = 0; i < entries.size(); i++) {
+            FileManifest.Entry e = entries.get(i);
+            Assertions.assertEquals(files.get(i).getAbsoluteFile(), e.fileIn(topic).getAbsoluteFile());
+            Assertions.assertTrue(e.getPath().startsWith("2/"));
+            Assertions.assertEquals(tp.partition(), e.getPartition());
+            Assertions.assertEquals(files.get(i).length(), e.getSize());
+        }
+        // file without footer has unknown summary
+        Assertions.assertEquals(-1L, entries.get(0).getRecordCount());
+        Assertions.assertEquals(-1L, entries.get(0).getFirstOffset());
+        FileFooter footer = FileFooter.read(files.get(1));
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(2L, entries.get(1).getRecordCount()),
+                () -> Assertions.assertEquals(2L, entries.get(1).getFirstOffset()),
+                () -> Assertions.assertEquals(3L, entries.get(1).getLastOffset()),
+                () -> Assertions.assertEquals(1002L, entries.get(1).getMinTimestamp()),
+                () -> Assertions.assertEquals(1003L, entries.get(1).getMaxTimestamp()),
+                () -> Assertions.assertEquals(footer.getChecksum(), entries.get(1).getChecksum()));
+
+        // files already in manifest are not appended again
+        appender.add(Collections.singletonList(tp));
+        Assertions.assertTrue(reader.readNew().isEmpty());
+        appender.remove(Collections.singletonList(tp));
+        appender.close();
+        ManifestAppender restarted = new ManifestAppender(dir, FileLayout.DAILY, false);
+        restarted.add(Collections.singletonList(tp));
+        Assertions.assertTrue(reader.readNew().isEmpty());
+
+        // file committed again under the same name gets new entry
+        write(restarted.forPartition(tp), true, 2, 3);
+        List<FileManifest.Entry> again = reader.readNew();
+        Assertions.assertEquals(1, again.size());
+        Assertions.assertEquals(files.get(1).getAbsoluteFile(), again.get(0).fileIn(topic).getAbsoluteFile());
+        Assertions.assertEquals(3L, again.get(0).getRecordCount());
+        Assertions.assertEquals(files.get(1).length(), again.get(0).getSize());
+        restarted.close();
+    }
+
+    @Test
+    void appendRewrittenAndDeletedFiles() throws IOException {
+        File topic = new File(dir, tp.topic());
+        ManifestAppender appender = new ManifestAppender(dir, FileLayout.DAILY, false);
+        appender.add(Collections.singletonList(tp));
+        write(appender.forPartition(tp), true, 0, 2);
+        write(appender.forPartition(tp), true, 2, 2);
+        write(appender.forPartition(tp), true, 4, 2);
+        List<File> files = RollingFileWriter.committedFiles(dir, FileLayout.DAILY, tp);
+        Assertions.assertEquals(3, files.size());
+        FileManifest.Reader reader = new FileManifest.Reader(topic);
+        Assertions.assertEquals(3, reader.readNew().size());
+
+        // the first two files are compacted to a file named before the last appended file
+        File compacted = new File(files.get(0).getParentFile(), "0000000002-0000000000000000001.bin");
+        Files.write(compacted.toPath(), new byte[4]);
+        Assertions.assertTrue(files.get(0).delete());
+        Assertions.assertTrue(files.get(1).delete());
+        appender.filesRewritten(tp, compacted, 4L, new FileFooter(2L, 1L, 3L, 1001L, 1003L, 4L, 4L, 0),
+                Arrays.asList(files.get(0), files.get(1)));
+        List<FileManifest.Entry> entries = reader.readNew();
+        Assertions.assertEquals(3, entries.size());
+        Assertions.assertEquals(compacted.getAbsoluteFile(), entries.get(0).fileIn(topic).getAbsoluteFile());
+        Assertions.assertEquals(2L, entries.get(0).getRecordCount());
+        Assertions.assertTrue(entries.get(1).isDeleted());
+        Assertions.assertEquals(files.get(0).getAbsoluteFile(), entries.get(1).fileIn(topic).getAbsoluteFile());
+        Assertions.assertTrue(entries.get(2).isDeleted());
+        Assertions.assertEquals(files.get(1).getAbsoluteFile(), entries.get(2).fileIn(topic).getAbsoluteFile());
+
+        // retention
+        Assertions.assertTrue(compacted.delete());
+        appender.filesDeleted(tp, Collections.singletonList(compacted));
+        entries = reader.readNew();
+        Assertions.assertEquals(1, entries.size());
+        Assertions.assertTrue(entries.get(0).isDeleted());
+        Assertions.assertEquals(compacted.getAbsoluteFile(), entries.get(0).fileIn(topic).getAbsoluteFile());
+
+        // manifest is consistent, nothing is caught up
+        appender.add(Collections.singletonList(tp));
+        Assertions.assertTrue(reader.readNew().isEmpty());
+        appender.close();
+
+        // file rewritten and file deleted while the partition was not assigned are caught up
+        File merged = new File(files.get(2).getParentFile(), "0000000002-0000000000000000005.bin");
+        Assertions.assertTrue(files.get(2).renameTo(merged));
+        ManifestAppender restarted = new ManifestAppender(dir, FileLayout.DAILY, false);
+        restarted.add(Collections.singletonList(tp));
+        entries = reader.readNew();
+        Assertions.assertEquals(2, entries.size());
+        Assertions.assertEquals(merged.getAbsoluteFile(), entries.get(0).fileIn(topic).getAbsoluteFile());
+        Assertions.assertFalse(entries.get(0).isDeleted());
+        Assertions.assertTrue(entries.get(1).isDeleted());
+        Assertions.assertEquals(files.get(2).getAbsoluteFile(), entries.get(1).fileIn(topic).getAbsoluteFile());
+        restarted.add(Collections.singletonList(tp));
+        Assertions.assertTrue(reader.readNew().isEmpty());
+
+        // merged file replaces the first merged file, it is not marked deleted
+        write(restarted.forPartition(tp), true, 6, 2);
+        write(restarted.forPartition(tp), true, 8, 2);
+        Assertions.assertEquals(2, reader.readNew().size());
+        List<File> small = RollingFileWriter.committedFiles(dir, FileLayout.DAILY, tp).subList(1, 3);
+        Files.write(small.get(0).toPath(), new byte[8]);
+        Assertions.assertTrue(small.get(1).delete());
+        restarted.filesRewritten(tp, small.get(0), 8L, new FileFooter(4L, 6L, 9L, 1006L, 1009L, 8L, 8L, 0), small);
+        entries = reader.readNew();
+        Assertions.assertEquals(2, entries.size());
+        Assertions.assertEquals(small.get(0).getAbsoluteFile(), entries.get(0).fileIn(topic).getAbsoluteFile());
+        Assertions.assertEquals(4L, entries.get(0).getRecordCount());
+        Assertions.assertTrue(entries.get(1).isDeleted());
+        Assertions.assertEquals(small.get(1).getAbsoluteFile(), entries.get(1).fileIn(topic).getAbsoluteFile());
+        restarted.close();
+    }
+
+    private void write(CommitListener listener, boolean footer, long firstOffset, int count) throws IOException {
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.DAILY, count, Long.MAX_VALUE, 0, 0, 0,
+                footer, 0, 0, RecordFormat.BINARY, CompressionCodec.NONE, pool, scheduler,
+                DirectFileCommitter.INSTANCE, WriterMetrics.NONE, listener);
+        for (int i = 0; i < count; i++) {
+            long offset = firstOffset + i;
+            w.write(new SinkRecord(tp.topic(), tp.partition(), null, null, null, new byte[8], offset, 1000L + offset,
+                    TimestampType.CREATE_TIME));
+        }
+        w.destroy();
+    }
+}
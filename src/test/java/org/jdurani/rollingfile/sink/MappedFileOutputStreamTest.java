@@ -0,0 +1,90 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.jdurani.rollingfile.Utils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MappedFileOutputStreamTest {
+
+    private File dir;
+    private int idx;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Utils.tmpDir(true).toFile();
+    }
+
+    @Test
+    void writeAcrossRegions() throws IOException {
+        File f = newFile();
+        MappedFileOutputStream os = open(f, 16);
+        byte[] data = bytes(100);
+        os.write(data, 0, 10);
+        Assertions.assertEquals(16, f.length());
+        os.write(data, 10, 90);
+        os.write(7);
+        Assertions.assertEquals(101, os.getPosition());
+        Assertions.assertEquals(112, f.length());
+        os.close();
+        byte[] expected = Arrays.copyOf(data, 101);
+        expected[100] = 7;
+        Assertions.assertArrayEquals(expected, Files.readAllBytes(f.toPath()));
+    }
+
+    @Test
+    void visibleBeforeClose() throws IOException {
+        File f = newFile();
+        MappedFileOutputStream os = open(f, 1024);
+        byte[] data = bytes(10);
+        os.write(data);
+        os.flush();
+        Assertions.assertArrayEquals(data, Arrays.copyOf(Files.readAllBytes(f.toPath()), 10));
+        os.close();
+        Assertions.assertArrayEquals(data, Files.readAllBytes(f.toPath()));
+    }
+
+    @Test
+    void preallocateAndTruncate() throws IOException {
+        File f = newFile();
+        MappedFileOutputStream os = open(f, 16);
+        os.preallocate(1000);
+        Assertions.assertEquals(1000, f.length());
+        byte[] data = bytes(40);
+        os.write(data);
+        Assertions.assertEquals(1000, f.length());
+        os.close();
+        Assertions.assertArrayEquals(data, Files.readAllBytes(f.toPath()));
+    }
+
+    @Test
+    void closeEmpty() throws IOException {
+        File f = newFile();
+        open(f, 16).close();
+        Assertions.assertEquals(0, f.length());
+    }
+
+    private MappedFileOutputStream open(File f, int regionSize) throws IOException {
+        FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new MappedFileOutputStream(channel, f.getAbsolutePath(), regionSize);
+    }
+
+    private File newFile() {
+        return new File(dir, "f" + ++idx);
+    }
+
+    private static byte[] bytes(int len) {
+        byte[] b = new byte[len];
+        for (int i = 0; i < len; i++) {
+            b[i] = (byte) i;
+        }
+        return b;
+    }
+}
@@ -0,0 +1,135 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.jdurani.rollingfile.Utils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PooledFileOutputStreamTest {
+
+    private File dir;
+    private int idx;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Utils.tmpDir(true).toFile();
+    }
+
+    @Test
+    void bufferUntilFlush() throws IOException {
+        WriteBufferPool pool = new WriteBufferPool(64, 16);
+        File f = newFile();
+        PooledFileOutputStream os = open(f, pool);
+        byte[] data = bytes(40);
+        os.write(data);
+        Assertions.assertEquals(0, f.length());
+        Assertions.assertEquals(48, pool.getHeldBytes());
+        Assertions.assertEquals(40, os.getPosition());
+        os.flush();
+        Assertions.assertEquals(0, pool.getHeldBytes());
+        Assertions.assertArrayEquals(data, Files.readAllBytes(f.toPath()));
+        os.close();
+    }
+
+    @Test
+    void preallocateAndTruncate() throws IOException {
+        WriteBufferPool pool = new WriteBufferPool(64, 16);
+        File f = newFile();
+        PooledFileOutputStream os = open(f, pool);
+        os.preallocate(1000);
+        Assertions.assertEquals(1000, f.length());
+        byte[] data = bytes(40);
+        os.write(data);
+        os.flush();
+        Assertions.assertEquals(1000, f.length());
+        os.close();
+        Assertions.assertArrayEquals(data, Files.readAllBytes(f.toPath()));
+    }
+
+    @Test
+    void reuseOwnBuffersWhenExhausted() throws IOException {
+        WriteBufferPool pool = new WriteBufferPool(32, 16);
+        File f = newFile();
+        PooledFileOutputStream os = open(f, pool);
+        byte[] data = bytes(100);
+        os.write(data, 0, 50);
+        os.write(data, 50, 50);
+        Assertions.assertTrue(pool.getHeldBytes() <= 32);
+        os.close();
+        Assertions.assertEquals(0, pool.getHeldBytes());
+        Assertions.assertArrayEquals(data, Files.readAllBytes(f.toPath()));
+    }
+
+    @Test
+    void writeDirectlyWithoutBuffers() throws IOException {
+        WriteBufferPool pool = new WriteBufferPool(0, 16);
+        File f = newFile();
+        PooledFileOutputStream os = open(f, pool);
+        byte[] data = bytes(10);
+        os.write(data);
+        os.write(7);
+        Assertions.assertEquals(11, f.length());
+        os.close();
+        byte[] expected = Arrays.copyOf(data, 11);
+        expected[10] = 7;
+        Assertions.assertArrayEquals(expected, Files.readAllBytes(f.toPath()));
+    }
+
+    @Test
+    void spillIdleStream() throws IOException {
+        WriteBufferPool pool = new WriteBufferPool(32, 16);
+        File f1 = newFile();
+        File f2 = newFile();
+        PooledFileOutputStream large = open(f1, pool);
+        PooledFileOutputStream other = open(f2, pool);
+        large.write(bytes(20));
+        Assertions.assertEquals(32, pool.getHeldBytes());
+        other.write(bytes(5)); // no buffer left - 'large' is spilled by this write and its buffer reused
+        Assertions.assertEquals(20, f1.length());
+        Assertions.assertEquals(0, f2.length());
+        Assertions.assertEquals(16, pool.getHeldBytes());
+        large.write(bytes(1));
+        large.close();
+        other.close();
+        Assertions.assertEquals(21, f1.length());
+        Assertions.assertEquals(5, f2.length());
+        Assertions.assertEquals(0, pool.getHeldBytes());
+    }
+
+    @Test
+    void spillErrorThrownByNextWrite() throws IOException {
+        WriteBufferPool pool = new WriteBufferPool(32, 16);
+        File f = newFile();
+        FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        PooledFileOutputStream os = new PooledFileOutputStream(channel, f, pool);
+        os.write(bytes(5));
+        channel.close();
+        Assertions.assertFalse(os.spill());
+        Assertions.assertThrows(IOException.class, () -> os.write(1));
+        Assertions.assertThrows(IOException.class, os::close);
+        Assertions.assertEquals(0, pool.getHeldBytes());
+    }
+
+    private PooledFileOutputStream open(File f, WriteBufferPool pool) throws IOException {
+        return new PooledFileOutputStream(FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE), f, pool);
+    }
+
+    private File newFile() {
+        return new File(dir, "f" + ++idx);
+    }
+
+    private static byte[] bytes(int len) {
+        byte[] b = new byte[len];
+        for (int i = 0; i < len; i++) {
+            b[i] = (byte) i;
+        }
+        return b;
+    }
+}
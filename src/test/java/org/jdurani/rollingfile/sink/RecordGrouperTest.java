@@ -0,0 +1,45 @@
+package org.jdurani.rollingfile.sink;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RecordGrouperTest {
+
+    @Test
+    void group() {
+        RecordGrouper grouper = new RecordGrouper();
+        SinkRecord a3 = new SinkRecord("a", 3, null, null, null, null, 0);
+        SinkRecord b0 = new SinkRecord("b", 0, null, null, null, null, 0);
+        SinkRecord a0 = new SinkRecord("a", 0, null, null, null, null, 0);
+        SinkRecord a3Next = new SinkRecord("a", 3, null, null, null, null, 1);
+        SinkRecord a10 = new SinkRecord("a", 10, null, null, null, null, 0);
+        List<RecordGrouper.Group> groups = grouper.group(Arrays.asList(a3, b0, a0, a3Next, a10));
+        Assertions.assertEquals(4, groups.size());
+        Assertions.assertEquals(new TopicPartition("a", 3), groups.get(0).getTopicPartition());
+        Assertions.assertEquals(Arrays.asList(a3, a3Next), groups.get(0).getRecords());
+        Assertions.assertEquals(new TopicPartition("b", 0), groups.get(1).getTopicPartition());
+        Assertions.assertEquals(Collections.singletonList(b0), groups.get(1).getRecords());
+        Assertions.assertEquals(new TopicPartition("a", 0), groups.get(2).getTopicPartition());
+        Assertions.assertEquals(new TopicPartition("a", 10), groups.get(3).getTopicPartition());
+        TopicPartition a3Tp = groups.get(0).getTopicPartition();
+        List<SinkRecord> first = groups.get(0).getRecords();
+
+        // topic partitions are reused, lists of records are not
+        groups = grouper.group(Collections.singletonList(a3));
+        Assertions.assertEquals(1, groups.size());
+        Assertions.assertSame(a3Tp, groups.get(0).getTopicPartition());
+        Assertions.assertEquals(Collections.singletonList(a3), groups.get(0).getRecords());
+        Assertions.assertEquals(Arrays.asList(a3, a3Next), first);
+
+        grouper.remove(Collections.singletonList(new TopicPartition("a", 3)));
+        groups = grouper.group(Collections.singletonList(a3));
+        Assertions.assertNotSame(a3Tp, groups.get(0).getTopicPartition());
+        Assertions.assertTrue(grouper.group(Collections.emptyList()).isEmpty());
+    }
+}
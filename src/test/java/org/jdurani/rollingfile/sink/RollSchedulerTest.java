@@ -0,0 +1,103 @@
+package org.jdurani.rollingfile.sink;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RollSchedulerTest {
+
+    private RollScheduler test;
+
+    @AfterEach
+    void tearDown() {
+        if (test != null) {
+            test.close();
+        }
+    }
+
+    @Test
+    void periodic() throws InterruptedException {
+        test = new RollScheduler(5, 0);
+        AtomicInteger runs = new AtomicInteger();
+        test.schedule(runs::incrementAndGet, 20);
+        Thread.sleep(300);
+        int r = runs.get();
+        Assertions.assertTrue(r >= 5 && r <= 16, "unexpected number of runs " + r);
+    }
+
+    @Test
+    void longPeriod() throws InterruptedException {
+        // period longer than one rotation of the wheel
+        test = new RollScheduler(1, 0);
+        AtomicInteger runs = new AtomicInteger();
+        test.schedule(runs::incrementAndGet, 600);
+        Thread.sleep(400);
+        Assertions.assertEquals(0, runs.get());
+        Thread.sleep(600);
+        Assertions.assertEquals(1, runs.get());
+    }
+
+    @Test
+    void cancel() throws InterruptedException {
+        test = new RollScheduler(5, 0);
+        AtomicInteger runs = new AtomicInteger();
+        RollScheduler.Registration r = test.schedule(runs::incrementAndGet, 20);
+        Thread.sleep(100);
+        r.cancel();
+        Thread.sleep(30);
+        int afterCancel = runs.get();
+        Assertions.assertTrue(afterCancel > 0);
+        Thread.sleep(100);
+        Assertions.assertEquals(afterCancel, runs.get());
+    }
+
+    @Test
+    void failingTaskKeepsRunning() throws InterruptedException {
+        test = new RollScheduler(5, 0);
+        AtomicInteger runs = new AtomicInteger();
+        AtomicInteger other = new AtomicInteger();
+        test.schedule(() -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("Expected");
+        }, 20);
+        test.schedule(other::incrementAndGet, 20);
+        Thread.sleep(200);
+        Assertions.assertTrue(runs.get() > 1);
+        Assertions.assertTrue(other.get() > 1);
+    }
+
+    @Test
+    void jitter() throws InterruptedException {
+        test = new RollScheduler(1, 200);
+        AtomicLong first = new AtomicLong(Long.MAX_VALUE);
+        AtomicLong last = new AtomicLong();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 50; i++) {
+            AtomicInteger done = new AtomicInteger();
+            test.schedule(() -> {
+                if (done.getAndIncrement() == 0) {
+                    long t = System.currentTimeMillis() - start;
+                    first.accumulateAndGet(t, Math::min);
+                    last.accumulateAndGet(t, Math::max);
+                }
+            }, 100);
+        }
+        Thread.sleep(500);
+        Assertions.assertTrue(first.get() >= 100, "fired too early " + first.get());
+        Assertions.assertTrue(last.get() - first.get() > 10, "runs are not spread " + first.get() + " - " + last.get());
+    }
+
+    @Test
+    void constantThreadCount() throws InterruptedException {
+        int before = Thread.activeCount();
+        test = new RollScheduler(5, 10);
+        for (int i = 0; i < 1000; i++) {
+            test.schedule(() -> { }, 10);
+        }
+        Thread.sleep(50);
+        Assertions.assertTrue(Thread.activeCount() <= before + 1);
+    }
+}
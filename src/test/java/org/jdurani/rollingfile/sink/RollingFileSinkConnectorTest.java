@@ -30,9 +30,29 @@ class RollingFileSinkConnectorTest {
         int count = 1;
         int ms = 10;
         Map<String, String> m = new HashMap<>();
+        m.put(RollingFileConfig.CONNECTOR_NAME_CONFIG, "backup");
         m.put(RollingFileConfig.ROLLING_FILE_DIRECTORY_CONFIG, dir);
+        m.put(RollingFileConfig.ROLLING_FILE_LAYOUT_CONFIG, "hourly");
         m.put(RollingFileConfig.ROLLING_FILE_FLUSH_COUNT_CONFIG, String.valueOf(count));
         m.put(RollingFileConfig.ROLLING_FILE_FLUSH_MS_CONFIG, String.valueOf(ms));
+        m.put(RollingFileConfig.ROLLING_FILE_FLUSH_BYTES_CONFIG, "4096");
+        m.put(RollingFileConfig.ROLLING_FILE_FLUSH_JITTER_MS_CONFIG, "5");
+        m.put(RollingFileConfig.ROLLING_FILE_BUFFER_MEMORY_CONFIG, "2048");
+        m.put(RollingFileConfig.ROLLING_FILE_BUFFER_SIZE_CONFIG, "1024");
+        m.put(RollingFileConfig.ROLLING_FILE_COMPRESSION_CONFIG, "lz4");
+        m.put(RollingFileConfig.ROLLING_FILE_FORMAT_CONFIG, "binary");
+        m.put(RollingFileConfig.ROLLING_FILE_IO_THREADS_CONFIG, "4");
+        m.put(RollingFileConfig.ROLLING_FILE_FSYNC_CONFIG, "true");
+        m.put(RollingFileConfig.ROLLING_FILE_PREALLOCATE_BYTES_CONFIG, "-1");
+        m.put(RollingFileConfig.ROLLING_FILE_INDEX_INTERVAL_CONFIG, "1000");
+        m.put(RollingFileConfig.ROLLING_FILE_FOOTER_CONFIG, "true");
+        m.put(RollingFileConfig.ROLLING_FILE_CHECKSUM_BLOCK_BYTES_CONFIG, "65536");
+        m.put(RollingFileConfig.ROLLING_FILE_MMAP_REGION_BYTES_CONFIG, "1048576");
+        m.put(RollingFileConfig.ROLLING_FILE_MAX_OPEN_FILES_CONFIG, "64");
+        m.put(RollingFileConfig.ROLLING_FILE_COMPACTION_INTERVAL_MS_CONFIG, "3600000");
+        m.put(RollingFileConfig.ROLLING_FILE_MERGE_TARGET_BYTES_CONFIG, "67108864");
+        m.put(RollingFileConfig.ROLLING_FILE_RETENTION_MS_CONFIG, "604800000");
+        m.put(RollingFileConfig.ROLLING_FILE_MANIFEST_CONFIG, "true");
         test.start(m);
         List<Map<String, String>> maps = test.taskConfigs(3);
         Assertions.assertAll(
@@ -46,10 +66,38 @@ class RollingFileSinkConnectorTest {
         Assertions.assertEquals(maps.get(0), maps.get(2));
         Assertions.assertEquals(maps.get(1), maps.get(2));
         Map<String, String> cfg = maps.get(0);
-        Assertions.assertEquals(3, cfg.size());
+        Assertions.assertEquals(30, cfg.size());
+        Assertions.assertEquals("backup", cfg.get(RollingFileConfig.CONNECTOR_NAME_CONFIG));
         Assertions.assertEquals(dir, cfg.get(RollingFileConfig.ROLLING_FILE_DIRECTORY_CONFIG));
+        Assertions.assertEquals("hourly", cfg.get(RollingFileConfig.ROLLING_FILE_LAYOUT_CONFIG));
         Assertions.assertEquals(Integer.toString(count), cfg.get(RollingFileConfig.ROLLING_FILE_FLUSH_COUNT_CONFIG));
         Assertions.assertEquals(Integer.toString(ms), cfg.get(RollingFileConfig.ROLLING_FILE_FLUSH_MS_CONFIG));
+        Assertions.assertEquals("4096", cfg.get(RollingFileConfig.ROLLING_FILE_FLUSH_BYTES_CONFIG));
+        Assertions.assertEquals("5", cfg.get(RollingFileConfig.ROLLING_FILE_FLUSH_JITTER_MS_CONFIG));
+        Assertions.assertEquals("2048", cfg.get(RollingFileConfig.ROLLING_FILE_BUFFER_MEMORY_CONFIG));
+        Assertions.assertEquals("1024", cfg.get(RollingFileConfig.ROLLING_FILE_BUFFER_SIZE_CONFIG));
+        Assertions.assertEquals("lz4", cfg.get(RollingFileConfig.ROLLING_FILE_COMPRESSION_CONFIG));
+        Assertions.assertEquals("binary", cfg.get(RollingFileConfig.ROLLING_FILE_FORMAT_CONFIG));
+        Assertions.assertEquals("4", cfg.get(RollingFileConfig.ROLLING_FILE_IO_THREADS_CONFIG));
+        Assertions.assertEquals("10000", cfg.get(RollingFileConfig.ROLLING_FILE_IO_QUEUE_SIZE_CONFIG));
+        Assertions.assertEquals("true", cfg.get(RollingFileConfig.ROLLING_FILE_FSYNC_CONFIG));
+        Assertions.assertEquals("10", cfg.get(RollingFileConfig.ROLLING_FILE_FSYNC_WINDOW_MS_CONFIG));
+        Assertions.assertEquals("-1", cfg.get(RollingFileConfig.ROLLING_FILE_PREALLOCATE_BYTES_CONFIG));
+        Assertions.assertEquals("1000", cfg.get(RollingFileConfig.ROLLING_FILE_INDEX_INTERVAL_CONFIG));
+        Assertions.assertEquals("true", cfg.get(RollingFileConfig.ROLLING_FILE_FOOTER_CONFIG));
+        Assertions.assertEquals("65536", cfg.get(RollingFileConfig.ROLLING_FILE_CHECKSUM_BLOCK_BYTES_CONFIG));
+        Assertions.assertEquals("1048576", cfg.get(RollingFileConfig.ROLLING_FILE_MMAP_REGION_BYTES_CONFIG));
+        Assertions.assertEquals("64", cfg.get(RollingFileConfig.ROLLING_FILE_MAX_OPEN_FILES_CONFIG));
+        Assertions.assertEquals("0", cfg.get(RollingFileConfig.ROLLING_FILE_WRITER_IDLE_MS_CONFIG));
+        Assertions.assertEquals("3600000", cfg.get(RollingFileConfig.ROLLING_FILE_COMPACTION_INTERVAL_MS_CONFIG));
+        Assertions.assertEquals("86400000",
+                cfg.get(RollingFileConfig.ROLLING_FILE_COMPACTION_TOMBSTONE_RETENTION_MS_CONFIG));
+        Assertions.assertEquals("67108864", cfg.get(RollingFileConfig.ROLLING_FILE_MERGE_TARGET_BYTES_CONFIG));
+        Assertions.assertEquals("600000", cfg.get(RollingFileConfig.ROLLING_FILE_MERGE_INTERVAL_MS_CONFIG));
+        Assertions.assertEquals("604800000", cfg.get(RollingFileConfig.ROLLING_FILE_RETENTION_MS_CONFIG));
+        Assertions.assertEquals("-1", cfg.get(RollingFileConfig.ROLLING_FILE_RETENTION_BYTES_CONFIG));
+        Assertions.assertEquals("true", cfg.get(RollingFileConfig.ROLLING_FILE_MANIFEST_CONFIG));
+        Assertions.assertEquals("false", cfg.get(RollingFileConfig.ROLLING_FILE_DROP_CACHE_CONFIG));
     }
 
     @Test
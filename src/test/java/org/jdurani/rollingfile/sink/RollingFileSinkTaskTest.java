@@ -2,15 +2,25 @@ package org.jdurani.rollingfile.sink;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.connect.sink.SinkRecord;
+import org.apache.kafka.connect.sink.SinkTaskContext;
+import org.jdurani.rollingfile.RollingFileConfig;
 import org.jdurani.rollingfile.VersionHolder;
 import org.jdurani.rollingfile.exception.CloseException;
 import org.jdurani.rollingfile.exception.FlushException;
+import org.jdurani.rollingfile.exception.WriteException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 
 class RollingFileSinkTaskTest {
@@ -35,8 +45,8 @@ class RollingFileSinkTaskTest {
         SinkRecord s1 = new SinkRecord("", 0, null, null, null, null, 0);
         SinkRecord s2 = new SinkRecord("", 1, null, null, null, null, 0);
         test.put(Arrays.asList(s1, s2));
-        Mockito.verify(w1).write(Mockito.same(s1));
-        Mockito.verify(w2).write(Mockito.same(s2));
+        Mockito.verify(w1).writeBatch(Collections.singletonList(s1));
+        Mockito.verify(w2).writeBatch(Collections.singletonList(s2));
         Mockito.verifyNoMoreInteractions(w1, w2);
 
         test.flush(null);
@@ -56,9 +66,9 @@ class RollingFileSinkTaskTest {
         SinkRecord s2 = new SinkRecord("", 1, null, null, null, null, 0);
         SinkRecord s3 = new SinkRecord("", 2, null, null, null, null, 0);
         test.put(Arrays.asList(s1, s2, s3));
-        Mockito.verify(w1).write(Mockito.same(s1));
-        Mockito.verify(w2).write(Mockito.same(s2));
-        Mockito.verify(w3).write(Mockito.same(s3));
+        Mockito.verify(w1).writeBatch(Collections.singletonList(s1));
+        Mockito.verify(w2).writeBatch(Collections.singletonList(s2));
+        Mockito.verify(w3).writeBatch(Collections.singletonList(s3));
         Mockito.verifyNoMoreInteractions(w1, w2, w3);
 
         Assertions.assertThrows(FlushException.class, () -> test.flush(null));
@@ -76,8 +86,8 @@ class RollingFileSinkTaskTest {
         SinkRecord s1 = new SinkRecord("", 0, null, null, null, null, 0);
         SinkRecord s2 = new SinkRecord("", 1, null, null, null, null, 0);
         test.put(Arrays.asList(s1, s2));
-        Mockito.verify(w1).write(Mockito.same(s1));
-        Mockito.verify(w2).write(Mockito.same(s2));
+        Mockito.verify(w1).writeBatch(Collections.singletonList(s1));
+        Mockito.verify(w2).writeBatch(Collections.singletonList(s2));
         Mockito.verifyNoMoreInteractions(w1, w2);
 
         test.close(null);
@@ -98,10 +108,10 @@ class RollingFileSinkTaskTest {
         SinkRecord s3 = new SinkRecord("", 2, null, null, null, null, 0);
         SinkRecord s4 = new SinkRecord("", 3, null, null, null, null, 0);
         test.put(Arrays.asList(s1, s2, s3, s4));
-        Mockito.verify(w1).write(Mockito.same(s1));
-        Mockito.verify(w2).write(Mockito.same(s2));
-        Mockito.verify(w3).write(Mockito.same(s3));
-        Mockito.verify(w4).write(Mockito.same(s4));
+        Mockito.verify(w1).writeBatch(Collections.singletonList(s1));
+        Mockito.verify(w2).writeBatch(Collections.singletonList(s2));
+        Mockito.verify(w3).writeBatch(Collections.singletonList(s3));
+        Mockito.verify(w4).writeBatch(Collections.singletonList(s4));
         Mockito.verifyNoMoreInteractions(w1, w2, w3, w4);
 
         test.close(Arrays.asList(new TopicPartition("", 0), new TopicPartition("", 2)));
@@ -120,9 +130,9 @@ class RollingFileSinkTaskTest {
         SinkRecord s2 = new SinkRecord("", 1, null, null, null, null, 0);
         SinkRecord s3 = new SinkRecord("", 3, null, null, null, null, 0);
         test.put(Arrays.asList(s1, s2, s3));
-        Mockito.verify(w1).write(Mockito.same(s1));
-        Mockito.verify(w2).write(Mockito.same(s2));
-        Mockito.verify(w3).write(Mockito.same(s3));
+        Mockito.verify(w1).writeBatch(Collections.singletonList(s1));
+        Mockito.verify(w2).writeBatch(Collections.singletonList(s2));
+        Mockito.verify(w3).writeBatch(Collections.singletonList(s3));
         Mockito.verifyNoMoreInteractions(w1, w2, w3);
 
         Mockito.doThrow(new IOException("Expected")).when(w2).destroy();
@@ -132,4 +142,245 @@ class RollingFileSinkTaskTest {
         Mockito.verify(w3).destroy();
         Mockito.verifyNoMoreInteractions(w1, w2, w3);
     }
+
+    @Test
+    void putGroupsByPartition() throws IOException {
+        RollingFileWriter w1 = Mockito.mock(RollingFileWriter.class);
+        RollingFileWriter w2 = Mockito.mock(RollingFileWriter.class);
+        Mockito.doReturn(w1, w2).when(test).getWriter(Mockito.any());
+        SinkRecord s1 = new SinkRecord("", 0, null, null, null, null, 0);
+        SinkRecord s2 = new SinkRecord("", 1, null, null, null, null, 0);
+        SinkRecord s3 = new SinkRecord("", 0, null, null, null, null, 1);
+        SinkRecord s4 = new SinkRecord("", 1, null, null, null, null, 1);
+        test.put(Arrays.asList(s1, s2, s3, s4));
+        Mockito.verify(w1).writeBatch(Arrays.asList(s1, s3));
+        Mockito.verify(w2).writeBatch(Arrays.asList(s2, s4));
+        Mockito.verify(test, Mockito.times(2)).getWriter(Mockito.any());
+
+        SinkRecord s5 = new SinkRecord("", 1, null, null, null, null, 2);
+        test.put(Collections.singletonList(s5));
+        Mockito.verify(w2).writeBatch(Collections.singletonList(s5));
+        Mockito.verifyNoMoreInteractions(w1, w2);
+    }
+
+    @Test
+    void preCommitPersistedOffsets() throws IOException {
+        RollingFileWriter w1 = Mockito.mock(RollingFileWriter.class);
+        RollingFileWriter w2 = Mockito.mock(RollingFileWriter.class);
+        RollingFileWriter w3 = Mockito.mock(RollingFileWriter.class);
+        Mockito.doReturn(w1, w2, w3).when(test).getWriter(Mockito.any());
+        Mockito.doReturn(5L).when(w1).getPersistedOffset();
+        Mockito.doReturn(RollingFileWriter.NO_OFFSET).when(w2).getPersistedOffset();
+        Mockito.doReturn(10L).when(w3).getPersistedOffset();
+        TopicPartition tp1 = new TopicPartition("", 0);
+        TopicPartition tp2 = new TopicPartition("", 1);
+        TopicPartition tp3 = new TopicPartition("", 2);
+        test.put(Arrays.asList(new SinkRecord("", 0, null, null, null, null, 0),
+                new SinkRecord("", 1, null, null, null, null, 0),
+                new SinkRecord("", 2, null, null, null, null, 0)));
+        Map<TopicPartition, OffsetAndMetadata> current = new HashMap<>();
+        current.put(tp1, new OffsetAndMetadata(10L));
+        current.put(tp2, new OffsetAndMetadata(10L));
+        current.put(tp3, new OffsetAndMetadata(8L));
+        current.put(new TopicPartition("", 3), new OffsetAndMetadata(10L));
+        Map<TopicPartition, OffsetAndMetadata> committed = test.preCommit(current);
+        Mockito.verify(w1).flush();
+        Mockito.verify(w2).flush();
+        Mockito.verify(w3).flush();
+        Assertions.assertEquals(2, committed.size());
+        Assertions.assertEquals(5L, committed.get(tp1).offset());
+        Assertions.assertEquals(8L, committed.get(tp3).offset());
+    }
+
+    @Test
+    void openRecovers() throws IOException {
+        RollingFileWriter w1 = Mockito.mock(RollingFileWriter.class);
+        RollingFileWriter w2 = Mockito.mock(RollingFileWriter.class);
+        Mockito.doReturn(w1, w2).when(test).getWriter(Mockito.any());
+        Mockito.doReturn(7L).when(w1).recover();
+        Mockito.doReturn(RollingFileWriter.NO_OFFSET).when(w2).recover();
+        SinkTaskContext context = Mockito.mock(SinkTaskContext.class);
+        test.initialize(context);
+        TopicPartition tp1 = new TopicPartition("", 0);
+        TopicPartition tp2 = new TopicPartition("", 1);
+        test.open(Arrays.asList(tp1, tp2));
+        test.open(Collections.singletonList(tp1));
+        Mockito.verify(w1).recover();
+        Mockito.verify(w2).recover();
+        Mockito.verify(context).offset(tp1, 7L);
+        Mockito.verifyNoMoreInteractions(context);
+
+        SinkRecord s1 = new SinkRecord("", 0, null, null, null, null, 7);
+        test.put(Collections.singletonList(s1));
+        Mockito.verify(w1).writeBatch(Collections.singletonList(s1));
+        Mockito.verify(test, Mockito.times(2)).getWriter(Mockito.any());
+
+        Mockito.doThrow(new IOException("Expected")).when(w1).recover();
+        test.close(null);
+        Mockito.doReturn(w1).when(test).getWriter(Mockito.any());
+        Assertions.assertThrows(WriteException.class, () -> test.open(Collections.singletonList(tp1)));
+    }
+
+    @Test
+    void putAndFlushAsync() throws IOException {
+        Map<String, String> props = props();
+        props.put(RollingFileConfig.ROLLING_FILE_IO_THREADS_CONFIG, "2");
+        test.start(props);
+        try {
+            RollingFileWriter w1 = Mockito.mock(RollingFileWriter.class);
+            RollingFileWriter w2 = Mockito.mock(RollingFileWriter.class);
+            Mockito.doReturn(w1, w2).when(test).getWriter(Mockito.any());
+            SinkRecord s1 = new SinkRecord("", 0, null, null, null, null, 0);
+            SinkRecord s2 = new SinkRecord("", 1, null, null, null, null, 0);
+            SinkRecord s3 = new SinkRecord("", 0, null, null, null, null, 1);
+            test.put(Arrays.asList(s1, s2, s3));
+
+            // only committed partition is flushed
+            test.flush(Collections.singletonMap(new TopicPartition("", 0), new OffsetAndMetadata(2)));
+            InOrder inOrder = Mockito.inOrder(w1);
+            inOrder.verify(w1).writeBatch(Arrays.asList(s1, s3));
+            inOrder.verify(w1).flush();
+            Mockito.verify(w2, Mockito.never()).flush();
+
+            Mockito.doThrow(new IOException("Expected")).when(w2).destroy();
+            Assertions.assertThrows(CloseException.class, () -> test.close(null));
+            Mockito.verify(w1).destroy();
+            Mockito.verify(w2).writeBatch(Collections.singletonList(s2));
+            Mockito.verify(w2).destroy();
+        } finally {
+            test.stop();
+        }
+    }
+
+    @Test
+    void putRollsLeastRecentlyWritten() throws IOException {
+        Map<String, String> props = props();
+        props.put(RollingFileConfig.ROLLING_FILE_MAX_OPEN_FILES_CONFIG, "2");
+        test.start(props);
+        try {
+            RollingFileWriter w1 = Mockito.mock(RollingFileWriter.class);
+            RollingFileWriter w2 = Mockito.mock(RollingFileWriter.class);
+            RollingFileWriter w3 = Mockito.mock(RollingFileWriter.class);
+            Mockito.doReturn(w1, w2, w3).when(test).getWriter(Mockito.any());
+            Mockito.doReturn(true).when(w1).isOpen();
+            Mockito.doReturn(true).when(w2).isOpen();
+            Mockito.doReturn(20L).when(w1).getLastWriteMs();
+            Mockito.doReturn(10L).when(w2).getLastWriteMs();
+            test.put(Arrays.asList(new SinkRecord("", 0, null, null, null, null, 0),
+                    new SinkRecord("", 1, null, null, null, null, 0)));
+            Mockito.verify(w1, Mockito.never()).close();
+            Mockito.verify(w2, Mockito.never()).close();
+
+            // third file would exceed the limit, the least recently written one is rolled
+            test.put(Collections.singletonList(new SinkRecord("", 2, null, null, null, null, 0)));
+            Mockito.verify(w1, Mockito.never()).close();
+            Mockito.verify(w2).close();
+            Mockito.verify(w3).writeBatch(Mockito.any());
+        } finally {
+            test.stop();
+        }
+    }
+
+    @Test
+    void putRollsLeastRecentlyWrittenOnIoThread() throws IOException {
+        Map<String, String> props = props();
+        props.put(RollingFileConfig.ROLLING_FILE_MAX_OPEN_FILES_CONFIG, "1");
+        props.put(RollingFileConfig.ROLLING_FILE_IO_THREADS_CONFIG, "1");
+        test.start(props);
+        try {
+            RollingFileWriter w1 = Mockito.mock(RollingFileWriter.class);
+            RollingFileWriter w2 = Mockito.mock(RollingFileWriter.class);
+            Mockito.doReturn(w1, w2).when(test).getWriter(Mockito.any());
+            Mockito.doReturn(true).when(w1).isOpen();
+            AtomicReference<String> closingThread = new AtomicReference<>();
+            Mockito.doAnswer(i -> {
+                closingThread.set(Thread.currentThread().getName());
+                return null;
+            }).when(w1).close();
+            test.put(Collections.singletonList(new SinkRecord("", 0, null, null, null, null, 0)));
+            test.put(Collections.singletonList(new SinkRecord("", 1, null, null, null, null, 0)));
+            Mockito.verify(w1, Mockito.timeout(10_000)).close();
+            Assertions.assertEquals("rolling-file-io-0", closingThread.get());
+        } finally {
+            test.stop();
+        }
+    }
+
+    @Test
+    void preCommitReleasesIdleWriters() throws IOException {
+        Map<String, String> props = props();
+        props.put(RollingFileConfig.ROLLING_FILE_WRITER_IDLE_MS_CONFIG, "60000");
+        test.start(props);
+        try {
+            RollingFileWriter w1 = Mockito.mock(RollingFileWriter.class);
+            RollingFileWriter w2 = Mockito.mock(RollingFileWriter.class);
+            RollingFileWriter w3 = Mockito.mock(RollingFileWriter.class);
+            Mockito.doReturn(w1, w2, w3).when(test).getWriter(Mockito.any());
+            Mockito.doReturn(System.currentTimeMillis() + 60000).when(w1).getLastWriteMs();
+            Mockito.doReturn(4L).when(w1).getPersistedOffset();
+            Mockito.doReturn(5L).when(w2).getPersistedOffset();
+            TopicPartition tp1 = new TopicPartition("", 0);
+            TopicPartition tp2 = new TopicPartition("", 1);
+            test.put(Arrays.asList(new SinkRecord("", 0, null, null, null, null, 0),
+                    new SinkRecord("", 1, null, null, null, null, 0)));
+            Map<TopicPartition, OffsetAndMetadata> current = new HashMap<>();
+            current.put(tp1, new OffsetAndMetadata(10L));
+            current.put(tp2, new OffsetAndMetadata(10L));
+            Map<TopicPartition, OffsetAndMetadata> committed = test.preCommit(current);
+            Mockito.verify(w1, Mockito.never()).destroy();
+            Mockito.verify(w2).destroy();
+            Assertions.assertEquals(4L, committed.get(tp1).offset());
+            Assertions.assertEquals(5L, committed.get(tp2).offset());
+
+            // offset of released writer is reported until new writer persists records
+            Mockito.doReturn(RollingFileWriter.NO_OFFSET).when(w3).getPersistedOffset();
+            Mockito.doReturn(System.currentTimeMillis() + 60000).when(w3).getLastWriteMs();
+            test.put(Collections.singletonList(new SinkRecord("", 1, null, null, null, null, 1)));
+            committed = test.preCommit(current);
+            Assertions.assertEquals(5L, committed.get(tp2).offset());
+            Mockito.verify(w3).writeBatch(Mockito.any());
+
+            test.close(null);
+            committed = test.preCommit(current);
+            Assertions.assertTrue(committed.isEmpty());
+        } finally {
+            test.stop();
+        }
+    }
+
+    /**
+     * @return configuration of task writing synchronously with all optional features disabled
+     */
+    private static Map<String, String> props() {
+        Map<String, String> props = new HashMap<>();
+        props.put(RollingFileConfig.ROLLING_FILE_DIRECTORY_CONFIG, "dir");
+        props.put(RollingFileConfig.ROLLING_FILE_FLUSH_COUNT_CONFIG, "1");
+        props.put(RollingFileConfig.ROLLING_FILE_FLUSH_MS_CONFIG, "1000");
+        props.put(RollingFileConfig.ROLLING_FILE_FLUSH_BYTES_CONFIG, "0");
+        props.put(RollingFileConfig.ROLLING_FILE_FLUSH_JITTER_MS_CONFIG, "0");
+        props.put(RollingFileConfig.ROLLING_FILE_BUFFER_MEMORY_CONFIG, "1024");
+        props.put(RollingFileConfig.ROLLING_FILE_BUFFER_SIZE_CONFIG, "1024");
+        props.put(RollingFileConfig.ROLLING_FILE_COMPRESSION_CONFIG, "none");
+        props.put(RollingFileConfig.ROLLING_FILE_FORMAT_CONFIG, "text");
+        props.put(RollingFileConfig.ROLLING_FILE_IO_THREADS_CONFIG, "0");
+        props.put(RollingFileConfig.ROLLING_FILE_IO_QUEUE_SIZE_CONFIG, "1");
+        props.put(RollingFileConfig.ROLLING_FILE_FSYNC_CONFIG, "false");
+        props.put(RollingFileConfig.ROLLING_FILE_FSYNC_WINDOW_MS_CONFIG, "10");
+        props.put(RollingFileConfig.ROLLING_FILE_PREALLOCATE_BYTES_CONFIG, "0");
+        props.put(RollingFileConfig.ROLLING_FILE_INDEX_INTERVAL_CONFIG, "0");
+        props.put(RollingFileConfig.ROLLING_FILE_FOOTER_CONFIG, "false");
+        props.put(RollingFileConfig.ROLLING_FILE_CHECKSUM_BLOCK_BYTES_CONFIG, "0");
+        props.put(RollingFileConfig.ROLLING_FILE_MMAP_REGION_BYTES_CONFIG, "0");
+        props.put(RollingFileConfig.ROLLING_FILE_MAX_OPEN_FILES_CONFIG, "0");
+        props.put(RollingFileConfig.ROLLING_FILE_WRITER_IDLE_MS_CONFIG, "0");
+        props.put(RollingFileConfig.ROLLING_FILE_COMPACTION_INTERVAL_MS_CONFIG, "0");
+        props.put(RollingFileConfig.ROLLING_FILE_COMPACTION_TOMBSTONE_RETENTION_MS_CONFIG, "0");
+        props.put(RollingFileConfig.ROLLING_FILE_MERGE_TARGET_BYTES_CONFIG, "0");
+        props.put(RollingFileConfig.ROLLING_FILE_MERGE_INTERVAL_MS_CONFIG, "1000");
+        props.put(RollingFileConfig.ROLLING_FILE_RETENTION_MS_CONFIG, "-1");
+        props.put(RollingFileConfig.ROLLING_FILE_RETENTION_BYTES_CONFIG, "-1");
+        props.put(RollingFileConfig.ROLLING_FILE_MANIFEST_CONFIG, "false");
+        props.put(RollingFileConfig.ROLLING_FILE_DROP_CACHE_CONFIG, "false");
+        return props;
+    }
 }
@@ -5,15 +5,41 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.zip.Checksum;
 
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.header.ConnectHeaders;
 import org.apache.kafka.connect.sink.SinkRecord;
 import org.jdurani.rollingfile.Utils;
+import org.jdurani.rollingfile.format.BlockInputStream;
+import org.jdurani.rollingfile.format.ColumnarRecordEncoder;
+import org.jdurani.rollingfile.format.CompressionCodec;
+import org.jdurani.rollingfile.format.CorruptionPolicy;
+import org.jdurani.rollingfile.format.FileFooter;
+import org.jdurani.rollingfile.format.FileLayout;
+import org.jdurani.rollingfile.format.LimitedInputStream;
+import org.jdurani.rollingfile.format.RecordDecoder;
+import org.jdurani.rollingfile.format.RecordFormat;
+import org.jdurani.rollingfile.format.RecordIndex;
+import org.jdurani.rollingfile.format.RecordInput;
+import org.jdurani.rollingfile.format.StoredRecord;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,24 +47,79 @@ class RollingFileWriterTest {
 
     private static final Logger LOG = LoggerFactory.getLogger(RollingFileWriterTest.class);
     private final TopicPartition tp = new TopicPartition("t", 0);
+    private final WriteBufferPool pool = new WriteBufferPool(1024 * 1024, 1024);
+    private RollScheduler scheduler;
     private String dir;
 
     @BeforeEach
     void setUp() throws IOException {
         dir = Utils.tmpDir(true).toFile().getAbsolutePath();
+        scheduler = new RollScheduler(10, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.close();
     }
 
     @Test
     void rollAfterOne() throws IOException {
-        RollingFileWriter w = new RollingFileWriter(tp, dir, 1, Long.MAX_VALUE);
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 1, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
         SinkRecord r = new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 0);
         w.write(r);
         validateFinalFile(r);
     }
 
+    @Test
+    void writeBatchRollsAtRecordBoundaries() throws IOException {
+        WriterMetrics metrics = Mockito.mock(WriterMetrics.class);
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 2, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.BINARY, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, metrics, CommitListener.NONE);
+        SinkRecord[] records = new SinkRecord[5];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, i);
+        }
+        w.writeBatch(Arrays.asList(records));
+        Assertions.assertEquals(4L, w.getPersistedOffset());
+        Assertions.assertTrue(w.isOpen());
+        Mockito.verify(metrics).recordsWritten(Mockito.eq(5), Mockito.anyLong(), Mockito.anyLong());
+        Mockito.verify(metrics, Mockito.times(2)).fileRolled(Mockito.anyLong());
+        Assertions.assertTrue(new File(dir, tp.topic() + "/0000000000-0000000000000000000.bin").exists());
+        Assertions.assertTrue(new File(dir, tp.topic() + "/0000000000-0000000000000000002.bin").exists());
+
+        SinkRecord other = new SinkRecord(tp.topic(), tp.partition() + 1, null, null, null, null, 5);
+        Assertions.assertThrows(IllegalStateException.class, () -> w.writeBatch(Arrays.asList(records[4], other)));
+        w.destroy();
+        Assertions.assertThrows(IllegalStateException.class, () -> w.writeBatch(Collections.emptyList()));
+    }
+
+    @Test
+    void recordsMetrics() throws IOException {
+        WriterMetrics metrics = Mockito.mock(WriterMetrics.class);
+        CommitListener listener = Mockito.mock(CommitListener.class);
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 2, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, metrics, listener);
+        w.write(new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 0, 20L, TimestampType.CREATE_TIME));
+        w.write(new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 1, 10L, TimestampType.CREATE_TIME));
+        w.flush();
+        w.destroy();
+        InOrder inOrder = Mockito.inOrder(metrics);
+        inOrder.verify(metrics).fileOpened();
+        inOrder.verify(metrics, Mockito.times(2)).recordsWritten(Mockito.eq(1), Mockito.anyLong(), Mockito.anyLong());
+        inOrder.verify(metrics).flushed(Mockito.anyLong());
+        inOrder.verify(metrics).close();
+        // direct committer commits the file before close of the file completes
+        Mockito.verify(metrics).fileRolled(Mockito.anyLong());
+        Mockito.verify(metrics).fileCommitted(10L);
+        Mockito.verifyNoMoreInteractions(metrics);
+        File committed = new File(dir, tp.topic() + "/0000000000-0000000000000000000.txt");
+        Mockito.verify(listener).fileCommitted(Mockito.eq(committed), Mockito.eq(committed.length()),
+                Mockito.argThat(s -> s.getRecordCount() == 2 && s.getFirstOffset() == 0 && s.getLastOffset() == 1
+                        && s.getMinTimestamp() == 10L && s.getMaxTimestamp() == 20L
+                        && s.getStoredLength() == committed.length() && s.getChecksum() == 0));
+    }
+
     @Test
     void rollAfterTwo() throws IOException {
-        RollingFileWriter w = new RollingFileWriter(tp, dir, 2, Long.MAX_VALUE);
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 2, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
         SinkRecord r = new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 0);
         w.write(r);
         validateNotRoll(r);
@@ -46,10 +127,63 @@ class RollingFileWriterTest {
         validateFinalFile(r);
     }
 
+    @Test
+    void rollAfterBytes() throws IOException {
+        // each record encodes to 20 bytes: "$NO_TS$ $NULL$ AAAA\n"
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, Long.MAX_VALUE, Long.MAX_VALUE, 50, 0, 0, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        SinkRecord r1 = new SinkRecord(tp.topic(), tp.partition(), null, null, null, new byte[] {0, 0, 0}, 0);
+        w.write(r1);
+        w.write(r1);
+        validateNotRoll(r1);
+        w.write(r1);
+        validateFinalFile(r1);
+        Assertions.assertEquals(60, getExpectedFile(r1).length());
+        SinkRecord r2 = new SinkRecord(tp.topic(), tp.partition(), null, null, null, new byte[] {0, 0, 0}, 3);
+        w.write(r2);
+        validateNotRoll(r2);
+        w.destroy();
+    }
+
+    @Test
+    void rollDurable() throws IOException {
+        try (GroupFileCommitter committer = new GroupFileCommitter(20)) {
+            RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 1, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, committer, WriterMetrics.NONE, CommitListener.NONE);
+            SinkRecord r1 = new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 0);
+            SinkRecord r2 = new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 1);
+            w.write(r1);
+            w.write(r2);
+            w.flush();
+            validateFinalFile(r1);
+            validateFinalFile(r2);
+            Assertions.assertEquals(2L, committer.getCommittedFiles());
+            // same offset again while previous file may still wait for commit
+            w.write(r2);
+            w.destroy();
+            validateFinalFile(r2);
+        }
+    }
+
+    @Test
+    void preallocateEstimate() throws IOException {
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 2, Long.MAX_VALUE, 0, RollingFileWriter.PREALLOCATE_ESTIMATE, 0, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        SinkRecord r1 = new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 0);
+        w.write(r1);
+        // first file - nothing to estimate from, data are still buffered
+        Assertions.assertEquals(0, tmpFile(r1).length());
+        w.write(r1);
+        validateFinalFile(r1);
+        SinkRecord r2 = new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 2);
+        w.write(r2);
+        // 2 records per file, 22 bytes per record
+        Assertions.assertEquals(44, tmpFile(r2).length());
+        w.destroy();
+        Assertions.assertEquals(22, getExpectedFile(r2).length());
+    }
+
     @Test
     void rollAfter100ms() throws IOException, InterruptedException {
         long flushMs = 100;
-        RollingFileWriter w = new RollingFileWriter(tp, dir, Long.MAX_VALUE, flushMs);
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, Long.MAX_VALUE, flushMs, 0, 0, 0, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
         SinkRecord r = new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 0);
         w.write(r);
         validateNotRoll(r);
@@ -62,7 +196,7 @@ class RollingFileWriterTest {
 
     @Test
     void rollMultipleFiles() throws IOException {
-        RollingFileWriter w = new RollingFileWriter(tp, dir, 2, Long.MAX_VALUE);
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 2, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
         SinkRecord r1 = new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 0);
         w.write(r1);
         validateNotRoll(r1);
@@ -78,7 +212,7 @@ class RollingFileWriterTest {
 
     @Test
     void close() throws IOException {
-        RollingFileWriter w = new RollingFileWriter(tp, dir, Long.MAX_VALUE, Long.MAX_VALUE);
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, Long.MAX_VALUE, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
         SinkRecord r = new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 0);
         w.write(r);
         validateNotRoll(r);
@@ -88,7 +222,7 @@ class RollingFileWriterTest {
 
     @Test
     void writeWrongData() {
-        RollingFileWriter w = new RollingFileWriter(tp, dir, Long.MAX_VALUE, Long.MAX_VALUE);
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, Long.MAX_VALUE, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
         Assertions.assertAll(
                 // wrong topic
                 () -> Assertions.assertThrows(IllegalStateException.class, () -> w.write(new SinkRecord(tp.topic() + "x", tp.partition(), null, null, null, null, 0L))),
@@ -103,7 +237,7 @@ class RollingFileWriterTest {
 
     @Test
     void write() throws IOException {
-        RollingFileWriter w = new RollingFileWriter(tp, dir, 2, Long.MAX_VALUE);
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 2, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
         byte[] key1 = {};
         byte[] value1 = {};
         byte[] key2 = {0, 1};
@@ -151,13 +285,389 @@ class RollingFileWriterTest {
                 readFile(r2));
     }
 
+    @Test
+    void writeByteBuffers() throws IOException {
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 1, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        byte[] key = {0, 1};
+        byte[] value = {0, 1, 2, 3};
+        ByteBuffer directValue = ByteBuffer.allocateDirect(value.length);
+        directValue.put(value).flip();
+        SinkRecord r = new SinkRecord(tp.topic(), tp.partition(), null, ByteBuffer.wrap(key), null, directValue, 0, 1L, null);
+        w.write(r);
+        validateFinalFile(r);
+        Assertions.assertEquals(
+                r.timestamp().toString()
+                        + RollingFileWriter.KEY_VALUE_SEPARATOR
+                        + Base64.getEncoder().encodeToString(key)
+                        + RollingFileWriter.KEY_VALUE_SEPARATOR
+                        + Base64.getEncoder().encodeToString(value)
+                        + new String(RollingFileWriter.RECORD_SEPARATOR),
+                readFile(r));
+    }
+
+    @Test
+    void writeCompressed() throws IOException {
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 2, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.TEXT, codec, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+            SinkRecord r1 = new SinkRecord(tp.topic(), tp.partition(), null, new byte[] {1}, null, new byte[] {2}, 5, 10L, null);
+            SinkRecord r2 = new SinkRecord(tp.topic(), tp.partition(), null, null, null, new byte[] {3}, 6);
+            w.write(r1);
+            w.write(r2);
+            File f = getExpectedFile(r1, codec);
+            Assertions.assertTrue(f.exists(), "file " + f.getAbsolutePath() + " not exist");
+            try (InputStream is = codec.wrapInput(new BufferedInputStream(new FileInputStream(f)))) {
+                Assertions.assertEquals(
+                        r1.timestamp().toString()
+                                + RollingFileWriter.KEY_VALUE_SEPARATOR
+                                + Base64.getEncoder().encodeToString(new byte[] {1})
+                                + RollingFileWriter.KEY_VALUE_SEPARATOR
+                                + Base64.getEncoder().encodeToString(new byte[] {2})
+                                + new String(RollingFileWriter.RECORD_SEPARATOR)
+                                + RollingFileWriter.NO_TIMESTAMP
+                                + RollingFileWriter.KEY_VALUE_SEPARATOR
+                                + RollingFileWriter.NULL_OBJECT
+                                + RollingFileWriter.KEY_VALUE_SEPARATOR
+                                + Base64.getEncoder().encodeToString(new byte[] {3})
+                                + new String(RollingFileWriter.RECORD_SEPARATOR),
+                        readAll(is),
+                        codec.name());
+            }
+            w.destroy();
+        }
+    }
+
+    @Test
+    void writeBinary() throws IOException {
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 2, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.BINARY, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        ConnectHeaders headers = new ConnectHeaders();
+        headers.addBytes("h", new byte[] {7});
+        SinkRecord r1 = new SinkRecord(tp.topic(), tp.partition(), null, new byte[] {1}, null, new byte[] {2}, 5, 10L, null, headers);
+        SinkRecord r2 = new SinkRecord(tp.topic(), tp.partition(), null, null, null, new byte[] {3}, 6);
+        w.write(r1);
+        w.write(r2);
+        File f = getExpectedFile(r1, RecordFormat.BINARY, CompressionCodec.NONE);
+        Assertions.assertTrue(f.exists(), "file " + f.getAbsolutePath() + " not exist");
+        try (RecordInput in = new RecordInput(new FileInputStream(f), 16)) {
+            Assertions.assertSame(RecordFormat.BINARY, RecordFormat.detect(in));
+            RecordDecoder decoder = RecordFormat.BINARY.newDecoder(in, f.getName());
+            StoredRecord s1 = decoder.next();
+            StoredRecord s2 = decoder.next();
+            Assertions.assertNull(decoder.next());
+            Assertions.assertAll(
+                    () -> Assertions.assertArrayEquals(new byte[] {1}, s1.getKey()),
+                    () -> Assertions.assertArrayEquals(new byte[] {2}, s1.getValue()),
+                    () -> Assertions.assertEquals(10L, s1.getTimestamp()),
+                    () -> Assertions.assertEquals(5L, s1.getOffset()),
+                    () -> Assertions.assertArrayEquals(new byte[] {7}, (byte[]) s1.getHeaders().lastWithName("h").value()),
+                    () -> Assertions.assertNull(s2.getKey()),
+                    () -> Assertions.assertArrayEquals(new byte[] {3}, s2.getValue()),
+                    () -> Assertions.assertNull(s2.getTimestamp()),
+                    () -> Assertions.assertEquals(6L, s2.getOffset()),
+                    () -> Assertions.assertTrue(s2.getHeaders().isEmpty()));
+        }
+        w.destroy();
+    }
+
+    @Test
+    void writeIndex() throws IOException {
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 5, Long.MAX_VALUE, 0, 0, 2, false, 0, 0, RecordFormat.BINARY, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        long[] timestamps = {100L, 90L, 120L, 110L, 130L};
+        SinkRecord first = null;
+        for (int i = 0; i < timestamps.length; i++) {
+            SinkRecord r = new SinkRecord(tp.topic(), tp.partition(), null, new byte[] {(byte) i}, null, null, 10 + i, timestamps[i], null);
+            first = first == null ? r : first;
+            w.write(r);
+        }
+        File f = getExpectedFile(first, RecordFormat.BINARY, CompressionCodec.NONE);
+        File indexFile = RecordIndex.fileFor(f);
+        Assertions.assertTrue(indexFile.exists(), "index " + indexFile.getAbsolutePath() + " not exist");
+        Assertions.assertFalse(tmpFile(indexFile).exists());
+        RecordIndex index = RecordIndex.read(f);
+        Assertions.assertNotNull(index);
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(2, index.size()),
+                () -> Assertions.assertEquals(2L, index.getRecordNumber(0)),
+                () -> Assertions.assertEquals(12L, index.getOffset(0)),
+                () -> Assertions.assertEquals(100L, index.getMaxTimestamp(0)),
+                () -> Assertions.assertEquals(4L, index.getRecordNumber(1)),
+                () -> Assertions.assertEquals(14L, index.getOffset(1)),
+                () -> Assertions.assertEquals(120L, index.getMaxTimestamp(1)));
+        for (int i = 0; i < index.size(); i++) {
+            try (RecordInput in = new RecordInput(new FileInputStream(f), 16)) {
+                RecordDecoder decoder = RecordFormat.BINARY.newDecoder(in, f.getName());
+                in.skip(index.getPosition(i) - in.position());
+                Assertions.assertEquals(index.getOffset(i), decoder.next().getOffset());
+            }
+        }
+        w.destroy();
+        // file is written again without index
+        w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 1, Long.MAX_VALUE, 0, 0, 2, false, 0, 0, RecordFormat.BINARY, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        w.write(first);
+        Assertions.assertTrue(f.exists());
+        Assertions.assertFalse(indexFile.exists());
+        w.destroy();
+    }
+
+    @Test
+    void writeColumnar() throws IOException {
+        int records = ColumnarRecordEncoder.SEGMENT_RECORDS + 10;
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, records, Long.MAX_VALUE, 0, 0, 100, true, 0, 0, RecordFormat.COLUMNAR, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        SinkRecord first = null;
+        for (int i = 0; i < records; i++) {
+            SinkRecord r = new SinkRecord(tp.topic(), tp.partition(), null, "k" + i % 4, null, new byte[] {(byte) i}, 10 + i, 1000L + i, null);
+            first = first == null ? r : first;
+            w.write(r);
+        }
+        File f = getExpectedFile(first, RecordFormat.COLUMNAR, CompressionCodec.NONE);
+        Assertions.assertTrue(f.exists(), "file " + f.getAbsolutePath() + " not exist");
+        FileFooter footer = FileFooter.read(f);
+        Assertions.assertNotNull(footer);
+        Assertions.assertEquals(records, footer.getRecordCount());
+        // index entries are written only at segment boundaries
+        RecordIndex index = RecordIndex.read(f);
+        Assertions.assertNotNull(index);
+        Assertions.assertEquals(1, index.size());
+        Assertions.assertEquals(ColumnarRecordEncoder.SEGMENT_RECORDS, index.getRecordNumber(0));
+        try (RecordInput in = new RecordInput(new LimitedInputStream(new FileInputStream(f), footer.getStoredLength()), 16)) {
+            RecordDecoder decoder = RecordFormat.COLUMNAR.newDecoder(in, f.getName());
+            in.skip(index.getPosition(0) - in.position());
+            for (int i = ColumnarRecordEncoder.SEGMENT_RECORDS; i < records; i++) {
+                StoredRecord r = decoder.next();
+                Assertions.assertEquals(10L + i, r.getOffset());
+                Assertions.assertEquals(1000L + i, r.getTimestamp());
+                Assertions.assertArrayEquals(("k" + i % 4).getBytes(StandardCharsets.UTF_8), r.getKey());
+                Assertions.assertArrayEquals(new byte[] {(byte) i}, r.getValue());
+            }
+            Assertions.assertNull(decoder.next());
+        }
+        w.destroy();
+    }
+
+    @Test
+    void writeFooter() throws IOException {
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 3, Long.MAX_VALUE, 0, 0, 0, true, 0, 0, RecordFormat.BINARY, codec, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+            SinkRecord r1 = new SinkRecord(tp.topic(), tp.partition(), null, new byte[] {1}, null, null, 20, 300L, null);
+            SinkRecord r2 = new SinkRecord(tp.topic(), tp.partition(), null, new byte[] {2}, null, null, 21, 100L, null);
+            SinkRecord r3 = new SinkRecord(tp.topic(), tp.partition(), null, new byte[] {3}, null, null, 23);
+            w.write(r1);
+            w.write(r2);
+            w.write(r3);
+            w.destroy();
+            File f = getExpectedFile(r1, RecordFormat.BINARY, codec);
+            FileFooter footer = FileFooter.read(f);
+            Assertions.assertNotNull(footer, codec.name());
+            byte[] stored = Files.readAllBytes(f.toPath());
+            Checksum checksum = FileFooter.newChecksum();
+            checksum.update(stored, 0, (int) footer.getStoredLength());
+            long contentLength;
+            try (RecordInput in = new RecordInput(codec.wrapInput(new LimitedInputStream(new FileInputStream(f), footer.getStoredLength())), 16)) {
+                RecordDecoder decoder = RecordFormat.BINARY.newDecoder(in, f.getName());
+                int records = 0;
+                while (decoder.next() != null) {
+                    records++;
+                }
+                Assertions.assertEquals(3, records, codec.name());
+                contentLength = in.position();
+            }
+            Assertions.assertAll(codec.name(),
+                    () -> Assertions.assertEquals(3L, footer.getRecordCount()),
+                    () -> Assertions.assertEquals(20L, footer.getFirstOffset()),
+                    () -> Assertions.assertEquals(23L, footer.getLastOffset()),
+                    () -> Assertions.assertEquals(100L, footer.getMinTimestamp()),
+                    () -> Assertions.assertEquals(300L, footer.getMaxTimestamp()),
+                    () -> Assertions.assertEquals(contentLength, footer.getContentLength()),
+                    () -> Assertions.assertEquals(stored.length - FileFooter.LENGTH, footer.getStoredLength()),
+                    () -> Assertions.assertEquals((int) checksum.getValue(), footer.getChecksum()));
+        }
+    }
+
+    @Test
+    void writeChecksumBlocks() throws IOException {
+        // each record encodes to 20 bytes: "$NO_TS$ $NULL$ AAAA\n"
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 3, Long.MAX_VALUE, 0, 0, 0, false, 30, 0, RecordFormat.TEXT, codec, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+            SinkRecord r1 = new SinkRecord(tp.topic(), tp.partition(), null, null, null, new byte[] {0, 0, 0}, 0);
+            SinkRecord r2 = new SinkRecord(tp.topic(), tp.partition(), null, null, null, new byte[] {0, 0, 0}, 1);
+            w.write(r1);
+            w.write(r1);
+            w.flush();
+            w.write(r2);
+            w.destroy();
+            try (InputStream in = BlockInputStream.wrapIfBlocked(codec.wrapInput(new FileInputStream(getExpectedFile(r1, codec))), "f", CorruptionPolicy.FAIL)) {
+                Assertions.assertTrue(in instanceof BlockInputStream, codec.name());
+                Assertions.assertEquals(RollingFileWriter.NO_TIMESTAMP + " $NULL$ AAAA\n"
+                        + RollingFileWriter.NO_TIMESTAMP + " $NULL$ AAAA\n"
+                        + RollingFileWriter.NO_TIMESTAMP + " $NULL$ AAAA\n", readAll(in), codec.name());
+            }
+        }
+    }
+
+    @Test
+    void writeMapped() throws IOException {
+        // each record encodes to 20 bytes: "$NO_TS$ $NULL$ AAAA\n"
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 3, Long.MAX_VALUE, 0, 0, 0, true, 0, 16, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        SinkRecord r = new SinkRecord(tp.topic(), tp.partition(), null, null, null, new byte[] {0, 0, 0}, 0);
+        w.write(r);
+        w.write(r);
+        validateNotRoll(r);
+        w.write(r);
+        validateFinalFile(r);
+        File f = getExpectedFile(r);
+        FileFooter footer = FileFooter.read(f);
+        Assertions.assertNotNull(footer);
+        Assertions.assertEquals(60L + FileFooter.LENGTH, f.length());
+        try (InputStream in = new LimitedInputStream(new FileInputStream(f), footer.getStoredLength())) {
+            Assertions.assertEquals(RollingFileWriter.NO_TIMESTAMP + " $NULL$ AAAA\n"
+                    + RollingFileWriter.NO_TIMESTAMP + " $NULL$ AAAA\n"
+                    + RollingFileWriter.NO_TIMESTAMP + " $NULL$ AAAA\n", readAll(in));
+        }
+        w.destroy();
+    }
+
+    @Test
+    void recoverAndSalvage() throws IOException {
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 3, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.BINARY, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        for (long o = 0; o < 5; o++) {
+            w.write(new SinkRecord(tp.topic(), tp.partition(), null, new byte[] {(byte) o}, null, null, o, o * 10, TimestampType.CREATE_TIME));
+        }
+        Assertions.assertEquals(3L, w.getPersistedOffset());
+        // crash with incomplete last record
+        w.flush();
+        File committed = getExpectedFile(new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 0), RecordFormat.BINARY, CompressionCodec.NONE);
+        File tmp = tmpFile(getExpectedFile(new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 3), RecordFormat.BINARY, CompressionCodec.NONE));
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+            ch.truncate(ch.size() - 1);
+        }
+        File staleIndex = tmpFile(RecordIndex.fileFor(committed));
+        Files.write(staleIndex.toPath(), new byte[] {1});
+
+        RollingFileWriter recovered = new RollingFileWriter(tp, dir, FileLayout.FLAT, 3, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.BINARY, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        Assertions.assertEquals(4L, recovered.recover());
+        Assertions.assertEquals(3L, recovered.getPersistedOffset());
+        Assertions.assertFalse(staleIndex.exists());
+        // redelivered records are skipped
+        for (long o = 0; o < 6; o++) {
+            recovered.write(new SinkRecord(tp.topic(), tp.partition(), null, new byte[] {(byte) o}, null, null, o));
+        }
+        Assertions.assertEquals(6L, recovered.getPersistedOffset());
+        Assertions.assertFalse(tmp.exists());
+        Assertions.assertArrayEquals(new long[] {0L, 1L, 2L}, readOffsets(committed));
+        File salvaged = getExpectedFile(new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 3), RecordFormat.BINARY, CompressionCodec.NONE);
+        Assertions.assertArrayEquals(new long[] {3L, 4L, 5L}, readOffsets(salvaged));
+        Assertions.assertEquals(0, salvaged.getParentFile().list((d, n) -> n.startsWith(".")).length);
+        recovered.destroy();
+
+        // records are not skipped after recovery
+        RollingFileWriter restarted = new RollingFileWriter(tp, dir, FileLayout.FLAT, 3, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.BINARY, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        Assertions.assertEquals(6L, restarted.recover());
+        restarted.write(new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 6));
+        restarted.write(new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 0));
+        restarted.destroy();
+        Assertions.assertArrayEquals(new long[] {6L, 0L}, readOffsets(getExpectedFile(new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 6), RecordFormat.BINARY, CompressionCodec.NONE)));
+    }
+
+    @Test
+    void recoverClosedFile() throws IOException {
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 2, Long.MAX_VALUE, 0, 0, 0, true, 0, 0, RecordFormat.TEXT, CompressionCodec.GZIP, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        SinkRecord r1 = new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 10);
+        SinkRecord r2 = new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 12);
+        w.write(r1);
+        w.write(r2);
+        w.destroy();
+        // crash after file was closed, but before it was committed
+        File f = getExpectedFile(r1, CompressionCodec.GZIP);
+        FileCommitter.rename(f, tmpFile(f));
+        RollingFileWriter recovered = new RollingFileWriter(tp, dir, FileLayout.FLAT, 2, Long.MAX_VALUE, 0, 0, 0, true, 0, 0, RecordFormat.TEXT, CompressionCodec.GZIP, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        Assertions.assertEquals(13L, recovered.recover());
+        Assertions.assertEquals(13L, recovered.getPersistedOffset());
+        Assertions.assertTrue(f.exists());
+        Assertions.assertFalse(tmpFile(f).exists());
+        recovered.destroy();
+    }
+
+    @Test
+    void writeHourlyLayout() throws IOException {
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.HOURLY, 2, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.BINARY, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        long before = System.currentTimeMillis();
+        w.write(new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 7));
+        w.write(new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 8));
+        long after = System.currentTimeMillis();
+        w.destroy();
+        String name = String.format(RollingFileWriter.FILE_NAME_FORMAT, tp.partition(), 7L, RecordFormat.BINARY.getExtension());
+        File topicDir = new File(dir, tp.topic());
+        File f1 = new File(FileLayout.HOURLY.directory(topicDir, tp.partition(), before), name);
+        File f2 = new File(FileLayout.HOURLY.directory(topicDir, tp.partition(), after), name);
+        Assertions.assertTrue(f1.exists() || f2.exists(), "file " + f1.getAbsolutePath() + " not exist");
+        Assertions.assertArrayEquals(new long[] {7L, 8L}, readOffsets(f1.exists() ? f1 : f2));
+        // recovery finds files in time buckets
+        RollingFileWriter recovered = new RollingFileWriter(tp, dir, FileLayout.HOURLY, 2, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.BINARY, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        Assertions.assertEquals(9L, recovered.recover());
+        recovered.destroy();
+        // other layouts do not see them
+        RollingFileWriter flat = new RollingFileWriter(tp, dir, FileLayout.FLAT, 2, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.BINARY, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        Assertions.assertEquals(RollingFileWriter.NO_OFFSET, flat.recover());
+        flat.destroy();
+    }
+
+    @Test
+    void recoverText() throws IOException {
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 2, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        RollingFileWriter empty = new RollingFileWriter(tp, dir, FileLayout.FLAT, 2, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        Assertions.assertEquals(RollingFileWriter.NO_OFFSET, empty.recover());
+        Assertions.assertEquals(RollingFileWriter.NO_OFFSET, empty.getPersistedOffset());
+        empty.destroy();
+        SinkRecord r = new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 12);
+        w.write(new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 10));
+        w.write(new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 11));
+        w.write(r);
+        w.flush();
+        // offsets of text records are not known - nothing is skipped, temporal file is deleted
+        RollingFileWriter recovered = new RollingFileWriter(tp, dir, FileLayout.FLAT, 2, Long.MAX_VALUE, 0, 0, 0, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        Assertions.assertEquals(RollingFileWriter.NO_OFFSET, recovered.recover());
+        Assertions.assertEquals(RollingFileWriter.NO_OFFSET, recovered.getPersistedOffset());
+        Assertions.assertFalse(tmpFile(r).exists());
+        recovered.destroy();
+    }
+
+    @Test
+    void recoverTextWithIndex() throws IOException {
+        RollingFileWriter w = new RollingFileWriter(tp, dir, FileLayout.FLAT, 3, Long.MAX_VALUE, 0, 0, 2, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        w.write(new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 10));
+        w.write(new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 11));
+        w.write(new SinkRecord(tp.topic(), tp.partition(), null, null, null, null, 12));
+        w.flush();
+        // the last indexed record is stored, later ones are written again
+        RollingFileWriter recovered = new RollingFileWriter(tp, dir, FileLayout.FLAT, 3, Long.MAX_VALUE, 0, 0, 2, false, 0, 0, RecordFormat.TEXT, CompressionCodec.NONE, pool, scheduler, DirectFileCommitter.INSTANCE, WriterMetrics.NONE, CommitListener.NONE);
+        Assertions.assertEquals(13L, recovered.recover());
+        recovered.destroy();
+    }
+
+    private long[] readOffsets(File f) throws IOException {
+        try (RecordInput in = new RecordInput(new FileInputStream(f), 16)) {
+            RecordDecoder decoder = RecordFormat.BINARY.newDecoder(in, f.getName());
+            long[] offsets = new long[0];
+            StoredRecord s;
+            while ((s = decoder.next()) != null) {
+                offsets = Arrays.copyOf(offsets, offsets.length + 1);
+                offsets[offsets.length - 1] = s.getOffset();
+            }
+            return offsets;
+        }
+    }
+
     private String readFile(SinkRecord r) throws IOException {
         try (FileInputStream fis = new FileInputStream(getExpectedFile(r));
-                BufferedInputStream bis = new BufferedInputStream(fis);
-                ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+                BufferedInputStream bis = new BufferedInputStream(fis)) {
+            return readAll(bis);
+        }
+    }
+
+    private String readAll(InputStream is) throws IOException {
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
             byte[] buf = new byte[256];
             int read;
-            while ((read = bis.read(buf)) >= 0) {
+            while ((read = is.read(buf)) >= 0) {
                 bos.write(buf, 0, read);
             }
             return bos.toString();
@@ -167,18 +677,34 @@ class RollingFileWriterTest {
     private void validateFinalFile(SinkRecord r) {
         File expectedFile = getExpectedFile(r);
         File expectedTmpFile = new File(expectedFile.getParentFile(), ".tmp-" + expectedFile.getName() + ".tmp");
-        Assertions.assertTrue(Paths.get(dir, tp.topic(), String.format(RollingFileWriter.FILE_NAME_FORMAT, tp.partition(), r.kafkaOffset())).toFile().getAbsoluteFile().exists(), "file " + expectedFile.getAbsolutePath() + " not exist");
+        Assertions.assertTrue(Paths.get(dir, tp.topic(), String.format(RollingFileWriter.FILE_NAME_FORMAT, tp.partition(), r.kafkaOffset(), RecordFormat.TEXT.getExtension())).toFile().getAbsoluteFile().exists(), "file " + expectedFile.getAbsolutePath() + " not exist");
         Assertions.assertFalse(expectedTmpFile.exists(), "tmp file " + expectedTmpFile.getAbsolutePath() + " still exists");
     }
 
     private void validateNotRoll(SinkRecord r) {
         File expectedFile = getExpectedFile(r);
         File expectedTmpFile = new File(expectedFile.getParentFile(), ".tmp-" + expectedFile.getName() + ".tmp");
-        Assertions.assertFalse(Paths.get(dir, tp.topic(), String.format(RollingFileWriter.FILE_NAME_FORMAT, tp.partition(), r.kafkaOffset())).toFile().getAbsoluteFile().exists(), "file " + expectedFile.getAbsolutePath() + " exist");
+        Assertions.assertFalse(Paths.get(dir, tp.topic(), String.format(RollingFileWriter.FILE_NAME_FORMAT, tp.partition(), r.kafkaOffset(), RecordFormat.TEXT.getExtension())).toFile().getAbsoluteFile().exists(), "file " + expectedFile.getAbsolutePath() + " exist");
         Assertions.assertTrue(expectedTmpFile.exists(), "tmp file " + expectedTmpFile.getAbsolutePath() + " missing");
     }
 
+    private File tmpFile(SinkRecord r) {
+        return tmpFile(getExpectedFile(r));
+    }
+
+    private File tmpFile(File f) {
+        return new File(f.getParentFile(), ".tmp-" + f.getName() + ".tmp");
+    }
+
     private File getExpectedFile(SinkRecord r) {
-        return Paths.get(dir, tp.topic(), String.format(RollingFileWriter.FILE_NAME_FORMAT, tp.partition(), r.kafkaOffset())).toFile().getAbsoluteFile();
+        return getExpectedFile(r, CompressionCodec.NONE);
+    }
+
+    private File getExpectedFile(SinkRecord r, CompressionCodec codec) {
+        return getExpectedFile(r, RecordFormat.TEXT, codec);
+    }
+
+    private File getExpectedFile(SinkRecord r, RecordFormat format, CompressionCodec codec) {
+        return Paths.get(dir, tp.topic(), String.format(RollingFileWriter.FILE_NAME_FORMAT, tp.partition(), r.kafkaOffset(), format.getExtension()) + codec.getSuffix()).toFile().getAbsoluteFile();
     }
 }
@@ -0,0 +1,116 @@
+package org.jdurani.rollingfile.sink;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ShardedIoExecutorTest {
+
+    private ShardedIoExecutor test;
+
+    @BeforeEach
+    void setUp() {
+        test = new ShardedIoExecutor(2, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        test.close();
+    }
+
+    @Test
+    void orderPerPartition() throws Exception {
+        TopicPartition tp = new TopicPartition("t", 0);
+        List<Integer> done = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int x = i;
+            expected.add(x);
+            test.execute(tp, 1, () -> done.add(x));
+        }
+        test.submit(tp, () -> { }).get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(expected, done);
+    }
+
+    @Test
+    void slowPartitionDoesNotBlockOtherShard() throws Exception {
+        TopicPartition slow = new TopicPartition("t", 0);
+        TopicPartition fast = otherShard(slow);
+        CountDownLatch release = new CountDownLatch(1);
+        test.execute(slow, 1, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        CompletableFuture<Void> slowFlush = test.submit(slow, () -> { });
+        test.submit(fast, () -> { }).get(10, TimeUnit.SECONDS);
+        Assertions.assertFalse(slowFlush.isDone());
+        release.countDown();
+        slowFlush.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void failureFailsShard() throws Exception {
+        TopicPartition tp = new TopicPartition("t", 0);
+        test.execute(tp, 1, () -> {
+            throw new IOException("Expected");
+        });
+        CompletableFuture<Void> f = test.submit(tp, () -> { });
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> f.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals("Expected", e.getCause().getMessage());
+        Assertions.assertThrows(IOException.class, () -> test.execute(tp, 1, () -> { }));
+        // other shard is not affected
+        test.submit(otherShard(tp), () -> { }).get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void queueBoundedByRecords() throws Exception {
+        TopicPartition tp = new TopicPartition("t", 0);
+        CountDownLatch release = new CountDownLatch(1);
+        test.execute(tp, 3, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        test.execute(tp, 1, () -> { });
+        // batch of 2 records does not fit to queue of 4 records
+        CompletableFuture<Void> queued = CompletableFuture.runAsync(() -> {
+            try {
+                test.execute(tp, 2, () -> { });
+                // larger batch than the queue waits until the queue is empty
+                test.execute(tp, 10, () -> { });
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(200);
+        Assertions.assertFalse(queued.isDone());
+        release.countDown();
+        queued.get(10, TimeUnit.SECONDS);
+        test.submit(tp, () -> { }).get(10, TimeUnit.SECONDS);
+    }
+
+    private static TopicPartition otherShard(TopicPartition tp) {
+        int p = 1;
+        TopicPartition other;
+        do {
+            other = new TopicPartition("t", p++);
+        } while (Math.floorMod(other.hashCode(), 2) == Math.floorMod(tp.hashCode(), 2));
+        return other;
+    }
+}
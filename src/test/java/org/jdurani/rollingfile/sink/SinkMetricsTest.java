@@ -0,0 +1,110 @@
+package org.jdurani.rollingfile.sink;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.metrics.KafkaMetric;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.MetricsReporter;
+import org.apache.kafka.common.utils.Time;
+import org.jdurani.rollingfile.format.FileFooter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class SinkMetricsTest {
+
+    private Metrics registry;
+    private SinkMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new Metrics();
+        metrics = new SinkMetrics(registry, "c", "0");
+    }
+
+    @AfterEach
+    void tearDown() {
+        metrics.close();
+    }
+
+    @Test
+    void taskAndPartitionMetrics() {
+        WriterMetrics p0 = metrics.forPartition(new TopicPartition("t", 0));
+        WriterMetrics p1 = metrics.forPartition(new TopicPartition("t", 1));
+        p0.fileOpened();
+        p0.fileOpened();
+        p1.fileOpened();
+        Assertions.assertEquals(2.0, task("open-files"));
+
+        long now = System.currentTimeMillis();
+        p0.recordsWritten(1, 10, now);
+        p0.recordsWritten(1, 20, now);
+        p1.recordsWritten(1, 30, now);
+        Assertions.assertEquals(3.0, task("records-written-total"));
+        Assertions.assertEquals(60.0, task("bytes-written-total"));
+        Assertions.assertEquals(2.0, partition("records-written-total", 0));
+        Assertions.assertEquals(30.0, partition("bytes-written-total", 0));
+
+        p0.fileRolled(2_000_000L);
+        p0.fileRolled(4_000_000L);
+        Assertions.assertEquals(1.0, task("open-files"));
+        Assertions.assertEquals(2.0, task("rolls-total"));
+        Assertions.assertEquals(3.0, task("roll-latency-avg"));
+        Assertions.assertEquals(4.0, task("roll-latency-max"));
+        Assertions.assertTrue(task("roll-latency-p99") > 0.0);
+
+        p0.flushed(1_000_000L);
+        Assertions.assertEquals(1.0, task("flush-total"));
+        Assertions.assertEquals(1.0, task("flush-latency-max"));
+
+        p0.fileCommitted(FileFooter.NO_TIMESTAMP);
+        Assertions.assertTrue(Double.isNaN(task("commit-lag-max")) || task("commit-lag-max") == 0.0);
+        p0.fileCommitted(System.currentTimeMillis() - 60_000L);
+        Assertions.assertTrue(task("commit-lag-max") >= 60_000.0);
+        Assertions.assertTrue(partition("commit-lag-max", 0) >= 60_000.0);
+        Assertions.assertTrue(partition("time-since-last-commit-ms", 0) < 60_000.0);
+
+        // metrics of destroyed writer are removed, task metrics stay
+        p1.close();
+        Assertions.assertEquals(0.0, task("open-files"));
+        Assertions.assertNull(metric(SinkMetrics.PARTITION_GROUP, "records-written-total", 1));
+        Assertions.assertNotNull(metric(SinkMetrics.PARTITION_GROUP, "records-written-total", 0));
+        Assertions.assertEquals(3.0, task("records-written-total"));
+    }
+
+    @Test
+    void closeClosesReporters() {
+        MetricsReporter reporter = Mockito.mock(MetricsReporter.class);
+        SinkMetrics m = new SinkMetrics(new Metrics(new MetricConfig(), Collections.singletonList(reporter),
+                Time.SYSTEM), "c", "1");
+        m.forPartition(new TopicPartition("t", 0));
+        Mockito.verify(reporter, Mockito.atLeastOnce()).metricChange(Mockito.any());
+        m.close();
+        Mockito.verify(reporter).close();
+    }
+
+    private double task(String name) {
+        return (double) metric(SinkMetrics.TASK_GROUP, name, null).metricValue();
+    }
+
+    private double partition(String name, int partition) {
+        return (double) metric(SinkMetrics.PARTITION_GROUP, name, partition).metricValue();
+    }
+
+    private KafkaMetric metric(String group, String name, Integer partition) {
+        for (Map.Entry<MetricName, KafkaMetric> e : registry.metrics().entrySet()) {
+            MetricName n = e.getKey();
+            if (n.group().equals(group) && n.name().equals(name)
+                    && (partition == null || partition.toString().equals(n.tags().get("partition")))) {
+                return e.getValue();
+            }
+        }
+        return null;
+    }
+}
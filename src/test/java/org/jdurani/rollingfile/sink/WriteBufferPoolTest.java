@@ -0,0 +1,88 @@
+package org.jdurani.rollingfile.sink;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class WriteBufferPoolTest {
+
+    private WriteBufferPool test;
+
+    @BeforeEach
+    void setUp() {
+        test = new WriteBufferPool(3 * 16, 16);
+    }
+
+    @Test
+    void acquireWithinBudget() {
+        PooledFileOutputStream o = Mockito.mock(PooledFileOutputStream.class);
+        ByteBuffer b1 = test.acquire(o);
+        ByteBuffer b2 = test.acquire(o);
+        ByteBuffer b3 = test.acquire(o);
+        Assertions.assertAll(
+                () -> Assertions.assertNotNull(b1),
+                () -> Assertions.assertNotNull(b2),
+                () -> Assertions.assertNotNull(b3),
+                () -> Assertions.assertTrue(b1.isDirect()),
+                () -> Assertions.assertEquals(16, b1.capacity()),
+                () -> Assertions.assertEquals(48, test.getAllocatedBytes()),
+                () -> Assertions.assertEquals(48, test.getHeldBytes()));
+        Assertions.assertNull(test.acquire(o));
+        Mockito.verify(o, Mockito.never()).spill();
+    }
+
+    @Test
+    void recycle() {
+        PooledFileOutputStream o = Mockito.mock(PooledFileOutputStream.class);
+        ByteBuffer b1 = test.acquire(o);
+        b1.put((byte) 1);
+        test.release(o, b1);
+        Assertions.assertEquals(0, test.getHeldBytes());
+        ByteBuffer b2 = test.acquire(o);
+        Assertions.assertSame(b1, b2);
+        Assertions.assertEquals(0, b2.position());
+        Assertions.assertEquals(16, test.getAllocatedBytes());
+    }
+
+    @Test
+    void spillLargestHolder() {
+        PooledFileOutputStream small = Mockito.mock(PooledFileOutputStream.class);
+        PooledFileOutputStream large = Mockito.mock(PooledFileOutputStream.class);
+        PooledFileOutputStream requester = Mockito.mock(PooledFileOutputStream.class);
+        Assertions.assertNotNull(test.acquire(small));
+        Assertions.assertNotNull(test.acquire(large));
+        Assertions.assertNotNull(test.acquire(large));
+        Assertions.assertNull(test.acquire(requester));
+        Mockito.verify(large).spill();
+        Mockito.verify(small, Mockito.never()).spill();
+        Mockito.verify(requester, Mockito.never()).spill();
+    }
+
+    @Test
+    void takeBufferSpilledByRequester() {
+        PooledFileOutputStream large = Mockito.mock(PooledFileOutputStream.class);
+        PooledFileOutputStream requester = Mockito.mock(PooledFileOutputStream.class);
+        ByteBuffer b1 = test.acquire(large);
+        ByteBuffer b2 = test.acquire(large);
+        ByteBuffer b3 = test.acquire(large);
+        Mockito.when(large.spill()).then(i -> {
+            test.release(large, b1);
+            test.release(large, b2);
+            test.release(large, b3);
+            return true;
+        });
+        Assertions.assertNotNull(test.acquire(requester));
+        Assertions.assertEquals(16, test.getHeldBytes());
+        Assertions.assertEquals(48, test.getAllocatedBytes());
+    }
+
+    @Test
+    void zeroBudget() {
+        WriteBufferPool p = new WriteBufferPool(0, 16);
+        Assertions.assertNull(p.acquire(Mockito.mock(PooledFileOutputStream.class)));
+        Assertions.assertEquals(0, p.getAllocatedBytes());
+    }
+}
@@ -2,16 +2,30 @@ package org.jdurani.rollingfile.source;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.header.ConnectHeaders;
+import org.apache.kafka.connect.sink.SinkRecord;
 import org.apache.kafka.connect.source.SourceRecord;
 import org.apache.kafka.connect.storage.OffsetStorageReader;
 import org.jdurani.rollingfile.Utils;
+import org.jdurani.rollingfile.exception.ReadException;
+import org.jdurani.rollingfile.format.BinaryRecordEncoder;
+import org.jdurani.rollingfile.format.ColumnarRecordEncoder;
+import org.jdurani.rollingfile.format.BlockOutputStream;
+import org.jdurani.rollingfile.format.CompressionCodec;
+import org.jdurani.rollingfile.format.CorruptionPolicy;
+import org.jdurani.rollingfile.format.FileFooter;
+import org.jdurani.rollingfile.format.PageCache;
+import org.jdurani.rollingfile.format.RecordIndex;
 import org.jdurani.rollingfile.sink.RollingFileWriter;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
@@ -23,6 +37,8 @@ class RollingFileReaderTest {
 
     private static int idx = 0;
     private RollingFileReader test;
+    private CorruptionPolicy policy;
+    private PageCache pageCache;
     private static File base;
 
     @BeforeAll
@@ -33,6 +49,8 @@ class RollingFileReaderTest {
     @BeforeEach
     void init() {
         test = null;
+        policy = CorruptionPolicy.FAIL;
+        pageCache = PageCache.NONE;
     }
 
     @Test
@@ -80,6 +98,19 @@ class RollingFileReaderTest {
                 () -> Assertions.assertEquals(l1.length() + l2.length() + 2L * (long) RollingFileWriter.RECORD_SEPARATOR.length, so2.get(RollingFileReader.CHARS_READ_OFFSETS)));
     }
 
+    @Test
+    void dropReadPages() throws IOException {
+        pageCache = Mockito.mock(PageCache.class);
+        Mockito.doReturn(true).when(pageCache).isSupported();
+        String l1 = l("a", "b");
+        Map<String, String> sp = initTest(0, 0, l1);
+        File data = new File(sp.get(RollingFileReader.FILE_NAME_KEY));
+        Assertions.assertNotNull(test.nextRecord(false));
+        Assertions.assertNull(test.nextRecord(false));
+        test.close();
+        Mockito.verify(pageCache).drop(data, 0L, 0L);
+    }
+
     @Test
     void readTimestamps() throws IOException {
         String l1 = l(100L, "a", "b");
@@ -153,6 +184,201 @@ class RollingFileReaderTest {
                 () -> Assertions.assertEquals(charsRead + l2.length() + RollingFileWriter.RECORD_SEPARATOR.length, so2.get(RollingFileReader.CHARS_READ_OFFSETS)));
     }
 
+    @Test
+    void readCompressedWithInitialOffset() throws IOException {
+        String l1 = l(1L, "a", "b");
+        String l2 = l(2L, "c", "d");
+        long charsRead = l1.length() + RollingFileWriter.RECORD_SEPARATOR.length;
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            initTest(codec, charsRead, 1, l1, l2);
+            SourceRecord r2 = test.nextRecord(false);
+            Assertions.assertNotNull(r2, codec.name());
+            Assertions.assertNull(test.nextRecord(false), codec.name());
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(2L, r2.timestamp()),
+                    () -> Assertions.assertArrayEquals(new byte[] {'c'}, (byte[]) r2.key()),
+                    () -> Assertions.assertArrayEquals(new byte[] {'d'}, (byte[]) r2.value()),
+                    () -> Assertions.assertEquals(2L, r2.sourceOffset().get(RollingFileReader.LINES_READ_OFFSETS)),
+                    () -> Assertions.assertEquals(charsRead + l2.length() + RollingFileWriter.RECORD_SEPARATOR.length, r2.sourceOffset().get(RollingFileReader.CHARS_READ_OFFSETS)));
+            test.close();
+        }
+    }
+
+    @Test
+    void readBinaryWithInitialOffset() throws IOException {
+        ConnectHeaders headers = new ConnectHeaders();
+        headers.addBytes("h", new byte[] {9});
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            File data = new File(base, "data_" + ++idx + ".bin" + codec.getSuffix());
+            BinaryRecordEncoder encoder = new BinaryRecordEncoder();
+            long charsRead;
+            try (OutputStream os = codec.wrapOutput(new FileOutputStream(data))) {
+                encoder.writeHeader(os, 10L);
+                encoder.encode(new SinkRecord("t", 0, null, new byte[] {'a'}, null, new byte[] {'b'}, 10L, 1L, null));
+                encoder.writeTo(os);
+                charsRead = BinaryRecordEncoder.HEADER_LENGTH + encoder.length();
+                encoder.encode(new SinkRecord("t", 0, null, new byte[] {'c'}, null, new byte[] {'d'}, 11L, 2L, null, headers));
+                encoder.writeTo(os);
+            }
+            long expectedCharsRead = charsRead + encoder.length();
+            initTest(data, charsRead, 1);
+            SourceRecord r2 = test.nextRecord(false);
+            Assertions.assertNotNull(r2, codec.name());
+            Assertions.assertNull(test.nextRecord(false), codec.name());
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(2L, r2.timestamp()),
+                    () -> Assertions.assertArrayEquals(new byte[] {'c'}, (byte[]) r2.key()),
+                    () -> Assertions.assertArrayEquals(new byte[] {'d'}, (byte[]) r2.value()),
+                    () -> Assertions.assertArrayEquals(new byte[] {9}, (byte[]) r2.headers().lastWithName("h").value()),
+                    () -> Assertions.assertEquals(2L, r2.sourceOffset().get(RollingFileReader.LINES_READ_OFFSETS)),
+                    () -> Assertions.assertEquals(expectedCharsRead, r2.sourceOffset().get(RollingFileReader.CHARS_READ_OFFSETS)));
+            test.close();
+            // no stored offsets
+            initTest(data, 0, 0);
+            Assertions.assertArrayEquals(new byte[] {'a'}, (byte[]) test.nextRecord(false).key(), codec.name());
+            test.close();
+        }
+    }
+
+    @Test
+    void readColumnarWithInitialOffset() throws IOException {
+        File data = new File(base, "data_" + ++idx + ".col");
+        ColumnarRecordEncoder encoder = new ColumnarRecordEncoder();
+        try (OutputStream os = new FileOutputStream(data)) {
+            encoder.writeHeader(os, 10L);
+            for (int i = 0; i < 3; i++) {
+                encoder.encode(new SinkRecord("t", 0, null, new byte[] {(byte) i}, null, new byte[] {'v'}, 10L + i, 1L + i, null));
+                encoder.writeTo(os);
+            }
+            encoder.finish(os);
+        }
+        initTest(data, 0, 0);
+        SourceRecord r1 = test.nextRecord(false);
+        // segment is not read completely, reading resumes from its start
+        Assertions.assertEquals(1L, r1.sourceOffset().get(RollingFileReader.LINES_READ_OFFSETS));
+        Assertions.assertEquals((long) ColumnarRecordEncoder.HEADER_LENGTH, r1.sourceOffset().get(RollingFileReader.CHARS_READ_OFFSETS));
+        test.close();
+        initTest(data, ColumnarRecordEncoder.HEADER_LENGTH, 1);
+        SourceRecord r2 = test.nextRecord(false);
+        SourceRecord r3 = test.nextRecord(false);
+        Assertions.assertNull(test.nextRecord(false));
+        Assertions.assertAll(
+                () -> Assertions.assertArrayEquals(new byte[] {1}, (byte[]) r2.key()),
+                () -> Assertions.assertEquals(2L, r2.timestamp()),
+                () -> Assertions.assertArrayEquals(new byte[] {2}, (byte[]) r3.key()),
+                () -> Assertions.assertArrayEquals(new byte[] {'v'}, (byte[]) r3.value()),
+                () -> Assertions.assertEquals(3L, r3.sourceOffset().get(RollingFileReader.LINES_READ_OFFSETS)),
+                () -> Assertions.assertEquals(data.length(), r3.sourceOffset().get(RollingFileReader.CHARS_READ_OFFSETS)));
+        test.close();
+    }
+
+    @Test
+    void readWithStartTimestamp() throws IOException {
+        String l1 = "broken line not to be read";
+        String l2 = l(1L, "b", "b");
+        String l3 = l(null, "c", "c");
+        String l4 = l(5L, "d", "d");
+        String l5 = l(3L, "e", "e");
+        String l6 = l(7L, "f", "f");
+        File data = new File(base, "data_" + ++idx + ".txt");
+        long position = 0;
+        RecordIndex index = new RecordIndex();
+        try (OutputStream os = new FileOutputStream(data)) {
+            for (String l : new String[] {l1, l2, l3, l4, l5, l6}) {
+                if (l == l3) {
+                    index.add(2L, 12L, 1L, position);
+                }
+                os.write(l.getBytes());
+                os.write(RollingFileWriter.RECORD_SEPARATOR);
+                position += l.length() + RollingFileWriter.RECORD_SEPARATOR.length;
+            }
+        }
+        index.writeTo(RecordIndex.fileFor(data));
+        long length = position;
+        initTest(data, null, 4L);
+        SourceRecord r4 = test.nextRecord(false);
+        SourceRecord r6 = test.nextRecord(false);
+        Assertions.assertNull(test.nextRecord(false));
+        Assertions.assertAll(
+                () -> Assertions.assertArrayEquals(new byte[] {'d'}, (byte[]) r4.key()),
+                () -> Assertions.assertEquals(4L, r4.sourceOffset().get(RollingFileReader.LINES_READ_OFFSETS)),
+                () -> Assertions.assertArrayEquals(new byte[] {'f'}, (byte[]) r6.key()),
+                () -> Assertions.assertEquals(6L, r6.sourceOffset().get(RollingFileReader.LINES_READ_OFFSETS)),
+                () -> Assertions.assertEquals(length, r6.sourceOffset().get(RollingFileReader.CHARS_READ_OFFSETS)));
+        test.close();
+        // stored offsets take precedence over index
+        Map<String, Object> offsets = new HashMap<>();
+        offsets.put(RollingFileReader.LINES_READ_OFFSETS, 1L);
+        offsets.put(RollingFileReader.CHARS_READ_OFFSETS, (long) l1.length() + RollingFileWriter.RECORD_SEPARATOR.length);
+        initTest(data, offsets, 0L);
+        Assertions.assertArrayEquals(new byte[] {'b'}, (byte[]) test.nextRecord(false).key());
+        test.close();
+    }
+
+    @Test
+    void readWithFooter() throws IOException {
+        String l1 = l(1L, "a", "b");
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            File data = new File(base, "data_" + ++idx + ".txt" + codec.getSuffix());
+            try (OutputStream os = new FileOutputStream(data)) {
+                try (OutputStream cos = codec.wrapOutput(new FilterOutputStream(os) {
+                    @Override
+                    public void close() throws IOException {
+                        flush();
+                    }
+                })) {
+                    cos.write(l1.getBytes());
+                    cos.write(RollingFileWriter.RECORD_SEPARATOR);
+                }
+                os.write(new FileFooter(1L, 0L, 0L, 1L, 1L, l1.length() + 1L, data.length(), 0).toBytes());
+            }
+            initTest(data, 0, 0);
+            Assertions.assertNotNull(test.getFooter(), codec.name());
+            Assertions.assertArrayEquals(new byte[] {'a'}, (byte[]) test.nextRecord(false).key(), codec.name());
+            Assertions.assertNull(test.nextRecord(false), codec.name());
+            test.close();
+        }
+    }
+
+    @Test
+    void readCorruptedBlock() throws IOException {
+        String l1 = l("a", "b");
+        String l2 = l("c", "d");
+        String l3 = l("e", "f");
+        File data = new File(base, "data_" + ++idx + ".txt");
+        try (BlockOutputStream os = new BlockOutputStream(new FileOutputStream(data), 1)) {
+            for (String l : new String[] {l1, l2, l3}) {
+                os.write(l.getBytes());
+                os.write(RollingFileWriter.RECORD_SEPARATOR);
+                os.endRecord();
+            }
+        }
+        // corrupt data of the second block
+        byte[] bytes = Files.readAllBytes(data.toPath());
+        int header = 5 + 8;
+        bytes[header + l1.length() + 1 + header] ^= 1;
+        Files.write(data.toPath(), bytes);
+        initTest(data, 0, 0);
+        Assertions.assertArrayEquals(new byte[] {'a'}, (byte[]) test.nextRecord(false).key());
+        Assertions.assertThrows(ReadException.class, () -> test.nextRecord(false));
+        test.close();
+        policy = CorruptionPolicy.SKIP;
+        initTest(data, 0, 0);
+        SourceRecord r1 = test.nextRecord(false);
+        SourceRecord r3 = test.nextRecord(false);
+        Assertions.assertNull(test.nextRecord(false));
+        test.close();
+        Assertions.assertAll(
+                () -> Assertions.assertArrayEquals(new byte[] {'a'}, (byte[]) r1.key()),
+                () -> Assertions.assertArrayEquals(new byte[] {'e'}, (byte[]) r3.key()),
+                // positions are positions in written content, so that reading can be resumed
+                () -> Assertions.assertEquals((long) l1.length() + l2.length() + l3.length() + 3,
+                        r3.sourceOffset().get(RollingFileReader.CHARS_READ_OFFSETS)));
+        initTest(data, (long) l1.length() + l2.length() + 2, 2L);
+        Assertions.assertArrayEquals(new byte[] {'e'}, (byte[]) test.nextRecord(false).key());
+        test.close();
+    }
+
     private String l(Long timestamp, String key, String value) {
         return (timestamp == null ? RollingFileWriter.NO_TIMESTAMP : timestamp)
                 + RollingFileWriter.KEY_VALUE_SEPARATOR
@@ -166,23 +392,35 @@ class RollingFileReaderTest {
     }
 
     private Map<String, String> initTest(long charsRead, long linesRead, String... lines) throws IOException {
-        File data = new File(base, "data_" + ++idx + ".txt");
-        try (FileOutputStream fw = new FileOutputStream(data)) {
+        return initTest(CompressionCodec.NONE, charsRead, linesRead, lines);
+    }
+
+    private Map<String, String> initTest(CompressionCodec codec, long charsRead, long linesRead, String... lines) throws IOException {
+        File data = new File(base, "data_" + ++idx + ".txt" + codec.getSuffix());
+        try (OutputStream fw = codec.wrapOutput(new FileOutputStream(data))) {
             for (String l : lines) {
                 fw.write(l.getBytes());
                 fw.write(RollingFileWriter.RECORD_SEPARATOR);
             }
             fw.flush();
         }
+        return initTest(data, charsRead, linesRead);
+    }
+
+    private Map<String, String> initTest(File data, long charsRead, long linesRead) throws IOException {
         Map<String, Object> map = new HashMap<>();
         map.put(RollingFileReader.LINES_READ_OFFSETS, linesRead);
         map.put(RollingFileReader.CHARS_READ_OFFSETS, charsRead);
+        return initTest(data, map, RollingFileReader.NO_START_TIMESTAMP);
+    }
+
+    private Map<String, String> initTest(File data, Map<String, Object> map, long startTimestamp) throws IOException {
         OffsetStorageReader osr = Mockito.mock(OffsetStorageReader.class);
         Mockito.doThrow(new AssertionError("wrong parameter")).when(osr).offset(Mockito.any());
         Mockito.doThrow(new AssertionError("wrong method")).when(osr).offsets(Mockito.any());
         Map<String, String> sourcePartition = Collections.singletonMap(RollingFileReader.FILE_NAME_KEY, data.getAbsolutePath());
         Mockito.doReturn(map).when(osr).offset(Mockito.eq(sourcePartition));
-        test = new RollingFileReader(data, "topic", null, osr);
+        test = new RollingFileReader(data, FileFooter.read(data), "topic", null, osr, startTimestamp, policy, pageCache);
         return sourcePartition;
     }
 }
@@ -33,17 +33,27 @@ class RollingFileSourceConnectorTest {
         c.put(RollingFileConfig.ROLLING_FILE_DIRECTORY_CONFIG, dir);
         c.put(RollingFileConfig.ROLLING_FILE_IGNORE_PARTITION_CONFIG, "true");
         c.put(RollingFileConfig.ROLLING_FILE_IGNORE_TIMESTAMP_CONFIG, "true");
+        c.put(RollingFileConfig.ROLLING_FILE_START_TIMESTAMP_CONFIG, "1000");
+        c.put(RollingFileConfig.ROLLING_FILE_CORRUPTION_POLICY_CONFIG, "skip");
+        c.put(RollingFileConfig.ROLLING_FILE_LAYOUT_CONFIG, "daily");
+        c.put(RollingFileConfig.ROLLING_FILE_MANIFEST_CONFIG, "true");
+        c.put(RollingFileConfig.ROLLING_FILE_DROP_CACHE_CONFIG, "true");
         test.start(c);
         List<Map<String, String>> cfgs = test.taskConfigs(100);
         Assertions.assertNotNull(cfgs);
         Assertions.assertEquals(1, cfgs.size());
         Map<String, String> cfg = cfgs.get(0);
         Assertions.assertNotNull(cfg);
-        Assertions.assertEquals(4, cfg.size());
+        Assertions.assertEquals(9, cfg.size());
         Assertions.assertAll(
                 () -> Assertions.assertEquals(dir, cfg.get(RollingFileConfig.ROLLING_FILE_DIRECTORY_CONFIG)),
                 () -> Assertions.assertEquals("true", cfg.get(RollingFileConfig.ROLLING_FILE_IGNORE_PARTITION_CONFIG)),
                 () -> Assertions.assertEquals("true", cfg.get(RollingFileConfig.ROLLING_FILE_IGNORE_TIMESTAMP_CONFIG)),
+                () -> Assertions.assertEquals("1000", cfg.get(RollingFileConfig.ROLLING_FILE_START_TIMESTAMP_CONFIG)),
+                () -> Assertions.assertEquals("skip", cfg.get(RollingFileConfig.ROLLING_FILE_CORRUPTION_POLICY_CONFIG)),
+                () -> Assertions.assertEquals("daily", cfg.get(RollingFileConfig.ROLLING_FILE_LAYOUT_CONFIG)),
+                () -> Assertions.assertEquals("true", cfg.get(RollingFileConfig.ROLLING_FILE_MANIFEST_CONFIG)),
+                () -> Assertions.assertEquals("true", cfg.get(RollingFileConfig.ROLLING_FILE_DROP_CACHE_CONFIG)),
                 () -> Assertions.assertEquals(batch, cfg.get(RollingFileConfig.ROLLING_FILE_BATCH_SIZE_CONFIG)));
     }
 
@@ -62,11 +72,16 @@ class RollingFileSourceConnectorTest {
         Assertions.assertEquals(1, cfgs.size());
         Map<String, String> cfg = cfgs.get(0);
         Assertions.assertNotNull(cfg);
-        Assertions.assertEquals(4, cfg.size());
+        Assertions.assertEquals(9, cfg.size());
         Assertions.assertAll(
                 () -> Assertions.assertEquals(dir, cfg.get(RollingFileConfig.ROLLING_FILE_DIRECTORY_CONFIG)),
                 () -> Assertions.assertEquals("false", cfg.get(RollingFileConfig.ROLLING_FILE_IGNORE_PARTITION_CONFIG)),
                 () -> Assertions.assertEquals("false", cfg.get(RollingFileConfig.ROLLING_FILE_IGNORE_TIMESTAMP_CONFIG)),
+                () -> Assertions.assertEquals("-1", cfg.get(RollingFileConfig.ROLLING_FILE_START_TIMESTAMP_CONFIG)),
+                () -> Assertions.assertEquals("fail", cfg.get(RollingFileConfig.ROLLING_FILE_CORRUPTION_POLICY_CONFIG)),
+                () -> Assertions.assertEquals("flat", cfg.get(RollingFileConfig.ROLLING_FILE_LAYOUT_CONFIG)),
+                () -> Assertions.assertEquals("false", cfg.get(RollingFileConfig.ROLLING_FILE_MANIFEST_CONFIG)),
+                () -> Assertions.assertEquals("false", cfg.get(RollingFileConfig.ROLLING_FILE_DROP_CACHE_CONFIG)),
                 () -> Assertions.assertEquals(batch, cfg.get(RollingFileConfig.ROLLING_FILE_BATCH_SIZE_CONFIG)));
     }
 
@@ -2,6 +2,10 @@ package org.jdurani.rollingfile.source;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -14,6 +18,10 @@ import org.apache.kafka.connect.storage.OffsetStorageReader;
 import org.jdurani.rollingfile.RollingFileConfig;
 import org.jdurani.rollingfile.Utils;
 import org.jdurani.rollingfile.VersionHolder;
+import org.jdurani.rollingfile.format.CompressionCodec;
+import org.jdurani.rollingfile.format.FileFooter;
+import org.jdurani.rollingfile.format.FileManifest;
+import org.jdurani.rollingfile.format.RecordFormat;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -119,7 +127,9 @@ class RollingFileSourceTaskTest {
         // mark files as fully read
         Assertions.assertEquals(0, test.poll().size());
 
-        File t1f3 = new File(t1, "000000000" + "2" + SUFFIX);
+        File t1f3 = new File(t1, "000000000" + "2" + SUFFIX + CompressionCodec.GZIP.getSuffix());
+        File ignored = new File(t1, "000000000" + "2" + SUFFIX + ".unknown");
+        Assertions.assertTrue(ignored.createNewFile(), "file not created");
         t1f3.createNewFile();
 
         List<RollingFileReader> out2 = test.nextFilesToRead();
@@ -131,7 +141,7 @@ class RollingFileSourceTaskTest {
         Assertions.assertEquals(0, test.poll().size());
 
         File t1f4 = new File(t1, "000000000" + "3" + SUFFIX);
-        File t2f2 = new File(t1, "00000000" + "20" + SUFFIX);
+        File t2f2 = new File(t1, "00000000" + "20" + SUFFIX.replace(RecordFormat.TEXT.getExtension(), RecordFormat.BINARY.getExtension()));
         Assertions.assertTrue(t1f4.createNewFile(), "file not created");
         Assertions.assertTrue(t2f2.createNewFile(), "file not created");
 
@@ -151,4 +161,140 @@ class RollingFileSourceTaskTest {
         Assertions.assertNotNull(out4);
         Assertions.assertEquals(0, out4.size());
     }
+
+    @Test
+    void skipFilesByFooter() throws IOException {
+        Map<String, String> m = new HashMap<>();
+        m.put(RollingFileConfig.ROLLING_FILE_DIRECTORY_CONFIG, tmpDir);
+        m.put(RollingFileConfig.ROLLING_FILE_BATCH_SIZE_CONFIG, "2");
+        m.put(RollingFileConfig.ROLLING_FILE_START_TIMESTAMP_CONFIG, "100");
+        test.start(m);
+        File topic = new File(tmpDir, "t1");
+        Assertions.assertTrue(topic.mkdirs());
+        File old = new File(topic, "0000000000-0000000000000000000.txt");
+        File recent = new File(topic, "0000000000-0000000000000000010.txt");
+        File noFooter = new File(topic, "0000000000-0000000000000000020.txt");
+        Files.write(old.toPath(), new FileFooter(1L, 0L, 0L, 10L, 50L, 0L, 0L, 0).toBytes());
+        Files.write(recent.toPath(), new FileFooter(1L, 10L, 10L, 50L, 150L, 0L, 0L, 0).toBytes());
+        Files.write(noFooter.toPath(), new byte[0]);
+        List<RollingFileReader> out = test.nextFilesToRead();
+        Assertions.assertEquals(2, out.size());
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(recent.getAbsolutePath(), out.get(0).getFileAbsolutePath()),
+                () -> Assertions.assertNotNull(out.get(0).getFooter()),
+                () -> Assertions.assertEquals(noFooter.getAbsolutePath(), out.get(1).getFileAbsolutePath()),
+                () -> Assertions.assertNull(out.get(1).getFooter()));
+        for (RollingFileReader r : out) {
+            r.close();
+        }
+    }
+
+    @Test
+    void nextFilesToReadFromManifest() throws IOException {
+        Map<String, String> m = new HashMap<>();
+        m.put(RollingFileConfig.ROLLING_FILE_DIRECTORY_CONFIG, tmpDir);
+        m.put(RollingFileConfig.ROLLING_FILE_BATCH_SIZE_CONFIG, "2");
+        m.put(RollingFileConfig.ROLLING_FILE_LAYOUT_CONFIG, "partition");
+        m.put(RollingFileConfig.ROLLING_FILE_START_TIMESTAMP_CONFIG, "100");
+        m.put(RollingFileConfig.ROLLING_FILE_MANIFEST_CONFIG, "true");
+        test.start(m);
+        File topic = new File(tmpDir, "t1");
+        File f1 = Paths.get(tmpDir, "t1", "1", "0000000001-0000000000000000000.txt").toFile();
+        File f2 = Paths.get(tmpDir, "t1", "0", "0000000000-0000000000000000000.txt").toFile();
+        File old = Paths.get(tmpDir, "t1", "0", "0000000000-0000000000000000005.txt").toFile();
+        File unlisted = Paths.get(tmpDir, "t1", "0", "0000000000-0000000000000000009.txt").toFile();
+        for (File f : new File[] {f1, f2, old, unlisted}) {
+            Assertions.assertTrue(f.getParentFile().mkdirs() || f.getParentFile().isDirectory());
+            Files.write(f.toPath(), new byte[0]);
+        }
+        try (FileChannel c = FileManifest.openForAppend(topic)) {
+            c.write(ByteBuffer.wrap(new FileManifest.Entry(1, 0L, 0L, 200L, 200L, 1L, 0L, 0, "1/" + f1.getName()).toBytes()));
+            c.write(ByteBuffer.wrap(new FileManifest.Entry(0, 0L, 0L, 200L, 200L, 1L, 0L, 0, "0/" + f2.getName()).toBytes()));
+            c.write(ByteBuffer.wrap(new FileManifest.Entry(0, 5L, 5L, 50L, 50L, 1L, 0L, 0, "0/" + old.getName()).toBytes()));
+            c.write(ByteBuffer.wrap(new FileManifest.Entry(0, 7L, 7L, 200L, 200L, 1L, 0L, 0, "0/deleted.txt").toBytes()));
+        }
+        // topic without manifest is listed
+        File other = Paths.get(tmpDir, "t2", "0", "0000000000-0000000000000000000.txt").toFile();
+        Assertions.assertTrue(other.getParentFile().mkdirs());
+        Files.write(other.toPath(), new byte[0]);
+        List<RollingFileReader> out1 = test.nextFilesToRead();
+        Assertions.assertEquals(3, out1.size());
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(f2.getAbsolutePath(), out1.get(0).getFileAbsolutePath()),
+                () -> Assertions.assertEquals(f1.getAbsolutePath(), out1.get(1).getFileAbsolutePath()),
+                () -> Assertions.assertEquals(other.getAbsolutePath(), out1.get(2).getFileAbsolutePath()));
+        for (RollingFileReader r : out1) {
+            r.close();
+        }
+        // only new entries are read
+        Files.delete(other.toPath());
+        Assertions.assertTrue(test.nextFilesToRead().isEmpty());
+        // file replaced by compaction is not read even if it still exists
+        File replaced = Paths.get(tmpDir, "t1", "0", "0000000000-0000000000000000008.txt").toFile();
+        Files.write(replaced.toPath(), new byte[0]);
+        try (FileChannel c = FileManifest.openForAppend(topic)) {
+            c.write(ByteBuffer.wrap(new FileManifest.Entry(0, 8L, 8L, 200L, 200L, 1L, 0L, 0, "0/" + replaced.getName()).toBytes()));
+            c.write(ByteBuffer.wrap(new FileManifest.Entry(0, 9L, 9L, 200L, 200L, 1L, 0L, 0, "0/" + unlisted.getName()).toBytes()));
+            c.write(ByteBuffer.wrap(FileManifest.Entry.deleted(0, "0/" + replaced.getName()).toBytes()));
+        }
+        List<RollingFileReader> out2 = test.nextFilesToRead();
+        Assertions.assertEquals(1, out2.size());
+        Assertions.assertEquals(unlisted.getAbsolutePath(), out2.get(0).getFileAbsolutePath());
+        out2.get(0).close();
+    }
+
+    @Test
+    void nextFilesToReadHourly() throws IOException {
+        Map<String, String> m = new HashMap<>();
+        m.put(RollingFileConfig.ROLLING_FILE_DIRECTORY_CONFIG, tmpDir);
+        m.put(RollingFileConfig.ROLLING_FILE_BATCH_SIZE_CONFIG, "2");
+        m.put(RollingFileConfig.ROLLING_FILE_LAYOUT_CONFIG, "hourly");
+        test.start(m);
+        File p0h0 = Paths.get(tmpDir, "t1", "0", "2024", "01", "01", "00").toFile();
+        File p0h1 = Paths.get(tmpDir, "t1", "0", "2024", "01", "01", "01").toFile();
+        File p1h0 = Paths.get(tmpDir, "t1", "1", "2024", "01", "01", "00").toFile();
+        File f1 = new File(p0h0, "0000000000-0000000000000000000.txt");
+        File f2 = new File(p0h1, "0000000000-0000000000000000005.txt");
+        File f3 = new File(p1h0, "0000000001-0000000000000000000.txt");
+        File misplaced = Paths.get(tmpDir, "t1", "0", "0000000000-0000000000000000001.txt").toFile();
+        for (File f : new File[] {f1, f2, f3, misplaced}) {
+            Assertions.assertTrue(f.getParentFile().mkdirs() || f.getParentFile().isDirectory());
+            Files.write(f.toPath(), new byte[0]);
+        }
+        Files.write(new File(p0h0, ".tmp-0000000000-0000000000000000003.txt.tmp").toPath(), new byte[0]);
+        List<RollingFileReader> out1 = test.nextFilesToRead();
+        Assertions.assertEquals(3, out1.size());
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(f1.getAbsolutePath(), out1.get(0).getFileAbsolutePath()),
+                () -> Assertions.assertEquals(f2.getAbsolutePath(), out1.get(1).getFileAbsolutePath()),
+                () -> Assertions.assertEquals(f3.getAbsolutePath(), out1.get(2).getFileAbsolutePath()));
+        Mockito.doReturn(out1).when(test).nextFilesToRead();
+        Assertions.assertTrue(test.poll().isEmpty());
+        Mockito.doCallRealMethod().when(test).nextFilesToRead();
+        // bucket with temporal file is not sealed
+        File f4 = new File(p0h0, "0000000000-0000000000000000003.txt");
+        Files.write(f4.toPath(), new byte[0]);
+        Files.delete(new File(p0h0, ".tmp-0000000000-0000000000000000003.txt.tmp").toPath());
+        List<RollingFileReader> out2 = test.nextFilesToRead();
+        Assertions.assertEquals(1, out2.size());
+        Assertions.assertEquals(f4.getAbsolutePath(), out2.get(0).getFileAbsolutePath());
+        Mockito.doReturn(out2).when(test).nextFilesToRead();
+        Assertions.assertTrue(test.poll().isEmpty());
+        Mockito.doCallRealMethod().when(test).nextFilesToRead();
+        Assertions.assertTrue(test.nextFilesToRead().isEmpty());
+        // fully read bucket with newer sibling is sealed and not listed again, the newest buckets are
+        Files.write(new File(p0h0, "0000000000-0000000000000000004.txt").toPath(), new byte[0]);
+        File f5 = new File(p0h1, "0000000000-0000000000000000006.txt");
+        File f6 = new File(p1h0, "0000000001-0000000000000000001.txt");
+        Files.write(f5.toPath(), new byte[0]);
+        Files.write(f6.toPath(), new byte[0]);
+        List<RollingFileReader> out3 = test.nextFilesToRead();
+        Assertions.assertEquals(2, out3.size());
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(f5.getAbsolutePath(), out3.get(0).getFileAbsolutePath()),
+                () -> Assertions.assertEquals(f6.getAbsolutePath(), out3.get(1).getFileAbsolutePath()));
+        for (RollingFileReader r : out3) {
+            r.close();
+        }
+    }
 }